@@ -2,7 +2,10 @@ package com.pixandroid.musicpad;
 
 import android.app.Application;
 import android.util.Log;
+import com.pixandroid.musicpad.audio.EffectsProcessor;
+import com.pixandroid.musicpad.audio.SampleCache;
 import com.pixandroid.musicpad.database.SessionDatabase;
+import com.pixandroid.musicpad.utils.Constants;
 
 /**
  * Application class for Music Pad Studio
@@ -12,6 +15,9 @@ public class App extends Application {
     private static final String TAG = "MusicPadApp";
     private static App instance;
     
+    private SampleCache sampleCache;
+    private EffectsProcessor effectsProcessor;
+    
     @Override
     public void onCreate() {
         super.onCreate();
@@ -19,6 +25,12 @@ public class App extends Application {
         
         Log.d(TAG, "Music Pad Studio initialized");
         
+        // Decoded samples are shared by every engine and survive pack switches
+        sampleCache = new SampleCache(Constants.SAMPLE_CACHE_BYTES);
+        
+        // Master-bus effects are shared by the pads screen and the effects editor
+        effectsProcessor = new EffectsProcessor(Constants.MIXER_SAMPLE_RATE);
+        
         // Initialize database
         SessionDatabase.getInstance(this);
         
@@ -42,6 +54,29 @@ public class App extends Application {
         return instance;
     }
     
+    /**
+     * Get the app-wide decoded sample cache
+     */
+    public SampleCache getSampleCache() {
+        return sampleCache;
+    }
+    
+    /**
+     * Get the app-wide master-bus effects
+     */
+    public EffectsProcessor getEffectsProcessor() {
+        return effectsProcessor;
+    }
+    
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        
+        // Keep only the pinned active pack
+        sampleCache.evictUnpinned();
+        Log.d(TAG, "Low memory, trimmed " + sampleCache);
+    }
+    
     @Override
     public void onTerminate() {
         super.onTerminate();
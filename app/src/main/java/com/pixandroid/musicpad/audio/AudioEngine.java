@@ -4,28 +4,82 @@ import android.content.Context;
 import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.SoundPool;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Audio engine for low-latency sound playback using SoundPool
+ * Audio engine for low-latency sound playback using SoundPool or the software mixer
  */
 public class AudioEngine {
     
     private static final String TAG = "AudioEngine";
     private static final int MAX_STREAMS = 32;
+    private static final int LOADER_THREADS = Math.max(1,
+        Math.min(Constants.MAX_PACK_LOADER_THREADS, Runtime.getRuntime().availableProcessors()));
     
+    /**
+     * Playback backend
+     */
+    public enum Backend {
+        SOUND_POOL,
+        MIXER
+    }
+    
+    private final Backend backend;
     private SoundPool soundPool;
+    private SoftwareMixer mixer;
+    private AudioTrackSink audioTrackSink;
+    private RenderThread renderThread;
+    private final TransportClock transportClock;
+    private final Handler handler;
     private final Map<Integer, Integer> soundMap; // padIndex -> soundId
     private final Map<Integer, Float> volumeMap; // padIndex -> volume
+    private final float[] padPitches = new float[Constants.TOTAL_PADS]; // cents
+    private final PadMode[] padModes = new PadMode[Constants.TOTAL_PADS];
+    private final int[] padStreams = new int[Constants.TOTAL_PADS]; // last SoundPool stream per pad
+    private final ExecutorService loadExecutor;
+    private final Map<Integer, CompletableFuture<Integer>> pendingSoundPoolLoads; // soundId -> load
+    private final AtomicInteger loadGeneration = new AtomicInteger();
     private boolean isInitialized;
     private float masterVolume = 1.0f;
+    private SampleCache sampleCache;
     
     public AudioEngine() {
-        soundMap = new HashMap<>();
-        volumeMap = new HashMap<>();
-        initializeSoundPool();
+        this(Backend.SOUND_POOL);
+    }
+    
+    public AudioEngine(Backend backend) {
+        this.backend = backend;
+        transportClock = new TransportClock(Constants.MIXER_SAMPLE_RATE);
+        handler = new Handler(Looper.getMainLooper());
+        soundMap = new ConcurrentHashMap<>();
+        volumeMap = new ConcurrentHashMap<>();
+        loadExecutor = Executors.newFixedThreadPool(LOADER_THREADS);
+        pendingSoundPoolLoads = new HashMap<>();
+        Arrays.fill(padModes, PadMode.ONE_SHOT);
+        if (backend == Backend.MIXER) {
+            initializeMixer();
+        } else {
+            initializeSoundPool();
+        }
     }
     
     private void initializeSoundPool() {
@@ -40,18 +94,38 @@ public class AudioEngine {
             .build();
         
         soundPool.setOnLoadCompleteListener((soundPool, sampleId, status) -> {
+            CompletableFuture<Integer> pending;
+            synchronized (pendingSoundPoolLoads) {
+                pending = pendingSoundPoolLoads.remove(sampleId);
+            }
             if (status == 0) {
                 Log.d(TAG, "Sound loaded successfully: " + sampleId);
+                if (pending != null) {
+                    pending.complete(sampleId);
+                }
             } else {
                 Log.e(TAG, "Failed to load sound: " + sampleId);
+                if (pending != null) {
+                    pending.completeExceptionally(new IOException("SoundPool load failed with status " + status));
+                }
             }
         });
         
         isInitialized = true;
     }
     
+    private void initializeMixer() {
+        mixer = new SoftwareMixer(Constants.MIXER_SAMPLE_RATE, Constants.MIXER_BLOCK_FRAMES,
+            Constants.MIXER_MAX_VOICES);
+        audioTrackSink = new AudioTrackSink(Constants.MIXER_SAMPLE_RATE, Constants.MIXER_BLOCK_FRAMES);
+        renderThread = new RenderThread(mixer, audioTrackSink, transportClock);
+        renderThread.start();
+        
+        isInitialized = true;
+    }
+    
     /**
-     * Load a sound for a specific pad
+     * Load a sound for a specific pad. The pad keeps its volume.
      */
     public int loadSound(Context context, int padIndex, int resourceId) {
         if (!isInitialized) {
@@ -59,14 +133,321 @@ public class AudioEngine {
             return -1;
         }
         
-        int soundId = soundPool.load(context, resourceId, 1);
+        int soundId;
+        if (backend == Backend.MIXER) {
+            try {
+                mixer.setSample(padIndex, decodeResource(context, resourceId));
+                soundId = resourceId;
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to decode sound for pad " + padIndex, e);
+                return -1;
+            }
+        } else {
+            soundId = soundPool.load(context, resourceId, 1);
+        }
         soundMap.put(padIndex, soundId);
-        volumeMap.put(padIndex, 1.0f);
         
         Log.d(TAG, "Loaded sound for pad " + padIndex + ", soundId: " + soundId);
         return soundId;
     }
     
+    /**
+     * Load every sound of a pad: velocity layers and round-robin alternates on
+     * the mixer backend, only the first sound on SoundPool
+     */
+    public int loadPadSounds(Context context, int padIndex, List<SoundPack.SoundInfo> sounds) {
+        if (sounds.isEmpty()) {
+            return -1;
+        }
+        if (backend != Backend.MIXER || sounds.size() == 1 || !isInitialized) {
+            return loadSound(context, padIndex, sounds.get(0).resourceId);
+        }
+        
+        PcmSample[] samples = new PcmSample[sounds.size()];
+        float[] maxVelocities = new float[sounds.size()];
+        for (int i = 0; i < samples.length; i++) {
+            try {
+                samples[i] = decodeResource(context, sounds.get(i).resourceId);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to decode " + sounds.get(i).soundName + " for pad " + padIndex, e);
+            }
+            maxVelocities[i] = sounds.get(i).maxVelocity;
+        }
+        SampleZones zones = SampleZones.of(samples, maxVelocities);
+        if (zones == null) {
+            return -1;
+        }
+        mixer.setZones(padIndex, zones);
+        int soundId = sounds.get(0).resourceId;
+        soundMap.put(padIndex, soundId);
+        
+        Log.d(TAG, "Loaded " + zones.getSampleCount() + " samples in " + zones.getLayerCount()
+            + " layers for pad " + padIndex);
+        return soundId;
+    }
+    
+    /**
+     * Map every sample of a converted pack file onto its pads. MIXER backend only.
+     *
+     * @return number of pads loaded, or -1 on failure
+     */
+    public int loadPackFile(File file) {
+        if (backend != Backend.MIXER || !isInitialized) {
+            Log.e(TAG, "Sample pack files need the mixer backend");
+            return -1;
+        }
+        
+        // Mappings stay valid after the file is closed
+        try (SamplePackFile packFile = SamplePackFile.open(file)) {
+            int padCount = applyPackFile(packFile, file.getName());
+            Log.d(TAG, "Mapped " + packFile.getEntryCount() + " sounds from " + file.getName());
+            return padCount;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open sample pack " + file, e);
+            return -1;
+        }
+    }
+    
+    /**
+     * Fill a new bank from a pack file and swap it in on the next block. Only
+     * the samples change; pad volumes carry over so a swap mid-performance
+     * does not jump in level.
+     *
+     * @return number of pads with at least one sample
+     */
+    private int applyPackFile(SamplePackFile packFile, String bankName) {
+        SampleBank bank = new SampleBank(bankName);
+        int sampleRate = getSampleRate();
+        int entries = packFile.getEntryCount();
+        PcmSample[] samples = new PcmSample[entries];
+        float[] maxVelocities = new float[entries];
+        for (int i = 0; i < entries; i++) {
+            PcmSample sample = packFile.getSampleAt(i);
+            if (sample.getSampleRate() != sampleRate) {
+                // Written for another rate; convert onto the heap rather than play at the wrong pitch
+                Log.w(TAG, "Resampling " + packFile.getName(i) + " from " + sample.getSampleRate() + " Hz");
+                sample = Resampler.convert(sample, sampleRate);
+            }
+            samples[i] = sample;
+            maxVelocities[i] = packFile.getMaxVelocity(i);
+        }
+        
+        soundMap.clear();
+        int padCount = 0;
+        for (int padIndex = 0; padIndex < Constants.TOTAL_PADS; padIndex++) {
+            SampleZones zones = SampleZones.of(samplesOfPad(packFile, samples, padIndex), maxVelocities);
+            if (zones == null) {
+                continue;
+            }
+            bank.setZones(padIndex, zones);
+            soundMap.put(padIndex, padIndex);
+            padCount++;
+        }
+        mixer.swapBank(bank);
+        return padCount;
+    }
+    
+    /**
+     * Copy of {@code samples} with every entry of another pad nulled out
+     */
+    private static PcmSample[] samplesOfPad(SamplePackFile packFile, PcmSample[] samples, int padIndex) {
+        PcmSample[] padSamples = new PcmSample[samples.length];
+        for (int i = 0; i < samples.length; i++) {
+            if (packFile.getPadIndex(i) == padIndex) {
+                padSamples[i] = samples[i];
+            }
+        }
+        return padSamples;
+    }
+    
+    /**
+     * Load pad sounds in parallel on the bounded loader pool.
+     *
+     * The future completes once every pad is playable or has failed. On the
+     * mixer backend pads decode into a shadow SampleBank that replaces the live
+     * one in a single swap when the last pad is ready, so the old pack keeps
+     * playing untouched until then. A load that is overtaken by a newer one is not applied and its
+     * future fails with a CancellationException.
+     *
+     * Pads with several sounds load all of them as velocity layers on the
+     * mixer backend and only the first on SoundPool. A pad fails if any of its
+     * sounds does, and its timing is that of its slowest sound.
+     *
+     * Pad volumes and other mix settings belong to the pads, not the pack, and
+     * are left as they are.
+     */
+    public CompletableFuture<PackLoadResult> loadSoundsAsync(Context context, String packName,
+            List<SoundPack.SoundInfo> sounds) {
+        int generation = loadGeneration.incrementAndGet();
+        long start = System.nanoTime();
+        
+        int[] soundIds = new int[Constants.TOTAL_PADS];
+        SampleBank shadow = new SampleBank(packName);
+        long[] padLoadMs = new long[Constants.TOTAL_PADS];
+        Arrays.fill(padLoadMs, -1);
+        Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+        PcmSample[] decoded = new PcmSample[sounds.size()];
+        boolean[] padStarted = new boolean[Constants.TOTAL_PADS];
+        Set<Integer> requestedPads = new HashSet<>();
+        
+        List<CompletableFuture<Void>> pads = new ArrayList<>(sounds.size());
+        for (int i = 0; i < sounds.size(); i++) {
+            SoundPack.SoundInfo sound = sounds.get(i);
+            int padIndex = sound.padIndex;
+            int resourceId = sound.resourceId;
+            int soundIndex = i;
+            requestedPads.add(padIndex);
+            if (!isInitialized || padIndex < 0 || padIndex >= Constants.TOTAL_PADS) {
+                failures.put(padIndex, new IllegalStateException("Cannot load pad " + padIndex));
+                continue;
+            }
+            boolean primary = !padStarted[padIndex];
+            padStarted[padIndex] = true;
+            
+            long padStart = System.nanoTime();
+            CompletableFuture<Integer> load;
+            if (backend == Backend.MIXER) {
+                load = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        decoded[soundIndex] = decodeResource(context, resourceId);
+                        return resourceId;
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, loadExecutor);
+            } else if (primary) {
+                load = loadIntoSoundPool(context, resourceId);
+            } else {
+                continue; // SoundPool plays one sound per pad
+            }
+            
+            pads.add(load.handle((soundId, error) -> {
+                long elapsed = elapsedMs(padStart);
+                synchronized (padLoadMs) {
+                    padLoadMs[padIndex] = Math.max(padLoadMs[padIndex], elapsed);
+                }
+                if (error != null) {
+                    Log.e(TAG, "Failed to load sound for pad " + padIndex, error);
+                    failures.put(padIndex, error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                } else if (primary) {
+                    soundIds[padIndex] = soundId;
+                }
+                return null;
+            }));
+        }
+        
+        return CompletableFuture.allOf(pads.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            synchronized (loadGeneration) {
+                if (generation != loadGeneration.get()) {
+                    throw new CancellationException("Superseded by a newer load");
+                }
+                if (mixer != null) {
+                    soundMap.clear();
+                }
+                for (int padIndex = 0; padIndex < Constants.TOTAL_PADS; padIndex++) {
+                    if (!padStarted[padIndex] || failures.containsKey(padIndex)) {
+                        continue;
+                    }
+                    if (mixer != null) {
+                        shadow.setZones(padIndex, zonesForPad(sounds, decoded, padIndex));
+                    }
+                    soundMap.put(padIndex, soundIds[padIndex]);
+                }
+                if (mixer != null) {
+                    mixer.swapBank(shadow);
+                }
+            }
+            PackLoadResult result = new PackLoadResult(packName, requestedPads.size(), failures, padLoadMs,
+                elapsedMs(start));
+            Log.d(TAG, result.toString());
+            return result;
+        });
+    }
+    
+    private static SampleZones zonesForPad(List<SoundPack.SoundInfo> sounds, PcmSample[] decoded,
+            int padIndex) {
+        PcmSample[] padSamples = new PcmSample[decoded.length];
+        float[] maxVelocities = new float[decoded.length];
+        for (int i = 0; i < decoded.length; i++) {
+            if (sounds.get(i).padIndex == padIndex) {
+                padSamples[i] = decoded[i];
+            }
+            maxVelocities[i] = sounds.get(i).maxVelocity;
+        }
+        return SampleZones.of(padSamples, maxVelocities);
+    }
+    
+    /**
+     * Map a converted pack file on the loader pool. MIXER backend only; the
+     * future fails if the file cannot be opened.
+     */
+    public CompletableFuture<PackLoadResult> loadPackFileAsync(String packName, File file) {
+        int generation = loadGeneration.incrementAndGet();
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            if (backend != Backend.MIXER || !isInitialized) {
+                throw new IllegalStateException("Sample pack files need the mixer backend");
+            }
+            try (SamplePackFile packFile = SamplePackFile.open(file)) {
+                long[] padLoadMs = new long[Constants.TOTAL_PADS];
+                Arrays.fill(padLoadMs, -1);
+                synchronized (loadGeneration) {
+                    if (generation != loadGeneration.get()) {
+                        throw new CancellationException("Superseded by a newer load");
+                    }
+                    applyPackFile(packFile, packName);
+                }
+                long elapsed = elapsedMs(start);
+                int padCount = 0;
+                for (int i = 0; i < packFile.getEntryCount(); i++) {
+                    if (padLoadMs[packFile.getPadIndex(i)] < 0) {
+                        padLoadMs[packFile.getPadIndex(i)] = elapsed;
+                        padCount++;
+                    }
+                }
+                PackLoadResult result = new PackLoadResult(packName, padCount,
+                    new HashMap<>(), padLoadMs, elapsed);
+                Log.d(TAG, result.toString());
+                return result;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, loadExecutor);
+    }
+    
+    /**
+     * Start a SoundPool load whose future completes from the load-complete listener
+     */
+    private CompletableFuture<Integer> loadIntoSoundPool(Context context, int resourceId) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        synchronized (pendingSoundPoolLoads) {
+            int soundId = soundPool.load(context, resourceId, 1);
+            if (soundId == 0) {
+                future.completeExceptionally(new IOException("SoundPool rejected resource " + resourceId));
+            } else {
+                pendingSoundPoolLoads.put(soundId, future);
+            }
+        }
+        return future;
+    }
+    
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    /**
+     * Decode a resource at the engine rate, through the shared sample cache when one is set
+     */
+    private PcmSample decodeResource(Context context, int resourceId) throws IOException {
+        int sampleRate = getSampleRate();
+        if (sampleCache == null) {
+            return SampleDecoder.decodeResource(context, resourceId, sampleRate);
+        }
+        return sampleCache.getOrLoad(SampleCache.resourceKey(resourceId, sampleRate),
+            () -> SampleDecoder.decodeResource(context, resourceId, sampleRate));
+    }
+    
     /**
      * Play sound for a specific pad
      */
@@ -75,14 +456,29 @@ public class AudioEngine {
     }
     
     /**
-     * Play sound for a specific pad with velocity
+     * Play sound for a specific pad with velocity.
+     * With the MIXER backend the returned stream id is the pad index.
      */
     public int playPad(int padIndex, float velocity) {
+        return playPad(padIndex, velocity, 0.0f);
+    }
+    
+    /**
+     * Play a pad transposed by {@code pitchCents} on top of its own pitch.
+     * SoundPool can only play between half and double speed, so its pitch is clamped to an octave.
+     */
+    public int playPad(int padIndex, float velocity, float pitchCents) {
         if (!isInitialized) {
             Log.e(TAG, "AudioEngine not initialized");
             return -1;
         }
         
+        if (backend == Backend.MIXER) {
+            // Lock-free hand-off to the render thread: no map lookups, boxing or logging per tap.
+            // Pad and master gain are applied inside the mixer.
+            return mixer.trigger(padIndex, velocity, pitchCents) ? padIndex : -1;
+        }
+        
         Integer soundId = soundMap.get(padIndex);
         if (soundId == null) {
             Log.w(TAG, "No sound loaded for pad " + padIndex);
@@ -93,18 +489,229 @@ public class AudioEngine {
         if (padVolume == null) padVolume = 1.0f;
         
         float finalVolume = masterVolume * padVolume * velocity;
+        float cents = padIndex >= 0 && padIndex < padPitches.length ? padPitches[padIndex] + pitchCents : pitchCents;
+        float rate = (float) Math.max(0.5, Math.min(2.0, Math.pow(2.0, cents / 1200.0)));
         
-        int streamId = soundPool.play(soundId, finalVolume, finalVolume, 1, 0, 1.0f);
+        boolean inRange = padIndex >= 0 && padIndex < padModes.length;
+        int loop = inRange && padModes[padIndex] == PadMode.LOOP ? -1 : 0;
+        int streamId = soundPool.play(soundId, finalVolume, finalVolume, 1, loop, rate);
+        if (inRange) {
+            padStreams[padIndex] = streamId;
+        }
         Log.d(TAG, "Playing pad " + padIndex + ", streamId: " + streamId + ", volume: " + finalVolume);
         
         return streamId;
     }
     
+    /**
+     * Play a pad on an exact frame of the transport clock.
+     * The MIXER backend starts the voice on that sample; SoundPool can only
+     * approximate it with a main-thread delay.
+     */
+    public int playPadAt(int padIndex, float velocity, long framePosition) {
+        if (!isInitialized) {
+            Log.e(TAG, "AudioEngine not initialized");
+            return -1;
+        }
+        
+        if (backend == Backend.MIXER) {
+            return mixer.triggerAt(padIndex, velocity, framePosition) ? padIndex : -1;
+        }
+        
+        long delayMs = transportClock.framesToMs(framePosition - transportClock.currentFrame());
+        handler.postDelayed(() -> playPad(padIndex, velocity), Math.max(0L, delayMs));
+        return padIndex;
+    }
+    
+    /**
+     * Cancel every pad scheduled with {@link #playPadAt} that has not started yet
+     */
+    public void cancelScheduledPads() {
+        if (backend == Backend.MIXER) {
+            if (mixer != null) {
+                mixer.cancelScheduled();
+            }
+        } else {
+            handler.removeCallbacksAndMessages(null);
+        }
+    }
+    
     /**
      * Set volume for a specific pad
      */
     public void setPadVolume(int padIndex, float volume) {
         volumeMap.put(padIndex, Math.max(0.0f, Math.min(1.0f, volume)));
+        if (mixer != null) {
+            mixer.setPadVolume(padIndex, volume);
+        }
+    }
+    
+    /**
+     * Transpose a pad by semitones plus cents
+     */
+    public void setPadPitch(int padIndex, int semitones, float cents) {
+        if (padIndex < 0 || padIndex >= padPitches.length) {
+            return;
+        }
+        padPitches[padIndex] = Math.max(-Constants.MAX_PITCH_CENTS,
+            Math.min(Constants.MAX_PITCH_CENTS, semitones * 100.0f + cents));
+        if (mixer != null) {
+            mixer.setPadPitch(padIndex, semitones, cents);
+        }
+    }
+    
+    /**
+     * Pad transposition in cents
+     */
+    public float getPadPitch(int padIndex) {
+        return padIndex >= 0 && padIndex < padPitches.length ? padPitches[padIndex] : 0.0f;
+    }
+    
+    /**
+     * Interpolation quality for pitched pads. MIXER backend only.
+     */
+    public void setInterpolation(Interpolation interpolation) {
+        if (mixer != null) {
+            mixer.setInterpolation(interpolation);
+        }
+    }
+    
+    /**
+     * Choose which voice is cut off when every voice is busy. MIXER backend only;
+     * SoundPool steals by its own rules.
+     */
+    public void setStealPolicy(StealPolicy policy) {
+        if (mixer != null) {
+            mixer.setStealPolicy(policy);
+        }
+    }
+    
+    /**
+     * Cap a pad's simultaneous voices, 0 for no limit. MIXER backend only.
+     */
+    public void setPadMaxVoices(int padIndex, int maxVoices) {
+        if (mixer != null) {
+            mixer.setPadMaxVoices(padIndex, maxVoices);
+        }
+    }
+    
+    /**
+     * Put a pad in a choke group, 0 for none. MIXER backend only.
+     */
+    public void setPadChokeGroup(int padIndex, int group) {
+        if (mixer != null) {
+            mixer.setPadChokeGroup(padIndex, group);
+        }
+    }
+    
+    /**
+     * Choose whether letting go of a pad fades it out and whether it loops.
+     * SoundPool can loop and cut a pad off, but has no release fade.
+     */
+    public void setPadMode(int padIndex, PadMode mode) {
+        if (padIndex < 0 || padIndex >= padModes.length || mode == null) {
+            return;
+        }
+        padModes[padIndex] = mode;
+        if (mixer != null) {
+            mixer.setPadMode(padIndex, mode);
+        }
+    }
+    
+    public PadMode getPadMode(int padIndex) {
+        if (padIndex >= 0 && padIndex < padModes.length) {
+            return padModes[padIndex];
+        }
+        return PadMode.ONE_SHOT;
+    }
+    
+    /**
+     * Send part of a pad's output to a shared aux effect, 0..1. MIXER backend only.
+     */
+    public void setPadSend(int padIndex, int bus, float level) {
+        if (mixer != null) {
+            mixer.setPadSend(padIndex, bus, level);
+        }
+    }
+    
+    /**
+     * Install the shared effect of an aux bus. MIXER backend only.
+     */
+    public void setAuxEffect(int bus, AudioProcessor effect) {
+        if (mixer != null) {
+            mixer.setAuxEffect(bus, effect);
+        }
+    }
+    
+    /**
+     * Set the attack, decay, sustain and release of a pad. MIXER backend only.
+     */
+    public void setPadEnvelope(int padIndex, Envelope envelope) {
+        if (mixer != null) {
+            mixer.setPadEnvelope(padIndex, envelope);
+        }
+    }
+    
+    /**
+     * Run a pad's new voices through a resonant filter, or {@link PadFilter#OFF}. MIXER backend only.
+     */
+    public void setPadFilter(int padIndex, PadFilter filter) {
+        if (mixer != null) {
+            mixer.setPadFilter(padIndex, filter);
+        }
+    }
+    
+    /**
+     * The mixer's sidechain ducker, or null on the SoundPool backend
+     */
+    public Ducker getDucker() {
+        return mixer != null ? mixer.getDucker() : null;
+    }
+    
+    /**
+     * Let go of a pad. Gated and looping pads fade out; one-shots keep playing.
+     * On the mixer backend this takes the same lock-free path as {@link #playPad}.
+     */
+    public void releasePad(int padIndex) {
+        if (!isInitialized || padIndex < 0 || padIndex >= padModes.length) {
+            return;
+        }
+        if (backend == Backend.MIXER) {
+            mixer.releasePad(padIndex);
+        } else if (padModes[padIndex] != PadMode.ONE_SHOT && padStreams[padIndex] != 0) {
+            soundPool.stop(padStreams[padIndex]);
+            padStreams[padIndex] = 0;
+        }
+    }
+    
+    /**
+     * Let go of every pad, e.g. when playback stops
+     */
+    public void releaseAllPads() {
+        if (!isInitialized) {
+            return;
+        }
+        if (backend == Backend.MIXER) {
+            mixer.releasePad(-1);
+            return;
+        }
+        for (int padIndex = 0; padIndex < padModes.length; padIndex++) {
+            releasePad(padIndex);
+        }
+    }
+    
+    /**
+     * Voices playing after the last rendered block, 0 for SoundPool
+     */
+    public int getActiveVoiceCount() {
+        return mixer != null ? mixer.getActiveVoiceCount() : 0;
+    }
+    
+    /**
+     * Voices cut off to make room for new ones, 0 for SoundPool
+     */
+    public long getStealCount() {
+        return mixer != null ? mixer.getStealCount() : 0;
     }
     
     /**
@@ -120,6 +727,19 @@ public class AudioEngine {
      */
     public void setMasterVolume(float volume) {
         masterVolume = Math.max(0.0f, Math.min(1.0f, volume));
+        if (mixer != null) {
+            mixer.setMasterVolume(masterVolume);
+        }
+    }
+    
+    /**
+     * Run {@code processor} on the summed mix before the master volume, or none with null.
+     * MIXER backend only.
+     */
+    public void setMasterProcessor(AudioProcessor processor) {
+        if (mixer != null) {
+            mixer.setMasterProcessor(processor);
+        }
     }
     
     /**
@@ -135,6 +755,8 @@ public class AudioEngine {
     public void stopStream(int streamId) {
         if (soundPool != null) {
             soundPool.stop(streamId);
+        } else if (mixer != null) {
+            mixer.stopPad(streamId);
         }
     }
     
@@ -144,7 +766,11 @@ public class AudioEngine {
     public void unloadSound(int padIndex) {
         Integer soundId = soundMap.get(padIndex);
         if (soundId != null) {
-            soundPool.unload(soundId);
+            if (soundPool != null) {
+                soundPool.unload(soundId);
+            } else if (mixer != null) {
+                mixer.setSample(padIndex, null);
+            }
             soundMap.remove(padIndex);
             volumeMap.remove(padIndex);
         }
@@ -154,8 +780,14 @@ public class AudioEngine {
      * Unload all sounds
      */
     public void unloadAllSounds() {
-        for (Integer soundId : soundMap.values()) {
-            soundPool.unload(soundId);
+        if (soundPool != null) {
+            for (Integer soundId : soundMap.values()) {
+                soundPool.unload(soundId);
+            }
+        } else if (mixer != null) {
+            for (Integer padIndex : soundMap.keySet()) {
+                mixer.setSample(padIndex, null);
+            }
         }
         soundMap.clear();
         volumeMap.clear();
@@ -165,10 +797,27 @@ public class AudioEngine {
      * Release the audio engine
      */
     public void release() {
+        handler.removeCallbacksAndMessages(null);
+        loadExecutor.shutdownNow();
+        synchronized (pendingSoundPoolLoads) {
+            for (CompletableFuture<Integer> pending : pendingSoundPoolLoads.values()) {
+                pending.cancel(false);
+            }
+            pendingSoundPoolLoads.clear();
+        }
         if (soundPool != null) {
             soundPool.release();
             soundPool = null;
         }
+        if (renderThread != null) {
+            renderThread.stop();
+            renderThread = null;
+        }
+        if (audioTrackSink != null) {
+            audioTrackSink.release();
+            audioTrackSink = null;
+        }
+        mixer = null;
         soundMap.clear();
         volumeMap.clear();
         isInitialized = false;
@@ -177,4 +826,47 @@ public class AudioEngine {
     public boolean isInitialized() {
         return isInitialized;
     }
+    
+    public Backend getBackend() {
+        return backend;
+    }
+    
+    /**
+     * Frame clock shared by live triggers, recording and playback
+     */
+    public TransportClock getTransportClock() {
+        return transportClock;
+    }
+    
+    /**
+     * Rate every decoded sample is converted to before it reaches the mixer
+     */
+    public int getSampleRate() {
+        return transportClock.getSampleRate();
+    }
+    
+    /**
+     * Share decoded samples across packs and engines. Only used by the MIXER backend.
+     */
+    public void setSampleCache(SampleCache sampleCache) {
+        this.sampleCache = sampleCache;
+    }
+    
+    public SampleCache getSampleCache() {
+        return sampleCache;
+    }
+    
+    /**
+     * Software mixer behind the MIXER backend, null for SoundPool
+     */
+    public SoftwareMixer getMixer() {
+        return mixer;
+    }
+    
+    /**
+     * Audio session of the mixer output, 0 if there is none
+     */
+    public int getAudioSessionId() {
+        return audioTrackSink != null ? audioTrackSink.getAudioSessionId() : 0;
+    }
 }
@@ -0,0 +1,20 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Block-based DSP stage that runs on planar stereo buffers.
+ *
+ * Implementations are driven by the render thread (or an offline render
+ * loop) and must not allocate, lock or block inside {@link #process}.
+ */
+public interface AudioProcessor {
+    
+    /**
+     * Process {@code frames} frames of planar stereo in place
+     */
+    void process(float[] left, float[] right, int frames);
+    
+    /**
+     * Clear internal state such as delay lines and filter memories
+     */
+    void reset();
+}
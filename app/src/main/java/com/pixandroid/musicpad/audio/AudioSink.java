@@ -0,0 +1,24 @@
+package com.pixandroid.musicpad.audio;
+
+import java.io.IOException;
+
+/**
+ * Streaming destination for rendered blocks of interleaved stereo float PCM
+ */
+public interface AudioSink {
+    
+    /**
+     * Called once on the render thread before the first write
+     */
+    void start() throws IOException;
+    
+    /**
+     * Write interleaved stereo frames. May block to pace the caller.
+     */
+    void write(float[] interleaved, int frames) throws IOException;
+    
+    /**
+     * Called once on the render thread after the last write
+     */
+    void stop() throws IOException;
+}
@@ -0,0 +1,74 @@
+package com.pixandroid.musicpad.audio;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * AudioSink that streams float PCM to a low-latency AudioTrack
+ */
+public class AudioTrackSink implements AudioSink {
+    
+    private static final String TAG = "AudioTrackSink";
+    private static final int BUFFER_BLOCKS = 2;
+    
+    private final AudioTrack audioTrack;
+    
+    public AudioTrackSink(int sampleRate, int blockFrames) {
+        int minBufferBytes = AudioTrack.getMinBufferSize(
+            sampleRate, AudioFormat.CHANNEL_OUT_STEREO, AudioFormat.ENCODING_PCM_FLOAT);
+        int bufferBytes = Math.max(minBufferBytes, blockFrames * BUFFER_BLOCKS * 2 * 4);
+        
+        AudioTrack.Builder builder = new AudioTrack.Builder()
+            .setAudioAttributes(new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_GAME)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build())
+            .setAudioFormat(new AudioFormat.Builder()
+                .setEncoding(AudioFormat.ENCODING_PCM_FLOAT)
+                .setSampleRate(sampleRate)
+                .setChannelMask(AudioFormat.CHANNEL_OUT_STEREO)
+                .build())
+            .setBufferSizeInBytes(bufferBytes)
+            .setTransferMode(AudioTrack.MODE_STREAM);
+        
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+        }
+        
+        audioTrack = builder.build();
+        Log.d(TAG, "AudioTrack created, buffer: " + bufferBytes + " bytes");
+    }
+    
+    @Override
+    public void start() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        audioTrack.play();
+    }
+    
+    @Override
+    public void write(float[] interleaved, int frames) {
+        audioTrack.write(interleaved, 0, frames * 2, AudioTrack.WRITE_BLOCKING);
+    }
+    
+    @Override
+    public void stop() {
+        audioTrack.pause();
+        audioTrack.flush();
+        audioTrack.stop();
+    }
+    
+    /**
+     * Release the underlying AudioTrack. Call after the render thread has stopped.
+     */
+    public void release() {
+        audioTrack.release();
+    }
+    
+    public int getAudioSessionId() {
+        return audioTrack.getAudioSessionId();
+    }
+}
@@ -0,0 +1,99 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * An aux return: one shared effect fed by the per-pad sends of a
+ * {@link SoftwareMixer} and added back into its mix.
+ *
+ * However many voices send to the bus, the effect runs once per block on
+ * their sum, so "reverb only on the snare and claps" costs one reverb. The
+ * effect is expected to add its output to the signal it is given, as the
+ * software effects do; the bus keeps only what the effect added, so the dry
+ * sends are not heard twice. Run the effect fully wet for a plain return.
+ *
+ * The effect and return level may be changed from any thread. {@link #process}
+ * does not allocate and has no Android dependencies.
+ */
+public final class AuxBus {
+    
+    private final int sampleRate;
+    private final float[] workLeft;
+    private final float[] workRight;
+    
+    private volatile AudioProcessor effect;
+    private volatile float returnLevel = 1.0f;
+    
+    private final SmoothedValue level = new SmoothedValue(); // render thread
+    
+    AuxBus(int sampleRate, int blockFrames) {
+        this.sampleRate = sampleRate;
+        workLeft = new float[blockFrames];
+        workRight = new float[blockFrames];
+    }
+    
+    /**
+     * Install the shared effect, or null to silence the bus. The effect must not
+     * also run anywhere else, since it keeps state between blocks.
+     */
+    public void setEffect(AudioProcessor effect) {
+        this.effect = effect;
+    }
+    
+    public AudioProcessor getEffect() {
+        return effect;
+    }
+    
+    /**
+     * Gain on the effect's output before it joins the mix, 0..1
+     */
+    public void setReturnLevel(float level) {
+        returnLevel = Math.max(0.0f, Math.min(1.0f, level));
+    }
+    
+    public float getReturnLevel() {
+        return returnLevel;
+    }
+    
+    /**
+     * Run the effect on one block of summed sends and add its output to the
+     * mix, scaled frame by frame by {@code duck} unless it is null. The sends
+     * are left untouched. Render thread only.
+     */
+    void process(float[] sendLeft, float[] sendRight, float[] mixLeft, float[] mixRight, int frames,
+            float[] duck) {
+        AudioProcessor fx = effect;
+        if (fx == null) {
+            return;
+        }
+        System.arraycopy(sendLeft, 0, workLeft, 0, frames);
+        System.arraycopy(sendRight, 0, workRight, 0, frames);
+        fx.process(workLeft, workRight, frames);
+        
+        level.advance(returnLevel, SmoothedValue.coefficient(frames, sampleRate));
+        float g = level.getStart();
+        float step = (level.getEnd() - g) / frames;
+        if (duck == null) {
+            for (int i = 0; i < frames; i++) {
+                g += step;
+                mixLeft[i] += (workLeft[i] - sendLeft[i]) * g;
+                mixRight[i] += (workRight[i] - sendRight[i]) * g;
+            }
+        } else {
+            for (int i = 0; i < frames; i++) {
+                g += step;
+                mixLeft[i] += (workLeft[i] - sendLeft[i]) * g * duck[i];
+                mixRight[i] += (workRight[i] - sendRight[i]) * g * duck[i];
+            }
+        }
+    }
+    
+    /**
+     * Clear the effect's state. Render thread only, or while the mixer is not rendering.
+     */
+    void reset() {
+        AudioProcessor fx = effect;
+        if (fx != null) {
+            fx.reset();
+        }
+        level.reset();
+    }
+}
@@ -0,0 +1,220 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Second-order IIR filter for a stereo signal, designed from the RBJ
+ * "Audio EQ Cookbook" formulas.
+ *
+ * {@link #configure} recomputes the coefficients only when the type,
+ * frequency, Q or gain actually differ from the last design, so an owner can
+ * call it every block with its smoothed settings and pay for the
+ * trigonometry only while they move. Both channels are filtered in a single
+ * pass over the block, from planar or interleaved buffers, in transposed
+ * direct form II.
+ *
+ * Not thread-safe: configure and process on the render thread and publish
+ * settings to it the way the effects do, through {@link EffectParams}.
+ * Nothing here allocates and there are no Android dependencies.
+ */
+public final class Biquad {
+    
+    public enum Type {
+        LOW_PASS,
+        HIGH_PASS,
+        BAND_PASS, // 0 dB at the centre frequency
+        PEAKING,
+        LOW_SHELF,
+        HIGH_SHELF
+    }
+    
+    static final float BUTTERWORTH_Q = 0.70710677f;
+    private static final float MIN_FREQUENCY = 10.0f;
+    private static final float MIN_Q = 0.1f;
+    private static final float FLUSH = 1e-20f; // state below this is zeroed before it turns subnormal
+    
+    private final int sampleRate;
+    
+    // The design the coefficients were computed for
+    private Type type;
+    private float frequency;
+    private float q;
+    private float gainDb;
+    
+    // Coefficients, normalised so a0 is 1
+    private float b0 = 1.0f;
+    private float b1;
+    private float b2;
+    private float a1;
+    private float a2;
+    
+    private float z1Left;
+    private float z2Left;
+    private float z1Right;
+    private float z2Right;
+    
+    public Biquad(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+    
+    /**
+     * Design the filter. Does nothing if the settings are those of the current design.
+     *
+     * @param frequency cutoff, centre or shelf midpoint in Hz, kept below Nyquist
+     * @param q resonance; {@link #BUTTERWORTH_Q} gives a flat pass band or a shelf without overshoot
+     * @param gainDb boost or cut, used by the peaking and shelf types only
+     * @return whether the coefficients were recomputed
+     */
+    public boolean configure(Type type, float frequency, float q, float gainDb) {
+        if (type == this.type && frequency == this.frequency && q == this.q && gainDb == this.gainDb) {
+            return false;
+        }
+        this.type = type;
+        this.frequency = frequency;
+        this.q = q;
+        this.gainDb = gainDb;
+        
+        double f = Math.max(MIN_FREQUENCY, Math.min(sampleRate * 0.49, frequency));
+        double w0 = 2.0 * Math.PI * f / sampleRate;
+        double cos = Math.cos(w0);
+        double alpha = Math.sin(w0) / (2.0 * Math.max(MIN_Q, q));
+        double a = Math.pow(10.0, gainDb / 40.0);
+        double shelf = 2.0 * Math.sqrt(a) * alpha;
+        double nb0;
+        double nb1;
+        double nb2;
+        double na0;
+        double na1;
+        double na2;
+        switch (type) {
+            case LOW_PASS:
+                nb0 = (1.0 - cos) / 2.0;
+                nb1 = 1.0 - cos;
+                nb2 = nb0;
+                na0 = 1.0 + alpha;
+                na1 = -2.0 * cos;
+                na2 = 1.0 - alpha;
+                break;
+            case HIGH_PASS:
+                nb0 = (1.0 + cos) / 2.0;
+                nb1 = -(1.0 + cos);
+                nb2 = nb0;
+                na0 = 1.0 + alpha;
+                na1 = -2.0 * cos;
+                na2 = 1.0 - alpha;
+                break;
+            case BAND_PASS:
+                nb0 = alpha;
+                nb1 = 0.0;
+                nb2 = -alpha;
+                na0 = 1.0 + alpha;
+                na1 = -2.0 * cos;
+                na2 = 1.0 - alpha;
+                break;
+            case PEAKING:
+                nb0 = 1.0 + alpha * a;
+                nb1 = -2.0 * cos;
+                nb2 = 1.0 - alpha * a;
+                na0 = 1.0 + alpha / a;
+                na1 = -2.0 * cos;
+                na2 = 1.0 - alpha / a;
+                break;
+            case LOW_SHELF:
+                nb0 = a * ((a + 1.0) - (a - 1.0) * cos + shelf);
+                nb1 = 2.0 * a * ((a - 1.0) - (a + 1.0) * cos);
+                nb2 = a * ((a + 1.0) - (a - 1.0) * cos - shelf);
+                na0 = (a + 1.0) + (a - 1.0) * cos + shelf;
+                na1 = -2.0 * ((a - 1.0) + (a + 1.0) * cos);
+                na2 = (a + 1.0) + (a - 1.0) * cos - shelf;
+                break;
+            case HIGH_SHELF:
+            default:
+                nb0 = a * ((a + 1.0) + (a - 1.0) * cos + shelf);
+                nb1 = -2.0 * a * ((a - 1.0) + (a + 1.0) * cos);
+                nb2 = a * ((a + 1.0) + (a - 1.0) * cos - shelf);
+                na0 = (a + 1.0) - (a - 1.0) * cos + shelf;
+                na1 = 2.0 * ((a - 1.0) - (a + 1.0) * cos);
+                na2 = (a + 1.0) - (a - 1.0) * cos - shelf;
+                break;
+        }
+        b0 = (float) (nb0 / na0);
+        b1 = (float) (nb1 / na0);
+        b2 = (float) (nb2 / na0);
+        a1 = (float) (na1 / na0);
+        a2 = (float) (na2 / na0);
+        return true;
+    }
+    
+    /**
+     * Filter planar stereo buffers in place
+     */
+    public void process(float[] left, float[] right, int frames) {
+        float c0 = b0;
+        float c1 = b1;
+        float c2 = b2;
+        float d1 = a1;
+        float d2 = a2;
+        float l1 = z1Left;
+        float l2 = z2Left;
+        float r1 = z1Right;
+        float r2 = z2Right;
+        for (int i = 0; i < frames; i++) {
+            float xl = left[i];
+            float yl = c0 * xl + l1;
+            l1 = c1 * xl - d1 * yl + l2;
+            l2 = c2 * xl - d2 * yl;
+            left[i] = yl;
+            
+            float xr = right[i];
+            float yr = c0 * xr + r1;
+            r1 = c1 * xr - d1 * yr + r2;
+            r2 = c2 * xr - d2 * yr;
+            right[i] = yr;
+        }
+        store(l1, l2, r1, r2);
+    }
+    
+    /**
+     * Filter an interleaved stereo buffer of {@code frames} frames in place
+     */
+    public void processInterleaved(float[] buffer, int frames) {
+        float c0 = b0;
+        float c1 = b1;
+        float c2 = b2;
+        float d1 = a1;
+        float d2 = a2;
+        float l1 = z1Left;
+        float l2 = z2Left;
+        float r1 = z1Right;
+        float r2 = z2Right;
+        for (int i = 0, j = 0; i < frames; i++, j += 2) {
+            float xl = buffer[j];
+            float yl = c0 * xl + l1;
+            l1 = c1 * xl - d1 * yl + l2;
+            l2 = c2 * xl - d2 * yl;
+            buffer[j] = yl;
+            
+            float xr = buffer[j + 1];
+            float yr = c0 * xr + r1;
+            r1 = c1 * xr - d1 * yr + r2;
+            r2 = c2 * xr - d2 * yr;
+            buffer[j + 1] = yr;
+        }
+        store(l1, l2, r1, r2);
+    }
+    
+    private void store(float l1, float l2, float r1, float r2) {
+        z1Left = Math.abs(l1) < FLUSH ? 0.0f : l1;
+        z2Left = Math.abs(l2) < FLUSH ? 0.0f : l2;
+        z1Right = Math.abs(r1) < FLUSH ? 0.0f : r1;
+        z2Right = Math.abs(r2) < FLUSH ? 0.0f : r2;
+    }
+    
+    /**
+     * Clear the filter's memory; the design is kept
+     */
+    public void reset() {
+        z1Left = 0.0f;
+        z2Left = 0.0f;
+        z1Right = 0.0f;
+        z2Right = 0.0f;
+    }
+}
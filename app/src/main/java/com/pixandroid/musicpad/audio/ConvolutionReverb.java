@@ -0,0 +1,142 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Reverb that convolves the mix with a recorded room's {@link ImpulseResponse}.
+ *
+ * The head of the response runs in block-sized partitions and the rest in
+ * partitions {@link ImpulseResponse#TAIL_RATIO} times longer whose work is
+ * spread across the blocks in between, so a multi-second room costs a small,
+ * steady share of each block and the wet signal lags the dry one by a single
+ * block. Switching rooms builds the new convolvers on the calling thread and
+ * hands them to the render thread in one volatile write. The mix is read
+ * from an {@link EffectParams} snapshot each block and ramped sample by
+ * sample toward its new value.
+ *
+ * {@link #process} does not allocate and has no Android dependencies.
+ */
+public final class ConvolutionReverb implements AudioProcessor {
+    
+    /**
+     * Convolvers for one response, swapped in as a whole
+     */
+    private static final class Kernel {
+        final ImpulseResponse ir;
+        final PartitionedConvolver head;
+        final PartitionedConvolver tail;
+        
+        Kernel(ImpulseResponse ir) {
+            this.ir = ir;
+            head = new PartitionedConvolver(ir.getHead());
+            tail = ir.getTail() != null ? new PartitionedConvolver(ir.getTail()) : null;
+        }
+        
+        void reset() {
+            head.reset();
+            if (tail != null) {
+                tail.reset();
+            }
+        }
+    }
+    
+    private static final int MIX = 0; // index into the parameter snapshot
+    
+    private final int sampleRate;
+    private final int maxFrames;
+    private final float[] wetLeft;
+    private final float[] wetRight;
+    private final EffectParams params = new EffectParams(0.25f);
+    
+    private volatile Kernel kernel;
+    
+    private final SmoothedValue mix = new SmoothedValue(); // render thread
+    
+    /**
+     * @param maxFrames block size the wet buffers are sized for; longer blocks are split
+     */
+    public ConvolutionReverb(int sampleRate, int maxFrames) {
+        this.sampleRate = sampleRate;
+        this.maxFrames = maxFrames;
+        wetLeft = new float[maxFrames];
+        wetRight = new float[maxFrames];
+    }
+    
+    /**
+     * Switch to another room, or pass null to silence the reverb. The new room
+     * starts from silence. Call off the render thread: this allocates.
+     */
+    public void setImpulseResponse(ImpulseResponse ir) {
+        kernel = ir != null ? new Kernel(ir) : null;
+    }
+    
+    public ImpulseResponse getImpulseResponse() {
+        Kernel k = kernel;
+        return k != null ? k.ir : null;
+    }
+    
+    /**
+     * Level of the room added to the dry signal, 0..1
+     */
+    public void setMix(float mix) {
+        params.set(MIX, Math.max(0.0f, Math.min(1.0f, mix)));
+    }
+    
+    public float getMix() {
+        return params.get(MIX);
+    }
+    
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        Kernel k = kernel;
+        if (k == null) {
+            return;
+        }
+        mix.advance(params.snapshot()[MIX], SmoothedValue.coefficient(frames, sampleRate));
+        float wet = mix.getStart();
+        float wetStep = (mix.getEnd() - wet) / frames;
+        for (int start = 0; start < frames; start += maxFrames) {
+            int n = Math.min(maxFrames, frames - start);
+            Arrays.fill(wetLeft, 0, n, 0.0f);
+            Arrays.fill(wetRight, 0, n, 0.0f);
+            k.head.process(left, right, wetLeft, wetRight, start, n);
+            if (k.tail != null) {
+                // Both stages must see the dry input, so mix only after the tail has read it
+                k.tail.process(left, right, wetLeft, wetRight, start, n);
+            }
+            for (int i = 0; i < n; i++) {
+                wet += wetStep;
+                left[start + i] += wetLeft[i] * wet;
+                right[start + i] += wetRight[i] * wet;
+            }
+        }
+    }
+    
+    /**
+     * Clear the convolvers. Render thread only, or while the reverb is not processing.
+     */
+    @Override
+    public void reset() {
+        Kernel k = kernel;
+        if (k != null) {
+            k.reset();
+        }
+        mix.reset();
+    }
+    
+    /**
+     * Delay of the wet signal behind the dry one, in frames
+     */
+    public int getLatencyFrames() {
+        Kernel k = kernel;
+        return k != null ? k.head.getLatencyFrames() : 0;
+    }
+    
+    /**
+     * Frames the room keeps ringing after the input falls silent
+     */
+    public long getTailFrames() {
+        Kernel k = kernel;
+        return k != null ? k.ir.getFrames() + k.head.getLatencyFrames() : 0;
+    }
+}
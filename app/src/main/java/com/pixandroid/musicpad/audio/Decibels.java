@@ -0,0 +1,69 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Table-driven decibel conversions for per-frame gain computers.
+ *
+ * Dynamics processors move between the linear and decibel domains on every
+ * frame, and a {@code Math.pow} plus a {@code Math.log10} per frame is most of
+ * their cost. Here gain comes from a table over {@link #MIN_DB}..0 dB and
+ * decibels from a table of {@code log2} over one octave of mantissa, both with
+ * linear interpolation. Either is within 0.001 dB of the exact value, well
+ * below anything audible or visible on a meter. Setters and meters, which run
+ * once per change or block, keep using the exact functions.
+ */
+final class Decibels {
+    
+    static final float MIN_DB = -120.0f; // gains below come out as 0
+    
+    private static final int GAIN_SIZE = 2048;
+    private static final float GAIN_SCALE = GAIN_SIZE / -MIN_DB;
+    private static final float[] GAIN = new float[GAIN_SIZE + 1];
+    
+    private static final int LOG_BITS = 10;
+    private static final int LOG_SHIFT = 23 - LOG_BITS; // mantissa bits below the table index
+    private static final float LOG_FRACTION = 1.0f / (1 << LOG_SHIFT);
+    private static final float[] LOG2 = new float[(1 << LOG_BITS) + 1];
+    private static final float DB_PER_OCTAVE = (float) (20.0 * Math.log10(2.0));
+    private static final float SMALLEST = Float.MIN_NORMAL; // below this the exponent field is no help
+    
+    static {
+        for (int i = 0; i <= GAIN_SIZE; i++) {
+            GAIN[i] = (float) Math.pow(10.0, (MIN_DB + i / (double) GAIN_SCALE) / 20.0);
+        }
+        GAIN[0] = 0.0f;
+        for (int i = 0; i < LOG2.length; i++) {
+            LOG2[i] = (float) (Math.log(1.0 + i / (double) (1 << LOG_BITS)) / Math.log(2.0));
+        }
+    }
+    
+    private Decibels() {
+    }
+    
+    /**
+     * Linear gain of {@code db}, for reductions: 0 dB and above give 1
+     */
+    static float toGain(float db) {
+        float position = (db - MIN_DB) * GAIN_SCALE;
+        if (position >= GAIN_SIZE) {
+            return 1.0f;
+        }
+        if (position <= 0.0f) {
+            return 0.0f;
+        }
+        int index = (int) position;
+        return GAIN[index] + (GAIN[index + 1] - GAIN[index]) * (position - index);
+    }
+    
+    /**
+     * Decibels of a positive level; levels below the smallest normal float count as that
+     */
+    static float fromGain(float gain) {
+        int bits = Float.floatToRawIntBits(Math.max(gain, SMALLEST));
+        int exponent = (bits >>> 23) - 127;
+        int mantissa = bits & 0x7fffff;
+        int index = mantissa >>> LOG_SHIFT;
+        float fraction = (mantissa & ((1 << LOG_SHIFT) - 1)) * LOG_FRACTION;
+        float log2 = LOG2[index] + (LOG2[index + 1] - LOG2[index]) * fraction;
+        return (exponent + log2) * DB_PER_OCTAVE;
+    }
+}
@@ -0,0 +1,383 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Sidechain ducker of a {@link SoftwareMixer}: turns a group of pads, and any
+ * aux returns chosen, down while a key plays, the classic bass-under-the-kick
+ * move.
+ *
+ * The key is either the summed audio of the key pads, compressed above a
+ * threshold, or their trigger events, which start a hold envelope on the
+ * exact frame of the hit with no detector lag. Either way the ducker runs
+ * inside the mixer's block renderer: the key voices are mixed first, the gain
+ * curve for that stretch of the block is worked out from them, and the target
+ * voices are scaled by it as they are mixed. There is no lookahead or delay
+ * line, so ducking adds no latency; the only buffers are block-sized scratch
+ * allocated up front. An audio key is held against the threshold as a linear
+ * level, so only frames above it are converted to decibels, and the gain
+ * curve comes from {@link Decibels} tables rather than a power per frame.
+ *
+ * Settings may be changed from any thread and are read once per block.
+ * Everything else is render thread only and does not allocate.
+ */
+public final class Ducker {
+    
+    public enum KeyMode {
+        /** Compress the targets by the level of the key pads' summed audio */
+        AUDIO,
+        /** Duck the targets for the hold time whenever a key pad is triggered */
+        TRIGGER
+    }
+    
+    private static final KeyMode[] KEY_MODES = KeyMode.values();
+    private static final float SETTLED_DB = -0.001f;
+    
+    // Indices into the parameter snapshot
+    private static final int ENABLED = 0;
+    private static final int KEY_MODE = 1;
+    private static final int DEPTH_DB = 2; // deepest reduction, <= 0
+    private static final int THRESHOLD_DB = 3;
+    private static final int RATIO = 4;
+    private static final int ATTACK = 5; // one-pole coefficient
+    private static final int HOLD = 6; // frames
+    private static final int RELEASE = 7; // one-pole coefficient
+    
+    private final int sampleRate;
+    private final EffectParams params;
+    private volatile int keyPads; // bit per pad
+    private volatile int targetPads;
+    private volatile int targetBuses; // bit per aux bus
+    
+    // Render thread state
+    private final float[] keyLeft;
+    private final float[] keyRight;
+    private final float[] gains;
+    private float[] block; // settings for the current block
+    private int blockKeys;
+    private int blockTargets;
+    private boolean running;
+    private boolean reduced; // some frame of the current block is turned down
+    private float reductionDb;
+    private float triggerDepthDb; // depth of the last key trigger, scaled by its velocity
+    private int holdLeft;
+    
+    private volatile float meterDb;
+    
+    Ducker(int sampleRate, int blockFrames) {
+        this.sampleRate = sampleRate;
+        keyLeft = new float[blockFrames];
+        keyRight = new float[blockFrames];
+        gains = new float[blockFrames];
+        params = new EffectParams(0.0f, KeyMode.AUDIO.ordinal(), -12.0f, -24.0f, 8.0f,
+            timeCoefficient(2.0f), Math.round(0.05f * sampleRate), timeCoefficient(150.0f));
+        block = params.snapshot();
+    }
+    
+    public void setEnabled(boolean enabled) {
+        params.set(ENABLED, enabled ? 1.0f : 0.0f);
+    }
+    
+    public boolean isEnabled() {
+        return params.get(ENABLED) != 0.0f;
+    }
+    
+    public void setKeyMode(KeyMode mode) {
+        params.set(KEY_MODE, mode.ordinal());
+    }
+    
+    public KeyMode getKeyMode() {
+        return KEY_MODES[(int) params.get(KEY_MODE)];
+    }
+    
+    /**
+     * Make a pad part of the key, or take it out. Key pads are never ducked themselves.
+     */
+    public void setKeyPad(int padIndex, boolean key) {
+        keyPads = withBit(keyPads, padIndex, key);
+    }
+    
+    public boolean isKeyPad(int padIndex) {
+        return hasBit(keyPads, padIndex);
+    }
+    
+    /**
+     * Add a pad to the group that is ducked, or take it out
+     */
+    public void setTargetPad(int padIndex, boolean target) {
+        targetPads = withBit(targetPads, padIndex, target);
+    }
+    
+    public boolean isTargetPad(int padIndex) {
+        return hasBit(targetPads, padIndex);
+    }
+    
+    /**
+     * Duck the return of an aux bus as well, or stop ducking it. The sends of
+     * target pads are ducked whether or not their bus is.
+     */
+    public void setTargetBus(int bus, boolean target) {
+        targetBuses = withBit(targetBuses, bus, target);
+    }
+    
+    public boolean isTargetBus(int bus) {
+        return hasBit(targetBuses, bus);
+    }
+    
+    /**
+     * Deepest reduction, -48..0 dB. A trigger key ducks this far at full velocity.
+     */
+    public void setDepthDb(float db) {
+        params.set(DEPTH_DB, Math.max(-48.0f, Math.min(0.0f, db)));
+    }
+    
+    public float getDepthDb() {
+        return params.get(DEPTH_DB);
+    }
+    
+    /**
+     * Key level above which an audio key starts ducking, -60..0 dBFS
+     */
+    public void setThresholdDb(float db) {
+        params.set(THRESHOLD_DB, Math.max(-60.0f, Math.min(0.0f, db)));
+    }
+    
+    public float getThresholdDb() {
+        return params.get(THRESHOLD_DB);
+    }
+    
+    /**
+     * Key decibels above the threshold per decibel of ducking, with an audio key, 1..20
+     */
+    public void setRatio(float ratio) {
+        params.set(RATIO, Math.max(1.0f, Math.min(20.0f, ratio)));
+    }
+    
+    public float getRatio() {
+        return params.get(RATIO);
+    }
+    
+    public void setAttackMs(float ms) {
+        params.set(ATTACK, timeCoefficient(ms));
+    }
+    
+    /**
+     * How long a trigger key holds the targets down before they recover, 0..1000 ms
+     */
+    public void setHoldMs(float ms) {
+        params.set(HOLD, Math.round(Math.max(0.0f, Math.min(1000.0f, ms)) * sampleRate / 1000.0f));
+    }
+    
+    public float getHoldMs() {
+        return params.get(HOLD) * 1000.0f / sampleRate;
+    }
+    
+    public void setReleaseMs(float ms) {
+        params.set(RELEASE, timeCoefficient(ms));
+    }
+    
+    /**
+     * Deepest reduction in the last block, in dB (0 or less), for a meter
+     */
+    public float getReductionDb() {
+        return meterDb;
+    }
+    
+    /**
+     * Take on the settings of another ducker, for an offline copy of its mixer
+     */
+    void copySettingsFrom(Ducker other) {
+        float[] p = other.params.snapshot();
+        for (int i = 0; i < p.length; i++) {
+            params.set(i, p[i]);
+        }
+        keyPads = other.keyPads;
+        targetPads = other.targetPads;
+        targetBuses = other.targetBuses;
+    }
+    
+    /**
+     * Copy the envelope of another ducker, used to snapshot and restore the mixer
+     */
+    void copyStateFrom(Ducker other) {
+        reductionDb = other.reductionDb;
+        triggerDepthDb = other.triggerDepthDb;
+        holdLeft = other.holdLeft;
+    }
+    
+    /**
+     * Read the settings for a block and clear the key.
+     *
+     * @return whether the ducker has anything to do in this block
+     */
+    boolean beginBlock(int frames) {
+        block = params.snapshot();
+        blockKeys = keyPads;
+        blockTargets = targetPads;
+        boolean enabled = block[ENABLED] != 0.0f && blockKeys != 0 && (blockTargets != 0 || targetBuses != 0);
+        // Switched off mid-duck, it keeps running until the targets have recovered
+        running = enabled || reductionDb < SETTLED_DB;
+        reduced = false;
+        if (!enabled) {
+            blockKeys = 0;
+            holdLeft = 0;
+        }
+        if (isKeyedByAudio()) {
+            Arrays.fill(keyLeft, 0, frames, 0.0f);
+            Arrays.fill(keyRight, 0, frames, 0.0f);
+        }
+        meterDb = 0.0f;
+        return running;
+    }
+    
+    boolean isKeyedByAudio() {
+        return blockKeys != 0 && (int) block[KEY_MODE] == KeyMode.AUDIO.ordinal();
+    }
+    
+    boolean isKey(int padIndex) {
+        return hasBit(blockKeys, padIndex);
+    }
+    
+    boolean isTarget(int padIndex) {
+        return running && !hasBit(blockKeys, padIndex) && hasBit(blockTargets, padIndex);
+    }
+    
+    /**
+     * Aux buses whose returns are ducked, one bit each
+     */
+    int getTargetBuses() {
+        return targetBuses;
+    }
+    
+    /**
+     * Add a key voice's frames {@code from} to {@code to} to the key
+     */
+    void addKey(float[] left, float[] right, int from, int to) {
+        for (int i = from; i < to; i++) {
+            keyLeft[i] += left[i];
+            keyRight[i] += right[i];
+        }
+    }
+    
+    /**
+     * A key pad was triggered at the current frame
+     */
+    void trigger(int padIndex, float velocity) {
+        if (hasBit(blockKeys, padIndex) && (int) block[KEY_MODE] == KeyMode.TRIGGER.ordinal()) {
+            triggerDepthDb = block[DEPTH_DB] * Math.max(0.0f, Math.min(1.0f, velocity));
+            holdLeft = (int) block[HOLD] + 1; // the hit's own frame counts
+        }
+    }
+    
+    /**
+     * Work out the gain of frames {@code from} to {@code to} from the key
+     *
+     * @return whether any of them is turned down
+     */
+    boolean computeGains(int from, int to) {
+        if (!running) {
+            return false;
+        }
+        float[] p = block;
+        boolean audio = isKeyedByAudio();
+        float threshold = p[THRESHOLD_DB];
+        float thresholdGain = audio ? dbToGain(threshold) : 1.0f;
+        float slope = 1.0f - 1.0f / p[RATIO];
+        float depth = p[DEPTH_DB];
+        float attack = p[ATTACK];
+        float release = p[RELEASE];
+        float env = reductionDb;
+        float lowest = 0.0f;
+        for (int i = from; i < to; i++) {
+            float target = 0.0f;
+            if (audio) {
+                float level = Math.max(Math.abs(keyLeft[i]), Math.abs(keyRight[i]));
+                if (level > thresholdGain) {
+                    float over = Math.max(0.0f, Decibels.fromGain(level) - threshold);
+                    target = Math.max(depth, -slope * over);
+                }
+            } else if (holdLeft > 0) {
+                holdLeft--;
+                target = triggerDepthDb;
+            }
+            if (target == 0.0f && env >= SETTLED_DB) {
+                env = 0.0f;
+                gains[i] = 1.0f;
+                continue;
+            }
+            env += (target - env) * (target < env ? attack : release);
+            lowest = Math.min(lowest, env);
+            gains[i] = Decibels.toGain(env);
+        }
+        reductionDb = env;
+        if (lowest < 0.0f) {
+            if (!reduced) {
+                // Frames before this range played at full level
+                Arrays.fill(gains, 0, from, 1.0f);
+                reduced = true;
+            }
+            meterDb = Math.min(meterDb, lowest);
+            return true;
+        }
+        if (reduced) {
+            Arrays.fill(gains, from, to, 1.0f);
+        }
+        return false;
+    }
+    
+    /**
+     * Whether any frame of the current block was turned down, so {@link #getGains()} applies
+     */
+    boolean isBlockReduced() {
+        return reduced;
+    }
+    
+    /**
+     * Gain of every frame of the current block up to the last computed, valid while it is reduced
+     */
+    float[] getGains() {
+        return gains;
+    }
+    
+    /**
+     * Scale frames {@code from} to {@code to} of a target voice by the gain curve
+     */
+    void apply(float[] left, float[] right, int from, int to) {
+        float[] g = gains;
+        for (int i = from; i < to; i++) {
+            left[i] *= g[i];
+            right[i] *= g[i];
+        }
+    }
+    
+    /**
+     * Let the targets back up at once. Render thread only, or while not rendering.
+     */
+    void reset() {
+        reductionDb = 0.0f;
+        triggerDepthDb = 0.0f;
+        holdLeft = 0;
+        reduced = false;
+        meterDb = 0.0f;
+    }
+    
+    private float timeCoefficient(float ms) {
+        float clamped = Math.max(0.1f, ms);
+        return (float) (1.0 - Math.exp(-1000.0 / (clamped * sampleRate)));
+    }
+    
+    private static int withBit(int mask, int index, boolean set) {
+        if (index < 0 || index >= Integer.SIZE) {
+            return mask;
+        }
+        return set ? mask | (1 << index) : mask & ~(1 << index);
+    }
+    
+    private static boolean hasBit(int mask, int index) {
+        return index >= 0 && index < Integer.SIZE && (mask & (1 << index)) != 0;
+    }
+    
+    private static float dbToGain(float db) {
+        return (float) Math.pow(10.0, db / 20.0);
+    }
+}
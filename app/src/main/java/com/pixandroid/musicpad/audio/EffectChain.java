@@ -0,0 +1,109 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.audio.EffectsProcessor.EffectType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled, immutable effects chain: the order the user chose and the
+ * processors that actually run, in that order.
+ *
+ * Effects that are off or bypassed are left out when the chain is compiled,
+ * so they cost nothing on the render thread, not even a flag check. A change
+ * to the chain compiles a new instance and publishes it in one volatile
+ * write; the render thread keeps using the instance it read at the start of
+ * a block, so it never sees a half-applied change.
+ *
+ * An effect just turned off still runs until its mix has faded out and its
+ * tail has rung out. The chain without it is compiled ahead of time as the
+ * {@link #at next} chain, which the render thread takes over once the frame
+ * count reaches the point where the effect has settled.
+ */
+public final class EffectChain {
+    
+    static final EffectChain EMPTY = new EffectChain(new EffectType[0], new EffectType[0], new AudioProcessor[0]);
+    
+    private final EffectType[] order;
+    private final EffectType[] types;
+    private final AudioProcessor[] nodes;
+    private final EffectChain next;
+    private final long settleFrame;
+    
+    /**
+     * @param order every effect in chain order, running or not
+     * @param types the running effects, in chain order
+     * @param nodes the processor of each running effect
+     */
+    EffectChain(EffectType[] order, EffectType[] types, AudioProcessor[] nodes) {
+        this(order, types, nodes, null, Long.MAX_VALUE);
+    }
+    
+    /**
+     * @param next the chain to run once the first draining effect has settled, or null
+     * @param settleFrame the frame from which {@code next} runs
+     */
+    EffectChain(EffectType[] order, EffectType[] types, AudioProcessor[] nodes, EffectChain next,
+            long settleFrame) {
+        this.order = order.clone();
+        this.types = types.clone();
+        this.nodes = nodes.clone();
+        this.next = next;
+        this.settleFrame = next != null ? settleFrame : Long.MAX_VALUE;
+    }
+    
+    /**
+     * The chain to run at {@code frame}: this one, or a later one without the
+     * effects that have settled by then. Does not allocate.
+     */
+    EffectChain at(long frame) {
+        EffectChain c = this;
+        while (frame >= c.settleFrame) {
+            c = c.next;
+        }
+        return c;
+    }
+    
+    /**
+     * Run every node on one block, in order. Render thread only.
+     */
+    void process(float[] left, float[] right, int frames) {
+        for (AudioProcessor node : nodes) {
+            node.process(left, right, frames);
+        }
+    }
+    
+    /**
+     * Whether {@code node} runs in this chain
+     */
+    boolean contains(AudioProcessor node) {
+        for (AudioProcessor n : nodes) {
+            if (n == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    int size() {
+        return nodes.length;
+    }
+    
+    AudioProcessor getNode(int index) {
+        return nodes[index];
+    }
+    
+    /**
+     * Every effect in chain order, including ones that are off or bypassed
+     */
+    public List<EffectType> getOrder() {
+        return Collections.unmodifiableList(Arrays.asList(order));
+    }
+    
+    /**
+     * The effects that run, in order, including ones still fading out
+     */
+    public List<EffectType> getActiveTypes() {
+        return Collections.unmodifiableList(Arrays.asList(types));
+    }
+}
@@ -0,0 +1,46 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The float parameters of one effect, published as immutable snapshots.
+ *
+ * A write copies the current array, changes one value and swaps the copy in
+ * with a compare-and-set, retrying if another writer got there first. The
+ * render thread takes {@link #snapshot()} once per block: a single volatile
+ * read that never waits, never allocates and always sees a consistent set,
+ * even while a UI thread is halfway through changing several values.
+ */
+final class EffectParams {
+    
+    private final AtomicReference<float[]> values;
+    
+    EffectParams(float... defaults) {
+        values = new AtomicReference<>(defaults.clone());
+    }
+    
+    void set(int index, float value) {
+        while (true) {
+            float[] current = values.get();
+            if (current[index] == value) {
+                return;
+            }
+            float[] next = current.clone();
+            next[index] = value;
+            if (values.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+    
+    float get(int index) {
+        return values.get()[index];
+    }
+    
+    /**
+     * Current values. The array is shared and must not be modified.
+     */
+    float[] snapshot() {
+        return values.get();
+    }
+}
@@ -1,14 +1,44 @@
 package com.pixandroid.musicpad.audio;
 
-import android.media.audiofx.BassBoost;
-import android.media.audiofx.EnvironmentalReverb;
-import android.media.audiofx.PresetReverb;
 import android.util.Log;
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
 
 /**
- * Audio effects processor for real-time audio effects
+ * Audio effects processor for real-time audio effects.
+ *
+ * Distortion, bass boost, delay, echo and reverb are software effects that
+ * run on the mixer's master bus as an {@link AudioProcessor}, live and in
+ * offline exports alike. The reverb is algorithmic unless a recorded room is
+ * set with {@link #setImpulseResponse}. Bass boost is a {@link Biquad} low
+ * shelf.
+ *
+ * The processor also owns the fully wet reverb and delay behind the mixer's
+ * aux buses (see {@link #getSendEffect}), so pads can share one instance of
+ * each through their sends whatever the master chain is doing.
+ *
+ * Each effect has a continuous amount from 0 to 1; the {@link EffectLevel}s
+ * are the points 1/3, 2/3 and 1 on that scale. Settings between the levels are
+ * interpolated from the level presets, and settings that cannot glide, such
+ * as a delay's note value, follow the nearest level. The effects publish what
+ * they are given as lock-free snapshots and smooth it on the render thread,
+ * so sweeping an amount is click-free.
+ *
+ * The software effects run as an {@link EffectChain} in a user-chosen order.
+ * Every change to the order, a bypass, or an amount to or from zero compiles a
+ * new chain without the effects that are off or bypassed and publishes it for
+ * the next block. An effect turned down to zero stays in the chain until its
+ * smoothed settings have reached zero and its tail has rung out, so it fades
+ * rather than cuts out; a bypass takes it out at once.
+ *
+ * After the chain, a master {@link Equalizer} shapes the tone and
+ * {@link MasterDynamics} compresses and limits the master bus so a stack of
+ * full-velocity hits cannot clip; see {@link #getEqualizer} and {@link #getDynamics}.
  */
-public class EffectsProcessor {
+public class EffectsProcessor implements AudioProcessor {
     
     private static final String TAG = "EffectsProcessor";
     
@@ -39,163 +69,511 @@ public class EffectsProcessor {
         }
     }
     
-    private PresetReverb reverb;
-    private BassBoost bassBoost;
+    // Continuous settings at OFF, LOW, MEDIUM and HIGH, interpolated in between.
+    // Mixes start from zero so an effect fades in as its amount rises from OFF.
+    private static final float[] DELAY_FEEDBACK = {0.2f, 0.2f, 0.35f, 0.5f};
+    private static final float[] DELAY_MIX = {0.0f, 0.2f, 0.3f, 0.4f};
+    private static final float[] DELAY_DAMPING_HZ = {8000.0f, 8000.0f, 6000.0f, 5000.0f};
+    private static final float[] ECHO_FEEDBACK = {0.3f, 0.3f, 0.45f, 0.6f};
+    private static final float[] ECHO_MIX = {0.0f, 0.2f, 0.3f, 0.35f};
+    private static final float[] ECHO_DAMPING_HZ = {3500.0f, 3500.0f, 2800.0f, 2200.0f};
+    private static final float[] DISTORTION_GAIN = {1.0f, 0.8f, 0.6f, 0.5f};
+    private static final float[] BASS_BOOST_DB = {0.0f, 4.0f, 8.0f, 12.0f};
+    private static final float[] REVERB_ROOM_SIZE = {0.45f, 0.45f, 0.7f, 0.88f};
+    private static final float[] REVERB_DAMPING = {0.6f, 0.6f, 0.45f, 0.3f};
+    private static final float[] REVERB_MIX = {0.0f, 0.15f, 0.25f, 0.35f};
     
-    private int audioSessionId;
-    private boolean isInitialized;
+    // Stepped settings at LOW, MEDIUM and HIGH, taken from the nearest level
+    private static final StereoDelay.Division[] DELAY_DIVISIONS = {
+        StereoDelay.Division.SIXTEENTH, StereoDelay.Division.EIGHTH, StereoDelay.Division.DOTTED_EIGHTH
+    };
+    private static final StereoDelay.Division[] ECHO_DIVISIONS = {
+        StereoDelay.Division.QUARTER, StereoDelay.Division.DOTTED_QUARTER, StereoDelay.Division.HALF
+    };
+    private static final int[] DISTORTION_OVERSAMPLING = {2, 2, 4}; // the hard curve adds the most harmonics
+    private static final float[] REVERB_PRE_DELAY_MS = {0.0f, 12.0f, 25.0f};
+    private static final EffectLevel[] LEVELS = EffectLevel.values();
+    private static final float BASS_BOOST_HZ = 100.0f;
+    private static final int EQ_BANDS = 4;
     
-    private EffectLevel reverbLevel = EffectLevel.OFF;
-    private EffectLevel delayLevel = EffectLevel.OFF;
-    private EffectLevel distortionLevel = EffectLevel.OFF;
-    private EffectLevel bassBoostLevel = EffectLevel.OFF;
-    private EffectLevel echoLevel = EffectLevel.OFF;
+    // Distort first so the repeats carry the distorted sound, boost the bass of
+    // the dry hits rather than their repeats, and reverb last so the repeats sit
+    // in the same room as the hits
+    private static final EffectType[] DEFAULT_ORDER = {
+        EffectType.DISTORTION, EffectType.BASS_BOOST, EffectType.DELAY, EffectType.ECHO, EffectType.REVERB
+    };
     
-    public EffectsProcessor(int audioSessionId) {
-        this.audioSessionId = audioSessionId;
-        initialize();
+    private final int sampleRate;
+    private final Waveshaper distortion;
+    private final Equalizer bassBoost;
+    private final StereoDelay delay;
+    private final StereoDelay echo;
+    private final Reverb reverb;
+    private final ConvolutionReverb room;
+    private final Reverb sendReverb;
+    private final StereoDelay sendDelay;
+    private final Equalizer equalizer;
+    private final MasterDynamics dynamics;
+    
+    private final List<EffectType> order = new ArrayList<>(Arrays.asList(DEFAULT_ORDER));
+    private final EnumSet<EffectType> bypassed = EnumSet.noneOf(EffectType.class);
+    private volatile EffectChain chain = EffectChain.EMPTY;
+    private EffectChain picked = EffectChain.EMPTY; // render thread: the last published chain it read
+    private EffectChain running = EffectChain.EMPTY; // render thread
+    private volatile long renderedFrames; // written by the render thread only
+    
+    private final float[] amounts = new float[EffectType.values().length];
+    private final long[] drainEnds = new long[EffectType.values().length]; // frame each effect turned off settles by
+    private final long settleFrames;
+    
+    /**
+     * Create the software effects for a master bus running at {@code sampleRate}
+     */
+    public EffectsProcessor(int sampleRate) {
+        this(sampleRate, new Equalizer(sampleRate, EQ_BANDS), new MasterDynamics(sampleRate));
+    }
+    
+    private EffectsProcessor(int sampleRate, Equalizer equalizer, MasterDynamics dynamics) {
+        this.sampleRate = sampleRate;
+        this.equalizer = equalizer;
+        this.dynamics = dynamics;
+        settleFrames = (long) Math.ceil(SmoothedValue.SETTLE_MS * sampleRate / 1000.0);
+        distortion = new Waveshaper(sampleRate, Constants.MIXER_BLOCK_FRAMES);
+        bassBoost = new Equalizer(sampleRate, new Biquad.Type[] {Biquad.Type.LOW_SHELF},
+            new float[] {BASS_BOOST_HZ});
+        delay = new StereoDelay(sampleRate);
+        echo = new StereoDelay(sampleRate);
+        echo.setPingPong(true);
+        reverb = new Reverb(sampleRate, Constants.MIXER_BLOCK_FRAMES);
+        room = new ConvolutionReverb(sampleRate, Constants.MIXER_BLOCK_FRAMES);
+        
+        // Sends use the MEDIUM settings, fully wet; the bus return sets how much is heard
+        float medium = toAmount(EffectLevel.MEDIUM);
+        sendReverb = new Reverb(sampleRate, Constants.MIXER_BLOCK_FRAMES);
+        sendReverb.setRoomSize(interpolate(REVERB_ROOM_SIZE, medium));
+        sendReverb.setDamping(interpolate(REVERB_DAMPING, medium));
+        sendReverb.setPreDelayMs(REVERB_PRE_DELAY_MS[1]);
+        sendReverb.setMix(1.0f);
+        sendDelay = new StereoDelay(sampleRate);
+        sendDelay.setDivision(DELAY_DIVISIONS[1]);
+        sendDelay.setFeedback(interpolate(DELAY_FEEDBACK, medium));
+        sendDelay.setDamping(interpolate(DELAY_DAMPING_HZ, medium));
+        sendDelay.setMix(1.0f);
+        publish();
     }
     
     /**
-     * Initialize audio effects
+     * A processor with the same software effect settings and fresh state, for an
+     * offline render that must sound like the live mix.
      */
-    private void initialize() {
-        try {
-            // Initialize reverb
-            reverb = new PresetReverb(0, audioSessionId);
-            reverb.setPreset(PresetReverb.PRESET_LARGEROOM);
-            reverb.setEnabled(false);
-            
-            // Initialize bass boost
-            bassBoost = new BassBoost(0, audioSessionId);
-            bassBoost.setEnabled(false);
-            
-            isInitialized = true;
-            Log.d(TAG, "Effects processor initialized");
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to initialize effects", e);
-            isInitialized = false;
+    public synchronized EffectsProcessor copy() {
+        EffectsProcessor copy = new EffectsProcessor(sampleRate, equalizer.copy(), dynamics.copy());
+        copy.order.clear();
+        copy.order.addAll(order);
+        copy.bypassed.addAll(bypassed);
+        copy.setBpm(delay.getBpm());
+        for (EffectType type : order) {
+            copy.setAmount(type, getAmount(type));
         }
+        copy.setImpulseResponse(room.getImpulseResponse());
+        return copy;
     }
     
     /**
-     * Set reverb level
+     * Set reverb level. Higher levels are larger, brighter rooms.
      */
     public void setReverbLevel(EffectLevel level) {
-        if (!isInitialized || reverb == null) {
-            return;
-        }
-        
-        reverbLevel = level;
-        
-        try {
-            if (level == EffectLevel.OFF) {
-                reverb.setEnabled(false);
-            } else {
-                reverb.setEnabled(true);
-                
-                // Set reverb preset based on level
-                switch (level) {
-                    case LOW:
-                        reverb.setPreset(PresetReverb.PRESET_SMALLROOM);
-                        break;
-                    case MEDIUM:
-                        reverb.setPreset(PresetReverb.PRESET_MEDIUMROOM);
-                        break;
-                    case HIGH:
-                        reverb.setPreset(PresetReverb.PRESET_LARGEHALL);
-                        break;
-                }
-            }
-            Log.d(TAG, "Reverb level set to: " + level);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to set reverb level", e);
-        }
+        setAmount(EffectType.REVERB, toAmount(level));
+        Log.d(TAG, "Reverb level set to: " + level);
     }
     
     /**
-     * Set bass boost level
+     * Reverberate in a recorded room instead of the algorithmic one, or pass null
+     * to go back. Call off the render thread.
+     */
+    public synchronized void setImpulseResponse(ImpulseResponse ir) {
+        room.setImpulseResponse(ir);
+        publish();
+        Log.d(TAG, "Impulse response set: " + (ir != null ? ir.getFrames() + " frames" : "none"));
+    }
+    
+    public ImpulseResponse getImpulseResponse() {
+        return room.getImpulseResponse();
+    }
+    
+    /**
+     * Set bass boost level. Higher levels raise a low shelf at 100 Hz further.
      */
     public void setBassBoostLevel(EffectLevel level) {
-        if (!isInitialized || bassBoost == null) {
-            return;
-        }
-        
-        bassBoostLevel = level;
-        
-        try {
-            if (level == EffectLevel.OFF) {
-                bassBoost.setEnabled(false);
-            } else {
-                bassBoost.setEnabled(true);
-                
-                // Calculate strength (0-1000)
-                short strength = (short) (level.getValue() * 10);
-                bassBoost.setStrength(strength);
-            }
-            Log.d(TAG, "Bass boost level set to: " + level);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to set bass boost level", e);
-        }
+        setAmount(EffectType.BASS_BOOST, toAmount(level));
+        Log.d(TAG, "Bass boost level set to: " + level);
     }
     
     /**
-     * Set delay level (simulated)
+     * Set delay level
      */
     public void setDelayLevel(EffectLevel level) {
-        delayLevel = level;
+        setAmount(EffectType.DELAY, toAmount(level));
         Log.d(TAG, "Delay level set to: " + level);
     }
     
     /**
-     * Set distortion level (simulated)
+     * Set distortion level. Higher levels use a harder curve.
      */
     public void setDistortionLevel(EffectLevel level) {
-        distortionLevel = level;
+        setAmount(EffectType.DISTORTION, toAmount(level));
         Log.d(TAG, "Distortion level set to: " + level);
     }
     
     /**
-     * Set echo level (simulated)
+     * Set echo level. Echo is a longer, darker ping-pong delay.
      */
     public void setEchoLevel(EffectLevel level) {
-        echoLevel = level;
+        setAmount(EffectType.ECHO, toAmount(level));
         Log.d(TAG, "Echo level set to: " + level);
     }
     
+    /**
+     * Set how much of an effect is applied, from 0 (off) to 1 (the HIGH preset).
+     * Safe to call for every move of a slider: only a change to or from zero
+     * recompiles the chain. At zero the effect keeps running until it has
+     * faded out and rung out, and is then dropped from the chain.
+     */
+    public synchronized void setAmount(EffectType type, float amount) {
+        float clamped = Math.max(0.0f, Math.min(1.0f, amount));
+        boolean wasOn = amounts[type.ordinal()] > 0.0f;
+        if (wasOn && clamped == 0.0f) {
+            // The tail at the old settings; repeats already in the lines ring that long
+            drainEnds[type.ordinal()] = renderedFrames + settleFrames + tailFrames(type);
+        }
+        amounts[type.ordinal()] = clamped;
+        int preset = Math.max(0, toLevel(clamped).ordinal() - 1);
+        switch (type) {
+            case DISTORTION:
+                // The drive scale puts the soft, warm and hard curves at the three levels
+                distortion.setDrive(clamped);
+                distortion.setOversampling(DISTORTION_OVERSAMPLING[preset]);
+                distortion.setOutputGain(interpolate(DISTORTION_GAIN, clamped));
+                break;
+            case DELAY:
+                delay.setDivision(DELAY_DIVISIONS[preset]);
+                delay.setFeedback(interpolate(DELAY_FEEDBACK, clamped));
+                delay.setMix(interpolate(DELAY_MIX, clamped));
+                delay.setDamping(interpolate(DELAY_DAMPING_HZ, clamped));
+                break;
+            case ECHO:
+                echo.setDivision(ECHO_DIVISIONS[preset]);
+                echo.setFeedback(interpolate(ECHO_FEEDBACK, clamped));
+                echo.setMix(interpolate(ECHO_MIX, clamped));
+                echo.setDamping(interpolate(ECHO_DAMPING_HZ, clamped));
+                break;
+            case REVERB:
+                reverb.setRoomSize(interpolate(REVERB_ROOM_SIZE, clamped));
+                reverb.setDamping(interpolate(REVERB_DAMPING, clamped));
+                reverb.setMix(interpolate(REVERB_MIX, clamped));
+                reverb.setPreDelayMs(REVERB_PRE_DELAY_MS[preset]);
+                room.setMix(interpolate(REVERB_MIX, clamped));
+                break;
+            case BASS_BOOST:
+                bassBoost.setGainDb(0, interpolate(BASS_BOOST_DB, clamped));
+                break;
+            default:
+                break;
+        }
+        if (wasOn != clamped > 0.0f) {
+            publish();
+        }
+    }
+    
+    /**
+     * Amount of an effect, 0..1
+     */
+    public synchronized float getAmount(EffectType type) {
+        return amounts[type.ordinal()];
+    }
+    
+    /**
+     * Position of a level on the amount scale
+     */
+    public static float toAmount(EffectLevel level) {
+        return (float) level.ordinal() / (LEVELS.length - 1);
+    }
+    
+    /**
+     * The level nearest an amount. Only zero is OFF.
+     */
+    public static EffectLevel toLevel(float amount) {
+        if (amount <= 0.0f) {
+            return EffectLevel.OFF;
+        }
+        int index = Math.round(amount * (LEVELS.length - 1));
+        return LEVELS[Math.max(1, Math.min(LEVELS.length - 1, index))];
+    }
+    
+    /**
+     * Read a table of values at OFF, LOW, MEDIUM and HIGH at any amount in between
+     */
+    private static float interpolate(float[] table, float amount) {
+        float position = amount * (table.length - 1);
+        int lower = Math.min(table.length - 2, (int) position);
+        return table[lower] + (table[lower + 1] - table[lower]) * (position - lower);
+    }
+    
+    /**
+     * Follow the session tempo with the tempo-synced effects
+     */
+    public void setBpm(int bpm) {
+        delay.setBpm(bpm);
+        echo.setBpm(bpm);
+        sendDelay.setBpm(bpm);
+    }
+    
+    /**
+     * The shared effect for an aux bus: the send reverb on
+     * {@link Constants#AUX_BUS_REVERB}, the send delay on
+     * {@link Constants#AUX_BUS_DELAY}, null otherwise. Install each on one mixer only.
+     */
+    public AudioProcessor getSendEffect(int bus) {
+        switch (bus) {
+            case Constants.AUX_BUS_REVERB:
+                return sendReverb;
+            case Constants.AUX_BUS_DELAY:
+                return sendDelay;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Frames the send effect of a bus keeps ringing after its input falls silent
+     */
+    public long getSendTailFrames(int bus) {
+        switch (bus) {
+            case Constants.AUX_BUS_REVERB:
+                return sendReverb.getTailFrames();
+            case Constants.AUX_BUS_DELAY:
+                return sendDelay.getTailFrames();
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Move an effect to {@code index} in the chain; the others keep their relative order
+     */
+    public synchronized void moveEffect(EffectType type, int index) {
+        if (!order.remove(type)) {
+            return; // not a software effect
+        }
+        order.add(Math.max(0, Math.min(order.size(), index)), type);
+        publish();
+    }
+    
+    /**
+     * Replace the chain order. {@code newOrder} must list every software effect once.
+     */
+    public synchronized void setOrder(List<EffectType> newOrder) {
+        if (newOrder.size() != order.size() || !newOrder.containsAll(order)) {
+            throw new IllegalArgumentException("Not a reordering of " + order + ": " + newOrder);
+        }
+        order.clear();
+        order.addAll(newOrder);
+        publish();
+    }
+    
+    /**
+     * Take an effect out of the chain without losing its level
+     */
+    public synchronized void setBypassed(EffectType type, boolean bypass) {
+        if (bypass) {
+            bypassed.add(type);
+        } else {
+            bypassed.remove(type);
+        }
+        publish();
+    }
+    
+    public synchronized boolean isBypassed(EffectType type) {
+        return bypassed.contains(type);
+    }
+    
+    /**
+     * The chain the render thread is running, or picks up at its next block
+     */
+    public EffectChain getChain() {
+        return chain.at(renderedFrames);
+    }
+    
+    /**
+     * Compile the chain from the current order, levels and bypasses and hand it to the render thread
+     */
+    private void publish() {
+        chain = compile(order.toArray(new EffectType[0]), renderedFrames);
+    }
+    
+    /**
+     * The chain that runs from {@code frame}, with the chains that follow it as
+     * the effects turned off settle one after another
+     */
+    private EffectChain compile(EffectType[] chainOrder, long frame) {
+        List<EffectType> types = new ArrayList<>();
+        List<AudioProcessor> nodes = new ArrayList<>();
+        long settleFrame = Long.MAX_VALUE;
+        for (EffectType type : chainOrder) {
+            AudioProcessor node = nodeFor(type);
+            if (node == null || bypassed.contains(type)) {
+                continue;
+            }
+            boolean on = amounts[type.ordinal()] > 0.0f;
+            long drainEnd = drainEnds[type.ordinal()];
+            if (on || drainEnd > frame) {
+                types.add(type);
+                nodes.add(node);
+                if (!on) {
+                    settleFrame = Math.min(settleFrame, drainEnd);
+                }
+            }
+        }
+        EffectChain next = settleFrame != Long.MAX_VALUE ? compile(chainOrder, settleFrame) : null;
+        return new EffectChain(chainOrder, types.toArray(new EffectType[0]), nodes.toArray(new AudioProcessor[0]),
+            next, settleFrame);
+    }
+    
+    private AudioProcessor nodeFor(EffectType type) {
+        switch (type) {
+            case DISTORTION:
+                return distortion;
+            case BASS_BOOST:
+                return bassBoost;
+            case DELAY:
+                return delay;
+            case ECHO:
+                return echo;
+            case REVERB:
+                return room.getImpulseResponse() != null ? room : reverb;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Level of any effect type
+     */
+    public EffectLevel getLevel(EffectType type) {
+        return toLevel(getAmount(type));
+    }
+    
+    /**
+     * Run the software effects, equalizer and dynamics on one block of the master bus. Render thread only.
+     */
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        EffectChain published = chain;
+        long frame = renderedFrames;
+        // A new chain replaces the running one; otherwise drop the effects that have settled
+        EffectChain current = (published != picked ? published : running).at(frame);
+        picked = published;
+        if (current != running) {
+            // Effects joining the chain start clean rather than with the tail left from their last run
+            for (int i = 0; i < current.size(); i++) {
+                AudioProcessor node = current.getNode(i);
+                if (!running.contains(node)) {
+                    node.reset();
+                }
+            }
+            running = current;
+        }
+        current.process(left, right, frames);
+        equalizer.process(left, right, frames);
+        dynamics.process(left, right, frames);
+        renderedFrames = frame + frames;
+    }
+    
+    @Override
+    public void reset() {
+        distortion.reset();
+        bassBoost.reset();
+        delay.reset();
+        echo.reset();
+        reverb.reset();
+        room.reset();
+        equalizer.reset();
+        dynamics.reset();
+    }
+    
+    /**
+     * Frames the running effects keep ringing after the input falls silent. The
+     * effects are in series, so each one's tail is added to those before it,
+     * and the limiter's lookahead holds the last frames back a little longer.
+     */
+    public long getTailFrames() {
+        long tail = dynamics.getLatencyFrames();
+        for (EffectType type : getChain().getActiveTypes()) {
+            tail += tailFrames(type);
+        }
+        return tail;
+    }
+    
+    private long tailFrames(EffectType type) {
+        switch (type) {
+            case DELAY:
+                return delay.getTailFrames();
+            case ECHO:
+                return echo.getTailFrames();
+            case REVERB:
+                return room.getImpulseResponse() != null ? room.getTailFrames() : reverb.getTailFrames();
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * Master equalizer, after the chain and before the dynamics
+     */
+    public Equalizer getEqualizer() {
+        return equalizer;
+    }
+    
+    /**
+     * Compressor and limiter at the end of the master bus
+     */
+    public MasterDynamics getDynamics() {
+        return dynamics;
+    }
+    
     /**
      * Get current reverb level
      */
     public EffectLevel getReverbLevel() {
-        return reverbLevel;
+        return getLevel(EffectType.REVERB);
     }
     
     /**
      * Get current bass boost level
      */
     public EffectLevel getBassBoostLevel() {
-        return bassBoostLevel;
+        return getLevel(EffectType.BASS_BOOST);
     }
     
     /**
      * Get current delay level
      */
     public EffectLevel getDelayLevel() {
-        return delayLevel;
+        return getLevel(EffectType.DELAY);
     }
     
     /**
      * Get current distortion level
      */
     public EffectLevel getDistortionLevel() {
-        return distortionLevel;
+        return getLevel(EffectType.DISTORTION);
     }
     
     /**
      * Get current echo level
      */
     public EffectLevel getEchoLevel() {
-        return echoLevel;
+        return getLevel(EffectType.ECHO);
     }
     
     /**
@@ -209,26 +587,4 @@ public class EffectsProcessor {
         setEchoLevel(EffectLevel.OFF);
         Log.d(TAG, "All effects reset");
     }
-    
-    /**
-     * Release effects processor
-     */
-    public void release() {
-        if (reverb != null) {
-            reverb.release();
-            reverb = null;
-        }
-        
-        if (bassBoost != null) {
-            bassBoost.release();
-            bassBoost = null;
-        }
-        
-        isInitialized = false;
-        Log.d(TAG, "Effects processor released");
-    }
-    
-    public boolean isInitialized() {
-        return isInitialized;
-    }
 }
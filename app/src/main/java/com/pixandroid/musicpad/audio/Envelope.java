@@ -0,0 +1,56 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+
+/**
+ * Attack, decay, sustain and release settings for a pad's voices. Immutable,
+ * so one instance can be shared by the UI and the render thread.
+ *
+ * Each stage is a linear ramp of the voice gain. Voices evaluate it once per
+ * run of frames inside a stage rather than per frame, see {@link Voice}.
+ */
+public final class Envelope {
+    
+    /** Starts at full level and holds it; only gated pads fade, over a short release */
+    public static final Envelope DEFAULT = new Envelope(0.0f, 0.0f, 1.0f, Constants.DEFAULT_RELEASE_MS);
+    
+    private final float attackMs;
+    private final float decayMs;
+    private final float sustain;
+    private final float releaseMs;
+    
+    /**
+     * @param sustain level held after the decay, 0..1. A sustain of 0 ends the voice after the decay.
+     */
+    public Envelope(float attackMs, float decayMs, float sustain, float releaseMs) {
+        this.attackMs = Math.max(0.0f, attackMs);
+        this.decayMs = Math.max(0.0f, decayMs);
+        this.sustain = Math.max(0.0f, Math.min(1.0f, sustain));
+        this.releaseMs = Math.max(0.0f, releaseMs);
+    }
+    
+    public float getAttackMs() {
+        return attackMs;
+    }
+    
+    public float getDecayMs() {
+        return decayMs;
+    }
+    
+    public float getSustain() {
+        return sustain;
+    }
+    
+    public float getReleaseMs() {
+        return releaseMs;
+    }
+    
+    static int toFrames(float ms, int sampleRate) {
+        return Math.round(ms * sampleRate / 1000.0f);
+    }
+    
+    @Override
+    public String toString() {
+        return "Envelope{A " + attackMs + " ms, D " + decayMs + " ms, S " + sustain + ", R " + releaseMs + " ms}";
+    }
+}
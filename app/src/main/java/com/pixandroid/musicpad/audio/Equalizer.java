@@ -0,0 +1,185 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Parametric equalizer: a low shelf, one to three peaking bands and a high
+ * shelf, each a {@link Biquad}, in series.
+ *
+ * Gain, frequency and Q of every band may be changed from any thread and are
+ * read as one {@link EffectParams} snapshot per block. Gain and frequency
+ * glide toward new values block by block; the biquads redesign themselves
+ * only while a setting is actually moving. A band at 0 dB is an identity
+ * filter, so flat bands are skipped and a flat equalizer costs nothing.
+ * {@link #process} does not allocate and has no Android dependencies.
+ */
+public final class Equalizer implements AudioProcessor {
+    
+    public static final int MIN_BANDS = 3;
+    public static final int MAX_BANDS = 5;
+    public static final float MAX_GAIN_DB = 12.0f;
+    
+    // Default band frequencies by band count, low shelf first and high shelf last
+    private static final float[][] LAYOUTS = {
+        {120.0f, 1000.0f, 6000.0f},
+        {100.0f, 500.0f, 2500.0f, 8000.0f},
+        {80.0f, 300.0f, 1000.0f, 3500.0f, 10000.0f}
+    };
+    private static final float PEAKING_Q = 1.0f;
+    
+    // Indices into the parameter snapshot, per band
+    private static final int GAIN_DB = 0;
+    private static final int FREQUENCY = 1;
+    private static final int Q = 2;
+    private static final int PER_BAND = 3;
+    
+    private final int sampleRate;
+    private final Biquad.Type[] types;
+    private final Biquad[] filters;
+    private final EffectParams params;
+    
+    // Render thread state
+    private final SmoothedValue[] gains;
+    private final SmoothedValue[] frequencies;
+    private final boolean[] running;
+    
+    /**
+     * An equalizer with {@link #MIN_BANDS} to {@link #MAX_BANDS} bands spread over the spectrum, all flat
+     */
+    public Equalizer(int sampleRate, int bands) {
+        this(sampleRate, layoutTypes(bands), LAYOUTS[bands - MIN_BANDS]);
+    }
+    
+    /**
+     * An equalizer with the given bands, all flat. Only the peaking and shelf types have a gain.
+     */
+    Equalizer(int sampleRate, Biquad.Type[] types, float[] frequencies) {
+        this.sampleRate = sampleRate;
+        this.types = types.clone();
+        int bands = types.length;
+        filters = new Biquad[bands];
+        gains = new SmoothedValue[bands];
+        this.frequencies = new SmoothedValue[bands];
+        running = new boolean[bands];
+        float[] defaults = new float[bands * PER_BAND];
+        for (int i = 0; i < bands; i++) {
+            filters[i] = new Biquad(sampleRate);
+            gains[i] = new SmoothedValue();
+            this.frequencies[i] = new SmoothedValue();
+            defaults[i * PER_BAND + FREQUENCY] = frequencies[i];
+            defaults[i * PER_BAND + Q] = types[i] == Biquad.Type.PEAKING ? PEAKING_Q : Biquad.BUTTERWORTH_Q;
+        }
+        params = new EffectParams(defaults);
+    }
+    
+    private static Biquad.Type[] layoutTypes(int bands) {
+        if (bands < MIN_BANDS || bands > MAX_BANDS) {
+            throw new IllegalArgumentException("Bands must be " + MIN_BANDS + " to " + MAX_BANDS + ": " + bands);
+        }
+        Biquad.Type[] types = new Biquad.Type[bands];
+        Arrays.fill(types, Biquad.Type.PEAKING);
+        types[0] = Biquad.Type.LOW_SHELF;
+        types[bands - 1] = Biquad.Type.HIGH_SHELF;
+        return types;
+    }
+    
+    /**
+     * An equalizer with the same bands and settings and fresh state, for an offline render
+     */
+    public Equalizer copy() {
+        Equalizer copy = new Equalizer(sampleRate, types, new float[types.length]);
+        float[] p = params.snapshot();
+        for (int i = 0; i < p.length; i++) {
+            copy.params.set(i, p[i]);
+        }
+        return copy;
+    }
+    
+    public int getBandCount() {
+        return types.length;
+    }
+    
+    public Biquad.Type getBandType(int band) {
+        return types[band];
+    }
+    
+    /**
+     * Boost or cut of a band, within {@link #MAX_GAIN_DB} either way
+     */
+    public void setGainDb(int band, float db) {
+        params.set(band * PER_BAND + GAIN_DB, Math.max(-MAX_GAIN_DB, Math.min(MAX_GAIN_DB, db)));
+    }
+    
+    public float getGainDb(int band) {
+        return params.get(band * PER_BAND + GAIN_DB);
+    }
+    
+    /**
+     * Centre frequency of a peaking band or midpoint of a shelf, 20 Hz..20 kHz
+     */
+    public void setFrequency(int band, float hz) {
+        params.set(band * PER_BAND + FREQUENCY, Math.max(20.0f, Math.min(20000.0f, hz)));
+    }
+    
+    public float getFrequency(int band) {
+        return params.get(band * PER_BAND + FREQUENCY);
+    }
+    
+    /**
+     * Width of a band, 0.3..10; higher is narrower. Shelves are steepest without overshoot at 0.71.
+     */
+    public void setQ(int band, float q) {
+        params.set(band * PER_BAND + Q, Math.max(0.3f, Math.min(10.0f, q)));
+    }
+    
+    public float getQ(int band) {
+        return params.get(band * PER_BAND + Q);
+    }
+    
+    /**
+     * Set every band back to 0 dB
+     */
+    public void flatten() {
+        for (int i = 0; i < types.length; i++) {
+            setGainDb(i, 0.0f);
+        }
+    }
+    
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        float[] p = params.snapshot();
+        float glide = SmoothedValue.coefficient(frames, sampleRate);
+        for (int i = 0; i < types.length; i++) {
+            int base = i * PER_BAND;
+            SmoothedValue gain = gains[i];
+            SmoothedValue frequency = frequencies[i];
+            gain.advance(p[base + GAIN_DB], glide);
+            frequency.advance(p[base + FREQUENCY], glide);
+            if (gain.getEnd() == 0.0f) {
+                running[i] = false;
+                continue;
+            }
+            Biquad filter = filters[i];
+            if (!running[i]) {
+                // A band rejoining starts clean rather than with the state it was left in
+                filter.reset();
+                running[i] = true;
+            }
+            filter.configure(types[i], frequency.getEnd(), p[base + Q], gain.getEnd());
+            filter.process(left, right, frames);
+        }
+    }
+    
+    /**
+     * Clear every band's state. Render thread only, or while not processing.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < types.length; i++) {
+            filters[i].reset();
+            gains[i].reset();
+            frequencies[i].reset();
+            running[i] = false;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Render-thread-only list of pending pad events ordered by target frame.
+ *
+ * Storage is preallocated parallel arrays. Events with equal frames keep
+ * their insertion order, so a trigger followed by a stop on the same frame
+ * is applied in that order.
+ */
+final class EventSchedule {
+    
+    private final int[] types;
+    private final int[] pads;
+    private final float[] velocities;
+    private final float[] pitches;
+    private final long[] frames;
+    private int size;
+    
+    EventSchedule(int capacity) {
+        types = new int[capacity];
+        pads = new int[capacity];
+        velocities = new float[capacity];
+        pitches = new float[capacity];
+        frames = new long[capacity];
+    }
+    
+    /**
+     * Insert an event in frame order
+     *
+     * @return false if the schedule is full
+     */
+    boolean add(int type, int padIndex, float velocity, float pitchCents, long frame) {
+        if (size == frames.length) {
+            return false;
+        }
+        int i = size;
+        while (i > 0 && frames[i - 1] > frame) {
+            i--;
+        }
+        int tail = size - i;
+        if (tail > 0) {
+            System.arraycopy(types, i, types, i + 1, tail);
+            System.arraycopy(pads, i, pads, i + 1, tail);
+            System.arraycopy(velocities, i, velocities, i + 1, tail);
+            System.arraycopy(pitches, i, pitches, i + 1, tail);
+            System.arraycopy(frames, i, frames, i + 1, tail);
+        }
+        types[i] = type;
+        pads[i] = padIndex;
+        velocities[i] = velocity;
+        pitches[i] = pitchCents;
+        frames[i] = frame;
+        size++;
+        return true;
+    }
+    
+    boolean isEmpty() {
+        return size == 0;
+    }
+    
+    long firstFrame() {
+        return frames[0];
+    }
+    
+    int firstType() {
+        return types[0];
+    }
+    
+    int firstPad() {
+        return pads[0];
+    }
+    
+    float firstVelocity() {
+        return velocities[0];
+    }
+    
+    float firstPitch() {
+        return pitches[0];
+    }
+    
+    void removeFirst() {
+        size--;
+        if (size > 0) {
+            System.arraycopy(types, 1, types, 0, size);
+            System.arraycopy(pads, 1, pads, 0, size);
+            System.arraycopy(velocities, 1, velocities, 0, size);
+            System.arraycopy(pitches, 1, pitches, 0, size);
+            System.arraycopy(frames, 1, frames, 0, size);
+        }
+    }
+    
+    /**
+     * Drop every event targeted at or after {@code frame}
+     */
+    void removeFrom(long frame) {
+        while (size > 0 && frames[size - 1] >= frame) {
+            size--;
+        }
+    }
+    
+    void clear() {
+        size = 0;
+    }
+    
+    int size() {
+        return size;
+    }
+}
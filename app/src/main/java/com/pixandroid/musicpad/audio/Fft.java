@@ -0,0 +1,92 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * In-place radix-2 complex FFT of one fixed power-of-two size.
+ *
+ * The twiddle factors and bit-reversal permutation are computed once in the
+ * constructor, so a transform does no trigonometry and no allocation. Real
+ * and imaginary parts live in separate arrays. Instances hold no mutable
+ * state and may be shared between threads.
+ */
+final class Fft {
+    
+    private final int size;
+    private final float[] cos;
+    private final float[] sin;
+    private final int[] reversed;
+    
+    Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        cos = new float[size / 2];
+        sin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2.0 * Math.PI * i / size;
+            cos[i] = (float) Math.cos(angle);
+            sin[i] = (float) Math.sin(angle);
+        }
+        reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reversed[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+    
+    int getSize() {
+        return size;
+    }
+    
+    /**
+     * Forward transform, e^(-i...) kernel, unscaled
+     */
+    void forward(float[] re, float[] im) {
+        transform(re, im, 1.0f);
+    }
+    
+    /**
+     * Inverse transform, scaled by 1 / size so it undoes {@link #forward}
+     */
+    void inverse(float[] re, float[] im) {
+        transform(re, im, -1.0f);
+        float scale = 1.0f / size;
+        for (int i = 0; i < size; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+    
+    private void transform(float[] re, float[] im, float direction) {
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        
+        for (int half = 1; half < n; half <<= 1) {
+            int step = n / (half * 2); // twiddle stride for this stage
+            for (int start = 0; start < n; start += half * 2) {
+                for (int k = 0; k < half; k++) {
+                    float wr = cos[k * step];
+                    float wi = sin[k * step] * direction;
+                    int a = start + k;
+                    int b = a + half;
+                    float xr = re[b] * wr - im[b] * wi;
+                    float xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.pixandroid.musicpad.audio;
+
+import java.io.IOException;
+
+/**
+ * Streams pad hits to an offline renderer in ascending frame order, a chunk at a time
+ */
+public interface HitSource {
+    
+    /**
+     * Fill the arrays with up to {@code max} hits.
+     * Frames are positions on the renderer's timeline at its sample rate.
+     *
+     * @return number of hits read, 0 once the source is exhausted
+     */
+    int read(int[] pads, float[] velocities, long[] frames, int max) throws IOException;
+}
@@ -0,0 +1,166 @@
+package com.pixandroid.musicpad.audio;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A room impulse response cut into partitions and transformed to the
+ * frequency domain, ready for {@link ConvolutionReverb}.
+ *
+ * The response is split in two. The head is cut into short partitions the
+ * size of a processing block, so the reverb only adds one block of latency.
+ * The rest is cut into partitions {@link #TAIL_RATIO} times longer, which
+ * cost far less per frame. The head is exactly long enough to cover the
+ * tail's extra latency, so the two add up to the whole response with no gap.
+ *
+ * Transforming a long response is far too slow for the render thread, so it
+ * is done once per response, sample rate and block size and the result is
+ * cached; every convolver using the same room shares the spectra. The
+ * response is normalised to unit energy so rooms of different length come
+ * out at a similar level. Immutable.
+ */
+public final class ImpulseResponse {
+    
+    static final int TAIL_RATIO = 16;
+    static final int MAX_SECONDS = 6; // longer responses are cut, their tails are far below audibility
+    
+    private static final Map<String, ImpulseResponse> CACHE = new ConcurrentHashMap<>();
+    
+    /**
+     * Spectra of one run of equal partitions, each zero-padded to twice its
+     * length. Only the non-negative half of each spectrum is kept; the rest mirrors it.
+     */
+    static final class Partitions {
+        final int size;
+        final int count;
+        final int bins;
+        final float[] leftRe;
+        final float[] leftIm;
+        final float[] rightRe; // the left arrays again for a mono response
+        final float[] rightIm;
+        
+        Partitions(int size, int count, boolean stereo) {
+            this.size = size;
+            this.count = count;
+            bins = size + 1;
+            leftRe = new float[count * bins];
+            leftIm = new float[count * bins];
+            rightRe = stereo ? new float[count * bins] : leftRe;
+            rightIm = stereo ? new float[count * bins] : leftIm;
+        }
+    }
+    
+    private final int sampleRate;
+    private final int frames;
+    private final boolean stereo;
+    private final Partitions head;
+    private final Partitions tail; // null when the head covers the whole response
+    
+    private ImpulseResponse(PcmSample ir, int blockFrames) {
+        sampleRate = ir.getSampleRate();
+        int channels = ir.getChannels();
+        stereo = channels == 2;
+        frames = Math.max(1, Math.min(ir.getFrames(), MAX_SECONDS * sampleRate));
+        
+        double energy = 0;
+        for (int i = 0; i < frames * channels; i++) {
+            float v = ir.get(i);
+            energy += v * v;
+        }
+        energy /= channels;
+        float gain = energy > 0 ? (float) (1.0 / Math.sqrt(energy)) : 0.0f;
+        
+        // The tail's partitions add tailSize - blockFrames more latency than the head's
+        int tailSize = blockFrames * TAIL_RATIO;
+        int headFrames = Math.min(frames, tailSize - blockFrames);
+        head = transform(ir, 0, headFrames, blockFrames, gain);
+        tail = frames > headFrames ? transform(ir, headFrames, frames - headFrames, tailSize, gain) : null;
+    }
+    
+    /**
+     * Prepare a response for convolvers running at {@code sampleRate} in blocks of
+     * {@code blockFrames}, converting its rate if needed. Cached under {@code key},
+     * so a response is only decoded, resampled and transformed the first time.
+     *
+     * @param key identifies the response, e.g. a {@link SampleCache} key
+     * @param loader decodes the response on a cache miss
+     * @param blockFrames head partition length and reverb latency, a power of two
+     */
+    public static ImpulseResponse prepare(String key, SampleCache.Loader loader, int sampleRate, int blockFrames)
+            throws IOException {
+        if (Integer.bitCount(blockFrames) != 1) {
+            throw new IllegalArgumentException("Block size must be a power of two: " + blockFrames);
+        }
+        String cacheKey = key + "@" + sampleRate + "/" + blockFrames;
+        ImpulseResponse cached = CACHE.get(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        PcmSample ir = loader.load();
+        PcmSample converted = ir.getSampleRate() == sampleRate ? ir : Resampler.convert(ir, sampleRate);
+        ImpulseResponse prepared = new ImpulseResponse(converted, blockFrames);
+        ImpulseResponse raced = CACHE.putIfAbsent(cacheKey, prepared);
+        return raced != null ? raced : prepared;
+    }
+    
+    /**
+     * Drop every cached response, e.g. when memory runs low
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+    
+    private Partitions transform(PcmSample ir, int from, int length, int size, float gain) {
+        Partitions parts = new Partitions(size, (length + size - 1) / size, stereo);
+        Fft fft = new Fft(size * 2);
+        float[] re = new float[size * 2];
+        float[] im = new float[size * 2];
+        for (int channel = 0; channel < (stereo ? 2 : 1); channel++) {
+            float[] outRe = channel == 0 ? parts.leftRe : parts.rightRe;
+            float[] outIm = channel == 0 ? parts.leftIm : parts.rightIm;
+            for (int p = 0; p < parts.count; p++) {
+                for (int i = 0; i < size * 2; i++) {
+                    int offset = p * size + i;
+                    boolean inside = i < size && offset < length;
+                    re[i] = inside ? ir.get((from + offset) * ir.getChannels() + channel) * gain : 0.0f;
+                    im[i] = 0.0f;
+                }
+                fft.forward(re, im);
+                System.arraycopy(re, 0, outRe, p * parts.bins, parts.bins);
+                System.arraycopy(im, 0, outIm, p * parts.bins, parts.bins);
+            }
+        }
+        return parts;
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    /**
+     * Length of the response after any cut, in frames
+     */
+    public int getFrames() {
+        return frames;
+    }
+    
+    public boolean isStereo() {
+        return stereo;
+    }
+    
+    /**
+     * Head partition length, which is also the latency it adds
+     */
+    public int getBlockFrames() {
+        return head.size;
+    }
+    
+    Partitions getHead() {
+        return head;
+    }
+    
+    Partitions getTail() {
+        return tail;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * How a pitched voice reads between sample frames.
+ *
+ * Coefficients come from tables indexed by the top {@link #PHASE_BITS} bits
+ * of the voice's fractional position, so the per-frame cost is a fixed
+ * number of multiply-adds in every mode. Unpitched voices bypass
+ * interpolation entirely.
+ */
+public enum Interpolation {
+    
+    /** Two-point linear, cheapest */
+    LINEAR(2),
+    /** Four-point Catmull-Rom cubic, flatter response and far less aliasing */
+    CUBIC(4);
+    
+    static final int PHASE_BITS = 10;
+    static final int PHASES = 1 << PHASE_BITS;
+    
+    private final int taps;
+    private final float[] table;
+    
+    Interpolation(int taps) {
+        this.taps = taps;
+        table = new float[PHASES * taps];
+        for (int p = 0; p < PHASES; p++) {
+            double t = (double) p / PHASES;
+            int i = p * taps;
+            if (taps == 2) {
+                table[i] = (float) (1 - t);
+                table[i + 1] = (float) t;
+            } else {
+                double t2 = t * t;
+                double t3 = t2 * t;
+                table[i] = (float) (-0.5 * t3 + t2 - 0.5 * t);
+                table[i + 1] = (float) (1.5 * t3 - 2.5 * t2 + 1);
+                table[i + 2] = (float) (-1.5 * t3 + 2 * t2 + 0.5 * t);
+                table[i + 3] = (float) (0.5 * t3 - 0.5 * t2);
+            }
+        }
+    }
+    
+    /**
+     * Sample frames read per output frame
+     */
+    public int getTaps() {
+        return taps;
+    }
+    
+    /**
+     * Coefficients for every phase, {@code taps} consecutive floats each
+     */
+    float[] getTable() {
+        return table;
+    }
+}
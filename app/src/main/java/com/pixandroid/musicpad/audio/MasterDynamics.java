@@ -0,0 +1,327 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Master-bus dynamics: an optional compressor followed by a lookahead peak limiter.
+ *
+ * The limiter delays the signal by {@link #LOOKAHEAD_MS} and looks at the
+ * peaks that are about to come out. A {@link SlidingMax} over the delay plus
+ * one frame gives, for every frame, the gain that keeps the loudest upcoming
+ * peak under the ceiling; a moving average as long as the delay turns that
+ * held gain into a smooth ramp that reaches it exactly as the peak leaves the
+ * delay line, so nothing overshoots and there is no attack click. Rising
+ * gain then recovers through a one-pole release. The delay stays in even
+ * when the limiter is off, so switching it never jumps the timeline.
+ *
+ * The compressor is feed-forward with a soft knee, works on the louder
+ * channel in decibels and smooths its gain reduction with separate attack
+ * and release times. Levels below the knee are told apart in the linear
+ * domain and never converted; the rest go through {@link Decibels} tables,
+ * so no frame pays for a log or a power.
+ *
+ * Settings are read as one {@link EffectParams} snapshot per block. Gain
+ * reduction is published once per block for meters. All buffers are
+ * allocated in the constructor; {@link #process} does not allocate and has
+ * no Android dependencies.
+ */
+public final class MasterDynamics implements AudioProcessor {
+    
+    static final float LOOKAHEAD_MS = 2.0f;
+    private static final float KNEE_DB = 6.0f;
+    
+    // Indices into the parameter snapshot
+    private static final int LIMITER = 0;
+    private static final int CEILING = 1; // linear
+    private static final int LIMITER_RELEASE = 2; // one-pole coefficient
+    private static final int COMPRESSOR = 3;
+    private static final int THRESHOLD_DB = 4;
+    private static final int RATIO = 5;
+    private static final int ATTACK = 6; // one-pole coefficient
+    private static final int RELEASE = 7; // one-pole coefficient
+    private static final int MAKEUP = 8; // linear
+    
+    private final int sampleRate;
+    private final int lookahead;
+    private final float[] delayLeft;
+    private final float[] delayRight;
+    private final float[] held; // held gain of the last lookahead frames, for the moving average
+    private final SlidingMax peaks;
+    private final EffectParams params;
+    
+    // Render thread state
+    private final SmoothedValue makeup = new SmoothedValue();
+    private int delayPos;
+    private int heldPos;
+    private double heldSum;
+    private float limiterGain = 1.0f;
+    private float compressorDb; // smoothed gain reduction, <= 0
+    
+    private volatile float limiterReductionDb;
+    private volatile float compressorReductionDb;
+    
+    public MasterDynamics(int sampleRate) {
+        this.sampleRate = sampleRate;
+        lookahead = Math.max(1, Math.round(LOOKAHEAD_MS * sampleRate / 1000.0f));
+        delayLeft = new float[lookahead];
+        delayRight = new float[lookahead];
+        held = new float[lookahead];
+        peaks = new SlidingMax(lookahead + 1);
+        params = new EffectParams(1.0f, dbToGain(-0.3f), timeCoefficient(80.0f),
+            0.0f, -18.0f, 3.0f, timeCoefficient(10.0f), timeCoefficient(120.0f), 1.0f);
+        reset();
+    }
+    
+    private MasterDynamics(MasterDynamics other) {
+        this(other.sampleRate);
+        float[] p = other.params.snapshot();
+        for (int i = 0; i < p.length; i++) {
+            params.set(i, p[i]);
+        }
+    }
+    
+    /**
+     * A limiter and compressor with the same settings and fresh state, for an offline render
+     */
+    public MasterDynamics copy() {
+        return new MasterDynamics(this);
+    }
+    
+    public void setLimiterEnabled(boolean enabled) {
+        params.set(LIMITER, enabled ? 1.0f : 0.0f);
+    }
+    
+    public boolean isLimiterEnabled() {
+        return params.get(LIMITER) != 0.0f;
+    }
+    
+    /**
+     * Highest peak the limiter lets through, -12..0 dBFS
+     */
+    public void setCeilingDb(float db) {
+        params.set(CEILING, dbToGain(Math.max(-12.0f, Math.min(0.0f, db))));
+    }
+    
+    public float getCeilingDb() {
+        return gainToDb(params.get(CEILING));
+    }
+    
+    /**
+     * Time for the limiter's gain to recover after a peak has passed
+     */
+    public void setLimiterReleaseMs(float ms) {
+        params.set(LIMITER_RELEASE, timeCoefficient(ms));
+    }
+    
+    public void setCompressorEnabled(boolean enabled) {
+        params.set(COMPRESSOR, enabled ? 1.0f : 0.0f);
+    }
+    
+    public boolean isCompressorEnabled() {
+        return params.get(COMPRESSOR) != 0.0f;
+    }
+    
+    /**
+     * Level above which the compressor starts reducing gain, -60..0 dBFS
+     */
+    public void setThresholdDb(float db) {
+        params.set(THRESHOLD_DB, Math.max(-60.0f, Math.min(0.0f, db)));
+    }
+    
+    public float getThresholdDb() {
+        return params.get(THRESHOLD_DB);
+    }
+    
+    /**
+     * Input decibels above the threshold per output decibel, 1..20
+     */
+    public void setRatio(float ratio) {
+        params.set(RATIO, Math.max(1.0f, Math.min(20.0f, ratio)));
+    }
+    
+    public float getRatio() {
+        return params.get(RATIO);
+    }
+    
+    public void setAttackMs(float ms) {
+        params.set(ATTACK, timeCoefficient(ms));
+    }
+    
+    public void setReleaseMs(float ms) {
+        params.set(RELEASE, timeCoefficient(ms));
+    }
+    
+    /**
+     * Gain after the compressor, 0..24 dB, to win back the level it took
+     */
+    public void setMakeupDb(float db) {
+        params.set(MAKEUP, dbToGain(Math.max(0.0f, Math.min(24.0f, db))));
+    }
+    
+    public float getMakeupDb() {
+        return gainToDb(params.get(MAKEUP));
+    }
+    
+    /**
+     * Deepest limiter gain reduction in the last block, in dB (0 or less)
+     */
+    public float getLimiterReductionDb() {
+        return limiterReductionDb;
+    }
+    
+    /**
+     * Deepest compressor gain reduction in the last block, in dB (0 or less)
+     */
+    public float getCompressorReductionDb() {
+        return compressorReductionDb;
+    }
+    
+    /**
+     * Combined gain reduction of the last block, in dB (0 or less), for a meter
+     */
+    public float getGainReductionDb() {
+        return limiterReductionDb + compressorReductionDb;
+    }
+    
+    /**
+     * Delay the lookahead adds, in frames
+     */
+    public int getLatencyFrames() {
+        return lookahead;
+    }
+    
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        float[] p = params.snapshot();
+        boolean limit = p[LIMITER] != 0.0f;
+        float ceiling = p[CEILING];
+        float limiterRelease = p[LIMITER_RELEASE];
+        boolean compress = p[COMPRESSOR] != 0.0f;
+        float threshold = p[THRESHOLD_DB];
+        float slope = 1.0f - 1.0f / p[RATIO];
+        float kneeStart = dbToGain(threshold - KNEE_DB / 2); // levels up to here are not compressed
+        float attack = p[ATTACK];
+        float release = p[RELEASE];
+        makeup.advance(compress ? p[MAKEUP] : 1.0f, SmoothedValue.coefficient(frames, sampleRate));
+        float gain = makeup.getStart();
+        float gainStep = (makeup.getEnd() - gain) / frames;
+        // A compressor switched off keeps running until its gain has recovered
+        boolean compressing = compress || compressorDb < -0.001f;
+        
+        float[] lineL = delayLeft;
+        float[] lineR = delayRight;
+        float[] hold = held;
+        int length = lookahead;
+        float invLength = 1.0f / length;
+        int d = delayPos;
+        int h = heldPos;
+        double sum = heldSum;
+        float env = limiterGain;
+        float comp = compressorDb;
+        float lowestEnv = 1.0f;
+        float lowestComp = 0.0f;
+        
+        for (int i = 0; i < frames; i++) {
+            gain += gainStep;
+            float l = left[i];
+            float r = right[i];
+            
+            if (compressing) {
+                float level = Math.max(Math.abs(l), Math.abs(r));
+                float target = 0.0f;
+                if (compress && level > kneeStart) {
+                    target = -slope * kneeCurve(Decibels.fromGain(level) - threshold);
+                }
+                comp += (target - comp) * (target < comp ? attack : release);
+                lowestComp = Math.min(lowestComp, comp);
+                float g = Decibels.toGain(comp) * gain;
+                l *= g;
+                r *= g;
+            } else {
+                l *= gain;
+                r *= gain;
+            }
+            
+            // Gain that keeps the loudest of the next lookahead + 1 frames under the ceiling
+            float peak = peaks.push(Math.max(Math.abs(l), Math.abs(r)));
+            float target = limit && peak > ceiling ? ceiling / peak : 1.0f;
+            sum += target - hold[h];
+            hold[h] = target;
+            if (++h == length) {
+                h = 0;
+            }
+            float smoothed = (float) (sum * invLength);
+            env = smoothed < env ? smoothed : env + (smoothed - env) * limiterRelease;
+            lowestEnv = Math.min(lowestEnv, env);
+            
+            float outL = lineL[d] * env;
+            float outR = lineR[d] * env;
+            lineL[d] = l;
+            lineR[d] = r;
+            if (++d == length) {
+                d = 0;
+            }
+            if (limit) {
+                // Only rounding in the moving average can get past the ceiling
+                outL = Math.max(-ceiling, Math.min(ceiling, outL));
+                outR = Math.max(-ceiling, Math.min(ceiling, outR));
+            }
+            left[i] = outL;
+            right[i] = outR;
+        }
+        
+        delayPos = d;
+        heldPos = h;
+        heldSum = sum;
+        limiterGain = env;
+        compressorDb = comp;
+        limiterReductionDb = gainToDb(lowestEnv);
+        compressorReductionDb = lowestComp;
+    }
+    
+    /**
+     * Clear the lookahead and gain state. Render thread only, or while not processing.
+     */
+    @Override
+    public void reset() {
+        Arrays.fill(delayLeft, 0.0f);
+        Arrays.fill(delayRight, 0.0f);
+        Arrays.fill(held, 1.0f);
+        peaks.reset();
+        makeup.reset();
+        delayPos = 0;
+        heldPos = 0;
+        heldSum = lookahead;
+        limiterGain = 1.0f;
+        compressorDb = 0.0f;
+        limiterReductionDb = 0.0f;
+        compressorReductionDb = 0.0f;
+    }
+    
+    /**
+     * Decibels above the threshold after the soft knee, before the ratio is applied
+     */
+    private static float kneeCurve(float over) {
+        if (over <= -KNEE_DB / 2) {
+            return 0.0f;
+        }
+        if (over >= KNEE_DB / 2) {
+            return over;
+        }
+        float x = over + KNEE_DB / 2;
+        return x * x / (2 * KNEE_DB);
+    }
+    
+    private float timeCoefficient(float ms) {
+        float clamped = Math.max(0.1f, ms);
+        return (float) (1.0 - Math.exp(-1000.0 / (clamped * sampleRate)));
+    }
+    
+    private static float dbToGain(float db) {
+        return (float) Math.pow(10.0, db / 20.0);
+    }
+    
+    private static float gainToDb(float gain) {
+        return (float) (20.0 * Math.log10(gain));
+    }
+}
@@ -0,0 +1,187 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.IOException;
+
+/**
+ * Renders a stream of pad hits through a SoftwareMixer as fast as the CPU allows.
+ *
+ * Hits are pulled from a {@link HitSource} a batch at a time and scheduled on
+ * their exact frames, and the output is handed to an {@link AudioSink} in
+ * fixed-size chunks, so memory use does not grow with the session length.
+ * The mixer must be dedicated to this renderer: the caller's thread becomes
+ * its render thread for the duration of {@link #render}.
+ */
+public class OfflineRenderer {
+    
+    private static final int HIT_BATCH = 256;
+    
+    private final SoftwareMixer mixer;
+    private final int chunkFrames;
+    private final float[] block;
+    private final float[] chunk;
+    
+    private final int[] hitPads = new int[HIT_BATCH];
+    private final float[] hitVelocities = new float[HIT_BATCH];
+    private final long[] hitFrames = new long[HIT_BATCH];
+    private int hitCount;
+    private int hitIndex;
+    private boolean hitsExhausted;
+    
+    private long tailFrames;
+    private volatile boolean cancelled;
+    
+    /**
+     * @param chunkFrames frames per sink write, rounded down to whole mixer blocks
+     */
+    public OfflineRenderer(SoftwareMixer mixer, int chunkFrames) {
+        int blockFrames = mixer.getBlockFrames();
+        this.mixer = mixer;
+        this.chunkFrames = Math.max(1, chunkFrames / blockFrames) * blockFrames;
+        block = new float[blockFrames * 2];
+        chunk = new float[this.chunkFrames * 2];
+    }
+    
+    /**
+     * Create a fresh mixer with the samples, volumes and sends of a live one, so
+     * an export sounds like the pads do without touching the live render thread
+     */
+    public static SoftwareMixer copyMixer(SoftwareMixer source) {
+        SoftwareMixer copy = new SoftwareMixer(source.getSampleRate(), source.getBlockFrames(),
+            source.getMaxVoices());
+        for (int i = 0; i < Constants.TOTAL_PADS; i++) {
+            copy.setZones(i, source.getZones(i));
+            copy.setPadVolume(i, source.getPadVolume(i));
+            copy.setPadPitch(i, 0, source.getPadPitch(i));
+            copy.setPadMaxVoices(i, source.getPadMaxVoices(i));
+            copy.setPadChokeGroup(i, source.getPadChokeGroup(i));
+            copy.setPadEnvelope(i, source.getPadEnvelope(i));
+            copy.setPadFilter(i, source.getPadFilter(i));
+            for (int bus = 0; bus < source.getAuxBusCount(); bus++) {
+                copy.setPadSend(i, bus, source.getPadSend(i, bus));
+            }
+            // Recorded hits carry no release, so a looping pad would never end; play it through once
+            PadMode mode = source.getPadMode(i);
+            copy.setPadMode(i, mode == PadMode.LOOP ? PadMode.GATE : mode);
+        }
+        copy.setInterpolation(source.getInterpolation());
+        copy.setStealPolicy(source.getStealPolicy());
+        copy.setMasterVolume(source.getMasterVolume());
+        // Aux effects keep state, so the caller installs copies of its own
+        for (int bus = 0; bus < source.getAuxBusCount(); bus++) {
+            copy.getAuxBus(bus).setReturnLevel(source.getAuxBus(bus).getReturnLevel());
+        }
+        copy.getDucker().copySettingsFrom(source.getDucker());
+        return copy;
+    }
+    
+    /**
+     * Extra silence rendered after the last voice ends, for effect tails
+     */
+    public void setTailFrames(long tailFrames) {
+        this.tailFrames = Math.max(0, tailFrames);
+    }
+    
+    /**
+     * Stop an in-progress render after the current chunk. Safe from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * Render every hit and stream the result to {@code sink}. Rendering stops
+     * once all hits have played out, at least {@code minFrames} frames have
+     * been written and the tail has elapsed.
+     *
+     * @return number of frames written
+     */
+    public long render(HitSource hits, AudioSink sink, long minFrames) throws IOException {
+        int blockFrames = mixer.getBlockFrames();
+        long startFrame = mixer.getFramesRendered();
+        long quietFrom = -1;
+        long written = 0;
+        hitCount = 0;
+        hitIndex = 0;
+        hitsExhausted = false;
+        
+        AudioProcessor processor = mixer.getMasterProcessor();
+        if (processor != null) {
+            processor.reset();
+        }
+        mixer.resetAuxBuses();
+        
+        sink.start();
+        try {
+            boolean done = false;
+            while (!done && !cancelled) {
+                int filled = 0;
+                while (filled < chunkFrames) {
+                    long rendered = mixer.getFramesRendered() - startFrame;
+                    boolean pending = hasPendingHit(hits);
+                    if (!pending && quietFrom >= 0 && rendered >= minFrames
+                            && rendered >= quietFrom + tailFrames) {
+                        done = true;
+                        break;
+                    }
+                    
+                    long blockEnd = startFrame + rendered + blockFrames;
+                    while (hasPendingHit(hits) && startFrame + hitFrames[hitIndex] < blockEnd) {
+                        mixer.scheduleTrigger(hitPads[hitIndex], hitVelocities[hitIndex],
+                            startFrame + hitFrames[hitIndex]);
+                        hitIndex++;
+                    }
+                    
+                    mixer.render(block);
+                    System.arraycopy(block, 0, chunk, filled * 2, blockFrames * 2);
+                    filled += blockFrames;
+                    
+                    if (mixer.getActiveVoiceCount() > 0 || hasPendingHit(hits)) {
+                        quietFrom = -1;
+                    } else if (quietFrom < 0) {
+                        quietFrom = rendered + blockFrames;
+                    }
+                }
+                if (filled > 0) {
+                    sink.write(chunk, filled);
+                    written += filled;
+                }
+            }
+        } finally {
+            sink.stop();
+        }
+        return written;
+    }
+    
+    /**
+     * Refill the hit batch when it runs dry
+     */
+    private boolean hasPendingHit(HitSource hits) throws IOException {
+        if (hitIndex < hitCount) {
+            return true;
+        }
+        if (hitsExhausted) {
+            return false;
+        }
+        hitCount = hits.read(hitPads, hitVelocities, hitFrames, HIT_BATCH);
+        hitIndex = 0;
+        if (hitCount <= 0) {
+            hitCount = 0;
+            hitsExhausted = true;
+            return false;
+        }
+        return true;
+    }
+    
+    public SoftwareMixer getMixer() {
+        return mixer;
+    }
+    
+    public int getChunkFrames() {
+        return chunkFrames;
+    }
+}
@@ -0,0 +1,165 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Stereo polyphase up- and downsampler for running a nonlinear stage at a
+ * multiple of the engine rate.
+ *
+ * One Kaiser-windowed low-pass kernel serves both directions. Upsampling
+ * splits it into {@code factor} phases, so every oversampled frame costs one
+ * short dot product and no multiplications by stuffed zeros; downsampling
+ * only computes the frames it keeps. All buffers are sized for
+ * {@code maxFrames} input frames up front, and the filter histories carry
+ * across blocks, so a stream can be processed in any block size up to that.
+ */
+final class Oversampler {
+    
+    private static final int TAPS_PER_PHASE = 16;
+    private static final double CUTOFF = 0.45; // of the engine rate, so the stopband starts near its Nyquist
+    private static final double KAISER_BETA = 8.0;
+    
+    private final int factor;
+    private final int maxFrames;
+    private final float[] kernel;
+    private final float[] phases; // factor phases of TAPS_PER_PHASE taps, scaled by factor
+    private final int upHistory;
+    private final int downHistory;
+    private final float[] inLeft;
+    private final float[] inRight;
+    private final float[] left; // downHistory oversampled frames of history, then the current block
+    private final float[] right;
+    
+    Oversampler(int factor, int maxFrames) {
+        this.factor = factor;
+        this.maxFrames = maxFrames;
+        int taps = factor * TAPS_PER_PHASE;
+        kernel = new float[taps];
+        
+        double cutoff = CUTOFF / factor; // cycles per oversampled frame
+        double norm = Resampler.besselI0(KAISER_BETA);
+        double centre = (taps - 1) / 2.0;
+        double sum = 0;
+        for (int j = 0; j < taps; j++) {
+            double x = j - centre;
+            double t = x / (centre + 1);
+            double window = Resampler.besselI0(KAISER_BETA * Math.sqrt(1 - t * t)) / norm;
+            double h = 2 * cutoff * Resampler.sinc(2 * cutoff * x) * window;
+            kernel[j] = (float) h;
+            sum += h;
+        }
+        for (int j = 0; j < taps; j++) {
+            kernel[j] /= (float) sum;
+        }
+        
+        // Phase p of output frame n * factor + p uses taps p, p + factor, ... ; the zeros between
+        // input frames cost 1/factor of the level, which the scale puts back
+        phases = new float[taps];
+        for (int p = 0; p < factor; p++) {
+            for (int k = 0; k < TAPS_PER_PHASE; k++) {
+                phases[p * TAPS_PER_PHASE + k] = kernel[k * factor + p] * factor;
+            }
+        }
+        
+        upHistory = TAPS_PER_PHASE - 1;
+        downHistory = taps - 1;
+        inLeft = new float[upHistory + maxFrames];
+        inRight = new float[upHistory + maxFrames];
+        left = new float[downHistory + maxFrames * factor];
+        right = new float[downHistory + maxFrames * factor];
+    }
+    
+    /**
+     * Upsample {@code frames} frames from {@code start} into the buffers returned by
+     * {@link #getLeft()} and {@link #getRight()}, starting at {@link #getOffset()}
+     */
+    void up(float[] srcLeft, float[] srcRight, int start, int frames) {
+        System.arraycopy(srcLeft, start, inLeft, upHistory, frames);
+        System.arraycopy(srcRight, start, inRight, upHistory, frames);
+        interpolate(inLeft, left, frames);
+        interpolate(inRight, right, frames);
+        System.arraycopy(inLeft, frames, inLeft, 0, upHistory);
+        System.arraycopy(inRight, frames, inRight, 0, upHistory);
+    }
+    
+    /**
+     * Filter the oversampled block and write every {@code factor}th frame back to the
+     * destination from {@code start}
+     */
+    void down(float[] dstLeft, float[] dstRight, int start, int frames) {
+        decimate(left, dstLeft, start, frames);
+        decimate(right, dstRight, start, frames);
+        int used = frames * factor;
+        System.arraycopy(left, used, left, 0, downHistory);
+        System.arraycopy(right, used, right, 0, downHistory);
+    }
+    
+    private void interpolate(float[] in, float[] out, int frames) {
+        float[] ph = phases;
+        int o = downHistory;
+        for (int n = 0; n < frames; n++) {
+            int newest = upHistory + n;
+            for (int p = 0; p < factor; p++) {
+                int base = p * TAPS_PER_PHASE;
+                float sum = 0;
+                for (int k = 0; k < TAPS_PER_PHASE; k++) {
+                    sum += ph[base + k] * in[newest - k];
+                }
+                out[o++] = sum;
+            }
+        }
+    }
+    
+    private void decimate(float[] in, float[] out, int start, int frames) {
+        float[] h = kernel;
+        int taps = h.length;
+        for (int n = 0; n < frames; n++) {
+            int newest = downHistory + n * factor;
+            float sum = 0;
+            for (int j = 0; j < taps; j++) {
+                sum += h[j] * in[newest - j];
+            }
+            out[start + n] = sum;
+        }
+    }
+    
+    /**
+     * Clear the filter histories
+     */
+    void reset() {
+        Arrays.fill(inLeft, 0.0f);
+        Arrays.fill(inRight, 0.0f);
+        Arrays.fill(left, 0.0f);
+        Arrays.fill(right, 0.0f);
+    }
+    
+    float[] getLeft() {
+        return left;
+    }
+    
+    float[] getRight() {
+        return right;
+    }
+    
+    /**
+     * Index of the first oversampled frame of the current block
+     */
+    int getOffset() {
+        return downHistory;
+    }
+    
+    int getFactor() {
+        return factor;
+    }
+    
+    int getMaxFrames() {
+        return maxFrames;
+    }
+    
+    /**
+     * Delay added by the up and down filters, in engine frames
+     */
+    int getLatencyFrames() {
+        return Math.round((float) (kernel.length - 1) / factor);
+    }
+}
@@ -0,0 +1,92 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of an asynchronous sound pack load: which pads are playable, which
+ * failed and why, and how long the load took
+ */
+public final class PackLoadResult {
+    
+    private final String packName;
+    private final int requestedCount;
+    private final Map<Integer, Throwable> failures;
+    private final long[] padLoadMs;
+    private final long elapsedMs;
+    
+    PackLoadResult(String packName, int requestedCount, Map<Integer, Throwable> failures,
+            long[] padLoadMs, long elapsedMs) {
+        this.packName = packName;
+        this.requestedCount = requestedCount;
+        this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+        this.padLoadMs = padLoadMs.clone();
+        this.elapsedMs = elapsedMs;
+    }
+    
+    /**
+     * True when every requested pad loaded and is playable
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+    
+    public String getPackName() {
+        return packName;
+    }
+    
+    public int getRequestedCount() {
+        return requestedCount;
+    }
+    
+    public int getLoadedCount() {
+        return requestedCount - failures.size();
+    }
+    
+    /**
+     * Pads that could not be loaded, mapped to the cause
+     */
+    public Map<Integer, Throwable> getFailures() {
+        return failures;
+    }
+    
+    /**
+     * Wall time from the load request until every pad was ready or failed
+     */
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+    
+    /**
+     * Time spent loading one pad, or -1 if the pad was not part of the load
+     */
+    public long getPadLoadMs(int padIndex) {
+        return padIndex >= 0 && padIndex < padLoadMs.length ? padLoadMs[padIndex] : -1;
+    }
+    
+    /**
+     * Sum of per-pad load times; above {@link #getElapsedMs()} when pads load in parallel
+     */
+    public long getTotalPadLoadMs() {
+        long total = 0;
+        for (long ms : padLoadMs) {
+            if (ms > 0) {
+                total += ms;
+            }
+        }
+        return total;
+    }
+    
+    public long getSlowestPadMs() {
+        return Arrays.stream(padLoadMs).max().orElse(-1);
+    }
+    
+    @Override
+    public String toString() {
+        return "PackLoadResult{" + packName + ": " + getLoadedCount() + "/" + requestedCount
+            + " pads in " + elapsedMs + " ms, pad total " + getTotalPadLoadMs()
+            + " ms, slowest " + getSlowestPadMs() + " ms, failed pads " + failures.keySet() + "}";
+    }
+}
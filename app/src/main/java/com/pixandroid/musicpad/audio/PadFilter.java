@@ -0,0 +1,86 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Resonant filter settings for a pad's voices. Immutable, so one instance can
+ * be shared by the UI and the render thread.
+ *
+ * Each voice takes its cutoff when it is triggered: the pad's cutoff, moved
+ * down by up to {@link #getVelocityOctaves()} octaves as the hit gets softer,
+ * so soft hits sound darker. The voice keeps that cutoff for its whole life;
+ * changing the pad's filter affects only the voices started after it.
+ */
+public final class PadFilter {
+    
+    public enum Type {
+        LOW_PASS,
+        HIGH_PASS,
+        BAND_PASS
+    }
+    
+    public static final float MIN_CUTOFF_HZ = 20.0f;
+    public static final float MAX_CUTOFF_HZ = 20000.0f;
+    public static final float MAX_VELOCITY_OCTAVES = 8.0f;
+    
+    /** No filter: voices play unfiltered and cost nothing extra */
+    public static final PadFilter OFF = new PadFilter(null, MAX_CUTOFF_HZ, 0.0f, 0.0f);
+    
+    private final Type type;
+    private final float cutoffHz;
+    private final float resonance;
+    private final float velocityOctaves;
+    
+    /**
+     * @param cutoffHz cutoff at full velocity, {@link #MIN_CUTOFF_HZ}..{@link #MAX_CUTOFF_HZ}
+     * @param resonance 0 (no peak) to 1 (close to self-oscillation)
+     * @param velocityOctaves how far the cutoff falls at zero velocity, 0..{@link #MAX_VELOCITY_OCTAVES}
+     */
+    public PadFilter(Type type, float cutoffHz, float resonance, float velocityOctaves) {
+        this.type = type;
+        this.cutoffHz = Math.max(MIN_CUTOFF_HZ, Math.min(MAX_CUTOFF_HZ, cutoffHz));
+        this.resonance = Math.max(0.0f, Math.min(1.0f, resonance));
+        this.velocityOctaves = Math.max(0.0f, Math.min(MAX_VELOCITY_OCTAVES, velocityOctaves));
+    }
+    
+    public boolean isEnabled() {
+        return type != null;
+    }
+    
+    /**
+     * Filter type, or null for {@link #OFF}
+     */
+    public Type getType() {
+        return type;
+    }
+    
+    public float getCutoffHz() {
+        return cutoffHz;
+    }
+    
+    public float getResonance() {
+        return resonance;
+    }
+    
+    public float getVelocityOctaves() {
+        return velocityOctaves;
+    }
+    
+    /**
+     * Cutoff of a voice triggered at {@code velocity}, 0..1
+     */
+    float cutoffFor(float velocity) {
+        if (velocityOctaves == 0.0f) {
+            return cutoffHz;
+        }
+        float v = Math.max(0.0f, Math.min(1.0f, velocity));
+        float cutoff = cutoffHz * (float) Math.pow(2.0, velocityOctaves * (v - 1.0f));
+        return Math.max(MIN_CUTOFF_HZ, cutoff);
+    }
+    
+    @Override
+    public String toString() {
+        if (type == null) {
+            return "PadFilter{off}";
+        }
+        return "PadFilter{" + type + " " + cutoffHz + " Hz, res " + resonance + ", vel " + velocityOctaves + " oct}";
+    }
+}
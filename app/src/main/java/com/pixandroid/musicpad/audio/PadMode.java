@@ -0,0 +1,14 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * What releasing a pad does to its voices
+ */
+public enum PadMode {
+    
+    /** Plays the whole sample; releasing the pad does nothing */
+    ONE_SHOT,
+    /** Plays while the pad is held and fades out over the envelope release when it is let go */
+    GATE,
+    /** Like {@link #GATE}, but the sample repeats from the start until the pad is released */
+    LOOP
+}
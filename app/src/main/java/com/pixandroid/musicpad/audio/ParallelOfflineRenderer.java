@@ -0,0 +1,307 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Offline renderer that splits the session timeline into slices and mixes
+ * them concurrently on a ForkJoinPool.
+ *
+ * A planning pass on the caller's thread runs the mixer's event and voice
+ * logic without mixing any audio, and captures the voice pool at the start
+ * of every slice. Each slice task restores that snapshot and replays its own
+ * hits, so voices that started in an earlier slice carry on with exactly the
+ * state they would have had. Slices are joined in order and the aux and master
+ * stages run sequentially over the stitched mix on the same block grid, which makes
+ * the output bit-identical to {@link OfflineRenderer}.
+ *
+ * Only a bounded window of slices is in flight at a time, so memory use does
+ * not grow with the session length.
+ */
+public class ParallelOfflineRenderer {
+    
+    private final SoftwareMixer planner;
+    private final ForkJoinPool pool;
+    private final int sliceFrames;
+    private final int blockFrames;
+    private final int window;
+    
+    private final int[] hitPads = new int[256];
+    private final float[] hitVelocities = new float[256];
+    private final long[] hitFrames = new long[256];
+    private int hitCount;
+    private int hitIndex;
+    private boolean hitsExhausted;
+    
+    private long tailFrames;
+    private volatile boolean cancelled;
+    
+    /**
+     * @param mixer supplies samples, volumes and the master stage; it is used for
+     *              planning and must be dedicated to this renderer
+     * @param sliceFrames frames per parallel task, rounded down to whole mixer blocks
+     */
+    public ParallelOfflineRenderer(SoftwareMixer mixer, ForkJoinPool pool, int sliceFrames) {
+        this.planner = mixer;
+        this.pool = pool;
+        this.blockFrames = mixer.getBlockFrames();
+        this.sliceFrames = Math.max(1, sliceFrames / blockFrames) * blockFrames;
+        this.window = pool.getParallelism() * 2;
+    }
+    
+    /**
+     * Extra silence rendered after the last voice ends, for effect tails
+     */
+    public void setTailFrames(long tailFrames) {
+        this.tailFrames = Math.max(0, tailFrames);
+    }
+    
+    /**
+     * Stop an in-progress render after the current slice. Safe from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    /**
+     * Render every hit and stream the result to {@code sink}, with the same
+     * stopping rule and output as {@link OfflineRenderer#render}
+     *
+     * @return number of frames written
+     */
+    public long render(HitSource hits, AudioSink sink, long minFrames) throws IOException {
+        long startFrame = planner.getFramesRendered();
+        hitCount = 0;
+        hitIndex = 0;
+        hitsExhausted = false;
+        
+        AudioProcessor processor = planner.getMasterProcessor();
+        if (processor != null) {
+            processor.reset();
+        }
+        planner.resetAuxBuses();
+        AuxBus[] buses = planner.getAuxBuses();
+        float gain = planner.getMasterVolume();
+        float[] blockLeft = new float[blockFrames];
+        float[] blockRight = new float[blockFrames];
+        float[][] blockSendLeft = new float[buses.length][blockFrames];
+        float[][] blockSendRight = new float[buses.length][blockFrames];
+        float[] blockDuck = new float[blockFrames];
+        int duckedBuses = planner.getDucker().getTargetBuses();
+        float[] blockOut = new float[blockFrames * 2];
+        
+        ArrayDeque<Slice> free = new ArrayDeque<>();
+        ArrayDeque<ForkJoinTask<Slice>> inFlight = new ArrayDeque<>();
+        long written = 0;
+        
+        sink.start();
+        try {
+            PlanState state = new PlanState(minFrames);
+            while (!cancelled) {
+                while (inFlight.size() < window && !state.done) {
+                    Slice slice = free.isEmpty() ? new Slice() : free.poll();
+                    plan(hits, slice, startFrame, state);
+                    if (slice.frames == 0) {
+                        free.add(slice);
+                        break;
+                    }
+                    inFlight.add(pool.submit(slice));
+                }
+                if (inFlight.isEmpty()) {
+                    break;
+                }
+                
+                // Stitch in order; the aux and master stages see blocks exactly as a live render would
+                Slice slice = inFlight.poll().join();
+                for (int offset = 0; offset < slice.frames; offset += blockFrames) {
+                    System.arraycopy(slice.left, offset, blockLeft, 0, blockFrames);
+                    System.arraycopy(slice.right, offset, blockRight, 0, blockFrames);
+                    for (int bus = 0; bus < buses.length; bus++) {
+                        System.arraycopy(slice.sendLeft[bus], offset, blockSendLeft[bus], 0, blockFrames);
+                        System.arraycopy(slice.sendRight[bus], offset, blockSendRight[bus], 0, blockFrames);
+                    }
+                    System.arraycopy(slice.duck, offset, blockDuck, 0, blockFrames);
+                    SoftwareMixer.applyAux(buses, blockSendLeft, blockSendRight, blockLeft, blockRight, blockFrames,
+                        blockDuck, duckedBuses);
+                    SoftwareMixer.applyMaster(processor, gain, blockLeft, blockRight, blockFrames, blockOut);
+                    System.arraycopy(blockOut, 0, slice.interleaved, offset * 2, blockFrames * 2);
+                }
+                sink.write(slice.interleaved, slice.frames);
+                written += slice.frames;
+                free.add(slice);
+            }
+        } finally {
+            for (ForkJoinTask<Slice> task : inFlight) {
+                task.cancel(false);
+            }
+            sink.stop();
+        }
+        return written;
+    }
+    
+    /**
+     * Dry-run the mixer through one slice, capturing the voices at its start and
+     * every hit it consumes
+     */
+    private void plan(HitSource hits, Slice slice, long startFrame, PlanState state) throws IOException {
+        slice.reset(planner);
+        planner.saveVoices(slice.voices, slice.roundRobin, slice.ducker);
+        
+        while (slice.frames < sliceFrames) {
+            long rendered = planner.getFramesRendered() - startFrame;
+            if (!hasPendingHit(hits) && state.quietFrom >= 0 && rendered >= state.minFrames
+                    && rendered >= state.quietFrom + tailFrames) {
+                state.done = true;
+                return;
+            }
+            
+            long blockEnd = startFrame + rendered + blockFrames;
+            while (hasPendingHit(hits) && startFrame + hitFrames[hitIndex] < blockEnd) {
+                long frame = startFrame + hitFrames[hitIndex];
+                planner.scheduleTrigger(hitPads[hitIndex], hitVelocities[hitIndex], frame);
+                slice.addHit(hitPads[hitIndex], hitVelocities[hitIndex], frame);
+                hitIndex++;
+            }
+            
+            planner.renderBlock(false);
+            slice.frames += blockFrames;
+            
+            if (planner.getActiveVoiceCount() > 0 || hasPendingHit(hits)) {
+                state.quietFrom = -1;
+            } else if (state.quietFrom < 0) {
+                state.quietFrom = rendered + blockFrames;
+            }
+        }
+    }
+    
+    private boolean hasPendingHit(HitSource hits) throws IOException {
+        if (hitIndex < hitCount) {
+            return true;
+        }
+        if (hitsExhausted) {
+            return false;
+        }
+        hitCount = hits.read(hitPads, hitVelocities, hitFrames, hitPads.length);
+        hitIndex = 0;
+        if (hitCount <= 0) {
+            hitCount = 0;
+            hitsExhausted = true;
+            return false;
+        }
+        return true;
+    }
+    
+    public int getSliceFrames() {
+        return sliceFrames;
+    }
+    
+    /**
+     * Stopping-rule progress carried across planned slices
+     */
+    private static final class PlanState {
+        final long minFrames;
+        long quietFrom = -1;
+        boolean done;
+        
+        PlanState(long minFrames) {
+            this.minFrames = minFrames;
+        }
+    }
+    
+    /**
+     * One slice of the timeline: its starting voice and ducker state, its hits
+     * and, once rendered, its planar mix, aux sends and ducker gain. Recycled
+     * between slices.
+     */
+    private final class Slice implements Callable<Slice> {
+        
+        final Voice[] voices;
+        final int[] roundRobin = new int[Constants.TOTAL_PADS];
+        final Ducker ducker = new Ducker(planner.getSampleRate(), planner.getBlockFrames());
+        final float[] left = new float[sliceFrames];
+        final float[] right = new float[sliceFrames];
+        final float[][] sendLeft = new float[Constants.AUX_BUSES][sliceFrames];
+        final float[][] sendRight = new float[Constants.AUX_BUSES][sliceFrames];
+        final float[] duck = new float[sliceFrames]; // 1 where nothing was ducked, which leaves a return unchanged
+        final float[] interleaved = new float[sliceFrames * 2];
+        long startFrame;
+        int frames;
+        
+        int[] pads = new int[64];
+        float[] velocities = new float[64];
+        long[] hitFrames = new long[64];
+        int hitCount;
+        
+        private SoftwareMixer worker;
+        
+        Slice() {
+            voices = new Voice[planner.getMaxVoices()];
+            for (int i = 0; i < voices.length; i++) {
+                voices[i] = new Voice();
+            }
+        }
+        
+        void reset(SoftwareMixer mixer) {
+            startFrame = mixer.getFramesRendered();
+            frames = 0;
+            hitCount = 0;
+        }
+        
+        void addHit(int pad, float velocity, long frame) {
+            if (hitCount == pads.length) {
+                pads = Arrays.copyOf(pads, hitCount * 2);
+                velocities = Arrays.copyOf(velocities, hitCount * 2);
+                hitFrames = Arrays.copyOf(hitFrames, hitCount * 2);
+            }
+            pads[hitCount] = pad;
+            velocities[hitCount] = velocity;
+            hitFrames[hitCount] = frame;
+            hitCount++;
+        }
+        
+        /**
+         * Replay the slice on a private mixer restored to the planned voice state
+         */
+        @Override
+        public Slice call() {
+            if (worker == null) {
+                worker = OfflineRenderer.copyMixer(planner);
+            }
+            worker.restoreVoices(voices, roundRobin, ducker, startFrame);
+            Ducker workerDucker = worker.getDucker();
+            float[] mixLeft = worker.getMixLeft();
+            float[] mixRight = worker.getMixRight();
+            
+            int hit = 0;
+            for (int offset = 0; offset < frames; offset += blockFrames) {
+                long blockEnd = startFrame + offset + blockFrames;
+                while (hit < hitCount && hitFrames[hit] < blockEnd) {
+                    worker.scheduleTrigger(pads[hit], velocities[hit], hitFrames[hit]);
+                    hit++;
+                }
+                worker.renderBlock(true);
+                System.arraycopy(mixLeft, 0, left, offset, blockFrames);
+                System.arraycopy(mixRight, 0, right, offset, blockFrames);
+                for (int bus = 0; bus < sendLeft.length; bus++) {
+                    System.arraycopy(worker.getSendLeft(bus), 0, sendLeft[bus], offset, blockFrames);
+                    System.arraycopy(worker.getSendRight(bus), 0, sendRight[bus], offset, blockFrames);
+                }
+                if (workerDucker.isBlockReduced()) {
+                    System.arraycopy(workerDucker.getGains(), 0, duck, offset, blockFrames);
+                } else {
+                    Arrays.fill(duck, offset, offset + blockFrames, 1.0f);
+                }
+            }
+            return this;
+        }
+    }
+}
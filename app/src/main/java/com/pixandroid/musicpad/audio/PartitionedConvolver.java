@@ -0,0 +1,201 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Uniformly partitioned overlap-save convolution of a stereo stream with one
+ * run of {@link ImpulseResponse.Partitions}.
+ *
+ * Input is gathered until a partition's worth of frames is buffered, so the
+ * output lags by one partition. Both channels share one complex FFT, left in
+ * the real part and right in the imaginary part, and are split apart in the
+ * frequency domain. The spectra of past input blocks are kept in a ring (the
+ * frequency-domain delay line) and multiplied with the matching partitions.
+ * Only the newest partition needs the block that just arrived, so the others
+ * are accumulated bit by bit while the next block fills, which spreads the
+ * work of long partitions over the calls in between.
+ *
+ * Everything is allocated in the constructor. Render thread only.
+ */
+final class PartitionedConvolver {
+    
+    private final ImpulseResponse.Partitions ir;
+    private final int size;
+    private final int count;
+    private final int bins;
+    private final Fft fft;
+    private final float[] re;
+    private final float[] im;
+    private final float[] inLeft; // previous block, then the one filling
+    private final float[] inRight;
+    private final float[] outLeft;
+    private final float[] outRight;
+    private final float[] ringLeftRe; // input spectra, count slots of bins
+    private final float[] ringLeftIm;
+    private final float[] ringRightRe;
+    private final float[] ringRightIm;
+    private final float[] accLeftRe;
+    private final float[] accLeftIm;
+    private final float[] accRightRe;
+    private final float[] accRightIm;
+    
+    private int fill;
+    private int slot; // ring slot the filling block will use
+    private int accumulated; // partitions from 1 already summed for the filling block
+    
+    PartitionedConvolver(ImpulseResponse.Partitions ir) {
+        this.ir = ir;
+        size = ir.size;
+        count = ir.count;
+        bins = ir.bins;
+        fft = new Fft(size * 2);
+        re = new float[size * 2];
+        im = new float[size * 2];
+        inLeft = new float[size * 2];
+        inRight = new float[size * 2];
+        outLeft = new float[size];
+        outRight = new float[size];
+        ringLeftRe = new float[count * bins];
+        ringLeftIm = new float[count * bins];
+        ringRightRe = new float[count * bins];
+        ringRightIm = new float[count * bins];
+        accLeftRe = new float[bins];
+        accLeftIm = new float[bins];
+        accRightRe = new float[bins];
+        accRightIm = new float[bins];
+        accumulated = 1;
+    }
+    
+    /**
+     * Feed {@code frames} frames from {@code start} and add the convolved output,
+     * one partition late, to the first {@code frames} frames of the wet buffers
+     */
+    void process(float[] left, float[] right, float[] wetLeft, float[] wetRight, int start, int frames) {
+        int done = 0;
+        while (done < frames) {
+            int n = Math.min(size - fill, frames - done);
+            int from = start + done;
+            System.arraycopy(left, from, inLeft, size + fill, n);
+            System.arraycopy(right, from, inRight, size + fill, n);
+            for (int i = 0; i < n; i++) {
+                wetLeft[done + i] += outLeft[fill + i];
+                wetRight[done + i] += outRight[fill + i];
+            }
+            fill += n;
+            done += n;
+            
+            if (fill == size) {
+                finishBlock();
+                fill = 0;
+            } else {
+                // Keep pace with the input so the block boundary has little left to do
+                accumulate((int) (1 + (long) (count - 1) * fill / size));
+            }
+        }
+    }
+    
+    /**
+     * Sum partitions up to, not including, {@code target} into the accumulators.
+     * Partition p pairs with the input block p blocks before the filling one.
+     */
+    private void accumulate(int target) {
+        ImpulseResponse.Partitions h = ir;
+        for (int p = accumulated; p < target; p++) {
+            int ring = ((slot - p) % count + count) % count * bins;
+            int part = p * bins;
+            multiplyAdd(ringLeftRe, ringLeftIm, ring, h.leftRe, h.leftIm, part, accLeftRe, accLeftIm);
+            multiplyAdd(ringRightRe, ringRightIm, ring, h.rightRe, h.rightIm, part, accRightRe, accRightIm);
+        }
+        accumulated = Math.max(accumulated, target);
+    }
+    
+    private void multiplyAdd(float[] xRe, float[] xIm, int xOffset, float[] hRe, float[] hIm, int hOffset,
+            float[] accRe, float[] accIm) {
+        for (int k = 0; k < bins; k++) {
+            float ar = xRe[xOffset + k];
+            float ai = xIm[xOffset + k];
+            float br = hRe[hOffset + k];
+            float bi = hIm[hOffset + k];
+            accRe[k] += ar * br - ai * bi;
+            accIm[k] += ar * bi + ai * br;
+        }
+    }
+    
+    private void finishBlock() {
+        accumulate(count);
+        int n = size * 2;
+        
+        // Transform [previous block | new block] with right riding in the imaginary part
+        System.arraycopy(inLeft, 0, re, 0, n);
+        System.arraycopy(inRight, 0, im, 0, n);
+        fft.forward(re, im);
+        int ring = slot * bins;
+        for (int k = 0; k < bins; k++) {
+            int mirror = (n - k) & (n - 1);
+            float xr = re[k];
+            float xi = im[k];
+            float yr = re[mirror];
+            float yi = im[mirror];
+            ringLeftRe[ring + k] = (xr + yr) * 0.5f;
+            ringLeftIm[ring + k] = (xi - yi) * 0.5f;
+            ringRightRe[ring + k] = (xi + yi) * 0.5f;
+            ringRightIm[ring + k] = (yr - xr) * 0.5f;
+        }
+        ImpulseResponse.Partitions h = ir;
+        multiplyAdd(ringLeftRe, ringLeftIm, ring, h.leftRe, h.leftIm, 0, accLeftRe, accLeftIm);
+        multiplyAdd(ringRightRe, ringRightIm, ring, h.rightRe, h.rightIm, 0, accRightRe, accRightIm);
+        
+        // Recombine as left + i * right; both outputs are real, so the upper half mirrors
+        for (int k = 0; k < bins; k++) {
+            re[k] = accLeftRe[k] - accRightIm[k];
+            im[k] = accLeftIm[k] + accRightRe[k];
+        }
+        for (int k = bins; k < n; k++) {
+            int m = n - k;
+            re[k] = accLeftRe[m] + accRightIm[m];
+            im[k] = accRightRe[m] - accLeftIm[m];
+        }
+        fft.inverse(re, im);
+        
+        // Overlap-save: only the second half is free of wrap-around
+        System.arraycopy(re, size, outLeft, 0, size);
+        System.arraycopy(im, size, outRight, 0, size);
+        System.arraycopy(inLeft, size, inLeft, 0, size);
+        System.arraycopy(inRight, size, inRight, 0, size);
+        
+        Arrays.fill(accLeftRe, 0.0f);
+        Arrays.fill(accLeftIm, 0.0f);
+        Arrays.fill(accRightRe, 0.0f);
+        Arrays.fill(accRightIm, 0.0f);
+        slot = (slot + 1) % count;
+        accumulated = 1;
+    }
+    
+    /**
+     * Forget all input
+     */
+    void reset() {
+        Arrays.fill(inLeft, 0.0f);
+        Arrays.fill(inRight, 0.0f);
+        Arrays.fill(outLeft, 0.0f);
+        Arrays.fill(outRight, 0.0f);
+        Arrays.fill(ringLeftRe, 0.0f);
+        Arrays.fill(ringLeftIm, 0.0f);
+        Arrays.fill(ringRightRe, 0.0f);
+        Arrays.fill(ringRightIm, 0.0f);
+        Arrays.fill(accLeftRe, 0.0f);
+        Arrays.fill(accLeftIm, 0.0f);
+        Arrays.fill(accRightRe, 0.0f);
+        Arrays.fill(accRightIm, 0.0f);
+        fill = 0;
+        slot = 0;
+        accumulated = 1;
+    }
+    
+    /**
+     * Output delay, in frames
+     */
+    int getLatencyFrames() {
+        return size;
+    }
+}
@@ -0,0 +1,66 @@
+package com.pixandroid.musicpad.audio;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Decoded pad sample held as interleaved 32-bit float PCM frames.
+ *
+ * The data is kept in a FloatBuffer so the mixer can read heap arrays and
+ * memory-mapped files through the same code path. Instances are immutable
+ * and safe to share between the loader and the render thread.
+ */
+public final class PcmSample {
+    
+    private final FloatBuffer data;
+    private final int channels;
+    private final int frames;
+    private final int sampleRate;
+    
+    public PcmSample(FloatBuffer data, int channels, int sampleRate) {
+        if (channels != 1 && channels != 2) {
+            throw new IllegalArgumentException("Unsupported channel count: " + channels);
+        }
+        this.data = data.duplicate();
+        this.channels = channels;
+        this.frames = data.remaining() / channels;
+        this.sampleRate = sampleRate;
+    }
+    
+    /**
+     * Wrap an interleaved float array without copying it
+     */
+    public static PcmSample fromInterleaved(float[] pcm, int length, int channels, int sampleRate) {
+        return new PcmSample(FloatBuffer.wrap(pcm, 0, length).slice(), channels, sampleRate);
+    }
+    
+    /**
+     * Read one interleaved value, index is frame * channels + channel
+     */
+    public float get(int index) {
+        return data.get(index);
+    }
+    
+    public FloatBuffer getData() {
+        return data;
+    }
+    
+    public int getChannels() {
+        return channels;
+    }
+    
+    public int getFrames() {
+        return frames;
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    public long getSizeInBytes() {
+        return (long) frames * channels * 4L;
+    }
+    
+    public long getDurationMs() {
+        return frames * 1000L / sampleRate;
+    }
+}
@@ -10,28 +10,45 @@ import java.util.Comparator;
 import java.util.List;
 
 /**
- * Recording engine for capturing and playing back pad sequences
+ * Recording engine for capturing and playing back pad sequences.
+ *
+ * Hits are stamped with the engine's TransportClock in audio frames. Playback
+ * hands every hit to {@link AudioEngine#playPadAt} a short while ahead of its
+ * frame, so the render thread starts it on the exact sample regardless of
+ * main-thread jitter.
  */
 public class RecordingEngine {
     
     private static final String TAG = "RecordingEngine";
     
+    // How far ahead of the transport playback hands hits to the audio engine
+    private static final long LOOKAHEAD_MS = 200;
+    // How often the playback feeder wakes up
+    private static final long FEED_INTERVAL_MS = 50;
+    // Delay before the first hit so it is never late
+    private static final long START_DELAY_MS = 50;
+    
     private final AudioEngine audioEngine;
+    private final TransportClock clock;
     private final Handler handler;
+    private final Runnable feeder = this::feedPlayback;
     
     private boolean isRecording;
     private boolean isPlaying;
-    private long recordingStartTime;
-    private long playbackStartTime;
+    private long recordingStartFrame;
+    private long recordingDurationFrames;
+    private long playbackStartFrame;
     
     private List<PadHit> currentRecording;
     private List<PadHit> playbackHits;
+    private long[] playbackFrames;
     private int playbackIndex;
     
     private RecordingListener listener;
     
     public RecordingEngine(AudioEngine audioEngine) {
         this.audioEngine = audioEngine;
+        this.clock = audioEngine.getTransportClock();
         this.handler = new Handler(Looper.getMainLooper());
         this.currentRecording = new ArrayList<>();
     }
@@ -46,7 +63,8 @@ public class RecordingEngine {
         }
         
         currentRecording.clear();
-        recordingStartTime = System.currentTimeMillis();
+        recordingStartFrame = clock.currentFrame();
+        recordingDurationFrames = 0;
         isRecording = true;
         
         if (listener != null) {
@@ -65,6 +83,7 @@ public class RecordingEngine {
             return new ArrayList<>();
         }
         
+        recordingDurationFrames = clock.currentFrame() - recordingStartFrame;
         isRecording = false;
         List<PadHit> recording = new ArrayList<>(currentRecording);
         
@@ -84,20 +103,30 @@ public class RecordingEngine {
             return;
         }
         
-        long timestamp = System.currentTimeMillis() - recordingStartTime;
+        long framePosition = clock.currentFrame() - recordingStartFrame;
         PadHit hit = new PadHit();
         hit.setPadIndex(padIndex);
-        hit.setTimestamp(timestamp);
+        hit.setFramePosition(framePosition);
+        hit.setTimestamp(clock.framesToMs(framePosition));
         hit.setVelocity(velocity);
         
         currentRecording.add(hit);
-        Log.d(TAG, "Recorded hit: pad=" + padIndex + ", timestamp=" + timestamp);
     }
     
     /**
-     * Start playback of recorded hits
+     * Start playback of hits recorded at the transport clock rate
      */
     public void startPlayback(List<PadHit> hits) {
+        startPlayback(hits, clock.getSampleRate());
+    }
+    
+    /**
+     * Start playback of recorded hits.
+     *
+     * @param hitSampleRate frame rate of {@link PadHit#getFramePosition()}, or 0 when
+     *                      the hits only carry millisecond timestamps
+     */
+    public void startPlayback(List<PadHit> hits, int hitSampleRate) {
         if (isPlaying) {
             stopPlayback();
         }
@@ -108,49 +137,80 @@ public class RecordingEngine {
         }
         
         playbackHits = new ArrayList<>(hits);
-        Collections.sort(playbackHits, Comparator.comparingLong(PadHit::getTimestamp));
+        Collections.sort(playbackHits, Comparator.comparingLong(hit -> toClockFrames(hit, hitSampleRate)));
+        playbackFrames = new long[playbackHits.size()];
+        for (int i = 0; i < playbackFrames.length; i++) {
+            playbackFrames[i] = toClockFrames(playbackHits.get(i), hitSampleRate);
+        }
         
         playbackIndex = 0;
-        playbackStartTime = System.currentTimeMillis();
+        playbackStartFrame = clock.currentFrame() + clock.msToFrames(START_DELAY_MS);
         isPlaying = true;
         
         if (listener != null) {
             listener.onPlaybackStarted();
         }
         
-        scheduleNextHit();
+        feedPlayback();
         Log.d(TAG, "Playback started with " + playbackHits.size() + " hits");
     }
     
     /**
-     * Schedule the next hit in playback
+     * Convert a hit's position to frames of the transport clock
      */
-    private void scheduleNextHit() {
-        if (!isPlaying || playbackIndex >= playbackHits.size()) {
-            stopPlayback();
+    private long toClockFrames(PadHit hit, int hitSampleRate) {
+        return toTimelineFrames(hit, hitSampleRate, clock.getSampleRate());
+    }
+    
+    /**
+     * Convert a recorded hit's position to frames at {@code sampleRate}. Hits
+     * saved before frame stamps existed fall back to their millisecond timestamp.
+     */
+    public static long toTimelineFrames(PadHit hit, int hitSampleRate, int sampleRate) {
+        if (hitSampleRate <= 0 || (hit.getFramePosition() == 0 && hit.getTimestamp() > 0)) {
+            return hit.getTimestamp() * sampleRate / 1000L;
+        }
+        if (hitSampleRate == sampleRate) {
+            return hit.getFramePosition();
+        }
+        return hit.getFramePosition() * sampleRate / hitSampleRate;
+    }
+    
+    /**
+     * Hand every hit inside the lookahead window to the audio engine.
+     * Timing comes from the frame stamps, so feeder jitter is inaudible.
+     */
+    private void feedPlayback() {
+        if (!isPlaying) {
             return;
         }
         
-        PadHit hit = playbackHits.get(playbackIndex);
-        long currentTime = System.currentTimeMillis() - playbackStartTime;
-        long delay = hit.getTimestamp() - currentTime;
+        long now = clock.currentFrame();
+        long horizon = now + clock.msToFrames(LOOKAHEAD_MS);
         
-        if (delay < 0) {
-            delay = 0;
+        while (playbackIndex < playbackHits.size()
+                && playbackStartFrame + playbackFrames[playbackIndex] < horizon) {
+            PadHit hit = playbackHits.get(playbackIndex);
+            long target = playbackStartFrame + playbackFrames[playbackIndex];
+            audioEngine.playPadAt(hit.getPadIndex(), hit.getVelocity(), target);
+            
+            if (listener != null) {
+                int padIndex = hit.getPadIndex();
+                handler.postDelayed(() -> {
+                    if (isPlaying && listener != null) {
+                        listener.onPadPlayed(padIndex);
+                    }
+                }, Math.max(0L, clock.framesToMs(target - now)));
+            }
+            playbackIndex++;
         }
         
-        handler.postDelayed(() -> {
-            if (isPlaying) {
-                audioEngine.playPad(hit.getPadIndex(), hit.getVelocity());
-                
-                if (listener != null) {
-                    listener.onPadPlayed(hit.getPadIndex());
-                }
-                
-                playbackIndex++;
-                scheduleNextHit();
-            }
-        }, delay);
+        if (playbackIndex < playbackHits.size()) {
+            handler.postDelayed(feeder, FEED_INTERVAL_MS);
+        } else {
+            long lastFrame = playbackStartFrame + playbackFrames[playbackFrames.length - 1];
+            handler.postDelayed(this::stopPlayback, Math.max(0L, clock.framesToMs(lastFrame - now)));
+        }
     }
     
     /**
@@ -163,6 +223,9 @@ public class RecordingEngine {
         
         isPlaying = false;
         handler.removeCallbacksAndMessages(null);
+        audioEngine.cancelScheduledPads();
+        // Recorded hits have no release, so gated and looping pads end with playback
+        audioEngine.releaseAllPads();
         
         if (listener != null) {
             listener.onPlaybackStopped();
@@ -186,13 +249,27 @@ public class RecordingEngine {
     }
     
     /**
-     * Get current recording duration
+     * Get the duration of the current recording, or of the last one once stopped, in milliseconds
      */
     public long getRecordingDuration() {
+        return clock.framesToMs(getRecordingDurationFrames());
+    }
+    
+    /**
+     * Get the duration of the current recording, or of the last one once stopped, in frames
+     */
+    public long getRecordingDurationFrames() {
         if (!isRecording) {
-            return 0;
+            return recordingDurationFrames;
         }
-        return System.currentTimeMillis() - recordingStartTime;
+        return clock.currentFrame() - recordingStartFrame;
+    }
+    
+    /**
+     * Frame rate of the positions stamped on recorded hits
+     */
+    public int getSampleRate() {
+        return clock.getSampleRate();
     }
     
     /**
@@ -0,0 +1,95 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Dedicated thread that pulls blocks from a SoftwareMixer and pushes them to an AudioSink.
+ * The sink's blocking write paces the loop, so no timers are involved. The
+ * optional TransportClock is anchored to the first frame of every block.
+ */
+public class RenderThread implements Runnable {
+    
+    private final SoftwareMixer mixer;
+    private final AudioSink sink;
+    private final TransportClock clock;
+    private final float[] block;
+    
+    private volatile boolean running;
+    private volatile Throwable failure;
+    private Thread thread;
+    
+    public RenderThread(SoftwareMixer mixer, AudioSink sink) {
+        this(mixer, sink, null);
+    }
+    
+    public RenderThread(SoftwareMixer mixer, AudioSink sink, TransportClock clock) {
+        this.mixer = mixer;
+        this.sink = sink;
+        this.clock = clock;
+        this.block = new float[mixer.getBlockFrames() * 2];
+    }
+    
+    /**
+     * Start rendering on a new thread
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "MixerRender");
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+    }
+    
+    /**
+     * Stop rendering and wait for the thread to exit
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+    
+    @Override
+    public void run() {
+        int frames = mixer.getBlockFrames();
+        try {
+            sink.start();
+            while (running) {
+                if (clock != null) {
+                    clock.publish(mixer.getFramesRendered());
+                }
+                mixer.render(block);
+                sink.write(block, frames);
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            running = false;
+            try {
+                sink.stop();
+            } catch (Throwable t) {
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+    }
+    
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * Error that terminated the render loop, or null
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+}
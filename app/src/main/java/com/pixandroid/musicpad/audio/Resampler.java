@@ -0,0 +1,194 @@
+package com.pixandroid.musicpad.audio;
+
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Polyphase windowed-sinc sample rate converter.
+ *
+ * Samples are converted once when a pack loads, so the mixer always plays
+ * at its own rate and never resamples in the render loop. The rate ratio is
+ * reduced to up/down integers; every output frame picks one precomputed
+ * Kaiser-windowed sinc phase and runs a short dot product over the input.
+ * Ratios with more than {@link #MAX_PHASES} phases use the nearest phase
+ * below the exact position.
+ *
+ * Instances are immutable and shared per rate pair through {@link #forRates}.
+ */
+public final class Resampler {
+    
+    private static final int HALF_TAPS = 32; // taps each side of the centre at the lower rate
+    private static final int MAX_PHASES = 1024;
+    private static final double CUTOFF = 0.45; // of the lower sample rate
+    private static final double KAISER_BETA = 9.0;
+    
+    private static final Map<Long, Resampler> KERNELS = new ConcurrentHashMap<>();
+    
+    private final int fromRate;
+    private final int toRate;
+    private final int up;
+    private final int down;
+    private final int phases;
+    private final int taps;
+    private final float[] kernel; // phases * taps
+    
+    private Resampler(int fromRate, int toRate) {
+        if (fromRate <= 0 || toRate <= 0) {
+            throw new IllegalArgumentException("Invalid sample rates " + fromRate + " -> " + toRate);
+        }
+        this.fromRate = fromRate;
+        this.toRate = toRate;
+        int g = gcd(fromRate, toRate);
+        up = toRate / g;
+        down = fromRate / g;
+        phases = Math.min(up, MAX_PHASES);
+        
+        // Downsampling stretches the kernel so the transition band stays the same width at the output rate
+        double scale = Math.min(1.0, (double) toRate / fromRate);
+        int half = (int) Math.ceil(HALF_TAPS / scale);
+        taps = half * 2;
+        kernel = new float[phases * taps];
+        
+        double cutoff = CUTOFF * scale; // cycles per input sample
+        double norm = besselI0(KAISER_BETA);
+        for (int p = 0; p < phases; p++) {
+            double frac = (double) p / phases;
+            double sum = 0;
+            for (int j = 0; j < taps; j++) {
+                double x = j - half + 1 - frac;
+                double t = x / half;
+                double window = t * t < 1 ? besselI0(KAISER_BETA * Math.sqrt(1 - t * t)) / norm : 0;
+                double h = 2 * cutoff * sinc(2 * cutoff * x) * window;
+                kernel[p * taps + j] = (float) h;
+                sum += h;
+            }
+            // Unity gain at DC for every phase
+            for (int j = 0; j < taps; j++) {
+                kernel[p * taps + j] /= (float) sum;
+            }
+        }
+    }
+    
+    /**
+     * Shared converter for a rate pair, built on first use
+     */
+    public static Resampler forRates(int fromRate, int toRate) {
+        return KERNELS.computeIfAbsent(((long) fromRate << 32) | toRate,
+            key -> new Resampler(fromRate, toRate));
+    }
+    
+    /**
+     * Convert a sample to {@code sampleRate}, or return it unchanged if it is already there
+     */
+    public static PcmSample convert(PcmSample sample, int sampleRate) {
+        if (sample.getSampleRate() == sampleRate) {
+            return sample;
+        }
+        return forRates(sample.getSampleRate(), sampleRate).process(sample);
+    }
+    
+    /**
+     * Resample a whole sample onto the heap
+     */
+    public PcmSample process(PcmSample sample) {
+        if (sample.getSampleRate() != fromRate) {
+            throw new IllegalArgumentException("Sample is " + sample.getSampleRate() + " Hz, expected " + fromRate);
+        }
+        int channels = sample.getChannels();
+        int inFrames = sample.getFrames();
+        int half = taps / 2;
+        
+        // Zero-padded copy so the inner loop never bounds-checks
+        float[] in = new float[(inFrames + taps) * channels];
+        FloatBuffer data = sample.getData().duplicate();
+        data.rewind();
+        data.get(in, (half - 1) * channels, inFrames * channels);
+        
+        int outFrames = getOutputFrames(inFrames);
+        float[] out = new float[outFrames * channels];
+        float[] k = kernel;
+        long position = 0; // output frame * down, in units of 1/up input frames
+        
+        if (channels == 2) {
+            for (int n = 0; n < outFrames; n++, position += down) {
+                int base = (int) (position / up) * 2;
+                int offset = (int) ((position % up) * phases / up) * taps;
+                float left = 0;
+                float right = 0;
+                for (int j = 0; j < taps; j++) {
+                    float c = k[offset + j];
+                    left += in[base + j * 2] * c;
+                    right += in[base + j * 2 + 1] * c;
+                }
+                out[n * 2] = left;
+                out[n * 2 + 1] = right;
+            }
+        } else {
+            for (int n = 0; n < outFrames; n++, position += down) {
+                int base = (int) (position / up);
+                int offset = (int) ((position % up) * phases / up) * taps;
+                float acc = 0;
+                for (int j = 0; j < taps; j++) {
+                    acc += in[base + j] * k[offset + j];
+                }
+                out[n] = acc;
+            }
+        }
+        return PcmSample.fromInterleaved(out, out.length, channels, toRate);
+    }
+    
+    /**
+     * Length of a converted sample, rounded up to cover the last input frame
+     */
+    public int getOutputFrames(int inputFrames) {
+        return (int) ((inputFrames * (long) up + down - 1) / down);
+    }
+    
+    public int getFromRate() {
+        return fromRate;
+    }
+    
+    public int getToRate() {
+        return toRate;
+    }
+    
+    public int getPhaseCount() {
+        return phases;
+    }
+    
+    public int getTapsPerPhase() {
+        return taps;
+    }
+    
+    static double sinc(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+    
+    /**
+     * Zeroth-order modified Bessel function of the first kind, by power series
+     */
+    static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double q = x * x / 4;
+        for (int k = 1; k < 50 && term > sum * 1e-12; k++) {
+            term *= q / (k * k);
+            sum += term;
+        }
+        return sum;
+    }
+    
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,318 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Algorithmic stereo reverb: a pre-delay, eight parallel damped comb filters
+ * and four series allpass diffusers per channel, after the classic Schroeder
+ * and Moorer design.
+ *
+ * Delay lengths are the well-known 44.1 kHz tunings scaled to the engine
+ * rate, with the right channel's lines slightly longer to decorrelate it.
+ * All lines and block buffers are allocated up front. Each filter runs over
+ * a whole block at a time rather than the network running frame by frame,
+ * so the inner loops touch one line each.
+ *
+ * Settings may be changed from any thread and are read as one
+ * {@link EffectParams} snapshot at the start of each block. Room size,
+ * damping and width glide toward new values block by block and the mix is
+ * ramped sample by sample, so a control can be swept while the tail rings.
+ * {@link #process} does not allocate and has no Android dependencies.
+ */
+public final class Reverb implements AudioProcessor {
+    
+    private static final int[] COMB_TUNING = {1116, 1188, 1277, 1356, 1422, 1491, 1557, 1617};
+    private static final int[] ALLPASS_TUNING = {556, 441, 341, 225};
+    private static final int STEREO_SPREAD = 23;
+    private static final int TUNING_RATE = 44100;
+    private static final float INPUT_GAIN = 0.015f; // eight combs in parallel ring up loudly
+    private static final float ALLPASS_FEEDBACK = 0.5f;
+    private static final float MIN_FEEDBACK = 0.7f;
+    private static final float FEEDBACK_RANGE = 0.28f;
+    private static final float MAX_DAMPING = 0.4f;
+    private static final float ANTI_DENORMAL = 1e-20f; // keeps decaying tails out of slow subnormal arithmetic
+    static final float MAX_PRE_DELAY_MS = 100.0f;
+    
+    // Indices into the parameter snapshot
+    private static final int ROOM_SIZE = 0;
+    private static final int DAMPING = 1;
+    private static final int WIDTH = 2;
+    private static final int MIX = 3;
+    private static final int PRE_DELAY = 4; // frames
+    
+    private final int sampleRate;
+    private final int maxFrames;
+    private final Comb[] combsLeft;
+    private final Comb[] combsRight;
+    private final Allpass[] allpassesLeft;
+    private final Allpass[] allpassesRight;
+    private final float[] preDelayLine;
+    private final float[] input;
+    private final float[] wetLeft;
+    private final float[] wetRight;
+    
+    private final EffectParams params = new EffectParams(0.5f, 0.5f, 1.0f, 0.25f, 0.0f);
+    
+    // Render thread state
+    private final SmoothedValue roomSize = new SmoothedValue();
+    private final SmoothedValue damping = new SmoothedValue();
+    private final SmoothedValue width = new SmoothedValue();
+    private final SmoothedValue mix = new SmoothedValue();
+    private int preDelayPos;
+    
+    /**
+     * @param maxFrames block size the work buffers are sized for; longer blocks are split
+     */
+    public Reverb(int sampleRate, int maxFrames) {
+        this.sampleRate = sampleRate;
+        this.maxFrames = maxFrames;
+        float scale = (float) sampleRate / TUNING_RATE;
+        combsLeft = new Comb[COMB_TUNING.length];
+        combsRight = new Comb[COMB_TUNING.length];
+        for (int i = 0; i < COMB_TUNING.length; i++) {
+            combsLeft[i] = new Comb(Math.round(COMB_TUNING[i] * scale));
+            combsRight[i] = new Comb(Math.round((COMB_TUNING[i] + STEREO_SPREAD) * scale));
+        }
+        allpassesLeft = new Allpass[ALLPASS_TUNING.length];
+        allpassesRight = new Allpass[ALLPASS_TUNING.length];
+        for (int i = 0; i < ALLPASS_TUNING.length; i++) {
+            allpassesLeft[i] = new Allpass(Math.round(ALLPASS_TUNING[i] * scale));
+            allpassesRight[i] = new Allpass(Math.round((ALLPASS_TUNING[i] + STEREO_SPREAD) * scale));
+        }
+        preDelayLine = new float[(int) Math.ceil(MAX_PRE_DELAY_MS * sampleRate / 1000.0f) + 1];
+        input = new float[maxFrames];
+        wetLeft = new float[maxFrames];
+        wetRight = new float[maxFrames];
+    }
+    
+    /**
+     * Size of the room, 0..1. Larger rooms decay more slowly.
+     */
+    public void setRoomSize(float roomSize) {
+        params.set(ROOM_SIZE, Math.max(0.0f, Math.min(1.0f, roomSize)));
+    }
+    
+    public float getRoomSize() {
+        return params.get(ROOM_SIZE);
+    }
+    
+    /**
+     * High-frequency absorption, 0..1. More damping makes the tail darker.
+     */
+    public void setDamping(float damping) {
+        params.set(DAMPING, Math.max(0.0f, Math.min(1.0f, damping)));
+    }
+    
+    public float getDamping() {
+        return params.get(DAMPING);
+    }
+    
+    /**
+     * Stereo width of the tail, 0 (mono) to 1
+     */
+    public void setWidth(float width) {
+        params.set(WIDTH, Math.max(0.0f, Math.min(1.0f, width)));
+    }
+    
+    public float getWidth() {
+        return params.get(WIDTH);
+    }
+    
+    /**
+     * Level of the tail added to the dry signal, 0..1
+     */
+    public void setMix(float mix) {
+        params.set(MIX, Math.max(0.0f, Math.min(1.0f, mix)));
+    }
+    
+    public float getMix() {
+        return params.get(MIX);
+    }
+    
+    /**
+     * Gap before the tail starts, up to {@link #MAX_PRE_DELAY_MS}
+     */
+    public void setPreDelayMs(float ms) {
+        float clamped = Math.max(0.0f, Math.min(MAX_PRE_DELAY_MS, ms));
+        params.set(PRE_DELAY, Math.round(clamped * sampleRate / 1000.0f));
+    }
+    
+    public float getPreDelayMs() {
+        return params.get(PRE_DELAY) * 1000.0f / sampleRate;
+    }
+    
+    /**
+     * Frames until the tail of a single impulse has fallen by 60 dB, at the current settings
+     */
+    public long getTailFrames() {
+        int longest = 0;
+        for (Comb comb : combsRight) {
+            longest = Math.max(longest, comb.line.length);
+        }
+        float[] p = params.snapshot();
+        double feedback = MIN_FEEDBACK + FEEDBACK_RANGE * p[ROOM_SIZE];
+        return (long) p[PRE_DELAY] + (long) Math.ceil(-3.0 * longest / Math.log10(feedback));
+    }
+    
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        float[] p = params.snapshot();
+        float glide = SmoothedValue.coefficient(frames, sampleRate);
+        roomSize.advance(p[ROOM_SIZE], glide);
+        damping.advance(p[DAMPING], glide);
+        width.advance(p[WIDTH], glide);
+        mix.advance(p[MIX], glide);
+        float feedback = MIN_FEEDBACK + FEEDBACK_RANGE * roomSize.getEnd();
+        float damp = damping.getEnd() * MAX_DAMPING;
+        float w = width.getEnd();
+        float same = 0.5f + w * 0.5f;
+        float cross = 0.5f - w * 0.5f;
+        float wet = mix.getStart();
+        float wetStep = (mix.getEnd() - wet) / frames;
+        int delay = (int) p[PRE_DELAY];
+        
+        for (int start = 0; start < frames; start += maxFrames) {
+            int n = Math.min(maxFrames, frames - start);
+            feedPreDelay(left, right, start, n, delay);
+            
+            Arrays.fill(wetLeft, 0, n, 0.0f);
+            Arrays.fill(wetRight, 0, n, 0.0f);
+            for (int i = 0; i < combsLeft.length; i++) {
+                combsLeft[i].process(input, wetLeft, n, feedback, damp);
+                combsRight[i].process(input, wetRight, n, feedback, damp);
+            }
+            for (int i = 0; i < allpassesLeft.length; i++) {
+                allpassesLeft[i].process(wetLeft, n);
+                allpassesRight[i].process(wetRight, n);
+            }
+            
+            for (int i = 0; i < n; i++) {
+                wet += wetStep;
+                float wl = wetLeft[i] * wet;
+                float wr = wetRight[i] * wet;
+                left[start + i] += wl * same + wr * cross;
+                right[start + i] += wr * same + wl * cross;
+            }
+        }
+    }
+    
+    /**
+     * Sum the block to mono into {@link #input}, delayed by {@code delay} frames
+     */
+    private void feedPreDelay(float[] left, float[] right, int start, int frames, int delay) {
+        float[] line = preDelayLine;
+        int size = line.length;
+        int pos = preDelayPos;
+        int read = pos - delay;
+        if (read < 0) {
+            read += size;
+        }
+        for (int i = 0; i < frames; i++) {
+            line[pos] = (left[start + i] + right[start + i]) * INPUT_GAIN + ANTI_DENORMAL;
+            input[i] = line[read];
+            if (++pos == size) {
+                pos = 0;
+            }
+            if (++read == size) {
+                read = 0;
+            }
+        }
+        preDelayPos = pos;
+    }
+    
+    /**
+     * Clear every line. Render thread only, or while the reverb is not processing.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < combsLeft.length; i++) {
+            combsLeft[i].reset();
+            combsRight[i].reset();
+        }
+        for (int i = 0; i < allpassesLeft.length; i++) {
+            allpassesLeft[i].reset();
+            allpassesRight[i].reset();
+        }
+        Arrays.fill(preDelayLine, 0.0f);
+        preDelayPos = 0;
+        roomSize.reset();
+        damping.reset();
+        width.reset();
+        mix.reset();
+    }
+    
+    /**
+     * Feedback comb with a one-pole low-pass in its loop
+     */
+    private static final class Comb {
+        
+        final float[] line;
+        private int pos;
+        private float store;
+        
+        Comb(int length) {
+            line = new float[length];
+        }
+        
+        /**
+         * Add the comb's output for {@code in} to {@code out}
+         */
+        void process(float[] in, float[] out, int frames, float feedback, float damp) {
+            float[] buf = line;
+            int size = buf.length;
+            int p = pos;
+            float s = store;
+            for (int i = 0; i < frames; i++) {
+                float y = buf[p];
+                s = y + (s - y) * damp;
+                buf[p] = in[i] + s * feedback;
+                if (++p == size) {
+                    p = 0;
+                }
+                out[i] += y;
+            }
+            pos = p;
+            store = s;
+        }
+        
+        void reset() {
+            Arrays.fill(line, 0.0f);
+            pos = 0;
+            store = 0;
+        }
+    }
+    
+    /**
+     * Schroeder allpass diffuser, processed in place
+     */
+    private static final class Allpass {
+        
+        private final float[] line;
+        private int pos;
+        
+        Allpass(int length) {
+            line = new float[length];
+        }
+        
+        void process(float[] buffer, int frames) {
+            float[] buf = line;
+            int size = buf.length;
+            int p = pos;
+            for (int i = 0; i < frames; i++) {
+                float delayed = buf[p];
+                float x = buffer[i];
+                buf[p] = x + delayed * ALLPASS_FEEDBACK;
+                buffer[i] = delayed - x;
+                if (++p == size) {
+                    p = 0;
+                }
+            }
+            pos = p;
+        }
+        
+        void reset() {
+            Arrays.fill(line, 0.0f);
+            pos = 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The samples of every pad, swapped into the mixer as a unit. A pad holds
+ * {@link SampleZones}: one sample, or velocity layers with round-robin alternates.
+ *
+ * A new pack is loaded into a fresh bank off the render thread and handed to
+ * {@link SoftwareMixer#swapBank}, which makes it live on the next block
+ * boundary. The bank it replaces is retired: voices already playing from it
+ * run to their natural end, and when the last one stops the bank drops its
+ * samples so they can be reclaimed.
+ *
+ * Voice accounting happens on the render thread only.
+ */
+public final class SampleBank {
+    
+    private final String name;
+    private final AtomicReferenceArray<SampleZones> pads;
+    private volatile int voiceCount;
+    private boolean retired;
+    private volatile boolean released;
+    
+    public SampleBank(String name) {
+        this.name = name;
+        pads = new AtomicReferenceArray<>(Constants.TOTAL_PADS);
+    }
+    
+    /**
+     * Give a pad a single sample, or clear it with null. Safe from any thread.
+     */
+    public void setSample(int padIndex, PcmSample sample) {
+        setZones(padIndex, sample != null ? SampleZones.single(sample) : null);
+    }
+    
+    /**
+     * Primary sample of a pad, see {@link SampleZones#getPrimary()}
+     */
+    public PcmSample getSample(int padIndex) {
+        SampleZones zones = getZones(padIndex);
+        return zones != null ? zones.getPrimary() : null;
+    }
+    
+    /**
+     * Give a pad layered and round-robin samples, or clear it with null. Safe from any thread.
+     */
+    public void setZones(int padIndex, SampleZones zones) {
+        if (padIndex >= 0 && padIndex < pads.length()) {
+            pads.set(padIndex, zones);
+        }
+    }
+    
+    public SampleZones getZones(int padIndex) {
+        if (padIndex >= 0 && padIndex < pads.length()) {
+            return pads.get(padIndex);
+        }
+        return null;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Number of voices still playing from this bank
+     */
+    public int getVoiceCount() {
+        return voiceCount;
+    }
+    
+    /**
+     * True once the bank has been swapped out and its last voice has ended
+     */
+    public boolean isReleased() {
+        return released;
+    }
+    
+    public long getSizeInBytes() {
+        long total = 0;
+        for (int i = 0; i < pads.length(); i++) {
+            SampleZones zones = pads.get(i);
+            if (zones != null) {
+                total += zones.getSizeInBytes();
+            }
+        }
+        return total;
+    }
+    
+    void acquireVoice() {
+        voiceCount++;
+    }
+    
+    void releaseVoice() {
+        voiceCount--;
+        if (retired && voiceCount == 0) {
+            release();
+        }
+    }
+    
+    /**
+     * Mark the bank as replaced; it is released as soon as no voice uses it
+     */
+    void retire() {
+        retired = true;
+        if (voiceCount == 0) {
+            release();
+        }
+    }
+    
+    private void release() {
+        for (int i = 0; i < pads.length(); i++) {
+            pads.set(i, null);
+        }
+        released = true;
+    }
+}
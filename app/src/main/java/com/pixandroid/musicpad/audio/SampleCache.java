@@ -0,0 +1,183 @@
+package com.pixandroid.musicpad.audio;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Byte-budgeted cache of decoded samples shared by every sound pack.
+ *
+ * Entries are kept in least-recently-used order and evicted oldest first
+ * until the cache fits its budget. Keys of the active pack can be pinned so
+ * they are never evicted, even if that takes the cache over budget. A
+ * sample larger than the whole budget is returned to the caller but not kept.
+ *
+ * Thread-safe. Decoding happens outside the lock, so two threads missing on
+ * the same key may both decode it; the first result stored wins.
+ */
+public class SampleCache {
+    
+    /**
+     * Produces a sample on a cache miss
+     */
+    public interface Loader {
+        PcmSample load() throws IOException;
+    }
+    
+    private final LinkedHashMap<String, PcmSample> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<String> pinned = new HashSet<>();
+    private long byteBudget;
+    private long bytesUsed;
+    
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    
+    public SampleCache(long byteBudget) {
+        this.byteBudget = byteBudget;
+    }
+    
+    /**
+     * Cache key for a raw resource converted to {@code sampleRate}
+     */
+    public static String resourceKey(int resourceId, int sampleRate) {
+        return "res:" + resourceId + "@" + sampleRate;
+    }
+    
+    /**
+     * Cache key for a file on disk, invalidated when the file changes
+     */
+    public static String fileKey(String path, long lastModified, long length) {
+        return "file:" + path + ":" + lastModified + ":" + length;
+    }
+    
+    public synchronized PcmSample get(String key) {
+        PcmSample sample = entries.get(key);
+        if (sample != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return sample;
+    }
+    
+    /**
+     * Return the cached sample for {@code key}, decoding and storing it on a miss
+     */
+    public PcmSample getOrLoad(String key, Loader loader) throws IOException {
+        PcmSample sample = get(key);
+        if (sample != null) {
+            return sample;
+        }
+        return put(key, loader.load());
+    }
+    
+    /**
+     * Store a sample and evict down to the budget
+     *
+     * @return the sample now cached for the key, which may be an earlier one
+     */
+    public synchronized PcmSample put(String key, PcmSample sample) {
+        PcmSample existing = entries.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        long size = sample.getSizeInBytes();
+        if (size > byteBudget && !pinned.contains(key)) {
+            return sample;
+        }
+        entries.put(key, sample);
+        bytesUsed += size;
+        trimToBudget();
+        return sample;
+    }
+    
+    /**
+     * Pin exactly these keys, releasing every other pin. Keys need not be cached yet.
+     */
+    public synchronized void pinOnly(Collection<String> keys) {
+        pinned.clear();
+        pinned.addAll(keys);
+        trimToBudget();
+    }
+    
+    public synchronized void unpinAll() {
+        pinned.clear();
+        trimToBudget();
+    }
+    
+    public synchronized boolean isPinned(String key) {
+        return pinned.contains(key);
+    }
+    
+    public synchronized void setByteBudget(long byteBudget) {
+        this.byteBudget = byteBudget;
+        trimToBudget();
+    }
+    
+    /**
+     * Drop every entry that is not pinned, e.g. under memory pressure
+     */
+    public synchronized void evictUnpinned() {
+        long budget = byteBudget;
+        byteBudget = 0;
+        trimToBudget();
+        byteBudget = budget;
+    }
+    
+    public synchronized void clear() {
+        evictionCount += entries.size();
+        entries.clear();
+        bytesUsed = 0;
+    }
+    
+    /**
+     * Evict unpinned entries, least recently used first, until the cache fits
+     */
+    private void trimToBudget() {
+        Iterator<Map.Entry<String, PcmSample>> it = entries.entrySet().iterator();
+        while (bytesUsed > byteBudget && it.hasNext()) {
+            Map.Entry<String, PcmSample> entry = it.next();
+            if (!pinned.contains(entry.getKey())) {
+                bytesUsed -= entry.getValue().getSizeInBytes();
+                it.remove();
+                evictionCount++;
+            }
+        }
+    }
+    
+    // Getters
+    public synchronized long getByteBudget() {
+        return byteBudget;
+    }
+    
+    public synchronized long getBytesUsed() {
+        return bytesUsed;
+    }
+    
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+    
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+    
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+    
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "SampleCache{" + entries.size() + " entries, " + bytesUsed + "/" + byteBudget
+            + " bytes, hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "}";
+    }
+}
@@ -0,0 +1,174 @@
+package com.pixandroid.musicpad.audio;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decodes raw audio resources (OGG, MP3, WAV, ...) into float PcmSamples using MediaCodec
+ */
+public final class SampleDecoder {
+    
+    private static final long TIMEOUT_US = 10_000;
+    
+    /**
+     * Decode a raw resource. The resource must be stored uncompressed in the APK.
+     */
+    public static PcmSample decodeResource(Context context, int resourceId) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            AssetFileDescriptor afd = context.getResources().openRawResourceFd(resourceId);
+            if (afd == null) {
+                throw new IOException("Resource " + resourceId + " is compressed in the APK");
+            }
+            try {
+                extractor.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            } finally {
+                afd.close();
+            }
+            return decode(extractor);
+        } finally {
+            extractor.release();
+        }
+    }
+    
+    /**
+     * Decode a raw resource and convert it to {@code sampleRate}
+     */
+    public static PcmSample decodeResource(Context context, int resourceId, int sampleRate) throws IOException {
+        return Resampler.convert(decodeResource(context, resourceId), sampleRate);
+    }
+    
+    /**
+     * Decode an audio file on disk
+     */
+    public static PcmSample decodeFile(String path) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(path);
+            return decode(extractor);
+        } finally {
+            extractor.release();
+        }
+    }
+    
+    private static PcmSample decode(MediaExtractor extractor) throws IOException {
+        int track = selectAudioTrack(extractor);
+        if (track < 0) {
+            throw new IOException("No audio track found");
+        }
+        extractor.selectTrack(track);
+        
+        MediaFormat format = extractor.getTrackFormat(track);
+        int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        int pcmEncoding = AudioFormat.ENCODING_PCM_16BIT;
+        
+        MediaCodec codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+        codec.configure(format, null, null, 0);
+        codec.start();
+        
+        float[] pcm = new float[sampleRate * channels];
+        int length = 0;
+        
+        try {
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean outputDone = false;
+            
+            while (!outputDone) {
+                if (!inputDone) {
+                    int inIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inIndex);
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+                
+                int outIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    if (outputFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)) {
+                        pcmEncoding = outputFormat.getInteger(MediaFormat.KEY_PCM_ENCODING);
+                    }
+                } else if (outIndex >= 0) {
+                    ByteBuffer output = codec.getOutputBuffer(outIndex);
+                    if (output != null && info.size > 0) {
+                        output.position(info.offset);
+                        output.limit(info.offset + info.size);
+                        output.order(ByteOrder.nativeOrder());
+                        
+                        int values = pcmEncoding == AudioFormat.ENCODING_PCM_FLOAT
+                            ? info.size / 4 : info.size / 2;
+                        if (length + values > pcm.length) {
+                            pcm = Arrays.copyOf(pcm, Math.max(pcm.length * 2, length + values));
+                        }
+                        if (pcmEncoding == AudioFormat.ENCODING_PCM_FLOAT) {
+                            output.asFloatBuffer().get(pcm, length, values);
+                        } else {
+                            for (int i = 0; i < values; i++) {
+                                pcm[length + i] = output.getShort() / 32768f;
+                            }
+                        }
+                        length += values;
+                    }
+                    codec.releaseOutputBuffer(outIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        outputDone = true;
+                    }
+                }
+            }
+        } finally {
+            codec.stop();
+            codec.release();
+        }
+        
+        if (channels > 2) {
+            length = downmixToStereo(pcm, length, channels);
+            channels = 2;
+        }
+        return PcmSample.fromInterleaved(pcm, length - length % channels, channels, sampleRate);
+    }
+    
+    private static int selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Keep the front left/right pair of a multichannel stream, in place
+     */
+    private static int downmixToStereo(float[] pcm, int length, int channels) {
+        int frames = length / channels;
+        for (int i = 0; i < frames; i++) {
+            pcm[i * 2] = pcm[i * channels];
+            pcm[i * 2 + 1] = pcm[i * channels + 1];
+        }
+        return frames * 2;
+    }
+    
+    private SampleDecoder() {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,129 @@
+package com.pixandroid.musicpad.audio;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts a resource-based SoundPack into a memory-mappable SamplePackFile
+ *
+ * The file records a fingerprint of the pack's sounds, the app install and the
+ * sample rate, so a conversion left over from an older build or a changed pack
+ * is recognised by {@link #isCurrent} and converted again instead of mapped.
+ * The install is identified by its last update time rather than the version
+ * code, so a reinstalled build with changed samples under the same resource ids
+ * and version code is still reconverted.
+ */
+public final class SamplePackConverter {
+    
+    private static final String TAG = "SamplePackConverter";
+    
+    /**
+     * Decode every sound of {@code pack}, convert it to {@code sampleRate} and
+     * write them to {@code output}. Decoding goes through {@code cache} when it is not null.
+     */
+    public static void convert(Context context, SoundPack pack, SampleCache cache, int sampleRate,
+            File output) throws IOException {
+        List<SoundPack.SoundInfo> sounds = new ArrayList<>();
+        for (SoundPack.SoundInfo sound : pack.getSounds()) {
+            if (sound.padIndex >= 0 && sound.padIndex < Constants.TOTAL_PADS) {
+                sounds.add(sound);
+            }
+        }
+        
+        // One entry per sample, so velocity layers and alternates are kept
+        int[] pads = new int[sounds.size()];
+        PcmSample[] samples = new PcmSample[sounds.size()];
+        float[] maxVelocities = new float[sounds.size()];
+        String[] names = new String[sounds.size()];
+        for (int i = 0; i < sounds.size(); i++) {
+            SoundPack.SoundInfo sound = sounds.get(i);
+            int resourceId = sound.resourceId;
+            pads[i] = sound.padIndex;
+            samples[i] = cache != null
+                ? cache.getOrLoad(SampleCache.resourceKey(resourceId, sampleRate),
+                    () -> SampleDecoder.decodeResource(context, resourceId, sampleRate))
+                : SampleDecoder.decodeResource(context, resourceId, sampleRate);
+            maxVelocities[i] = sound.maxVelocity;
+            names[i] = sound.soundName;
+        }
+        
+        // Write to a temporary file first so a half-written pack is never opened
+        File temp = new File(output.getPath() + ".tmp");
+        SamplePackFile.write(temp, fingerprint(context, pack, sampleRate), pads, samples, maxVelocities, names);
+        if (!temp.renameTo(output)) {
+            temp.delete();
+            throw new IOException("Cannot move converted pack to " + output);
+        }
+        Log.d(TAG, "Converted pack " + pack.getName() + " to " + output);
+    }
+    
+    /**
+     * Whether {@code file} is a conversion of the pack as it is in this install, at {@code sampleRate}
+     */
+    public static boolean isCurrent(Context context, SoundPack pack, int sampleRate, File file) {
+        return isCurrent(file, fingerprint(context, pack, sampleRate));
+    }
+    
+    static boolean isCurrent(File file, int fingerprint) {
+        if (!file.exists()) {
+            return false;
+        }
+        try {
+            return SamplePackFile.readSource(file) == fingerprint;
+        } catch (IOException e) {
+            Log.w(TAG, "Unreadable converted pack " + file, e);
+            return false;
+        }
+    }
+    
+    static int fingerprint(Context context, SoundPack pack, int sampleRate) {
+        return fingerprint(installTime(context), sampleRate, pack.getSounds());
+    }
+    
+    /**
+     * Hash of everything a conversion depends on: the app install, which
+     * resources go to which pad and layer, and the sample rate. Never 0, which
+     * marks a file without a fingerprint.
+     *
+     * @param installTime when the app was last installed or updated
+     */
+    static int fingerprint(long installTime, int sampleRate, List<SoundPack.SoundInfo> sounds) {
+        int hash = 31 * Long.hashCode(installTime) + sampleRate;
+        for (SoundPack.SoundInfo sound : sounds) {
+            hash = 31 * hash + sound.padIndex;
+            hash = 31 * hash + sound.resourceId;
+            hash = 31 * hash + Float.floatToIntBits(sound.maxVelocity);
+            hash = 31 * hash + (sound.soundName != null ? sound.soundName.hashCode() : 0);
+        }
+        return hash != 0 ? hash : 1;
+    }
+    
+    /**
+     * When the app was last installed or updated; resources can only change then
+     */
+    private static long installTime(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new IllegalStateException("Own package not found", e);
+        }
+    }
+    
+    /**
+     * Location of the converted file for a pack in app-private storage
+     */
+    public static File getPackFile(Context context, String packName) {
+        String fileName = packName.replaceAll("[^A-Za-z0-9_\\-]", "_") + "." + SamplePackFile.EXTENSION;
+        return new File(new File(context.getFilesDir(), Constants.PACKS_DIR), fileName);
+    }
+    
+    private SamplePackConverter() {
+        // Private constructor to prevent instantiation
+    }
+}
@@ -0,0 +1,295 @@
+package com.pixandroid.musicpad.audio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-file store of pre-converted pad samples, read through memory mapping.
+ *
+ * Layout (little-endian):
+ * <pre>
+ * header   magic "MPSP", version, entry count, source            16 bytes
+ * index    one entry per sample:                                   64 bytes each
+ *          pad, channels, sample rate, frames, data offset (long),
+ *          data length (long), top velocity of its layer (float),
+ *          UTF-8 name padded with zeros (28 bytes)
+ * data     interleaved 32-bit float PCM, each sample 64-byte aligned
+ * </pre>
+ *
+ * A pad may have several entries: velocity layers, and round-robin
+ * alternates sharing a top velocity in file order. Version 1 files have a
+ * 32-byte name and no velocity, and load as one full-range sample per entry.
+ *
+ * The source word is a fingerprint of whatever the file was converted from,
+ * chosen by the writer, or 0 when there is none. A cached conversion whose
+ * source no longer matches is stale; see {@link #readSource}.
+ *
+ * Each sample is mapped read-only with {@link FileChannel#map}, so the mixer
+ * reads straight from the page cache and nothing is copied onto the heap.
+ * Mappings stay valid after {@link #close()} until the samples are unreachable.
+ */
+public final class SamplePackFile implements Closeable {
+    
+    public static final String EXTENSION = "mpsp";
+    
+    private static final int MAGIC = 0x5053504D; // "MPSP"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 64;
+    private static final int NAME_BYTES = 28;
+    private static final int NAME_BYTES_V1 = 32;
+    private static final int DATA_ALIGNMENT = 64;
+    
+    private final RandomAccessFile file;
+    private final int source;
+    private final int[] pads;
+    private final String[] names;
+    private final PcmSample[] samples;
+    private final float[] maxVelocities;
+    
+    private SamplePackFile(RandomAccessFile file, int source, int[] pads, String[] names, PcmSample[] samples,
+            float[] maxVelocities) {
+        this.file = file;
+        this.source = source;
+        this.pads = pads;
+        this.names = names;
+        this.samples = samples;
+        this.maxVelocities = maxVelocities;
+    }
+    
+    /**
+     * Open a pack file and map every sample in it
+     */
+    public static SamplePackFile open(File path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a sample pack file: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION && version != 1) {
+                throw new IOException("Unsupported sample pack version " + version);
+            }
+            int count = header.getInt();
+            int source = header.getInt();
+            if (count < 0 || HEADER_BYTES + (long) count * ENTRY_BYTES > channel.size()) {
+                throw new IOException("Corrupt sample pack index: " + path);
+            }
+            
+            int[] pads = new int[count];
+            String[] names = new String[count];
+            PcmSample[] samples = new PcmSample[count];
+            float[] maxVelocities = new float[count];
+            ByteBuffer index = read(channel, HEADER_BYTES, count * ENTRY_BYTES);
+            for (int i = 0; i < count; i++) {
+                pads[i] = index.getInt();
+                int channels = index.getInt();
+                int sampleRate = index.getInt();
+                int frames = index.getInt();
+                long offset = index.getLong();
+                long length = index.getLong();
+                maxVelocities[i] = version == 1 ? 1.0f : index.getFloat();
+                byte[] name = new byte[version == 1 ? NAME_BYTES_V1 : NAME_BYTES];
+                index.get(name);
+                
+                if (length != (long) frames * channels * 4 || offset + length > channel.size()) {
+                    throw new IOException("Corrupt sample pack entry " + i + ": " + path);
+                }
+                FloatBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+                samples[i] = new PcmSample(data, channels, sampleRate);
+                names[i] = decodeName(name);
+            }
+            return new SamplePackFile(file, source, pads, names, samples, maxVelocities);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Source fingerprint of a pack file without mapping it, 0 for a version 1 file
+     */
+    public static int readSource(File path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            ByteBuffer header = read(file.getChannel(), 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a sample pack file: " + path);
+            }
+            int version = header.getInt();
+            header.getInt(); // entry count
+            return version == 1 ? 0 : header.getInt();
+        }
+    }
+    
+    /**
+     * Write samples to a new pack file. Entries are parallel arrays; null samples are skipped.
+     *
+     * @param source        fingerprint of what the samples were converted from, or 0
+     * @param pads          pad of each sample
+     * @param maxVelocities top velocity (0..1) of each sample's layer
+     * @param names         display name of each sample, may be null
+     */
+    public static void write(File path, int source, int[] pads, PcmSample[] samples, float[] maxVelocities,
+            String[] names) throws IOException {
+        int count = 0;
+        for (PcmSample sample : samples) {
+            if (sample != null) {
+                count++;
+            }
+        }
+        
+        File parent = path.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            
+            ByteBuffer index = ByteBuffer.allocate(HEADER_BYTES + count * ENTRY_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            index.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(source);
+            
+            long offset = align(index.capacity());
+            for (int i = 0; i < samples.length; i++) {
+                PcmSample sample = samples[i];
+                if (sample == null) {
+                    continue;
+                }
+                long length = sample.getSizeInBytes();
+                index.putInt(pads[i])
+                    .putInt(sample.getChannels())
+                    .putInt(sample.getSampleRate())
+                    .putInt(sample.getFrames())
+                    .putLong(offset)
+                    .putLong(length)
+                    .putFloat(maxVelocities[i]);
+                index.put(encodeName(names != null ? names[i] : null));
+                
+                writeFully(channel, toBytes(sample), offset);
+                offset = align(offset + length);
+            }
+            
+            index.flip();
+            writeFully(channel, index, 0);
+        }
+    }
+    
+    /**
+     * Every mapped sample of a pad as layers and round-robin alternates, or null if the pack has none
+     */
+    public SampleZones getZones(int padIndex) {
+        PcmSample[] padSamples = new PcmSample[samples.length];
+        for (int i = 0; i < pads.length; i++) {
+            if (pads[i] == padIndex) {
+                padSamples[i] = samples[i];
+            }
+        }
+        return SampleZones.of(padSamples, maxVelocities);
+    }
+    
+    /**
+     * First mapped sample for a pad, or null if the pack has none
+     */
+    public PcmSample getSample(int padIndex) {
+        for (int i = 0; i < pads.length; i++) {
+            if (pads[i] == padIndex) {
+                return samples[i];
+            }
+        }
+        return null;
+    }
+    
+    public int getEntryCount() {
+        return pads.length;
+    }
+    
+    /**
+     * Fingerprint the file was written with, see {@link #readSource}
+     */
+    public int getSource() {
+        return source;
+    }
+    
+    public int getPadIndex(int entry) {
+        return pads[entry];
+    }
+    
+    public String getName(int entry) {
+        return names[entry];
+    }
+    
+    public PcmSample getSampleAt(int entry) {
+        return samples[entry];
+    }
+    
+    /**
+     * Top velocity of the layer an entry belongs to
+     */
+    public float getMaxVelocity(int entry) {
+        return maxVelocities[entry];
+    }
+    
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+    
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of sample pack");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    private static ByteBuffer toBytes(PcmSample sample) {
+        ByteBuffer bytes = ByteBuffer.allocate((int) sample.getSizeInBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer source = sample.getData().duplicate();
+        source.rewind();
+        bytes.asFloatBuffer().put(source);
+        return bytes;
+    }
+    
+    private static long align(long offset) {
+        return (offset + DATA_ALIGNMENT - 1) / DATA_ALIGNMENT * DATA_ALIGNMENT;
+    }
+    
+    private static byte[] encodeName(String name) {
+        byte[] field = new byte[NAME_BYTES];
+        if (name != null) {
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(utf8, 0, field, 0, Math.min(utf8.length, NAME_BYTES));
+        }
+        return field;
+    }
+    
+    private static String decodeName(byte[] field) {
+        int length = 0;
+        while (length < field.length && field[length] != 0) {
+            length++;
+        }
+        return new String(field, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.Arrays;
+
+/**
+ * Every sample of one pad: velocity layers, each holding one or more
+ * round-robin alternates.
+ *
+ * Samples are stored layer by layer with their alternates next to each other,
+ * and a {@link #VELOCITY_STEPS}-entry table maps quantised velocity straight
+ * to a layer, so {@link #select} is a couple of array reads on the render
+ * thread. Immutable once built.
+ */
+public final class SampleZones {
+    
+    public static final int VELOCITY_STEPS = 128;
+    
+    private final PcmSample[] samples;
+    private final float[] maxVelocities;
+    private final int[] layerStart;
+    private final int[] layerCount;
+    private final int[] velocityLayer;
+    
+    private SampleZones(PcmSample[] samples, float[] maxVelocities) {
+        this.samples = samples;
+        this.maxVelocities = maxVelocities;
+        
+        int layers = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (i == 0 || maxVelocities[i] != maxVelocities[i - 1]) {
+                layers++;
+            }
+        }
+        layerStart = new int[layers];
+        layerCount = new int[layers];
+        int layer = -1;
+        for (int i = 0; i < samples.length; i++) {
+            if (i == 0 || maxVelocities[i] != maxVelocities[i - 1]) {
+                layerStart[++layer] = i;
+            }
+            layerCount[layer]++;
+        }
+        
+        // Lowest layer whose top velocity reaches the bottom of the step's rounding
+        // range, so velocities that round to a layer's top still play that layer
+        velocityLayer = new int[VELOCITY_STEPS];
+        layer = 0;
+        for (int step = 0; step < VELOCITY_STEPS; step++) {
+            float velocity = Math.max(0.0f, (step - 0.5f) / (VELOCITY_STEPS - 1));
+            while (layer < layers - 1 && maxVelocities[layerStart[layer]] < velocity) {
+                layer++;
+            }
+            velocityLayer[step] = layer;
+        }
+    }
+    
+    /**
+     * A pad with one sample for every velocity
+     */
+    public static SampleZones single(PcmSample sample) {
+        return new SampleZones(new PcmSample[] {sample}, new float[] {1.0f});
+    }
+    
+    /**
+     * Build a pad from samples tagged with the top velocity (0..1) of their layer.
+     * Samples sharing a top velocity are round-robin alternates, in the order given.
+     * Null samples are skipped.
+     *
+     * @return the zones, or null if no sample was given
+     */
+    public static SampleZones of(PcmSample[] samples, float[] maxVelocities) {
+        Integer[] order = new Integer[samples.length];
+        int count = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (samples[i] != null) {
+                order[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        // Stable, so alternates keep their order within a layer
+        Arrays.sort(order, 0, count, (a, b) -> Float.compare(maxVelocities[a], maxVelocities[b]));
+        PcmSample[] sorted = new PcmSample[count];
+        float[] velocities = new float[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = samples[order[i]];
+            velocities[i] = Math.max(0.0f, Math.min(1.0f, maxVelocities[order[i]]));
+        }
+        return new SampleZones(sorted, velocities);
+    }
+    
+    /**
+     * Sample for a hit. Render thread safe: no allocation or locking.
+     *
+     * @param roundRobin running count of the pad's hits, any non-negative value
+     */
+    public PcmSample select(float velocity, int roundRobin) {
+        int step = (int) (velocity * (VELOCITY_STEPS - 1) + 0.5f);
+        int layer = velocityLayer[Math.max(0, Math.min(VELOCITY_STEPS - 1, step))];
+        return samples[layerStart[layer] + roundRobin % layerCount[layer]];
+    }
+    
+    /**
+     * First sample of the loudest layer
+     */
+    public PcmSample getPrimary() {
+        return samples[layerStart[layerStart.length - 1]];
+    }
+    
+    public int getLayerCount() {
+        return layerStart.length;
+    }
+    
+    public int getSampleCount() {
+        return samples.length;
+    }
+    
+    public PcmSample getSample(int index) {
+        return samples[index];
+    }
+    
+    /**
+     * Top velocity of the layer the sample at {@code index} belongs to
+     */
+    public float getMaxVelocity(int index) {
+        return maxVelocities[index];
+    }
+    
+    public long getSizeInBytes() {
+        long total = 0;
+        for (PcmSample sample : samples) {
+            total += sample.getSizeInBytes();
+        }
+        return total;
+    }
+}
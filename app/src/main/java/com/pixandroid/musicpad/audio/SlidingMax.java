@@ -0,0 +1,56 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Running maximum of the last {@code window} values pushed, in amortised O(1) per value.
+ *
+ * Keeps a deque of the values that could still become the maximum, oldest
+ * first and in decreasing order: a new value evicts every smaller one behind
+ * it, since those can never be the maximum again while it is in the window.
+ * The front is then the maximum, and it is dropped once it falls out of the
+ * window. Every value is added and removed at most once. The deque lives in
+ * preallocated arrays, so pushing never allocates.
+ */
+final class SlidingMax {
+    
+    private final int window;
+    private final float[] values;
+    private final long[] times;
+    private final int mask;
+    private int head;
+    private int size;
+    private long now;
+    
+    SlidingMax(int window) {
+        this.window = Math.max(1, window);
+        // One spare slot: the new value is stored before the expired front is dropped
+        int capacity = Integer.highestOneBit(this.window + 1) << 1;
+        values = new float[capacity];
+        times = new long[capacity];
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Add the next value and return the maximum of the last {@code window} values
+     */
+    float push(float value) {
+        while (size > 0 && values[(head + size - 1) & mask] <= value) {
+            size--;
+        }
+        int slot = (head + size) & mask;
+        values[slot] = value;
+        times[slot] = now;
+        size++;
+        if (times[head] <= now - window) {
+            head = (head + 1) & mask;
+            size--;
+        }
+        now++;
+        return values[head];
+    }
+    
+    void reset() {
+        head = 0;
+        size = 0;
+        now = 0;
+    }
+}
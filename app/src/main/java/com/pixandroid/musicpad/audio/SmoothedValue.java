@@ -0,0 +1,71 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * A parameter that glides toward its target instead of jumping. Render thread only.
+ *
+ * Once per block the value takes a one-pole step toward the target, so a
+ * change settles exponentially over {@link #TIME_MS} whatever the block size.
+ * Gains are then ramped linearly from {@link #getStart()} to {@link #getEnd()}
+ * across the block's frames, so no step is ever left at a block boundary;
+ * filter coefficients can simply use the end value for the whole block.
+ */
+final class SmoothedValue {
+    
+    static final float TIME_MS = 20.0f;
+    private static final float SETTLED = 1e-5f;
+    
+    /**
+     * Longest a glide of up to 1000 takes to snap to its target, so a parameter
+     * dropped to zero is exactly zero by then
+     */
+    static final float SETTLE_MS = (float) (TIME_MS * Math.log(1000.0 / SETTLED));
+    
+    private float start;
+    private float value;
+    private boolean primed;
+    
+    /**
+     * Share of the remaining distance covered in a block of {@code frames}
+     */
+    static float coefficient(int frames, int sampleRate) {
+        return (float) (1.0 - Math.exp(-frames * 1000.0 / (TIME_MS * sampleRate)));
+    }
+    
+    /**
+     * Step one block toward {@code target}. The first step after {@link #reset()} lands on it directly.
+     */
+    void advance(float target, float coefficient) {
+        if (!primed) {
+            start = target;
+            value = target;
+            primed = true;
+            return;
+        }
+        start = value;
+        value += (target - value) * coefficient;
+        if (Math.abs(target - value) < SETTLED) {
+            value = target;
+        }
+    }
+    
+    /**
+     * Value at the start of the current block
+     */
+    float getStart() {
+        return start;
+    }
+    
+    /**
+     * Value at the end of the current block
+     */
+    float getEnd() {
+        return value;
+    }
+    
+    /**
+     * Forget the current value, so the next block starts at its target
+     */
+    void reset() {
+        primed = false;
+    }
+}
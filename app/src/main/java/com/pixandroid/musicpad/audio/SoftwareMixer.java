@@ -0,0 +1,885 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pure-Java render core for the mixer backend.
+ *
+ * Holds one decoded PcmSample per pad and a fixed pool of voices, and renders
+ * fixed-size blocks of interleaved stereo float PCM. Voices can be pitched per
+ * pad and per trigger; pitched voices read the sample through the selected
+ * {@link Interpolation}. Voices come from a {@link VoiceAllocator}, with a
+ * configurable {@link StealPolicy}, per-pad voice limits and choke groups. Each
+ * pad has an {@link Envelope} and a {@link PadMode}; gated and looping pads
+ * fade out when {@link #releasePad} arrives. A pad with a {@link PadFilter}
+ * runs each voice through its own resonant filter. Each pad can also send to the
+ * {@link AuxBus}es, whose shared effects run once per block on the summed
+ * sends and are added to the mix before the master stage. The {@link Ducker}
+ * turns a group of pads and aux returns down under a sidechain key, in the same
+ * pass over the voices. Nothing in the render path allocates, and the class has
+ * no Android dependencies so it can be driven from a plain JVM for tests and
+ * benchmarks.
+ *
+ * Threading: {@link #trigger}, {@link #triggerAt}, {@link #releasePad}, {@link #stopPad},
+ * {@link #stopAll} and {@link #cancelScheduled} only enqueue events on a
+ * {@link TriggerQueue} and must be called from a single input thread.
+ * {@link #render} runs on the render thread, drains the queue at the start of
+ * each block and starts every voice on its exact target frame, splitting the
+ * block where events land. Samples and volumes may be changed from any thread;
+ * {@link #swapBank} replaces a whole pack on a block boundary.
+ */
+public class SoftwareMixer {
+    
+    private static final int TRIGGER_QUEUE_CAPACITY = 256;
+    private static final int SCHEDULE_CAPACITY = 512;
+    
+    // Which voices a pass of renderVoices covers
+    private static final int VOICES_ALL = 0;
+    private static final int VOICES_KEY = 1; // the ducker's key pads
+    private static final int VOICES_OTHER = 2;
+    
+    private final int sampleRate;
+    private final int blockFrames;
+    
+    private final AtomicReference<SampleBank> pendingBank = new AtomicReference<>();
+    private volatile SampleBank bank;
+    private volatile SampleBank liveBank;
+    private final float[] padVolumes;
+    private final float[] padPitches; // cents
+    private final int[] roundRobin; // hits per pad, render thread only
+    private final int[] padMaxVoices; // 0 = no limit
+    private final int[] padChokeGroups; // 0 = none
+    private final PadMode[] padModes;
+    private final Envelope[] padEnvelopes;
+    private final PadFilter[] padFilters;
+    private final float[][] padSends; // [pad][bus]
+    private final AuxBus[] auxBuses;
+    private final Ducker ducker;
+    private final VoiceAllocator allocator;
+    private final Voice[] voices;
+    private final TriggerQueue triggerQueue;
+    private final TriggerQueue.Receiver eventReceiver = this::scheduleEvent;
+    private final EventSchedule schedule;
+    
+    private final float[] mixLeft;
+    private final float[] mixRight;
+    private final float[][] sendLeft; // [bus][frame]
+    private final float[][] sendRight;
+    private final float[] voiceLeft; // one voice, while it is filtered or split into the mix and its sends
+    private final float[] voiceRight;
+    
+    private volatile float masterVolume = 1.0f;
+    private volatile AudioProcessor masterProcessor;
+    private volatile Interpolation interpolation = Interpolation.CUBIC;
+    private volatile StealPolicy stealPolicy = StealPolicy.OLDEST;
+    private volatile long framesRendered;
+    private volatile int activeVoiceCount;
+    private volatile long droppedEventCount;
+    private volatile long stealCount;
+    private volatile long chokeCount;
+    private long blockStartFrame;
+    private boolean ducking; // the ducker runs in the current block
+    
+    public SoftwareMixer(int sampleRate, int blockFrames, int maxVoices) {
+        this.sampleRate = sampleRate;
+        this.blockFrames = blockFrames;
+        
+        bank = new SampleBank("default");
+        liveBank = bank;
+        padVolumes = new float[Constants.TOTAL_PADS];
+        Arrays.fill(padVolumes, 1.0f);
+        padPitches = new float[Constants.TOTAL_PADS];
+        roundRobin = new int[Constants.TOTAL_PADS];
+        
+        padMaxVoices = new int[Constants.TOTAL_PADS];
+        padChokeGroups = new int[Constants.TOTAL_PADS];
+        padModes = new PadMode[Constants.TOTAL_PADS];
+        Arrays.fill(padModes, PadMode.ONE_SHOT);
+        padEnvelopes = new Envelope[Constants.TOTAL_PADS];
+        Arrays.fill(padEnvelopes, Envelope.DEFAULT);
+        padFilters = new PadFilter[Constants.TOTAL_PADS];
+        Arrays.fill(padFilters, PadFilter.OFF);
+        padSends = new float[Constants.TOTAL_PADS][Constants.AUX_BUSES];
+        auxBuses = new AuxBus[Constants.AUX_BUSES];
+        for (int i = 0; i < auxBuses.length; i++) {
+            auxBuses[i] = new AuxBus(sampleRate, blockFrames);
+        }
+        ducker = new Ducker(sampleRate, blockFrames);
+        allocator = new VoiceAllocator(maxVoices);
+        voices = allocator.getVoices();
+        triggerQueue = new TriggerQueue(TRIGGER_QUEUE_CAPACITY);
+        schedule = new EventSchedule(SCHEDULE_CAPACITY);
+        
+        mixLeft = new float[blockFrames];
+        mixRight = new float[blockFrames];
+        sendLeft = new float[Constants.AUX_BUSES][blockFrames];
+        sendRight = new float[Constants.AUX_BUSES][blockFrames];
+        voiceLeft = new float[blockFrames];
+        voiceRight = new float[blockFrames];
+    }
+    
+    /**
+     * Assign a decoded sample to a pad of the current bank, or clear it with null.
+     * Voices already playing the previous sample finish normally.
+     */
+    public void setSample(int padIndex, PcmSample sample) {
+        bank.setSample(padIndex, sample);
+    }
+    
+    public PcmSample getSample(int padIndex) {
+        return bank.getSample(padIndex);
+    }
+    
+    /**
+     * Give a pad of the current bank velocity layers and round-robin alternates, or clear it with null
+     */
+    public void setZones(int padIndex, SampleZones zones) {
+        bank.setZones(padIndex, zones);
+    }
+    
+    public SampleZones getZones(int padIndex) {
+        return bank.getZones(padIndex);
+    }
+    
+    /**
+     * Replace every pad's sample at once. The new bank goes live at the start of
+     * the next block; the old one is released after its last voice ends.
+     * May be called from any thread.
+     */
+    public void swapBank(SampleBank next) {
+        bank = next;
+        SampleBank skipped = pendingBank.getAndSet(next);
+        if (skipped != null && skipped != next) {
+            // Never went live, so no voice can be using it
+            skipped.retire();
+        }
+    }
+    
+    /**
+     * Bank most recently passed to {@link #swapBank}, which may not be live yet
+     */
+    public SampleBank getBank() {
+        return bank;
+    }
+    
+    /**
+     * Bank new voices are currently started from
+     */
+    public SampleBank getLiveBank() {
+        return liveBank;
+    }
+    
+    /**
+     * Set the gain applied to new voices of a pad. The trigger queue publishes
+     * the write to the render thread together with the next trigger.
+     */
+    public void setPadVolume(int padIndex, float volume) {
+        if (padIndex >= 0 && padIndex < padVolumes.length) {
+            padVolumes[padIndex] = Math.max(0.0f, Math.min(1.0f, volume));
+        }
+    }
+    
+    public float getPadVolume(int padIndex) {
+        if (padIndex >= 0 && padIndex < padVolumes.length) {
+            return padVolumes[padIndex];
+        }
+        return 0.0f;
+    }
+    
+    /**
+     * Transpose every new voice of a pad. Published to the render thread like pad volumes.
+     */
+    public void setPadPitch(int padIndex, int semitones, float cents) {
+        if (padIndex >= 0 && padIndex < padPitches.length) {
+            padPitches[padIndex] = clampPitch(semitones * 100.0f + cents);
+        }
+    }
+    
+    /**
+     * Pad transposition in cents
+     */
+    public float getPadPitch(int padIndex) {
+        if (padIndex >= 0 && padIndex < padPitches.length) {
+            return padPitches[padIndex];
+        }
+        return 0.0f;
+    }
+    
+    /**
+     * Choose how pitched voices interpolate; takes effect on the next block
+     */
+    public void setInterpolation(Interpolation interpolation) {
+        this.interpolation = interpolation;
+    }
+    
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+    
+    /**
+     * Choose which voice a trigger cuts off when the pool is full; takes effect on the next trigger
+     */
+    public void setStealPolicy(StealPolicy policy) {
+        stealPolicy = policy;
+    }
+    
+    public StealPolicy getStealPolicy() {
+        return stealPolicy;
+    }
+    
+    /**
+     * Cap the voices a pad may hold, 0 for no limit. A trigger over the cap
+     * replaces the pad's oldest voice; 1 makes the pad monophonic.
+     */
+    public void setPadMaxVoices(int padIndex, int maxVoices) {
+        if (padIndex >= 0 && padIndex < padMaxVoices.length) {
+            padMaxVoices[padIndex] = Math.max(0, maxVoices);
+        }
+    }
+    
+    public int getPadMaxVoices(int padIndex) {
+        if (padIndex >= 0 && padIndex < padMaxVoices.length) {
+            return padMaxVoices[padIndex];
+        }
+        return 0;
+    }
+    
+    /**
+     * Put a pad in a choke group, 0 for none. Triggering a pad stops every
+     * voice of the other pads in its group, e.g. closed hat choking open hat.
+     */
+    public void setPadChokeGroup(int padIndex, int group) {
+        if (padIndex >= 0 && padIndex < padChokeGroups.length) {
+            padChokeGroups[padIndex] = Math.max(0, group);
+        }
+    }
+    
+    public int getPadChokeGroup(int padIndex) {
+        if (padIndex >= 0 && padIndex < padChokeGroups.length) {
+            return padChokeGroups[padIndex];
+        }
+        return 0;
+    }
+    
+    /**
+     * Choose whether releasing a pad fades its voices out and whether they loop.
+     * Applies to voices started after the change.
+     */
+    public void setPadMode(int padIndex, PadMode mode) {
+        if (padIndex >= 0 && padIndex < padModes.length && mode != null) {
+            padModes[padIndex] = mode;
+        }
+    }
+    
+    public PadMode getPadMode(int padIndex) {
+        if (padIndex >= 0 && padIndex < padModes.length) {
+            return padModes[padIndex];
+        }
+        return PadMode.ONE_SHOT;
+    }
+    
+    /**
+     * Shape the gain of a pad's new voices. Published to the render thread like pad volumes.
+     */
+    public void setPadEnvelope(int padIndex, Envelope envelope) {
+        if (padIndex >= 0 && padIndex < padEnvelopes.length && envelope != null) {
+            padEnvelopes[padIndex] = envelope;
+        }
+    }
+    
+    public Envelope getPadEnvelope(int padIndex) {
+        if (padIndex >= 0 && padIndex < padEnvelopes.length) {
+            return padEnvelopes[padIndex];
+        }
+        return Envelope.DEFAULT;
+    }
+    
+    /**
+     * Filter a pad's new voices, or stop filtering them with {@link PadFilter#OFF}.
+     * Published to the render thread like pad volumes.
+     */
+    public void setPadFilter(int padIndex, PadFilter filter) {
+        if (padIndex >= 0 && padIndex < padFilters.length && filter != null) {
+            padFilters[padIndex] = filter;
+        }
+    }
+    
+    public PadFilter getPadFilter(int padIndex) {
+        if (padIndex >= 0 && padIndex < padFilters.length) {
+            return padFilters[padIndex];
+        }
+        return PadFilter.OFF;
+    }
+    
+    /**
+     * Set how much of a pad's output goes to an aux bus, 0..1, after the pad
+     * volume. Applies to voices already playing from the next block.
+     */
+    public void setPadSend(int padIndex, int bus, float level) {
+        if (padIndex >= 0 && padIndex < padSends.length && bus >= 0 && bus < auxBuses.length) {
+            padSends[padIndex][bus] = Math.max(0.0f, Math.min(1.0f, level));
+        }
+    }
+    
+    public float getPadSend(int padIndex, int bus) {
+        if (padIndex >= 0 && padIndex < padSends.length && bus >= 0 && bus < auxBuses.length) {
+            return padSends[padIndex][bus];
+        }
+        return 0.0f;
+    }
+    
+    /**
+     * Install the shared effect of an aux bus, or null to silence it
+     */
+    public void setAuxEffect(int bus, AudioProcessor effect) {
+        if (bus >= 0 && bus < auxBuses.length) {
+            auxBuses[bus].setEffect(effect);
+        }
+    }
+    
+    /**
+     * Whether any pad sends to a bus, false for a bus that does not exist
+     */
+    public boolean isAuxBusUsed(int bus) {
+        if (bus < 0 || bus >= auxBuses.length) {
+            return false;
+        }
+        for (float[] sends : padSends) {
+            if (sends[bus] > 0.0f) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public AuxBus getAuxBus(int bus) {
+        return auxBuses[bus];
+    }
+    
+    public int getAuxBusCount() {
+        return auxBuses.length;
+    }
+    
+    /**
+     * The sidechain ducker, off until it is enabled and given key and target pads
+     */
+    public Ducker getDucker() {
+        return ducker;
+    }
+    
+    public void setMasterVolume(float volume) {
+        masterVolume = Math.max(0.0f, Math.min(1.0f, volume));
+    }
+    
+    public float getMasterVolume() {
+        return masterVolume;
+    }
+    
+    /**
+     * Install the DSP stage run on the summed mix before the master gain, or null for none
+     */
+    public void setMasterProcessor(AudioProcessor processor) {
+        masterProcessor = processor;
+    }
+    
+    public AudioProcessor getMasterProcessor() {
+        return masterProcessor;
+    }
+    
+    /**
+     * Queue a voice start for a pad. Input thread only.
+     *
+     * @return false if the pad is out of range or the trigger queue is full
+     */
+    public boolean trigger(int padIndex, float velocity) {
+        return triggerAt(padIndex, velocity, 0.0f, TriggerQueue.IMMEDIATE);
+    }
+    
+    /**
+     * Queue a voice start pitched {@code pitchCents} away from the pad's own pitch. Input thread only.
+     *
+     * @return false if the pad is out of range or the trigger queue is full
+     */
+    public boolean trigger(int padIndex, float velocity, float pitchCents) {
+        return triggerAt(padIndex, velocity, pitchCents, TriggerQueue.IMMEDIATE);
+    }
+    
+    /**
+     * Queue a voice start on an exact frame of the render timeline. Frames that
+     * have already been rendered play at the start of the next block.
+     * Input thread only.
+     *
+     * @return false if the pad is out of range or the trigger queue is full
+     */
+    public boolean triggerAt(int padIndex, float velocity, long framePosition) {
+        return triggerAt(padIndex, velocity, 0.0f, framePosition);
+    }
+    
+    /**
+     * Queue a pitched voice start on an exact frame of the render timeline. Input thread only.
+     *
+     * @return false if the pad is out of range or the trigger queue is full
+     */
+    public boolean triggerAt(int padIndex, float velocity, float pitchCents, long framePosition) {
+        if (padIndex < 0 || padIndex >= Constants.TOTAL_PADS) {
+            return false;
+        }
+        return triggerQueue.offer(TriggerQueue.EVENT_TRIGGER, padIndex, velocity, pitchCents, framePosition);
+    }
+    
+    /**
+     * Queue a release for every voice of a pad, or of all pads when the pad is -1.
+     * Gated and looping voices fade out over their release; one-shots ignore it.
+     * Input thread only.
+     */
+    public boolean releasePad(int padIndex) {
+        return triggerQueue.offer(TriggerQueue.EVENT_RELEASE, padIndex, 0.0f, 0.0f, TriggerQueue.IMMEDIATE);
+    }
+    
+    /**
+     * Queue a stop for every voice of a pad. Input thread only.
+     */
+    public boolean stopPad(int padIndex) {
+        return triggerQueue.offer(TriggerQueue.EVENT_STOP, padIndex, 0.0f, 0.0f, TriggerQueue.IMMEDIATE);
+    }
+    
+    /**
+     * Queue a stop for every playing voice. Input thread only.
+     */
+    public boolean stopAll() {
+        return stopPad(-1);
+    }
+    
+    /**
+     * Queue removal of every event scheduled for a future block. Input thread only.
+     */
+    public boolean cancelScheduled() {
+        return triggerQueue.offer(TriggerQueue.EVENT_CANCEL_SCHEDULED, -1, 0.0f, 0.0f, TriggerQueue.IMMEDIATE);
+    }
+    
+    /**
+     * Schedule a voice start directly, bypassing the trigger queue. Render thread
+     * only; used by offline rendering where the caller owns the render loop.
+     *
+     * @return false if the pad is out of range or the schedule is full
+     */
+    public boolean scheduleTrigger(int padIndex, float velocity, long framePosition) {
+        if (padIndex < 0 || padIndex >= Constants.TOTAL_PADS) {
+            return false;
+        }
+        if (!schedule.add(TriggerQueue.EVENT_TRIGGER, padIndex, velocity, 0.0f,
+                Math.max(framePosition, framesRendered))) {
+            droppedEventCount++;
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Render exactly one block into {@code out} as interleaved stereo.
+     * {@code out} must hold at least {@code blockFrames * 2} floats.
+     */
+    public void render(float[] out) {
+        renderBlock(true);
+        applyAux(auxBuses, sendLeft, sendRight, mixLeft, mixRight, blockFrames,
+            ducker.isBlockReduced() ? ducker.getGains() : null, ducker.getTargetBuses());
+        applyMaster(masterProcessor, masterVolume, mixLeft, mixRight, blockFrames, out);
+    }
+    
+    /**
+     * Run the master stage on one planar block and interleave it into {@code out}.
+     * Shared by live and sliced offline rendering so both produce identical samples.
+     */
+    static void applyMaster(AudioProcessor processor, float gain, float[] left, float[] right,
+            int frames, float[] out) {
+        if (processor != null) {
+            processor.process(left, right, frames);
+        }
+        for (int i = 0, j = 0; i < frames; i++) {
+            out[j++] = left[i] * gain;
+            out[j++] = right[i] * gain;
+        }
+    }
+    
+    /**
+     * Run every aux bus on its block of sends and add the returns to the planar mix,
+     * scaling the returns of the buses in {@code duckedBuses} by the ducker's gain
+     * curve {@code duck}, when there is one. Shared by live and sliced offline
+     * rendering, like {@link #applyMaster}.
+     */
+    static void applyAux(AuxBus[] buses, float[][] sendLeft, float[][] sendRight, float[] left,
+            float[] right, int frames, float[] duck, int duckedBuses) {
+        for (int i = 0; i < buses.length; i++) {
+            float[] gains = (duckedBuses & (1 << i)) != 0 ? duck : null;
+            buses[i].process(sendLeft[i], sendRight[i], left, right, frames, gains);
+        }
+    }
+    
+    /**
+     * Clear the state of every aux effect and let the ducker's targets back up.
+     * Render thread only, or while not rendering.
+     */
+    void resetAuxBuses() {
+        for (AuxBus bus : auxBuses) {
+            bus.reset();
+        }
+        ducker.reset();
+    }
+    
+    /**
+     * Advance one block: apply due events and either mix the voices into the
+     * planar buffers or, when {@code audible} is false, only move them forward
+     */
+    void renderBlock(boolean audible) {
+        long blockStart = framesRendered;
+        long blockEnd = blockStart + blockFrames;
+        blockStartFrame = blockStart;
+        triggerQueue.drainTo(eventReceiver);
+        
+        SampleBank next = pendingBank.getAndSet(null);
+        if (next != null) {
+            SampleBank previous = liveBank;
+            liveBank = next;
+            if (previous != next) {
+                previous.retire();
+            }
+        }
+        
+        if (audible) {
+            Arrays.fill(mixLeft, 0.0f);
+            Arrays.fill(mixRight, 0.0f);
+            for (int i = 0; i < sendLeft.length; i++) {
+                Arrays.fill(sendLeft[i], 0.0f);
+                Arrays.fill(sendRight[i], 0.0f);
+            }
+        }
+        ducking = ducker.beginBlock(blockFrames);
+        
+        // Split the block at every due event so voices start on their exact frame
+        int offset = 0;
+        while (!schedule.isEmpty() && schedule.firstFrame() < blockEnd) {
+            int eventOffset = (int) Math.max(offset, schedule.firstFrame() - blockStart);
+            renderVoices(offset, eventOffset, audible);
+            offset = eventOffset;
+            applyEvent(schedule.firstType(), schedule.firstPad(), schedule.firstVelocity(),
+                schedule.firstPitch(), blockStart + offset);
+            schedule.removeFirst();
+        }
+        renderVoices(offset, blockFrames, audible);
+        
+        activeVoiceCount = allocator.getActiveCount();
+        stealCount = allocator.getStealCount();
+        framesRendered += blockFrames;
+    }
+    
+    /**
+     * Mix or advance every playing voice, releasing the ones that end. While the
+     * ducker is keyed by audio, its key voices go first so the gain curve is
+     * known before the voices it ducks are mixed; otherwise voices go in start order.
+     */
+    private void renderVoices(int from, int to, boolean audible) {
+        if (to <= from) {
+            return;
+        }
+        Interpolation mode = interpolation;
+        boolean keyed = ducking && ducker.isKeyedByAudio();
+        if (keyed) {
+            renderVoices(from, to, audible, mode, VOICES_KEY, false);
+        }
+        boolean duck = ducking && ducker.computeGains(from, to);
+        renderVoices(from, to, audible, mode, keyed ? VOICES_OTHER : VOICES_ALL, duck);
+    }
+    
+    /**
+     * Mix or advance the playing voices of one kind in start order
+     *
+     * @param duck whether the ducker turns this stretch down, so its targets must be scaled
+     */
+    private void renderVoices(int from, int to, boolean audible, Interpolation mode, int kind,
+            boolean duck) {
+        int slot = allocator.first();
+        while (slot >= 0) {
+            int following = allocator.next(slot);
+            Voice voice = voices[slot];
+            if (kind == VOICES_ALL || (kind == VOICES_KEY) == ducker.isKey(voice.padIndex)) {
+                renderVoice(voice, from, to, audible, mode, kind == VOICES_KEY,
+                    duck && ducker.isTarget(voice.padIndex));
+                if (!voice.active) {
+                    allocator.release(slot);
+                }
+            }
+            slot = following;
+        }
+    }
+    
+    private void renderVoice(Voice voice, int from, int to, boolean audible, Interpolation mode,
+            boolean key, boolean duck) {
+        if (audible) {
+            float[] sends = padSends[voice.padIndex];
+            if (voice.filtered || key || duck || hasSend(sends)) {
+                renderIsolated(voice, from, to, mode);
+                if (key) {
+                    ducker.addKey(voiceLeft, voiceRight, from, to);
+                }
+                if (duck) {
+                    ducker.apply(voiceLeft, voiceRight, from, to);
+                }
+                mixIsolated(sends, from, to);
+            } else {
+                voice.render(mixLeft, mixRight, from, to - from, mode);
+            }
+        } else if (voice.filtered || key) {
+            // Advancing would skip the filter's state, or the key, which a later audible block picks up
+            renderIsolated(voice, from, to, mode);
+            if (key) {
+                ducker.addKey(voiceLeft, voiceRight, from, to);
+            }
+        } else {
+            voice.advance(to - from);
+        }
+    }
+    
+    /**
+     * Add the voice buffers to the mix and, scaled, to each bus the voice sends to
+     */
+    private void mixIsolated(float[] sends, int from, int to) {
+        for (int i = from; i < to; i++) {
+            mixLeft[i] += voiceLeft[i];
+            mixRight[i] += voiceRight[i];
+        }
+        for (int bus = 0; bus < sends.length; bus++) {
+            float send = sends[bus];
+            if (send > 0.0f) {
+                float[] busLeft = sendLeft[bus];
+                float[] busRight = sendRight[bus];
+                for (int i = from; i < to; i++) {
+                    busLeft[i] += voiceLeft[i] * send;
+                    busRight[i] += voiceRight[i] * send;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Render a voice alone into the voice buffers, through its filter if it has one
+     */
+    private void renderIsolated(Voice voice, int from, int to, Interpolation mode) {
+        Arrays.fill(voiceLeft, from, to, 0.0f);
+        Arrays.fill(voiceRight, from, to, 0.0f);
+        voice.render(voiceLeft, voiceRight, from, to - from, mode);
+        if (voice.filtered) {
+            voice.filter.process(voiceLeft, voiceRight, from, to);
+        }
+    }
+    
+    private static boolean hasSend(float[] sends) {
+        for (float send : sends) {
+            if (send > 0.0f) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Copy every voice's state into {@code into}, which must hold getMaxVoices() voices,
+     * each pad's round-robin position into {@code roundRobinInto} and the ducker's
+     * envelope into {@code duckerInto}
+     */
+    void saveVoices(Voice[] into, int[] roundRobinInto, Ducker duckerInto) {
+        for (int i = 0; i < voices.length; i++) {
+            into[i].copyFrom(voices[i]);
+        }
+        System.arraycopy(roundRobin, 0, roundRobinInto, 0, roundRobin.length);
+        duckerInto.copyStateFrom(ducker);
+    }
+    
+    /**
+     * Resume rendering from a state captured with {@link #saveVoices} at {@code framePosition}.
+     * Pending events are discarded. Render thread only.
+     */
+    void restoreVoices(Voice[] from, int[] roundRobinFrom, Ducker duckerFrom, long framePosition) {
+        for (int i = 0; i < voices.length; i++) {
+            if (voices[i].active) {
+                voices[i].stop();
+            }
+            voices[i].copyFrom(from[i]);
+        }
+        System.arraycopy(roundRobinFrom, 0, roundRobin, 0, roundRobin.length);
+        ducker.copyStateFrom(duckerFrom);
+        allocator.rebuild();
+        schedule.clear();
+        activeVoiceCount = allocator.getActiveCount();
+        framesRendered = framePosition;
+    }
+    
+    /**
+     * Planar mix of the last block rendered with {@code renderBlock(true)}, before the master stage
+     */
+    float[] getMixLeft() {
+        return mixLeft;
+    }
+    
+    float[] getMixRight() {
+        return mixRight;
+    }
+    
+    /**
+     * Sends to one aux bus in the last block rendered with {@code renderBlock(true)}, before its effect
+     */
+    float[] getSendLeft(int bus) {
+        return sendLeft[bus];
+    }
+    
+    float[] getSendRight(int bus) {
+        return sendRight[bus];
+    }
+    
+    AuxBus[] getAuxBuses() {
+        return auxBuses;
+    }
+    
+    /**
+     * Move one drained event into the schedule. Render thread only.
+     */
+    private void scheduleEvent(int type, int padIndex, float velocity, float pitchCents, long frame) {
+        if (type == TriggerQueue.EVENT_CANCEL_SCHEDULED) {
+            schedule.removeFrom(blockStartFrame + 1);
+            return;
+        }
+        long target = frame == TriggerQueue.IMMEDIATE ? blockStartFrame : frame;
+        if (!schedule.add(type, padIndex, velocity, pitchCents, target)) {
+            droppedEventCount++;
+        }
+    }
+    
+    /**
+     * Apply one due event on the render thread
+     */
+    private void applyEvent(int type, int padIndex, float velocity, float pitchCents, long frame) {
+        switch (type) {
+            case TriggerQueue.EVENT_TRIGGER:
+                if (ducking) {
+                    ducker.trigger(padIndex, velocity); // ducks from this very frame
+                }
+                startVoice(padIndex, velocity, pitchCents, frame);
+                break;
+            case TriggerQueue.EVENT_STOP:
+                for (int slot = allocator.first(); slot >= 0; ) {
+                    int following = allocator.next(slot);
+                    if (padIndex < 0 || voices[slot].padIndex == padIndex) {
+                        allocator.stop(slot);
+                    }
+                    slot = following;
+                }
+                break;
+            case TriggerQueue.EVENT_RELEASE:
+                for (int slot = allocator.first(); slot >= 0; ) {
+                    int following = allocator.next(slot);
+                    Voice voice = voices[slot];
+                    if (padIndex < 0 || voice.padIndex == padIndex) {
+                        voice.release();
+                        if (!voice.active) {
+                            allocator.release(slot);
+                        }
+                    }
+                    slot = following;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void startVoice(int padIndex, float velocity, float pitchCents, long frame) {
+        SampleBank live = liveBank;
+        SampleZones zones = live.getZones(padIndex);
+        if (zones == null) {
+            return;
+        }
+        PcmSample sample = zones.select(velocity, roundRobin[padIndex]);
+        roundRobin[padIndex] = (roundRobin[padIndex] + 1) & Integer.MAX_VALUE;
+        int group = padChokeGroups[padIndex];
+        if (group != 0) {
+            choke(group, padIndex);
+        }
+        int slot = allocator.allocate(padIndex, padMaxVoices[padIndex], stealPolicy);
+        long step = Voice.stepForCents(clampPitch(padPitches[padIndex] + pitchCents));
+        Voice voice = voices[slot];
+        voice.start(padIndex, live, sample, padVolumes[padIndex] * velocity, step, frame, allocator.nextSerial());
+        voice.startEnvelope(padEnvelopes[padIndex], padModes[padIndex], sampleRate);
+        voice.startFilter(padFilters[padIndex], velocity, sampleRate);
+        if (!voice.active) {
+            allocator.release(slot); // an envelope with no attack, decay or sustain
+        }
+    }
+    
+    /**
+     * Stop the voices of every other pad in a choke group
+     */
+    private void choke(int group, int padIndex) {
+        for (int slot = allocator.first(); slot >= 0; ) {
+            int following = allocator.next(slot);
+            int pad = voices[slot].padIndex;
+            if (pad != padIndex && padChokeGroups[pad] == group) {
+                allocator.stop(slot);
+                chokeCount++;
+            }
+            slot = following;
+        }
+    }
+    
+    private static float clampPitch(float cents) {
+        return Math.max(-Constants.MAX_PITCH_CENTS, Math.min(Constants.MAX_PITCH_CENTS, cents));
+    }
+    
+    /**
+     * Number of voices still playing after the last rendered block
+     */
+    public int getActiveVoiceCount() {
+        return activeVoiceCount;
+    }
+    
+    public long getFramesRendered() {
+        return framesRendered;
+    }
+    
+    /**
+     * Voices cut off because the pool was full or a pad hit its voice limit
+     */
+    public long getStealCount() {
+        return stealCount;
+    }
+    
+    /**
+     * Voices stopped by a choke group
+     */
+    public long getChokeCount() {
+        return chokeCount;
+    }
+    
+    /**
+     * Events lost because the schedule was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount;
+    }
+    
+    public TriggerQueue getTriggerQueue() {
+        return triggerQueue;
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    public int getBlockFrames() {
+        return blockFrames;
+    }
+    
+    public int getMaxVoices() {
+        return voices.length;
+    }
+}
@@ -1,13 +1,21 @@
 package com.pixandroid.musicpad.audio;
 
 import android.content.Context;
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Sound pack management system
+ * Sound pack management system.
+ *
+ * A pad usually has one sound. Pads can also have several, as velocity
+ * layers and round-robin alternates; see {@link #addLayer}.
  */
 public class SoundPack {
     
@@ -16,6 +24,8 @@ public class SoundPack {
     private boolean isPremium;
     private boolean isDownloaded;
     private List<SoundInfo> sounds;
+    private final SoundInfo[] padSounds; // first sound of each pad
+    private File packFile;
     
     public SoundPack(String name, String description, boolean isPremium) {
         this.name = name;
@@ -23,34 +33,172 @@ public class SoundPack {
         this.isPremium = isPremium;
         this.isDownloaded = !isPremium; // Free packs are pre-downloaded
         this.sounds = new ArrayList<>();
+        this.padSounds = new SoundInfo[Constants.TOTAL_PADS];
+    }
+    
+    /**
+     * Open a converted SamplePackFile as a pack. Its sounds have no resource id;
+     * they are mapped from the file when the pack is loaded.
+     */
+    public static SoundPack fromPackFile(String name, String description, File file) throws IOException {
+        SoundPack pack = new SoundPack(name, description, false);
+        try (SamplePackFile packFile = SamplePackFile.open(file)) {
+            for (int i = 0; i < packFile.getEntryCount(); i++) {
+                pack.addLayer(packFile.getPadIndex(i), packFile.getName(i), 0, packFile.getMaxVelocity(i));
+            }
+        }
+        pack.setPackFile(file);
+        return pack;
     }
     
     /**
      * Add a sound to the pack
      */
     public void addSound(int padIndex, String soundName, int resourceId) {
-        sounds.add(new SoundInfo(padIndex, soundName, resourceId));
+        add(new SoundInfo(padIndex, soundName, resourceId));
+    }
+    
+    /**
+     * Add a sound that chokes the other pads of {@code chokeGroup}, e.g. both hi-hats in one group
+     */
+    public void addSound(int padIndex, String soundName, int resourceId, int chokeGroup) {
+        SoundInfo sound = new SoundInfo(padIndex, soundName, resourceId);
+        sound.chokeGroup = chokeGroup;
+        add(sound);
+    }
+    
+    /**
+     * Add a velocity-layered sample to a pad. It plays for velocities up to
+     * {@code maxVelocity} (0..1) and above the next lower layer; samples added
+     * with the same {@code maxVelocity} alternate round-robin. Voice limit,
+     * choke group, mode and envelope come from the pad's first sound.
+     */
+    public void addLayer(int padIndex, String soundName, int resourceId, float maxVelocity) {
+        SoundInfo sound = new SoundInfo(padIndex, soundName, resourceId);
+        sound.maxVelocity = maxVelocity;
+        add(sound);
+    }
+    
+    private void add(SoundInfo sound) {
+        sounds.add(sound);
+        if (sound.padIndex >= 0 && sound.padIndex < padSounds.length && padSounds[sound.padIndex] == null) {
+            padSounds[sound.padIndex] = sound;
+        }
     }
     
     /**
      * Load all sounds from this pack into the audio engine
      */
     public void loadIntoEngine(Context context, AudioEngine audioEngine) {
+        applyVoiceSettings(audioEngine);
+        if (packFile != null && audioEngine.loadPackFile(packFile) >= 0) {
+            return;
+        }
+        
+        // Pin this pack first so its own loads cannot evict each other
+        SampleCache cache = audioEngine.getSampleCache();
+        if (cache != null) {
+            cache.pinOnly(getCacheKeys(audioEngine.getSampleRate()));
+        }
+        for (int pad = 0; pad < padSounds.length; pad++) {
+            if (padSounds[pad] != null) {
+                audioEngine.loadPadSounds(context, pad, getSoundsForPad(pad));
+            }
+        }
+    }
+    
+    /**
+     * Load this pack on the engine's loader pool. The future completes when every
+     * pad is playable or has failed. A converted pack file is mapped when set,
+     * falling back to decoding the resources if the file cannot be opened.
+     */
+    public CompletableFuture<PackLoadResult> loadIntoEngineAsync(Context context, AudioEngine audioEngine) {
+        CompletableFuture<PackLoadResult> load;
+        if (packFile != null && audioEngine.getBackend() == AudioEngine.Backend.MIXER) {
+            load = audioEngine.loadPackFileAsync(name, packFile)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(result);
+                    }
+                    if (error.getCause() instanceof CancellationException) {
+                        // Superseded by a newer load, nothing to fall back to
+                        CompletableFuture<PackLoadResult> cancelled = new CompletableFuture<>();
+                        cancelled.completeExceptionally(error);
+                        return cancelled;
+                    }
+                    return loadResourcesAsync(context, audioEngine);
+                })
+                .thenCompose(future -> future);
+        } else {
+            load = loadResourcesAsync(context, audioEngine);
+        }
+        return load.thenApply(result -> {
+            applyVoiceSettings(audioEngine);
+            return result;
+        });
+    }
+    
+    /**
+     * Apply this pack's per-pad voice limits, choke groups, modes and envelopes,
+     * resetting them on pads it does not use
+     */
+    public void applyVoiceSettings(AudioEngine audioEngine) {
+        for (int pad = 0; pad < Constants.TOTAL_PADS; pad++) {
+            audioEngine.setPadMaxVoices(pad, 0);
+            audioEngine.setPadChokeGroup(pad, 0);
+            audioEngine.setPadMode(pad, PadMode.ONE_SHOT);
+            audioEngine.setPadEnvelope(pad, Envelope.DEFAULT);
+        }
+        for (SoundInfo sound : padSounds) {
+            if (sound != null) {
+                audioEngine.setPadMaxVoices(sound.padIndex, sound.maxVoices);
+                audioEngine.setPadChokeGroup(sound.padIndex, sound.chokeGroup);
+                audioEngine.setPadMode(sound.padIndex, sound.mode);
+                audioEngine.setPadEnvelope(sound.padIndex, sound.envelope);
+            }
+        }
+    }
+    
+    private CompletableFuture<PackLoadResult> loadResourcesAsync(Context context, AudioEngine audioEngine) {
+        SampleCache cache = audioEngine.getSampleCache();
+        if (cache != null) {
+            cache.pinOnly(getCacheKeys(audioEngine.getSampleRate()));
+        }
+        return audioEngine.loadSoundsAsync(context, name, sounds);
+    }
+    
+    /**
+     * Sample cache keys of every sound in this pack converted to {@code sampleRate}
+     */
+    public List<String> getCacheKeys(int sampleRate) {
+        List<String> keys = new ArrayList<>(sounds.size());
         for (SoundInfo sound : sounds) {
-            audioEngine.loadSound(context, sound.padIndex, sound.resourceId);
+            keys.add(SampleCache.resourceKey(sound.resourceId, sampleRate));
         }
+        return keys;
     }
     
     /**
-     * Get sound info for a specific pad
+     * Get sound info for a specific pad, its first sound when it has layers
      */
     public SoundInfo getSoundForPad(int padIndex) {
+        if (padIndex >= 0 && padIndex < padSounds.length) {
+            return padSounds[padIndex];
+        }
+        return null;
+    }
+    
+    /**
+     * Every sound of a pad, layers and alternates in the order they were added
+     */
+    public List<SoundInfo> getSoundsForPad(int padIndex) {
+        List<SoundInfo> padList = new ArrayList<>();
         for (SoundInfo sound : sounds) {
             if (sound.padIndex == padIndex) {
-                return sound;
+                padList.add(sound);
             }
         }
-        return null;
+        return padList;
     }
     
     // Getters and Setters
@@ -86,6 +234,17 @@ public class SoundPack {
         isDownloaded = downloaded;
     }
     
+    /**
+     * Converted sample file for this pack, loaded instead of decoding resources when set
+     */
+    public File getPackFile() {
+        return packFile;
+    }
+    
+    public void setPackFile(File packFile) {
+        this.packFile = packFile;
+    }
+    
     public List<SoundInfo> getSounds() {
         return sounds;
     }
@@ -101,6 +260,11 @@ public class SoundPack {
         public int padIndex;
         public String soundName;
         public int resourceId;
+        public int maxVoices; // 0 = no limit
+        public int chokeGroup; // 0 = none, pads sharing a group cut each other off
+        public float maxVelocity = 1.0f; // top of this sample's velocity layer
+        public PadMode mode = PadMode.ONE_SHOT;
+        public Envelope envelope = Envelope.DEFAULT;
         
         public SoundInfo(int padIndex, String soundName, int resourceId) {
             this.padIndex = padIndex;
@@ -109,6 +273,18 @@ public class SoundPack {
         }
     }
     
+    /**
+     * Find a default pack by name
+     */
+    public static SoundPack findPack(String name) {
+        for (SoundPack pack : getDefaultPacks()) {
+            if (pack.getName().equals(name)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+    
     /**
      * Create default sound packs
      */
@@ -0,0 +1,123 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Stereo state-variable filter for one voice: low, high or band pass with
+ * resonance, after Andrew Simper's trapezoidal (zero-delay feedback) SVF.
+ *
+ * Unlike the classic Chamberlin SVF it stays stable and in tune right up to
+ * Nyquist, and the cutoff can move without the state blowing up. The
+ * prewarped gain {@code tan(pi * cutoff / rate)} comes from a table with
+ * linear interpolation, so setting a cutoff costs a lookup and a division,
+ * never a trig call. Filtering is about a dozen multiply-adds per frame and
+ * channel, both channels in one pass. Render thread only.
+ */
+final class StateVariableFilter {
+    
+    private static final int TAN_SIZE = 2048;
+    private static final double MAX_NORMALIZED = 0.49; // cutoff / sample rate
+    private static final float[] TAN = new float[TAN_SIZE + 1];
+    private static final float MAX_DAMPING = 2.0f; // k = 1 / Q; 2 is Q 0.5, no peak
+    private static final float MIN_DAMPING = 0.05f; // Q 20, just short of self-oscillation
+    private static final float FLUSH = 1e-20f; // state below this is zeroed before it turns subnormal
+    
+    static {
+        for (int i = 0; i <= TAN_SIZE; i++) {
+            TAN[i] = (float) Math.tan(Math.PI * MAX_NORMALIZED * i / TAN_SIZE);
+        }
+    }
+    
+    private PadFilter.Type type;
+    private float a1;
+    private float a2;
+    private float a3;
+    private float k;
+    
+    private float ic1Left;
+    private float ic2Left;
+    private float ic1Right;
+    private float ic2Right;
+    
+    /**
+     * {@code tan(pi * cutoff / sampleRate)} from the table, cutoff kept below Nyquist
+     */
+    static float prewarp(float cutoff, int sampleRate) {
+        float position = Math.max(0.0f, cutoff / sampleRate) * (float) (TAN_SIZE / MAX_NORMALIZED);
+        if (position >= TAN_SIZE) {
+            return TAN[TAN_SIZE];
+        }
+        int index = (int) position;
+        return TAN[index] + (TAN[index + 1] - TAN[index]) * (position - index);
+    }
+    
+    /**
+     * Design the filter. The state is kept, so a cutoff can move while the filter runs.
+     */
+    void setup(PadFilter.Type type, float cutoff, float resonance, int sampleRate) {
+        this.type = type;
+        float g = prewarp(cutoff, sampleRate);
+        k = MAX_DAMPING - (MAX_DAMPING - MIN_DAMPING) * resonance;
+        a1 = 1.0f / (1.0f + g * (g + k));
+        a2 = g * a1;
+        a3 = g * a2;
+    }
+    
+    /**
+     * Filter frames {@code from} to {@code to} of planar stereo buffers in place
+     */
+    void process(float[] left, float[] right, int from, int to) {
+        float c1 = a1;
+        float c2 = a2;
+        float c3 = a3;
+        float l1 = ic1Left;
+        float l2 = ic2Left;
+        float r1 = ic1Right;
+        float r2 = ic2Right;
+        // The outputs are low = v2, band = v1 and high = v0 - k * v1 - v2
+        float lowMix = type == PadFilter.Type.LOW_PASS ? 1.0f : type == PadFilter.Type.HIGH_PASS ? -1.0f : 0.0f;
+        float bandMix = type == PadFilter.Type.BAND_PASS ? 1.0f : type == PadFilter.Type.HIGH_PASS ? -k : 0.0f;
+        float inputMix = type == PadFilter.Type.HIGH_PASS ? 1.0f : 0.0f;
+        for (int i = from; i < to; i++) {
+            float xl = left[i];
+            float v3 = xl - l2;
+            float v1 = c1 * l1 + c2 * v3;
+            float v2 = l2 + c2 * l1 + c3 * v3;
+            l1 = 2.0f * v1 - l1;
+            l2 = 2.0f * v2 - l2;
+            left[i] = inputMix * xl + bandMix * v1 + lowMix * v2;
+            
+            float xr = right[i];
+            v3 = xr - r2;
+            v1 = c1 * r1 + c2 * v3;
+            v2 = r2 + c2 * r1 + c3 * v3;
+            r1 = 2.0f * v1 - r1;
+            r2 = 2.0f * v2 - r2;
+            right[i] = inputMix * xr + bandMix * v1 + lowMix * v2;
+        }
+        ic1Left = Math.abs(l1) < FLUSH ? 0.0f : l1;
+        ic2Left = Math.abs(l2) < FLUSH ? 0.0f : l2;
+        ic1Right = Math.abs(r1) < FLUSH ? 0.0f : r1;
+        ic2Right = Math.abs(r2) < FLUSH ? 0.0f : r2;
+    }
+    
+    void reset() {
+        ic1Left = 0.0f;
+        ic2Left = 0.0f;
+        ic1Right = 0.0f;
+        ic2Right = 0.0f;
+    }
+    
+    /**
+     * Copy the design and state of another filter, used to snapshot and restore voices
+     */
+    void copyFrom(StateVariableFilter other) {
+        type = other.type;
+        a1 = other.a1;
+        a2 = other.a2;
+        a3 = other.a3;
+        k = other.k;
+        ic1Left = other.ic1Left;
+        ic2Left = other.ic2Left;
+        ic1Right = other.ic1Right;
+        ic2Right = other.ic2Right;
+    }
+}
@@ -0,0 +1,14 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Which voice the mixer cuts off when a trigger finds the voice pool full
+ */
+public enum StealPolicy {
+    
+    /** The voice that started first */
+    OLDEST,
+    /** The voice with the lowest gain, oldest first on ties */
+    QUIETEST,
+    /** The oldest voice of the triggering pad, falling back to the oldest overall */
+    SAME_PAD
+}
@@ -0,0 +1,317 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.Arrays;
+
+/**
+ * Tempo-synced stereo delay with filtered feedback.
+ *
+ * The delay lines are allocated once, long enough for the longest
+ * {@link Division} at {@link Constants#MIN_BPM}, so changing the tempo or the
+ * division only moves the read position. A new delay time is faded in
+ * from the old one over {@link #CROSSFADE_FRAMES} instead of jumping, which
+ * avoids clicks and pitch sweeps. The feedback path runs through a one-pole low-pass (damping)
+ * and a one-pole high-pass (low cut), so repeats get darker and thinner
+ * instead of building up mud.
+ *
+ * Settings may be changed from any thread. They are published as one
+ * {@link EffectParams} snapshot that the render thread reads at the start of
+ * each block; mix and feedback then glide toward their new values with
+ * {@link SmoothedValue}, ramped sample by sample, and the filter cutoffs glide
+ * block by block, so sweeping a control never steps or clicks.
+ * {@link #process} does not allocate and has no Android dependencies.
+ */
+public final class StereoDelay implements AudioProcessor {
+    
+    /**
+     * Delay time as a note value
+     */
+    public enum Division {
+        SIXTEENTH(0.25f),
+        EIGHTH(0.5f),
+        DOTTED_EIGHTH(0.75f),
+        QUARTER(1.0f),
+        DOTTED_QUARTER(1.5f),
+        HALF(2.0f);
+        
+        private final float beats;
+        
+        Division(float beats) {
+            this.beats = beats;
+        }
+        
+        public float getBeats() {
+            return beats;
+        }
+    }
+    
+    private static final Division[] DIVISIONS = Division.values();
+    private static final float MAX_FEEDBACK = 0.95f;
+    static final int CROSSFADE_FRAMES = 1024; // ~21 ms at 48 kHz
+    
+    // Indices into the parameter snapshot
+    private static final int BPM = 0;
+    private static final int DIVISION = 1;
+    private static final int FEEDBACK = 2;
+    private static final int MIX = 3;
+    private static final int PING_PONG = 4;
+    private static final int DAMPING = 5;
+    private static final int LOW_CUT = 6;
+    
+    private final int sampleRate;
+    private final float[] lineLeft;
+    private final float[] lineRight;
+    private final int mask;
+    
+    private final EffectParams params;
+    
+    // Render thread state
+    private final SmoothedValue feedback = new SmoothedValue();
+    private final SmoothedValue mix = new SmoothedValue();
+    private final SmoothedValue damping = new SmoothedValue();
+    private final SmoothedValue lowCut = new SmoothedValue();
+    private int writePos;
+    private float delayFrames = -1;
+    private float fadeFromFrames;
+    private int fadeDone = CROSSFADE_FRAMES; // frames of the current crossfade already played
+    private float dampLeft;
+    private float dampRight;
+    private float lowLeft;
+    private float lowRight;
+    
+    public StereoDelay(int sampleRate) {
+        this.sampleRate = sampleRate;
+        float longest = 0;
+        for (Division d : Division.values()) {
+            longest = Math.max(longest, d.beats);
+        }
+        int maxFrames = (int) Math.ceil(framesFor(Constants.MIN_BPM, longest)) + 2;
+        int size = Integer.highestOneBit(maxFrames) << 1;
+        lineLeft = new float[size];
+        lineRight = new float[size];
+        mask = size - 1;
+        params = new EffectParams(Constants.DEFAULT_BPM, Division.EIGHTH.ordinal(), 0.35f, 0.3f, 0.0f,
+            onePole(6000.0f), onePole(120.0f));
+    }
+    
+    /**
+     * Follow the session tempo, clamped to the supported range
+     */
+    public void setBpm(int bpm) {
+        params.set(BPM, Math.max(Constants.MIN_BPM, Math.min(Constants.MAX_BPM, bpm)));
+    }
+    
+    public int getBpm() {
+        return (int) params.get(BPM);
+    }
+    
+    public void setDivision(Division division) {
+        if (division != null) {
+            params.set(DIVISION, division.ordinal());
+        }
+    }
+    
+    public Division getDivision() {
+        return DIVISIONS[(int) params.get(DIVISION)];
+    }
+    
+    /**
+     * Share of each repeat fed back into the line, 0..0.95
+     */
+    public void setFeedback(float feedback) {
+        params.set(FEEDBACK, Math.max(0.0f, Math.min(MAX_FEEDBACK, feedback)));
+    }
+    
+    public float getFeedback() {
+        return params.get(FEEDBACK);
+    }
+    
+    /**
+     * Level of the repeats added to the dry signal, 0..1
+     */
+    public void setMix(float mix) {
+        params.set(MIX, Math.max(0.0f, Math.min(1.0f, mix)));
+    }
+    
+    public float getMix() {
+        return params.get(MIX);
+    }
+    
+    /**
+     * Bounce repeats between the left and right channels
+     */
+    public void setPingPong(boolean pingPong) {
+        params.set(PING_PONG, pingPong ? 1.0f : 0.0f);
+    }
+    
+    public boolean isPingPong() {
+        return params.get(PING_PONG) != 0.0f;
+    }
+    
+    /**
+     * Cutoff of the low-pass in the feedback path
+     */
+    public void setDamping(float hz) {
+        params.set(DAMPING, onePole(hz));
+    }
+    
+    /**
+     * Cutoff of the high-pass in the feedback path
+     */
+    public void setLowCut(float hz) {
+        params.set(LOW_CUT, onePole(hz));
+    }
+    
+    /**
+     * Current delay time in frames at the set tempo and division
+     */
+    public float getTargetFrames() {
+        float[] p = params.snapshot();
+        return framesFor((int) p[BPM], DIVISIONS[(int) p[DIVISION]].beats);
+    }
+    
+    /**
+     * Frames until a single repeat has died away by 60 dB, at the current settings
+     */
+    public long getTailFrames() {
+        float target = getTargetFrames();
+        float fb = getFeedback();
+        if (fb <= 0.0f) {
+            return (long) Math.ceil(target);
+        }
+        return (long) Math.ceil(target * (1 + -3.0 / Math.log10(fb)));
+    }
+    
+    /**
+     * Longest delay the preallocated lines can hold, in frames
+     */
+    public int getCapacityFrames() {
+        return mask - 1;
+    }
+    
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        float[] p = params.snapshot();
+        float target = framesFor((int) p[BPM], DIVISIONS[(int) p[DIVISION]].beats);
+        boolean cross = p[PING_PONG] != 0.0f;
+        float glide = SmoothedValue.coefficient(frames, sampleRate);
+        feedback.advance(p[FEEDBACK], glide);
+        mix.advance(p[MIX], glide);
+        damping.advance(p[DAMPING], glide);
+        lowCut.advance(p[LOW_CUT], glide);
+        float fb = feedback.getStart();
+        float fbStep = (feedback.getEnd() - fb) / frames;
+        float wet = mix.getStart();
+        float wetStep = (mix.getEnd() - wet) / frames;
+        float damp = damping.getEnd();
+        float cut = lowCut.getEnd();
+        
+        // Start a crossfade from the old tap when the time changes, once the previous one is done
+        if (delayFrames < 0) {
+            delayFrames = target;
+        } else if (target != delayFrames && fadeDone >= CROSSFADE_FRAMES) {
+            fadeFromFrames = delayFrames;
+            delayFrames = target;
+            fadeDone = 0;
+        }
+        boolean fading = fadeDone < CROSSFADE_FRAMES;
+        float fade = (float) fadeDone / CROSSFADE_FRAMES;
+        float fadeStep = 1.0f / CROSSFADE_FRAMES;
+        
+        float[] lineL = lineLeft;
+        float[] lineR = lineRight;
+        int m = mask;
+        // Offset by the line length so read positions stay positive and a cast floors them
+        double tapOffset = m + 1 - (double) delayFrames;
+        double fadeOffset = m + 1 - (double) fadeFromFrames;
+        int w = writePos;
+        float dl = dampLeft;
+        float dr = dampRight;
+        float ll = lowLeft;
+        float lr = lowRight;
+        
+        for (int i = 0; i < frames; i++) {
+            float yl = tap(lineL, m, w + tapOffset);
+            float yr = tap(lineR, m, w + tapOffset);
+            if (fading) {
+                float g = Math.min(1.0f, fade + fadeStep * i);
+                float oldL = tap(lineL, m, w + fadeOffset);
+                float oldR = tap(lineR, m, w + fadeOffset);
+                yl = oldL + (yl - oldL) * g;
+                yr = oldR + (yr - oldR) * g;
+            }
+            
+            // Darken and thin out what is fed back
+            dl += damp * (yl - dl);
+            dr += damp * (yr - dr);
+            ll += cut * (dl - ll);
+            lr += cut * (dr - lr);
+            fb += fbStep;
+            float fl = (dl - ll) * fb;
+            float fr = (dr - lr) * fb;
+            
+            float inL = left[i];
+            float inR = right[i];
+            if (cross) {
+                lineL[w] = (inL + inR) * 0.5f + fr;
+                lineR[w] = fl;
+            } else {
+                lineL[w] = inL + fl;
+                lineR[w] = inR + fr;
+            }
+            w = (w + 1) & m;
+            
+            wet += wetStep;
+            left[i] = inL + yl * wet;
+            right[i] = inR + yr * wet;
+        }
+        
+        writePos = w;
+        if (fading) {
+            fadeDone = Math.min(CROSSFADE_FRAMES, fadeDone + frames);
+        }
+        dampLeft = dl;
+        dampRight = dr;
+        lowLeft = ll;
+        lowRight = lr;
+    }
+    
+    /**
+     * Clear the lines and filters. Render thread only, or while the delay is not processing.
+     */
+    @Override
+    public void reset() {
+        Arrays.fill(lineLeft, 0.0f);
+        Arrays.fill(lineRight, 0.0f);
+        writePos = 0;
+        delayFrames = -1;
+        fadeDone = CROSSFADE_FRAMES;
+        dampLeft = 0;
+        dampRight = 0;
+        lowLeft = 0;
+        lowRight = 0;
+        feedback.reset();
+        mix.reset();
+        damping.reset();
+        lowCut.reset();
+    }
+    
+    /**
+     * Linearly interpolated read at a fractional line position
+     */
+    private static float tap(float[] line, int mask, double position) {
+        int index = (int) position;
+        float frac = (float) (position - index);
+        float a = line[index & mask];
+        return a + (line[(index + 1) & mask] - a) * frac;
+    }
+    
+    private float framesFor(int bpm, float beats) {
+        return beats * 60.0f / bpm * sampleRate;
+    }
+    
+    private float onePole(float hz) {
+        float clamped = Math.max(1.0f, Math.min(0.45f * sampleRate, hz));
+        return (float) (1.0 - Math.exp(-2.0 * Math.PI * clamped / sampleRate));
+    }
+}
@@ -0,0 +1,77 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic transport clock measured in audio frames.
+ *
+ * The render thread anchors the clock to the first frame of every block it
+ * renders; other threads read it and interpolate from the anchor with
+ * {@link System#nanoTime()}, which is monotonic and unaffected by wall-clock
+ * changes. Without a render thread the clock free-runs from its creation
+ * time. Values returned by {@link #currentFrame()} never decrease.
+ */
+public final class TransportClock {
+    
+    private final int sampleRate;
+    
+    // Seqlock guarding the (frame, nanos) anchor pair: odd while being written
+    private volatile int sequence;
+    private volatile long anchorFrame;
+    private volatile long anchorNanos;
+    
+    private final AtomicLong lastReported = new AtomicLong();
+    
+    public TransportClock(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.anchorNanos = System.nanoTime();
+    }
+    
+    /**
+     * Anchor the clock to a rendered frame. Render thread only.
+     */
+    public void publish(long framePosition) {
+        long now = System.nanoTime();
+        int seq = sequence;
+        sequence = seq + 1;
+        anchorFrame = framePosition;
+        anchorNanos = now;
+        sequence = seq + 2;
+    }
+    
+    /**
+     * Estimate the current frame position. Safe to call from any thread.
+     */
+    public long currentFrame() {
+        long frame;
+        long nanos;
+        int seq;
+        do {
+            seq = sequence;
+            frame = anchorFrame;
+            nanos = anchorNanos;
+        } while ((seq & 1) != 0 || seq != sequence);
+        
+        long elapsed = Math.max(0L, System.nanoTime() - nanos);
+        long estimate = frame + elapsed * sampleRate / 1_000_000_000L;
+        return lastReported.accumulateAndGet(estimate, Math::max);
+    }
+    
+    /**
+     * Convert a frame count to milliseconds at the clock rate
+     */
+    public long framesToMs(long frames) {
+        return frames * 1000L / sampleRate;
+    }
+    
+    /**
+     * Convert milliseconds to a frame count at the clock rate
+     */
+    public long msToFrames(long ms) {
+        return ms * sampleRate / 1000L;
+    }
+    
+    public int getSampleRate() {
+        return sampleRate;
+    }
+}
@@ -0,0 +1,115 @@
+package com.pixandroid.musicpad.audio;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of pad events.
+ *
+ * The producer is the thread that handles touch input; the consumer is the
+ * render thread, which drains the queue at the start of every block. Events
+ * are stored in parallel primitive arrays that are allocated once, so neither
+ * side allocates, boxes or blocks. A full queue drops the event instead of
+ * waiting for the render thread.
+ */
+public final class TriggerQueue {
+    
+    /** Start a voice on the pad */
+    public static final int EVENT_TRIGGER = 0;
+    /** Stop every voice of the pad, or all voices when the pad is -1 */
+    public static final int EVENT_STOP = 1;
+    /** Drop every event scheduled for a future block */
+    public static final int EVENT_CANCEL_SCHEDULED = 2;
+    /** Release every voice of the pad, or of all pads when the pad is -1 */
+    public static final int EVENT_RELEASE = 3;
+    
+    /** Frame value for events that should play as soon as possible */
+    public static final long IMMEDIATE = -1L;
+    
+    private final int mask;
+    private final int[] types;
+    private final int[] pads;
+    private final float[] velocities;
+    private final float[] pitches;
+    private final long[] frames;
+    
+    // Consumer position, written by the render thread only
+    private final AtomicLong head = new AtomicLong();
+    // Producer position, written by the input thread only
+    private final AtomicLong tail = new AtomicLong();
+    
+    // Producer-local copy of head, refreshed only when the ring looks full
+    private long cachedHead;
+    
+    /**
+     * Callback used by the consumer to receive drained events
+     */
+    public interface Receiver {
+        void onEvent(int type, int padIndex, float velocity, float pitchCents, long frame);
+    }
+    
+    /**
+     * @param capacity number of pending events, rounded up to a power of two
+     */
+    public TriggerQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        types = new int[size];
+        pads = new int[size];
+        velocities = new float[size];
+        pitches = new float[size];
+        frames = new long[size];
+    }
+    
+    /**
+     * Enqueue an event. Producer thread only.
+     *
+     * @param pitchCents pitch offset for triggers, added to the pad's own pitch
+     * @return false if the queue is full and the event was dropped
+     */
+    public boolean offer(int type, int padIndex, float velocity, float pitchCents, long frame) {
+        long t = tail.get();
+        if (t - cachedHead > mask) {
+            cachedHead = head.get();
+            if (t - cachedHead > mask) {
+                return false;
+            }
+        }
+        
+        int i = (int) t & mask;
+        types[i] = type;
+        pads[i] = padIndex;
+        velocities[i] = velocity;
+        pitches[i] = pitchCents;
+        frames[i] = frame;
+        tail.lazySet(t + 1);
+        return true;
+    }
+    
+    /**
+     * Hand every pending event to the receiver. Consumer thread only.
+     *
+     * @return number of events drained
+     */
+    public int drainTo(Receiver receiver) {
+        long h = head.get();
+        long t = tail.get();
+        if (h == t) {
+            return 0;
+        }
+        
+        for (long p = h; p < t; p++) {
+            int i = (int) p & mask;
+            receiver.onEvent(types[i], pads[i], velocities[i], pitches[i], frames[i]);
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+    
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+    
+    public int capacity() {
+        return mask + 1;
+    }
+}
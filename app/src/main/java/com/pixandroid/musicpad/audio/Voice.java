@@ -0,0 +1,424 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * A single playing instance of a pad sample inside the software mixer.
+ * Voices are preallocated by the mixer and recycled, never created per trigger.
+ *
+ * The play position is fixed point with {@link #FRACTION_BITS} fractional
+ * bits and moves by {@code step} per output frame, so pitched voices advance
+ * exactly the same way whether they are rendered or only advanced.
+ *
+ * Gain follows an {@link Envelope} made of linear ramps. Rendering splits the
+ * requested frames into runs that end where a stage ends, the sample ends or
+ * a loop wraps, and each run is mixed with a constant gain increment, so the
+ * inner loops never test the envelope stage per frame.
+ *
+ * A voice can also run through its own {@link StateVariableFilter}, set up
+ * once per trigger from the pad's {@link PadFilter}. The mixer applies it to
+ * the voice's rendered frames before they join the mix.
+ */
+final class Voice {
+    
+    static final int FRACTION_BITS = 32;
+    static final long UNITY_STEP = 1L << FRACTION_BITS;
+    private static final long FRACTION_MASK = UNITY_STEP - 1;
+    private static final int PHASE_SHIFT = FRACTION_BITS - Interpolation.PHASE_BITS;
+    
+    static final int STAGE_ATTACK = 0;
+    static final int STAGE_DECAY = 1;
+    static final int STAGE_SUSTAIN = 2;
+    static final int STAGE_RELEASE = 3;
+    
+    boolean active;
+    int padIndex;
+    PcmSample sample;
+    long position;
+    long step;
+    float gainLeft;
+    float gainRight;
+    long startFrame;
+    long serial;
+    SampleBank bank;
+    
+    PadMode mode = PadMode.ONE_SHOT;
+    int envStage;
+    float envLevel;
+    float envSlope; // level change per frame within the stage
+    float envTarget;
+    int envFramesLeft; // frames to the end of the stage, unused while sustaining
+    int decayFrames;
+    int releaseFrames;
+    float sustainLevel;
+    
+    final StateVariableFilter filter = new StateVariableFilter();
+    boolean filtered;
+    
+    void start(int padIndex, SampleBank bank, PcmSample sample, float gain, long step, long startFrame,
+            long serial) {
+        if (active) {
+            stop();
+        }
+        bank.acquireVoice();
+        this.bank = bank;
+        this.padIndex = padIndex;
+        this.sample = sample;
+        this.position = 0;
+        this.step = step;
+        this.gainLeft = gain;
+        this.gainRight = gain;
+        this.startFrame = startFrame;
+        this.serial = serial;
+        this.active = true;
+        this.mode = PadMode.ONE_SHOT;
+        this.envStage = STAGE_SUSTAIN;
+        this.envLevel = 1.0f;
+        this.envSlope = 0.0f;
+        this.envTarget = 1.0f;
+        this.sustainLevel = 1.0f;
+        this.filtered = false;
+    }
+    
+    /**
+     * Shape a voice just started with {@link #start}. Without this call the
+     * voice plays at full level as a one-shot.
+     */
+    void startEnvelope(Envelope envelope, PadMode mode, int sampleRate) {
+        this.mode = mode;
+        decayFrames = Envelope.toFrames(envelope.getDecayMs(), sampleRate);
+        releaseFrames = Envelope.toFrames(envelope.getReleaseMs(), sampleRate);
+        sustainLevel = envelope.getSustain();
+        envLevel = 0.0f;
+        envStage = STAGE_ATTACK;
+        ramp(1.0f, Envelope.toFrames(envelope.getAttackMs(), sampleRate));
+        if (envFramesLeft == 0) {
+            nextStage();
+        }
+    }
+    
+    /**
+     * Filter a voice just started with {@link #start} at the cutoff its velocity
+     * gives. Without this call the voice plays unfiltered.
+     */
+    void startFilter(PadFilter settings, float velocity, int sampleRate) {
+        filtered = settings.isEnabled();
+        if (filtered) {
+            filter.setup(settings.getType(), settings.cutoffFor(velocity), settings.getResonance(), sampleRate);
+            filter.reset();
+        }
+    }
+    
+    /**
+     * Let go of a gated or looping voice: fade out from the current level over
+     * the release. One-shot voices ignore it.
+     */
+    void release() {
+        if (mode == PadMode.ONE_SHOT || envStage == STAGE_RELEASE) {
+            return;
+        }
+        envStage = STAGE_RELEASE;
+        ramp(0.0f, releaseFrames);
+        if (envFramesLeft == 0) {
+            stop();
+        }
+    }
+    
+    void stop() {
+        active = false;
+        sample = null;
+        if (bank != null) {
+            bank.releaseVoice();
+            bank = null;
+        }
+    }
+    
+    /**
+     * Copy the playback state of another voice, used to snapshot and restore the mixer.
+     * The copy does not hold a reference on the other voice's bank.
+     */
+    void copyFrom(Voice other) {
+        bank = null;
+        active = other.active;
+        padIndex = other.padIndex;
+        sample = other.sample;
+        position = other.position;
+        step = other.step;
+        gainLeft = other.gainLeft;
+        gainRight = other.gainRight;
+        startFrame = other.startFrame;
+        serial = other.serial;
+        mode = other.mode;
+        envStage = other.envStage;
+        envLevel = other.envLevel;
+        envSlope = other.envSlope;
+        envTarget = other.envTarget;
+        envFramesLeft = other.envFramesLeft;
+        decayFrames = other.decayFrames;
+        releaseFrames = other.releaseFrames;
+        sustainLevel = other.sustainLevel;
+        filtered = other.filtered;
+        filter.copyFrom(other.filter);
+    }
+    
+    /**
+     * Current output level, used to pick the quietest voice to steal
+     */
+    float getLoudness() {
+        return Math.max(gainLeft, gainRight) * envLevel;
+    }
+    
+    /**
+     * Position step for a pitch offset; zero cents is exactly one frame per frame
+     */
+    static long stepForCents(float cents) {
+        if (cents == 0.0f) {
+            return UNITY_STEP;
+        }
+        return Math.round(Math.pow(2.0, cents / 1200.0) * UNITY_STEP);
+    }
+    
+    /**
+     * Output frames left before the position passes the last sample frame, capped at {@code frames}
+     */
+    private int framesLeft(int frames) {
+        long end = (long) sample.getFrames() << FRACTION_BITS;
+        return (int) Math.min(frames, (end - position + step - 1) / step);
+    }
+    
+    /**
+     * Move the play position and envelope exactly as {@link #render} would, without mixing
+     */
+    void advance(int frames) {
+        play(null, null, 0, frames, null);
+    }
+    
+    /**
+     * Mix up to {@code frames} frames into the planar mix buffers starting at {@code offset}
+     */
+    void render(float[] mixLeft, float[] mixRight, int offset, int frames, Interpolation interpolation) {
+        play(mixLeft, mixRight, offset, frames, interpolation);
+    }
+    
+    /**
+     * Run the voice for {@code frames} frames in runs of constant envelope slope,
+     * mixing each run unless {@code mixLeft} is null
+     */
+    private void play(float[] mixLeft, float[] mixRight, int offset, int frames, Interpolation interpolation) {
+        PcmSample s = sample;
+        long end = (long) s.getFrames() << FRACTION_BITS;
+        if (end == 0) {
+            stop();
+            return;
+        }
+        
+        while (frames > 0) {
+            boolean sustaining = envStage == STAGE_SUSTAIN;
+            int count = framesLeft(frames);
+            if (!sustaining) {
+                count = Math.min(count, envFramesLeft);
+            }
+            
+            if (mixLeft != null) {
+                float gl = gainLeft * envLevel;
+                float gr = gainRight * envLevel;
+                float dl = gainLeft * envSlope;
+                float dr = gainRight * envSlope;
+                if (step == UNITY_STEP && (position & FRACTION_MASK) == 0) {
+                    renderDirect(s, mixLeft, mixRight, offset, count, gl, gr, dl, dr);
+                } else if (interpolation == Interpolation.LINEAR) {
+                    renderLinear(s, mixLeft, mixRight, offset, count, gl, gr, dl, dr);
+                } else {
+                    renderCubic(s, mixLeft, mixRight, offset, count, gl, gr, dl, dr);
+                }
+            }
+            
+            position += step * count;
+            offset += count;
+            frames -= count;
+            if (position >= end) {
+                if (mode != PadMode.LOOP) {
+                    stop();
+                    return;
+                }
+                position %= end;
+            }
+            if (!sustaining) {
+                envFramesLeft -= count;
+                if (envFramesLeft == 0) {
+                    nextStage();
+                    if (!active) {
+                        return;
+                    }
+                } else {
+                    envLevel += envSlope * count;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Start a linear ramp from the current level to {@code target}; zero frames jumps straight there
+     */
+    private void ramp(float target, int frames) {
+        envTarget = target;
+        if (frames <= 0) {
+            envLevel = target;
+            envSlope = 0.0f;
+            envFramesLeft = 0;
+        } else {
+            envSlope = (target - envLevel) / frames;
+            envFramesLeft = frames;
+        }
+    }
+    
+    /**
+     * Finish the current stage at its exact target and move on, skipping empty stages
+     */
+    private void nextStage() {
+        envLevel = envTarget;
+        envSlope = 0.0f;
+        if (envStage == STAGE_ATTACK) {
+            envStage = STAGE_DECAY;
+            ramp(sustainLevel, decayFrames);
+            if (envFramesLeft > 0) {
+                return;
+            }
+        }
+        if (envStage == STAGE_DECAY) {
+            envStage = STAGE_SUSTAIN;
+            if (sustainLevel > 0.0f) {
+                return;
+            }
+        }
+        // Released, or decayed to silence
+        stop();
+    }
+    
+    private void renderDirect(PcmSample s, float[] mixLeft, float[] mixRight, int offset, int count,
+            float gl, float gr, float dl, float dr) {
+        int end = offset + count;
+        int frame = (int) (position >>> FRACTION_BITS);
+        
+        if (s.getChannels() == 2) {
+            int src = frame * 2;
+            for (int i = offset; i < end; i++) {
+                mixLeft[i] += s.get(src++) * gl;
+                mixRight[i] += s.get(src++) * gr;
+                gl += dl;
+                gr += dr;
+            }
+        } else {
+            int src = frame;
+            for (int i = offset; i < end; i++) {
+                float v = s.get(src++);
+                mixLeft[i] += v * gl;
+                mixRight[i] += v * gr;
+                gl += dl;
+                gr += dr;
+            }
+        }
+    }
+    
+    private void renderLinear(PcmSample s, float[] mixLeft, float[] mixRight, int offset, int count,
+            float gl, float gr, float dl, float dr) {
+        float[] table = Interpolation.LINEAR.getTable();
+        int end = offset + count;
+        int last = s.getFrames() - 1;
+        long pos = position;
+        long inc = step;
+        
+        if (s.getChannels() == 2) {
+            for (int i = offset; i < end; i++, pos += inc) {
+                int frame = (int) (pos >>> FRACTION_BITS);
+                int c = ((int) (pos >>> PHASE_SHIFT) & (Interpolation.PHASES - 1)) * 2;
+                int src = frame * 2;
+                float left = s.get(src) * table[c];
+                float right = s.get(src + 1) * table[c];
+                if (frame < last) {
+                    left += s.get(src + 2) * table[c + 1];
+                    right += s.get(src + 3) * table[c + 1];
+                }
+                mixLeft[i] += left * gl;
+                mixRight[i] += right * gr;
+                gl += dl;
+                gr += dr;
+            }
+        } else {
+            for (int i = offset; i < end; i++, pos += inc) {
+                int frame = (int) (pos >>> FRACTION_BITS);
+                int c = ((int) (pos >>> PHASE_SHIFT) & (Interpolation.PHASES - 1)) * 2;
+                float v = s.get(frame) * table[c];
+                if (frame < last) {
+                    v += s.get(frame + 1) * table[c + 1];
+                }
+                mixLeft[i] += v * gl;
+                mixRight[i] += v * gr;
+                gl += dl;
+                gr += dr;
+            }
+        }
+    }
+    
+    private void renderCubic(PcmSample s, float[] mixLeft, float[] mixRight, int offset, int count,
+            float gl, float gr, float dl, float dr) {
+        float[] table = Interpolation.CUBIC.getTable();
+        int end = offset + count;
+        int frames = s.getFrames();
+        long pos = position;
+        long inc = step;
+        
+        if (s.getChannels() == 2) {
+            for (int i = offset; i < end; i++, pos += inc) {
+                int frame = (int) (pos >>> FRACTION_BITS);
+                int c = ((int) (pos >>> PHASE_SHIFT) & (Interpolation.PHASES - 1)) * 4;
+                float left;
+                float right;
+                if (frame >= 1 && frame + 2 < frames) {
+                    int src = (frame - 1) * 2;
+                    left = s.get(src) * table[c] + s.get(src + 2) * table[c + 1]
+                        + s.get(src + 4) * table[c + 2] + s.get(src + 6) * table[c + 3];
+                    right = s.get(src + 1) * table[c] + s.get(src + 3) * table[c + 1]
+                        + s.get(src + 5) * table[c + 2] + s.get(src + 7) * table[c + 3];
+                } else {
+                    left = cubicAtEdge(s, frame, 0, table, c);
+                    right = cubicAtEdge(s, frame, 1, table, c);
+                }
+                mixLeft[i] += left * gl;
+                mixRight[i] += right * gr;
+                gl += dl;
+                gr += dr;
+            }
+        } else {
+            for (int i = offset; i < end; i++, pos += inc) {
+                int frame = (int) (pos >>> FRACTION_BITS);
+                int c = ((int) (pos >>> PHASE_SHIFT) & (Interpolation.PHASES - 1)) * 4;
+                float v;
+                if (frame >= 1 && frame + 2 < frames) {
+                    v = s.get(frame - 1) * table[c] + s.get(frame) * table[c + 1]
+                        + s.get(frame + 1) * table[c + 2] + s.get(frame + 2) * table[c + 3];
+                } else {
+                    v = cubicAtEdge(s, frame, 0, table, c);
+                }
+                mixLeft[i] += v * gl;
+                mixRight[i] += v * gr;
+                gl += dl;
+                gr += dr;
+            }
+        }
+    }
+    
+    /**
+     * Cubic tap sum near either end of the sample, reading silence outside it
+     */
+    private static float cubicAtEdge(PcmSample s, int frame, int channel, float[] table, int c) {
+        int channels = s.getChannels();
+        int frames = s.getFrames();
+        float sum = 0;
+        for (int k = 0; k < 4; k++) {
+            int f = frame - 1 + k;
+            if (f >= 0 && f < frames) {
+                sum += s.get(f * channels + channel) * table[c + k];
+            }
+        }
+        return sum;
+    }
+}
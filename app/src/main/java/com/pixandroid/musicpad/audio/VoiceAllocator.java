@@ -0,0 +1,219 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.Arrays;
+
+/**
+ * Hands out voices from the mixer's preallocated pool. Render thread only.
+ *
+ * Playing voices sit in an intrusive list in start order and free slots on a
+ * stack, so taking a free voice and releasing a finished one are O(1) and the
+ * mixer only walks voices that are actually playing. When no slot is free, or
+ * a pad is at its voice limit, a victim is chosen by the {@link StealPolicy};
+ * that scan is bounded by the pool size.
+ *
+ * Every start gets a serial number. The list is ordered by it, which fixes
+ * the order voices are summed in and lets {@link #rebuild} recreate the
+ * exact same list from a snapshot of the pool.
+ */
+final class VoiceAllocator {
+    
+    private static final int NONE = -1;
+    
+    private final Voice[] voices;
+    private final int[] next;
+    private final int[] prev;
+    private final int[] freeSlots;
+    private final int[] padCounts;
+    private int head = NONE;
+    private int tail = NONE;
+    private int freeCount;
+    private int activeCount;
+    private long nextSerial;
+    private long stealCount;
+    
+    VoiceAllocator(int maxVoices) {
+        voices = new Voice[maxVoices];
+        next = new int[maxVoices];
+        prev = new int[maxVoices];
+        freeSlots = new int[maxVoices];
+        padCounts = new int[Constants.TOTAL_PADS];
+        for (int i = 0; i < maxVoices; i++) {
+            voices[i] = new Voice();
+        }
+        rebuild();
+    }
+    
+    Voice[] getVoices() {
+        return voices;
+    }
+    
+    /**
+     * Take a slot for a new voice of {@code padIndex}, stopping a victim if the
+     * pool is full or the pad already has {@code padLimit} voices (0 for no limit).
+     * The slot is linked as the newest voice; the caller starts it with {@link #nextSerial()}.
+     */
+    int allocate(int padIndex, int padLimit, StealPolicy policy) {
+        int slot;
+        if (padLimit > 0 && padCounts[padIndex] >= padLimit) {
+            slot = oldestOfPad(padIndex);
+            steal(slot);
+        } else if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = pickVictim(padIndex, policy);
+            steal(slot);
+        }
+        link(slot);
+        padCounts[padIndex]++;
+        activeCount++;
+        return slot;
+    }
+    
+    /**
+     * Return a stopped voice's slot to the pool
+     */
+    void release(int slot) {
+        unlink(slot);
+        padCounts[voices[slot].padIndex]--;
+        activeCount--;
+        freeSlots[freeCount++] = slot;
+    }
+    
+    /**
+     * Stop a playing voice and release its slot
+     */
+    void stop(int slot) {
+        voices[slot].stop();
+        release(slot);
+    }
+    
+    long nextSerial() {
+        return nextSerial++;
+    }
+    
+    /**
+     * Oldest playing voice, or -1
+     */
+    int first() {
+        return head;
+    }
+    
+    /**
+     * Next playing voice after {@code slot} in start order, or -1
+     */
+    int next(int slot) {
+        return next[slot];
+    }
+    
+    /**
+     * Recreate the lists from the pool after its voices were overwritten,
+     * e.g. when a slice of an offline render restores a snapshot
+     */
+    void rebuild() {
+        head = NONE;
+        tail = NONE;
+        freeCount = 0;
+        activeCount = 0;
+        Arrays.fill(padCounts, 0);
+        long maxSerial = -1;
+        
+        // Insert active voices by serial; the pool is small, so insertion sort is fine
+        for (int slot = 0; slot < voices.length; slot++) {
+            Voice voice = voices[slot];
+            if (!voice.active) {
+                freeSlots[freeCount++] = slot;
+                continue;
+            }
+            int after = tail;
+            while (after != NONE && voices[after].serial > voice.serial) {
+                after = prev[after];
+            }
+            insertAfter(after, slot);
+            padCounts[voice.padIndex]++;
+            activeCount++;
+            maxSerial = Math.max(maxSerial, voice.serial);
+        }
+        nextSerial = Math.max(nextSerial, maxSerial + 1);
+    }
+    
+    int getActiveCount() {
+        return activeCount;
+    }
+    
+    int getPadVoiceCount(int padIndex) {
+        return padCounts[padIndex];
+    }
+    
+    long getStealCount() {
+        return stealCount;
+    }
+    
+    private void steal(int slot) {
+        stop(slot);
+        freeCount--; // the slot goes straight back out
+        stealCount++;
+    }
+    
+    private int pickVictim(int padIndex, StealPolicy policy) {
+        if (policy == StealPolicy.SAME_PAD && padCounts[padIndex] > 0) {
+            return oldestOfPad(padIndex);
+        }
+        if (policy == StealPolicy.QUIETEST) {
+            int quietest = head;
+            for (int slot = next[head]; slot != NONE; slot = next[slot]) {
+                if (voices[slot].getLoudness() < voices[quietest].getLoudness()) {
+                    quietest = slot;
+                }
+            }
+            return quietest;
+        }
+        return head;
+    }
+    
+    private int oldestOfPad(int padIndex) {
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            if (voices[slot].padIndex == padIndex) {
+                return slot;
+            }
+        }
+        return head;
+    }
+    
+    private void link(int slot) {
+        insertAfter(tail, slot);
+    }
+    
+    private void insertAfter(int after, int slot) {
+        int following = after == NONE ? head : next[after];
+        prev[slot] = after;
+        next[slot] = following;
+        if (after == NONE) {
+            head = slot;
+        } else {
+            next[after] = slot;
+        }
+        if (following == NONE) {
+            tail = slot;
+        } else {
+            prev[following] = slot;
+        }
+    }
+    
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+        prev[slot] = NONE;
+        next[slot] = NONE;
+    }
+}
@@ -0,0 +1,126 @@
+package com.pixandroid.musicpad.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * AudioSink that streams 16-bit stereo PCM to a WAV file.
+ *
+ * The header is written with placeholder sizes and patched on {@link #stop()},
+ * so the file is produced in a single pass without buffering the whole render.
+ */
+public class WavWriter implements AudioSink {
+    
+    private static final int HEADER_BYTES = 44;
+    private static final int CHANNELS = 2;
+    private static final int BYTES_PER_SAMPLE = 2;
+    
+    private final File file;
+    private final int sampleRate;
+    
+    private RandomAccessFile output;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long dataBytes;
+    
+    public WavWriter(File file, int sampleRate, int chunkFrames) {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.buffer = ByteBuffer.allocateDirect(chunkFrames * CHANNELS * BYTES_PER_SAMPLE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    }
+    
+    @Override
+    public void start() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        output = new RandomAccessFile(file, "rw");
+        output.setLength(0);
+        channel = output.getChannel();
+        dataBytes = 0;
+        writeHeader();
+    }
+    
+    @Override
+    public void write(float[] interleaved, int frames) throws IOException {
+        int values = frames * CHANNELS;
+        if (buffer.capacity() < values * BYTES_PER_SAMPLE) {
+            buffer = ByteBuffer.allocateDirect(values * BYTES_PER_SAMPLE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        
+        buffer.clear();
+        for (int i = 0; i < values; i++) {
+            float v = interleaved[i];
+            if (v > 1.0f) {
+                v = 1.0f;
+            } else if (v < -1.0f) {
+                v = -1.0f;
+            }
+            buffer.putShort((short) Math.round(v * 32767f));
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        dataBytes += (long) values * BYTES_PER_SAMPLE;
+    }
+    
+    @Override
+    public void stop() throws IOException {
+        if (output == null) {
+            return;
+        }
+        try {
+            writeHeader();
+        } finally {
+            output.close();
+            output = null;
+            channel = null;
+        }
+    }
+    
+    /**
+     * Write the canonical 44-byte header at the start of the file
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        int byteRate = sampleRate * CHANNELS * BYTES_PER_SAMPLE;
+        long dataSize = Math.min(dataBytes, 0xFFFFFFFFL - 36);
+        
+        header.put(new byte[] {'R', 'I', 'F', 'F'});
+        header.putInt((int) (36 + dataSize));
+        header.put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1); // PCM
+        header.putShort((short) CHANNELS);
+        header.putInt(sampleRate);
+        header.putInt(byteRate);
+        header.putShort((short) (CHANNELS * BYTES_PER_SAMPLE));
+        header.putShort((short) (BYTES_PER_SAMPLE * 8));
+        header.put(new byte[] {'d', 'a', 't', 'a'});
+        header.putInt((int) dataSize);
+        header.flip();
+        
+        long position = channel.position();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.position(Math.max(position, HEADER_BYTES));
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    public long getFramesWritten() {
+        return dataBytes / (CHANNELS * BYTES_PER_SAMPLE);
+    }
+}
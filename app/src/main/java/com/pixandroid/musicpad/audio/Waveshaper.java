@@ -0,0 +1,245 @@
+package com.pixandroid.musicpad.audio;
+
+/**
+ * Waveshaping distortion driven by precomputed transfer curves.
+ *
+ * Each {@link Curve} is tabulated once, when the class loads, over
+ * {@code [-INPUT_RANGE, INPUT_RANGE]}, and read with linear interpolation,
+ * so shaping a sample costs a table read instead of a {@code Math.tanh}.
+ * Inputs beyond the range take the curve's end value. To keep the harmonics
+ * the curve adds from folding back below Nyquist, the shaper can run at 2x
+ * or 4x the engine rate through a polyphase {@link Oversampler}.
+ *
+ * The drive control is continuous: it moves through the curves from
+ * {@link Curve#CLEAN} to {@link Curve#HARD} and blends the two neighbouring
+ * tables, so turning it morphs the tone rather than switching it.
+ *
+ * Settings may be changed from any thread and are read as one
+ * {@link EffectParams} snapshot at the start of each block. The drive and the
+ * output gain glide toward new values, ramped sample by sample.
+ * {@link #process} does not allocate.
+ */
+public final class Waveshaper implements AudioProcessor {
+    
+    static final int TABLE_SIZE = 4096;
+    static final float INPUT_RANGE = 2.0f;
+    
+    /**
+     * Transfer curve, from gentle saturation to near-hard clipping
+     */
+    public enum Curve {
+        /** Straight line, the signal passes unchanged */
+        CLEAN(0.0f, 1.0f),
+        /** tanh with light drive */
+        SOFT(1.5f, 1.0f),
+        /** tanh with more drive, rounded but clearly compressed */
+        WARM(4.0f, 1.0f),
+        /** Steep soft-knee clipper that flattens almost as hard as a clip */
+        HARD(8.0f, 6.0f);
+        
+        private final float[] table;
+        
+        /**
+         * @param knee 1 for tanh, higher for the sharper x / (1 + |x|^k)^(1/k) clipper
+         */
+        Curve(float drive, float knee) {
+            table = new float[TABLE_SIZE + 1]; // last entry repeated so the top clamp can interpolate
+            double peak = shape(drive, knee, 1.0);
+            for (int i = 0; i < TABLE_SIZE; i++) {
+                double x = -INPUT_RANGE + 2.0 * INPUT_RANGE * i / (TABLE_SIZE - 1);
+                // Full scale in stays full scale out
+                table[i] = (float) (shape(drive, knee, x) / peak);
+            }
+            table[TABLE_SIZE] = table[TABLE_SIZE - 1];
+        }
+        
+        private static double shape(float drive, float knee, double x) {
+            if (drive == 0.0f) {
+                return x;
+            }
+            double driven = drive * x;
+            if (knee == 1.0f) {
+                return Math.tanh(driven);
+            }
+            return driven / Math.pow(1 + Math.pow(Math.abs(driven), knee), 1 / knee);
+        }
+        
+        float[] getTable() {
+            return table;
+        }
+    }
+    
+    private static final Curve[] CURVES = Curve.values();
+    private static final float[][] TABLES = new float[CURVES.length][];
+    
+    static {
+        for (Curve curve : CURVES) {
+            TABLES[curve.ordinal()] = curve.getTable();
+        }
+    }
+    
+    // Indices into the parameter snapshot
+    private static final int DRIVE = 0;
+    private static final int OVERSAMPLING = 1;
+    private static final int OUTPUT_GAIN = 2;
+    
+    private final int sampleRate;
+    private final int maxFrames;
+    private final Oversampler x2;
+    private final Oversampler x4;
+    private final EffectParams params = new EffectParams(driveFor(Curve.SOFT), 2.0f, 1.0f);
+    
+    // Render thread state
+    private final SmoothedValue drive = new SmoothedValue();
+    private final SmoothedValue outputGain = new SmoothedValue();
+    private int activeFactor;
+    
+    /**
+     * @param maxFrames largest block handed to one oversampled pass; longer blocks are split
+     */
+    public Waveshaper(int sampleRate, int maxFrames) {
+        this.sampleRate = sampleRate;
+        this.maxFrames = maxFrames;
+        x2 = new Oversampler(2, maxFrames);
+        x4 = new Oversampler(4, maxFrames);
+        activeFactor = getOversampling();
+    }
+    
+    /**
+     * Jump the drive to the point where {@code curve} is used on its own
+     */
+    public void setCurve(Curve curve) {
+        if (curve != null) {
+            setDrive(driveFor(curve));
+        }
+    }
+    
+    /**
+     * The curve nearest the current drive
+     */
+    public Curve getCurve() {
+        return CURVES[Math.round(getDrive() * (CURVES.length - 1))];
+    }
+    
+    /**
+     * Amount of shaping, 0 (clean) to 1 ({@link Curve#HARD})
+     */
+    public void setDrive(float drive) {
+        params.set(DRIVE, Math.max(0.0f, Math.min(1.0f, drive)));
+    }
+    
+    public float getDrive() {
+        return params.get(DRIVE);
+    }
+    
+    /**
+     * Run the curve at 1x, 2x or 4x the engine rate. Other values round down to one of those.
+     */
+    public void setOversampling(int factor) {
+        params.set(OVERSAMPLING, factor >= 4 ? 4 : factor >= 2 ? 2 : 1);
+    }
+    
+    public int getOversampling() {
+        return (int) params.get(OVERSAMPLING);
+    }
+    
+    /**
+     * Gain after the curve, to level-match the distorted signal
+     */
+    public void setOutputGain(float gain) {
+        params.set(OUTPUT_GAIN, Math.max(0.0f, gain));
+    }
+    
+    public float getOutputGain() {
+        return params.get(OUTPUT_GAIN);
+    }
+    
+    @Override
+    public void process(float[] left, float[] right, int frames) {
+        float[] p = params.snapshot();
+        float glide = SmoothedValue.coefficient(frames, sampleRate);
+        drive.advance(p[DRIVE], glide);
+        outputGain.advance(p[OUTPUT_GAIN], glide);
+        
+        // Drive as a position on the curve list, e.g. 1.5 is halfway from SOFT to WARM
+        float position = drive.getStart() * (CURVES.length - 1);
+        float positionStep = (drive.getEnd() * (CURVES.length - 1) - position) / frames;
+        float gain = outputGain.getStart();
+        float gainStep = (outputGain.getEnd() - gain) / frames;
+        
+        int factor = (int) p[OVERSAMPLING];
+        if (factor != activeFactor) {
+            // The other sampler's history is stale
+            x2.reset();
+            x4.reset();
+            activeFactor = factor;
+        }
+        
+        if (factor == 1) {
+            shape(position, positionStep, gain, gainStep, left, 0, frames);
+            shape(position, positionStep, gain, gainStep, right, 0, frames);
+            return;
+        }
+        
+        Oversampler os = factor == 4 ? x4 : x2;
+        for (int start = 0; start < frames; start += maxFrames) {
+            int chunk = Math.min(maxFrames, frames - start);
+            float p0 = position + positionStep * start;
+            float g0 = gain + gainStep * start;
+            os.up(left, right, start, chunk);
+            shape(p0, positionStep / factor, g0, gainStep / factor, os.getLeft(), os.getOffset(), chunk * factor);
+            shape(p0, positionStep / factor, g0, gainStep / factor, os.getRight(), os.getOffset(), chunk * factor);
+            os.down(left, right, start, chunk);
+        }
+    }
+    
+    /**
+     * Replace {@code count} samples from {@code offset} with the output of the
+     * curves around {@code position}, blended, ramping the position and the
+     * gain by their steps per sample
+     */
+    static void shape(float position, float positionStep, float gain, float gainStep,
+            float[] buffer, int offset, int count) {
+        float scale = (TABLE_SIZE - 1) / (2 * INPUT_RANGE);
+        float last = TABLE_SIZE - 1;
+        int highest = TABLES.length - 2;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            position += positionStep;
+            gain += gainStep;
+            int lower = Math.min(highest, (int) position);
+            float[] from = TABLES[lower];
+            float[] to = TABLES[lower + 1];
+            float blend = position - lower;
+            
+            float pos = Math.max(0.0f, Math.min(last, (buffer[i] + INPUT_RANGE) * scale));
+            int index = (int) pos;
+            float frac = pos - index;
+            float a = from[index];
+            float b = to[index];
+            a += (from[index + 1] - a) * frac;
+            b += (to[index + 1] - b) * frac;
+            buffer[i] = (a + (b - a) * blend) * gain;
+        }
+    }
+    
+    private static float driveFor(Curve curve) {
+        return (float) curve.ordinal() / (CURVES.length - 1);
+    }
+    
+    @Override
+    public void reset() {
+        x2.reset();
+        x4.reset();
+        drive.reset();
+        outputGain.reset();
+    }
+    
+    /**
+     * Delay the current oversampling adds, in frames
+     */
+    public int getLatencyFrames() {
+        int factor = getOversampling();
+        return factor == 4 ? x4.getLatencyFrames() : factor == 2 ? x2.getLatencyFrames() : 0;
+    }
+}
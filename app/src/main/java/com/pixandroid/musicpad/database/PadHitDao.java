@@ -27,12 +27,16 @@ public interface PadHitDao {
     @Delete
     void delete(PadHit padHit);
     
-    @Query("SELECT * FROM pad_hits WHERE sessionId = :sessionId ORDER BY timestamp ASC")
+    @Query("SELECT * FROM pad_hits WHERE sessionId = :sessionId ORDER BY timestamp ASC, framePosition ASC")
     LiveData<List<PadHit>> getHitsForSession(long sessionId);
     
-    @Query("SELECT * FROM pad_hits WHERE sessionId = :sessionId ORDER BY timestamp ASC")
+    @Query("SELECT * FROM pad_hits WHERE sessionId = :sessionId ORDER BY timestamp ASC, framePosition ASC")
     List<PadHit> getHitsForSessionSync(long sessionId);
     
+    @Query("SELECT * FROM pad_hits WHERE sessionId = :sessionId "
+        + "ORDER BY timestamp ASC, framePosition ASC, id ASC LIMIT :limit OFFSET :offset")
+    List<PadHit> getHitsForSessionPage(long sessionId, int limit, int offset);
+    
     @Query("DELETE FROM pad_hits WHERE sessionId = :sessionId")
     void deleteHitsForSession(long sessionId);
     
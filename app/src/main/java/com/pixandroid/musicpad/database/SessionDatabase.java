@@ -5,19 +5,32 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import com.pixandroid.musicpad.models.PadHit;
 import com.pixandroid.musicpad.models.Session;
 
 /**
  * Room database for Music Pad Studio
  */
-@Database(entities = {Session.class, PadHit.class}, version = 1, exportSchema = true)
+@Database(entities = {Session.class, PadHit.class}, version = 2, exportSchema = true)
 @TypeConverters({Converters.class})
 public abstract class SessionDatabase extends RoomDatabase {
     
     private static final String DATABASE_NAME = "musicpad_database";
     private static SessionDatabase instance;
     
+    /**
+     * Version 2 stamps hits in audio frames instead of wall-clock milliseconds
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE pad_hits ADD COLUMN framePosition INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE sessions ADD COLUMN sampleRate INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
     public abstract SessionDao sessionDao();
     public abstract PadHitDao padHitDao();
     
@@ -28,6 +41,7 @@ public abstract class SessionDatabase extends RoomDatabase {
                 SessionDatabase.class,
                 DATABASE_NAME
             )
+            .addMigrations(MIGRATION_1_2)
             .fallbackToDestructiveMigration()
             .build();
         }
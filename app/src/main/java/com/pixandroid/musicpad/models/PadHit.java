@@ -1,5 +1,6 @@
 package com.pixandroid.musicpad.models;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.ForeignKey;
 import androidx.room.Index;
@@ -24,6 +25,8 @@ public class PadHit {
     private long sessionId;
     private int padIndex; // 0-31 for 4x8 grid
     private long timestamp; // time from session start in milliseconds
+    @ColumnInfo(defaultValue = "0")
+    private long framePosition; // time from session start in audio frames at the session sample rate
     private float velocity; // 0.0 - 1.0
     private int soundId; // SoundPool sound ID
     
@@ -71,6 +74,14 @@ public class PadHit {
         this.timestamp = timestamp;
     }
     
+    public long getFramePosition() {
+        return framePosition;
+    }
+    
+    public void setFramePosition(long framePosition) {
+        this.framePosition = framePosition;
+    }
+    
     public float getVelocity() {
         return velocity;
     }
@@ -1,5 +1,6 @@
 package com.pixandroid.musicpad.models;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverters;
@@ -23,6 +24,8 @@ public class Session {
     private int bpm;
     private String soundPackName;
     private boolean isLooped;
+    @ColumnInfo(defaultValue = "0")
+    private int sampleRate; // frame rate of PadHit.framePosition, 0 for sessions recorded before frame stamps
     
     public Session() {
         this.createdAt = new Date();
@@ -88,6 +91,14 @@ public class Session {
         this.soundPackName = soundPackName;
     }
     
+    public int getSampleRate() {
+        return sampleRate;
+    }
+    
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+    
     public boolean isLooped() {
         return isLooped;
     }
@@ -2,6 +2,7 @@ package com.pixandroid.musicpad.repository;
 
 import android.app.Application;
 import androidx.lifecycle.LiveData;
+import com.pixandroid.musicpad.audio.HitSource;
 import com.pixandroid.musicpad.database.PadHitDao;
 import com.pixandroid.musicpad.database.SessionDao;
 import com.pixandroid.musicpad.database.SessionDatabase;
@@ -80,6 +81,14 @@ public class PadRepository {
         });
     }
     
+    /**
+     * Stream a session's hits in playback order, converted to frames at
+     * {@code sampleRate}. The source queries the database, so read it off the main thread.
+     */
+    public HitSource openHitSource(Session session, int sampleRate) {
+        return new SessionHitSource(padHitDao, session.getId(), session.getSampleRate(), sampleRate);
+    }
+    
     public void deleteHitsForSession(long sessionId) {
         executorService.execute(() -> padHitDao.deleteHitsForSession(sessionId));
     }
@@ -0,0 +1,41 @@
+package com.pixandroid.musicpad.repository;
+
+import com.pixandroid.musicpad.audio.HitSource;
+import com.pixandroid.musicpad.audio.RecordingEngine;
+import com.pixandroid.musicpad.database.PadHitDao;
+import com.pixandroid.musicpad.models.PadHit;
+import java.util.List;
+
+/**
+ * Pages a session's pad hits out of the database for offline rendering,
+ * so a long session is never loaded into memory at once
+ */
+class SessionHitSource implements HitSource {
+    
+    private final PadHitDao padHitDao;
+    private final long sessionId;
+    private final int hitSampleRate;
+    private final int sampleRate;
+    private int offset;
+    
+    SessionHitSource(PadHitDao padHitDao, long sessionId, int hitSampleRate, int sampleRate) {
+        this.padHitDao = padHitDao;
+        this.sessionId = sessionId;
+        this.hitSampleRate = hitSampleRate;
+        this.sampleRate = sampleRate;
+    }
+    
+    @Override
+    public int read(int[] pads, float[] velocities, long[] frames, int max) {
+        List<PadHit> page = padHitDao.getHitsForSessionPage(sessionId, max, offset);
+        int count = Math.min(page.size(), max);
+        for (int i = 0; i < count; i++) {
+            PadHit hit = page.get(i);
+            pads[i] = hit.getPadIndex();
+            velocities[i] = hit.getVelocity();
+            frames[i] = RecordingEngine.toTimelineFrames(hit, hitSampleRate, sampleRate);
+        }
+        offset += count;
+        return count;
+    }
+}
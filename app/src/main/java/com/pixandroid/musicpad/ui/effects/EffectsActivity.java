@@ -5,7 +5,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 import com.google.android.material.slider.Slider;
 import com.pixandroid.musicpad.R;
-import com.pixandroid.musicpad.audio.EffectsProcessor.EffectLevel;
+import com.pixandroid.musicpad.audio.EffectsProcessor.EffectType;
 import com.pixandroid.musicpad.databinding.ActivityEffectsBinding;
 import com.pixandroid.musicpad.viewmodel.EffectsViewModel;
 
@@ -29,7 +29,6 @@ public class EffectsActivity extends AppCompatActivity {
         setupToolbar();
         setupSliders();
         setupButtons();
-        observeViewModel();
     }
     
     private void setupToolbar() {
@@ -37,38 +36,26 @@ public class EffectsActivity extends AppCompatActivity {
     }
     
     private void setupSliders() {
-        // Reverb slider
-        binding.sliderReverb.addOnChangeListener((slider, value, fromUser) -> {
-            if (fromUser) {
-                viewModel.setReverbLevel(getLevelFromValue((int) value));
-            }
-        });
-        
-        // Delay slider
-        binding.sliderDelay.addOnChangeListener((slider, value, fromUser) -> {
-            if (fromUser) {
-                viewModel.setDelayLevel(getLevelFromValue((int) value));
-            }
-        });
-        
-        // Distortion slider
-        binding.sliderDistortion.addOnChangeListener((slider, value, fromUser) -> {
-            if (fromUser) {
-                viewModel.setDistortionLevel(getLevelFromValue((int) value));
-            }
-        });
-        
-        // Bass Boost slider
-        binding.sliderBassBoost.addOnChangeListener((slider, value, fromUser) -> {
+        // Sliders run 0..3 with the levels on the whole numbers, and are continuous in between
+        bindSlider(binding.sliderReverb, EffectType.REVERB);
+        bindSlider(binding.sliderDelay, EffectType.DELAY);
+        bindSlider(binding.sliderDistortion, EffectType.DISTORTION);
+        bindSlider(binding.sliderBassBoost, EffectType.BASS_BOOST);
+        bindSlider(binding.sliderEcho, EffectType.ECHO);
+    }
+    
+    private void bindSlider(Slider slider, EffectType type) {
+        slider.addOnChangeListener((source, value, fromUser) -> {
             if (fromUser) {
-                viewModel.setBassBoostLevel(getLevelFromValue((int) value));
+                viewModel.setEffectAmount(type, value / slider.getValueTo());
             }
         });
-        
-        // Echo slider
-        binding.sliderEcho.addOnChangeListener((slider, value, fromUser) -> {
-            if (fromUser) {
-                viewModel.setEchoLevel(getLevelFromValue((int) value));
+        viewModel.getEffectAmount(type).observe(this, amount -> {
+            if (amount != null) {
+                float value = amount * slider.getValueTo();
+                if (slider.getValue() != value) {
+                    slider.setValue(value);
+                }
             }
         });
     }
@@ -81,69 +68,6 @@ public class EffectsActivity extends AppCompatActivity {
         });
     }
     
-    private void observeViewModel() {
-        // Observe effect levels and update sliders
-        viewModel.getReverbLevel().observe(this, level -> {
-            if (level != null) {
-                binding.sliderReverb.setValue(getValueFromLevel(level));
-            }
-        });
-        
-        viewModel.getDelayLevel().observe(this, level -> {
-            if (level != null) {
-                binding.sliderDelay.setValue(getValueFromLevel(level));
-            }
-        });
-        
-        viewModel.getDistortionLevel().observe(this, level -> {
-            if (level != null) {
-                binding.sliderDistortion.setValue(getValueFromLevel(level));
-            }
-        });
-        
-        viewModel.getBassBoostLevel().observe(this, level -> {
-            if (level != null) {
-                binding.sliderBassBoost.setValue(getValueFromLevel(level));
-            }
-        });
-        
-        viewModel.getEchoLevel().observe(this, level -> {
-            if (level != null) {
-                binding.sliderEcho.setValue(getValueFromLevel(level));
-            }
-        });
-    }
-    
-    private EffectLevel getLevelFromValue(int value) {
-        switch (value) {
-            case 0:
-                return EffectLevel.OFF;
-            case 1:
-                return EffectLevel.LOW;
-            case 2:
-                return EffectLevel.MEDIUM;
-            case 3:
-                return EffectLevel.HIGH;
-            default:
-                return EffectLevel.OFF;
-        }
-    }
-    
-    private int getValueFromLevel(EffectLevel level) {
-        switch (level) {
-            case OFF:
-                return 0;
-            case LOW:
-                return 1;
-            case MEDIUM:
-                return 2;
-            case HIGH:
-                return 3;
-            default:
-                return 0;
-        }
-    }
-    
     private void resetSliders() {
         binding.sliderReverb.setValue(0);
         binding.sliderDelay.setValue(0);
@@ -8,6 +8,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.GridLayout;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 import com.google.android.material.card.MaterialCardView;
@@ -90,7 +91,8 @@ public class PadsActivity extends AppCompatActivity {
                 if (event.getAction() == MotionEvent.ACTION_DOWN) {
                     onPadPressed(padIndex, v);
                     return true;
-                } else if (event.getAction() == MotionEvent.ACTION_UP) {
+                } else if (event.getAction() == MotionEvent.ACTION_UP
+                        || event.getAction() == MotionEvent.ACTION_CANCEL) {
                     onPadReleased(padIndex, v);
                     return true;
                 }
@@ -130,6 +132,9 @@ public class PadsActivity extends AppCompatActivity {
      * Handle pad release
      */
     private void onPadReleased(int padIndex, View padView) {
+        // Fade out gated and looping pads
+        padViewModel.releasePad(padIndex);
+        
         // Reset visual state
         padView.animate()
             .scaleX(1.0f)
@@ -212,6 +217,18 @@ public class PadsActivity extends AppCompatActivity {
             }
         });
         
+        // Dim the pads until the current pack is playable
+        padViewModel.getIsPackReady().observe(this, ready -> {
+            binding.padGridContainer.setAlpha(ready != null && ready ? 1.0f : 0.5f);
+        });
+        
+        padViewModel.getPackLoadResult().observe(this, result -> {
+            if (result != null && !result.isComplete()) {
+                Toast.makeText(this, Constants.ERROR_LOAD_SOUND + ": "
+                    + result.getFailures().size() + "/" + result.getRequestedCount(), Toast.LENGTH_SHORT).show();
+            }
+        });
+        
         // Observe loop mode
         padViewModel.getIsLoopMode().observe(this, enabled -> {
             if (enabled != null && enabled) {
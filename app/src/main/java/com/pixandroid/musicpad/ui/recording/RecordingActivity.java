@@ -65,6 +65,19 @@ public class RecordingActivity extends AppCompatActivity {
                 binding.emptyState.setVisibility(View.VISIBLE);
             }
         });
+        
+        viewModel.getExportedFile().observe(this, file -> {
+            if (file != null) {
+                Toast.makeText(this, getString(R.string.success_export) + ": " + file.getName(),
+                    Toast.LENGTH_LONG).show();
+            }
+        });
+        
+        viewModel.getExportError().observe(this, error -> {
+            if (error != null) {
+                Toast.makeText(this, R.string.error_export_failed, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     /**
@@ -131,12 +144,13 @@ public class RecordingActivity extends AppCompatActivity {
     }
     
     private void playRecording(Session session) {
-        viewModel.playSession(session.getId());
+        viewModel.playSession(session);
         Toast.makeText(this, "Playing: " + session.getName(), Toast.LENGTH_SHORT).show();
     }
     
     private void exportRecording(Session session) {
-        Toast.makeText(this, "Export functionality - Premium feature", Toast.LENGTH_SHORT).show();
+        viewModel.exportSession(session);
+        Toast.makeText(this, R.string.dialog_exporting, Toast.LENGTH_SHORT).show();
     }
     
     private void showDeleteDialog(Session session) {
@@ -12,6 +12,20 @@ public class Constants {
     public static final int MAX_STREAMS = 32;
     public static final int AUDIO_LATENCY_MS = 100;
     
+    // Software Mixer Constants
+    public static final int MIXER_SAMPLE_RATE = 48000;
+    public static final int MIXER_BLOCK_FRAMES = 128; // ~2.7 ms at 48 kHz
+    public static final int MIXER_MAX_VOICES = 32;
+    public static final int AUX_BUSES = 2; // shared send effects, each run once per block
+    public static final int AUX_BUS_REVERB = 0;
+    public static final int AUX_BUS_DELAY = 1;
+    public static final float MAX_PITCH_CENTS = 2400.0f; // two octaves either way
+    public static final float DEFAULT_RELEASE_MS = 10.0f; // fade-out of a gated pad when it is let go
+    public static final int EXPORT_CHUNK_FRAMES = 4096; // frames per WAV write during export
+    public static final int EXPORT_SLICE_FRAMES = 48000; // frames per parallel export task
+    public static final int MAX_PACK_LOADER_THREADS = 4;
+    public static final long SAMPLE_CACHE_BYTES = 48L * 1024 * 1024; // decoded PCM kept across packs
+    
     // Pad Grid Constants
     public static final int PAD_ROWS = 4;
     public static final int PAD_COLUMNS = 8;
@@ -55,7 +69,7 @@ public class Constants {
     
     // Database
     public static final String DATABASE_NAME = "musicpad_database";
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 2;
     
     // Ad Unit IDs (Test IDs - replace with real ones for production)
     public static final String AD_BANNER_ID = "ca-app-pub-3940256099942544/6300978111";
@@ -69,6 +83,7 @@ public class Constants {
     // File Paths
     public static final String RECORDINGS_DIR = "MusicPadStudio/Recordings";
     public static final String EXPORTS_DIR = "MusicPadStudio/Exports";
+    public static final String PACKS_DIR = "packs"; // converted sample packs in app-private storage
     
     // Error Messages
     public static final String ERROR_AUDIO_INIT = "Failed to initialize audio engine";
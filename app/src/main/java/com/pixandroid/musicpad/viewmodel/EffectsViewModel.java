@@ -1,107 +1,209 @@
 package com.pixandroid.musicpad.viewmodel;
 
 import android.app.Application;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.pixandroid.musicpad.App;
 import com.pixandroid.musicpad.audio.EffectsProcessor;
 import com.pixandroid.musicpad.audio.EffectsProcessor.EffectLevel;
 import com.pixandroid.musicpad.audio.EffectsProcessor.EffectType;
+import com.pixandroid.musicpad.audio.ImpulseResponse;
+import com.pixandroid.musicpad.audio.SampleCache;
+import com.pixandroid.musicpad.audio.SampleDecoder;
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * ViewModel for audio effects management
  */
 public class EffectsViewModel extends AndroidViewModel {
     
-    private EffectsProcessor effectsProcessor;
+    private static final String TAG = "EffectsViewModel";
+    
+    private final EffectsProcessor effectsProcessor;
+    private final ExecutorService loadExecutor;
     
     private final MutableLiveData<EffectLevel> reverbLevel;
     private final MutableLiveData<EffectLevel> delayLevel;
     private final MutableLiveData<EffectLevel> distortionLevel;
     private final MutableLiveData<EffectLevel> bassBoostLevel;
     private final MutableLiveData<EffectLevel> echoLevel;
+    private final Map<EffectType, MutableLiveData<Float>> amounts = new EnumMap<>(EffectType.class);
     
     private final MutableLiveData<Boolean> effectsEnabled;
+    private final MutableLiveData<List<EffectType>> effectOrder;
+    private final MutableLiveData<String> roomName;
+    private final MutableLiveData<String> roomError;
     
     public EffectsViewModel(@NonNull Application application) {
         super(application);
         
-        // Note: EffectsProcessor needs an audio session ID, which comes from AudioEngine
-        // This will be initialized when audio engine is available
+        // Shared with the pads screen, which runs it on the mixer's master bus
+        effectsProcessor = ((App) application).getEffectsProcessor();
         
-        reverbLevel = new MutableLiveData<>(EffectLevel.OFF);
-        delayLevel = new MutableLiveData<>(EffectLevel.OFF);
-        distortionLevel = new MutableLiveData<>(EffectLevel.OFF);
-        bassBoostLevel = new MutableLiveData<>(EffectLevel.OFF);
-        echoLevel = new MutableLiveData<>(EffectLevel.OFF);
-        effectsEnabled = new MutableLiveData<>(false);
-    }
-    
-    /**
-     * Initialize effects processor with audio session ID
-     */
-    public void initializeEffects(int audioSessionId) {
-        if (effectsProcessor == null) {
-            effectsProcessor = new EffectsProcessor(audioSessionId);
+        reverbLevel = new MutableLiveData<>(effectsProcessor.getReverbLevel());
+        delayLevel = new MutableLiveData<>(effectsProcessor.getDelayLevel());
+        distortionLevel = new MutableLiveData<>(effectsProcessor.getDistortionLevel());
+        bassBoostLevel = new MutableLiveData<>(effectsProcessor.getBassBoostLevel());
+        echoLevel = new MutableLiveData<>(effectsProcessor.getEchoLevel());
+        for (EffectType type : EffectType.values()) {
+            amounts.put(type, new MutableLiveData<>(effectsProcessor.getAmount(type)));
         }
+        effectsEnabled = new MutableLiveData<>(false);
+        effectOrder = new MutableLiveData<>(effectsProcessor.getChain().getOrder());
+        roomName = new MutableLiveData<>();
+        roomError = new MutableLiveData<>();
+        loadExecutor = Executors.newSingleThreadExecutor();
+        updateEffectsEnabled();
     }
     
     /**
      * Set reverb level
      */
     public void setReverbLevel(EffectLevel level) {
-        reverbLevel.setValue(level);
-        if (effectsProcessor != null) {
-            effectsProcessor.setReverbLevel(level);
-        }
-        updateEffectsEnabled();
+        setEffectAmount(EffectType.REVERB, EffectsProcessor.toAmount(level));
     }
     
     /**
      * Set delay level
      */
     public void setDelayLevel(EffectLevel level) {
-        delayLevel.setValue(level);
-        if (effectsProcessor != null) {
-            effectsProcessor.setDelayLevel(level);
-        }
-        updateEffectsEnabled();
+        setEffectAmount(EffectType.DELAY, EffectsProcessor.toAmount(level));
     }
     
     /**
      * Set distortion level
      */
     public void setDistortionLevel(EffectLevel level) {
-        distortionLevel.setValue(level);
-        if (effectsProcessor != null) {
-            effectsProcessor.setDistortionLevel(level);
-        }
-        updateEffectsEnabled();
+        setEffectAmount(EffectType.DISTORTION, EffectsProcessor.toAmount(level));
     }
     
     /**
      * Set bass boost level
      */
     public void setBassBoostLevel(EffectLevel level) {
-        bassBoostLevel.setValue(level);
-        if (effectsProcessor != null) {
-            effectsProcessor.setBassBoostLevel(level);
-        }
-        updateEffectsEnabled();
+        setEffectAmount(EffectType.BASS_BOOST, EffectsProcessor.toAmount(level));
     }
     
     /**
      * Set echo level
      */
     public void setEchoLevel(EffectLevel level) {
-        echoLevel.setValue(level);
-        if (effectsProcessor != null) {
-            effectsProcessor.setEchoLevel(level);
+        setEffectAmount(EffectType.ECHO, EffectsProcessor.toAmount(level));
+    }
+    
+    /**
+     * Set an effect anywhere between off (0) and its HIGH level (1). Cheap enough
+     * to call for every move of a slider; the effect glides to the new setting.
+     */
+    public void setEffectAmount(EffectType type, float amount) {
+        effectsProcessor.setAmount(type, amount);
+        amounts.get(type).setValue(effectsProcessor.getAmount(type));
+        MutableLiveData<EffectLevel> level = levelFor(type);
+        EffectLevel nearest = effectsProcessor.getLevel(type);
+        if (level.getValue() != nearest) {
+            level.setValue(nearest);
         }
         updateEffectsEnabled();
     }
     
+    private MutableLiveData<EffectLevel> levelFor(EffectType type) {
+        switch (type) {
+            case REVERB:
+                return reverbLevel;
+            case DELAY:
+                return delayLevel;
+            case DISTORTION:
+                return distortionLevel;
+            case BASS_BOOST:
+                return bassBoostLevel;
+            case ECHO:
+            default:
+                return echoLevel;
+        }
+    }
+    
+    /**
+     * Move an effect to another position in the chain
+     */
+    public void moveEffect(EffectType type, int index) {
+        effectsProcessor.moveEffect(type, index);
+        effectOrder.setValue(effectsProcessor.getChain().getOrder());
+    }
+    
+    /**
+     * Take an effect out of the chain, or put it back, keeping its level
+     */
+    public void setEffectBypassed(EffectType type, boolean bypassed) {
+        effectsProcessor.setBypassed(type, bypassed);
+    }
+    
+    /**
+     * Reverberate in the room recorded in an impulse response file instead of the
+     * algorithmic reverb. The file is decoded and transformed in the background;
+     * the result is posted to {@link #getRoomName()} or {@link #getRoomError()}.
+     */
+    public void loadImpulseResponse(File file) {
+        loadExecutor.execute(() -> {
+            try {
+                String key = SampleCache.fileKey(file.getPath(), file.lastModified(), file.length());
+                ImpulseResponse ir = ImpulseResponse.prepare(key, () -> SampleDecoder.decodeFile(file.getPath()),
+                    Constants.MIXER_SAMPLE_RATE, Constants.MIXER_BLOCK_FRAMES);
+                effectsProcessor.setImpulseResponse(ir);
+                roomName.postValue(file.getName());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to load impulse response " + file, e);
+                roomError.postValue(e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Go back to the algorithmic reverb
+     */
+    public void clearImpulseResponse() {
+        effectsProcessor.setImpulseResponse(null);
+        roomName.setValue(null);
+    }
+    
+    /**
+     * Boost or cut one band of the master equalizer, within 12 dB either way
+     */
+    public void setEqGain(int band, float db) {
+        effectsProcessor.getEqualizer().setGainDb(band, db);
+    }
+    
+    /**
+     * Switch the master limiter, which keeps peaks below the ceiling
+     */
+    public void setLimiterEnabled(boolean enabled) {
+        effectsProcessor.getDynamics().setLimiterEnabled(enabled);
+    }
+    
+    /**
+     * Switch the master compressor, which evens out the level before the limiter
+     */
+    public void setCompressorEnabled(boolean enabled) {
+        effectsProcessor.getDynamics().setCompressorEnabled(enabled);
+    }
+    
+    /**
+     * Master gain reduction in dB (0 or less), updated every block. Poll it from
+     * the UI for a meter; it is too fast-changing to be worth a LiveData.
+     */
+    public float getGainReductionDb() {
+        return effectsProcessor.getDynamics().getGainReductionDb();
+    }
+    
     /**
      * Reset all effects
      */
@@ -125,7 +227,9 @@ public class EffectsViewModel extends AndroidViewModel {
             (bassBoostLevel.getValue() != EffectLevel.OFF) ||
             (echoLevel.getValue() != EffectLevel.OFF);
         
-        effectsEnabled.setValue(anyEnabled);
+        if (effectsEnabled.getValue() != anyEnabled) {
+            effectsEnabled.setValue(anyEnabled);
+        }
     }
     
     /**
@@ -166,10 +270,35 @@ public class EffectsViewModel extends AndroidViewModel {
         return echoLevel;
     }
     
+    /**
+     * Continuous amount of an effect, 0..1
+     */
+    public LiveData<Float> getEffectAmount(EffectType type) {
+        return amounts.get(type);
+    }
+    
     public LiveData<Boolean> getEffectsEnabled() {
         return effectsEnabled;
     }
     
+    /**
+     * Software effects in the order they run
+     */
+    public LiveData<List<EffectType>> getEffectOrder() {
+        return effectOrder;
+    }
+    
+    /**
+     * File name of the recorded room the reverb uses, or null for the algorithmic reverb
+     */
+    public LiveData<String> getRoomName() {
+        return roomName;
+    }
+    
+    public LiveData<String> getRoomError() {
+        return roomError;
+    }
+    
     public EffectsProcessor getEffectsProcessor() {
         return effectsProcessor;
     }
@@ -177,8 +306,7 @@ public class EffectsViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
-        if (effectsProcessor != null) {
-            effectsProcessor.release();
-        }
+        // The effects themselves live on with the app
+        loadExecutor.shutdown();
     }
 }
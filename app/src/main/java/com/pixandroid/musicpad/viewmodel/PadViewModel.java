@@ -1,30 +1,50 @@
 package com.pixandroid.musicpad.viewmodel;
 
 import android.app.Application;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import com.pixandroid.musicpad.App;
 import com.pixandroid.musicpad.audio.AudioEngine;
+import com.pixandroid.musicpad.audio.Ducker;
+import com.pixandroid.musicpad.audio.EffectsProcessor;
+import com.pixandroid.musicpad.audio.Envelope;
+import com.pixandroid.musicpad.audio.PadFilter;
+import com.pixandroid.musicpad.audio.PackLoadResult;
+import com.pixandroid.musicpad.audio.PadMode;
+import com.pixandroid.musicpad.audio.SamplePackConverter;
 import com.pixandroid.musicpad.audio.SoundPack;
 import com.pixandroid.musicpad.repository.AudioRepository;
 import com.pixandroid.musicpad.repository.PadRepository;
 import com.pixandroid.musicpad.utils.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * ViewModel for pad grid and sound management
  */
 public class PadViewModel extends AndroidViewModel {
     
+    private static final String TAG = "PadViewModel";
+    
     private final AudioRepository audioRepository;
     private final PadRepository padRepository;
     private final AudioEngine audioEngine;
+    private final EffectsProcessor effectsProcessor;
+    private final ExecutorService packLoader;
     
     private final MutableLiveData<String> currentSoundPack;
     private final MutableLiveData<Integer> bpm;
     private final MutableLiveData<Float> masterVolume;
     private final MutableLiveData<Boolean> isMetronomeEnabled;
     private final MutableLiveData<Boolean> isLoopMode;
+    private final MutableLiveData<Boolean> isPackReady;
+    private final MutableLiveData<PackLoadResult> packLoadResult;
     
     // Pad-specific volumes (padIndex -> volume)
     private final float[] padVolumes;
@@ -34,13 +54,23 @@ public class PadViewModel extends AndroidViewModel {
         
         audioRepository = new AudioRepository(application);
         padRepository = new PadRepository(application);
-        audioEngine = new AudioEngine();
+        audioEngine = new AudioEngine(AudioEngine.Backend.MIXER);
+        audioEngine.setSampleCache(((App) application).getSampleCache());
+        effectsProcessor = ((App) application).getEffectsProcessor();
+        effectsProcessor.setBpm(audioRepository.getBpm());
+        audioEngine.setMasterProcessor(effectsProcessor);
+        for (int bus = 0; bus < Constants.AUX_BUSES; bus++) {
+            audioEngine.setAuxEffect(bus, effectsProcessor.getSendEffect(bus));
+        }
+        packLoader = Executors.newSingleThreadExecutor();
         
         currentSoundPack = new MutableLiveData<>(audioRepository.getCurrentSoundPack());
         bpm = new MutableLiveData<>(audioRepository.getBpm());
         masterVolume = new MutableLiveData<>(audioRepository.getMasterVolume());
         isMetronomeEnabled = new MutableLiveData<>(audioRepository.isMetronomeEnabled());
         isLoopMode = new MutableLiveData<>(false);
+        isPackReady = new MutableLiveData<>(false);
+        packLoadResult = new MutableLiveData<>();
         
         padVolumes = new float[Constants.TOTAL_PADS];
         for (int i = 0; i < Constants.TOTAL_PADS; i++) {
@@ -49,6 +79,8 @@ public class PadViewModel extends AndroidViewModel {
         
         // Set master volume in audio engine
         audioEngine.setMasterVolume(audioRepository.getMasterVolume());
+        
+        loadSoundPack(audioRepository.getCurrentSoundPack());
     }
     
     /**
@@ -59,14 +91,111 @@ public class PadViewModel extends AndroidViewModel {
     }
     
     /**
-     * Load a sound pack
+     * Let go of a pad, fading out gated and looping pads
+     */
+    public void releasePad(int padIndex) {
+        audioEngine.releasePad(padIndex);
+    }
+    
+    /**
+     * Choose what releasing a pad does
+     */
+    public void setPadMode(int padIndex, PadMode mode) {
+        audioEngine.setPadMode(padIndex, mode);
+    }
+    
+    /**
+     * Send part of a pad to the shared reverb ({@link Constants#AUX_BUS_REVERB})
+     * or delay ({@link Constants#AUX_BUS_DELAY}), 0..1
+     */
+    public void setPadSend(int padIndex, int bus, float level) {
+        audioEngine.setPadSend(padIndex, bus, level);
+    }
+    
+    /**
+     * Set a pad's attack, decay, sustain and release
+     */
+    public void setPadEnvelope(int padIndex, Envelope envelope) {
+        audioEngine.setPadEnvelope(padIndex, envelope);
+    }
+    
+    /**
+     * Run a pad's voices through a resonant filter, or {@link PadFilter#OFF}
+     */
+    public void setPadFilter(int padIndex, PadFilter filter) {
+        audioEngine.setPadFilter(padIndex, filter);
+    }
+    
+    /**
+     * Duck a group of pads under one key pad, typically the bass and pads under
+     * the kick, or stop ducking with an empty group. {@link Ducker.KeyMode#TRIGGER}
+     * ducks from the frame of every hit; {@link Ducker.KeyMode#AUDIO} follows the
+     * key pad's level. Does nothing on the SoundPool backend.
+     */
+    public void setSidechainDuck(int keyPad, int[] targetPads, Ducker.KeyMode mode) {
+        Ducker ducker = audioEngine.getDucker();
+        if (ducker == null) {
+            return;
+        }
+        for (int pad = 0; pad < Constants.TOTAL_PADS; pad++) {
+            ducker.setKeyPad(pad, pad == keyPad);
+            ducker.setTargetPad(pad, false);
+        }
+        for (int pad : targetPads) {
+            ducker.setTargetPad(pad, true);
+        }
+        ducker.setKeyMode(mode);
+        ducker.setEnabled(targetPads.length > 0);
+    }
+    
+    /**
+     * Load a sound pack. {@link #getIsPackReady()} turns false until every pad
+     * is playable or has failed, then {@link #getPackLoadResult()} reports the outcome.
      */
     public void loadSoundPack(String packName) {
         currentSoundPack.setValue(packName);
         audioRepository.setCurrentSoundPack(packName);
         
-        // In production, load actual sounds from resources
-        // For now, this is a placeholder
+        SoundPack pack = SoundPack.findPack(packName);
+        if (pack != null) {
+            isPackReady.setValue(false);
+            packLoader.execute(() -> loadPack(pack));
+        }
+    }
+    
+    /**
+     * Map a converted copy of the pack if there is an up-to-date one, otherwise
+     * decode its resources in parallel and convert it so the next launch can map it
+     */
+    private void loadPack(SoundPack pack) {
+        File packFile = SamplePackConverter.getPackFile(getApplication(), pack.getName());
+        boolean converted = SamplePackConverter.isCurrent(getApplication(), pack, audioEngine.getSampleRate(),
+            packFile);
+        // A stale conversion, e.g. from before an app update, is replaced rather than mapped
+        pack.setPackFile(converted ? packFile : null);
+        
+        pack.loadIntoEngineAsync(getApplication(), audioEngine).whenComplete((result, error) -> {
+            if (error != null) {
+                if (!(error.getCause() instanceof CancellationException)) {
+                    Log.e(TAG, "Failed to load pack " + pack.getName(), error);
+                    isPackReady.postValue(true);
+                }
+                return;
+            }
+            packLoadResult.postValue(result);
+            isPackReady.postValue(true);
+            
+            if (!converted && result.isComplete() && pack.getSoundCount() > 0) {
+                packLoader.execute(() -> {
+                    try {
+                        SamplePackConverter.convert(getApplication(), pack, audioEngine.getSampleCache(),
+                            audioEngine.getSampleRate(), packFile);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Failed to convert pack " + pack.getName(), e);
+                    }
+                });
+            }
+        });
     }
     
     /**
@@ -76,6 +205,7 @@ public class PadViewModel extends AndroidViewModel {
         int clampedBpm = Math.max(Constants.MIN_BPM, Math.min(Constants.MAX_BPM, newBpm));
         bpm.setValue(clampedBpm);
         audioRepository.setBpm(clampedBpm);
+        effectsProcessor.setBpm(clampedBpm);
     }
     
     /**
@@ -98,6 +228,27 @@ public class PadViewModel extends AndroidViewModel {
         }
     }
     
+    /**
+     * Play a pad transposed by semitones, e.g. to play a tuned 808 melodically
+     */
+    public void playPad(int padIndex, float velocity, int semitones) {
+        audioEngine.playPad(padIndex, velocity, semitones * 100.0f);
+    }
+    
+    /**
+     * Tune a pad by semitones plus cents
+     */
+    public void setPadPitch(int padIndex, int semitones, float cents) {
+        audioEngine.setPadPitch(padIndex, semitones, cents);
+    }
+    
+    /**
+     * Pad tuning in cents
+     */
+    public float getPadPitch(int padIndex) {
+        return audioEngine.getPadPitch(padIndex);
+    }
+    
     /**
      * Set master volume
      */
@@ -168,6 +319,14 @@ public class PadViewModel extends AndroidViewModel {
         return isLoopMode;
     }
     
+    public LiveData<Boolean> getIsPackReady() {
+        return isPackReady;
+    }
+    
+    public LiveData<PackLoadResult> getPackLoadResult() {
+        return packLoadResult;
+    }
+    
     public AudioEngine getAudioEngine() {
         return audioEngine;
     }
@@ -175,6 +334,7 @@ public class PadViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        packLoader.shutdownNow();
         audioEngine.release();
         padRepository.shutdown();
     }
@@ -1,31 +1,55 @@
 package com.pixandroid.musicpad.viewmodel;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import com.pixandroid.musicpad.audio.AudioEngine;
+import com.pixandroid.musicpad.audio.AudioProcessor;
+import com.pixandroid.musicpad.audio.EffectsProcessor;
+import com.pixandroid.musicpad.audio.HitSource;
+import com.pixandroid.musicpad.audio.OfflineRenderer;
+import com.pixandroid.musicpad.audio.ParallelOfflineRenderer;
 import com.pixandroid.musicpad.audio.RecordingEngine;
+import com.pixandroid.musicpad.audio.SoftwareMixer;
+import com.pixandroid.musicpad.audio.WavWriter;
 import com.pixandroid.musicpad.models.PadHit;
 import com.pixandroid.musicpad.models.Session;
 import com.pixandroid.musicpad.repository.PadRepository;
+import com.pixandroid.musicpad.utils.Constants;
 import com.pixandroid.musicpad.utils.Utils;
+import java.io.File;
+import java.io.IOException;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * ViewModel for recording management
  */
 public class RecordingViewModel extends AndroidViewModel {
     
+    private static final String TAG = "RecordingViewModel";
+    
     private final PadRepository padRepository;
+    private final AudioEngine audioEngine;
     private final RecordingEngine recordingEngine;
+    private final ExecutorService exportExecutor;
+    private final Handler mainHandler;
     
     private final MutableLiveData<Boolean> isRecording;
     private final MutableLiveData<Boolean> isPlaying;
     private final MutableLiveData<Long> recordingDuration;
     private final MutableLiveData<Session> currentSession;
+    private final MutableLiveData<Boolean> isExporting;
+    private final MutableLiveData<File> exportedFile;
+    private final MutableLiveData<String> exportError;
     
     private long currentSessionId = -1;
     
@@ -33,12 +57,18 @@ public class RecordingViewModel extends AndroidViewModel {
         super(application);
         
         padRepository = new PadRepository(application);
+        this.audioEngine = audioEngine;
         recordingEngine = new RecordingEngine(audioEngine);
+        exportExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
         
         isRecording = new MutableLiveData<>(false);
         isPlaying = new MutableLiveData<>(false);
         recordingDuration = new MutableLiveData<>(0L);
         currentSession = new MutableLiveData<>();
+        isExporting = new MutableLiveData<>(false);
+        exportedFile = new MutableLiveData<>();
+        exportError = new MutableLiveData<>();
         
         setupRecordingListener();
     }
@@ -111,6 +141,7 @@ public class RecordingViewModel extends AndroidViewModel {
         Session session = new Session();
         session.setName(Utils.generateRecordingName());
         session.setDuration(recordingEngine.getRecordingDuration());
+        session.setSampleRate(recordingEngine.getSampleRate());
         session.setCreatedAt(new Date());
         session.setModifiedAt(new Date());
         
@@ -133,10 +164,78 @@ public class RecordingViewModel extends AndroidViewModel {
     /**
      * Load and play a session
      */
-    public void playSession(long sessionId) {
-        padRepository.getHitsForSessionSync(sessionId, hits -> {
+    public void playSession(Session session) {
+        padRepository.getHitsForSessionSync(session.getId(), hits -> {
             if (hits != null && !hits.isEmpty()) {
-                recordingEngine.startPlayback(hits);
+                // Playback schedules through the main-thread Handler, so start it there
+                mainHandler.post(() -> recordingEngine.startPlayback(hits, session.getSampleRate()));
+            }
+        });
+    }
+    
+    /**
+     * Render a session offline to a WAV file in the app's exports directory.
+     * Runs faster than real time on a background thread, spread across cores
+     * when there is more than one, and streams to disk in chunks; the result is posted to {@link #getExportedFile()} or {@link #getExportError()}.
+     */
+    public void exportSession(Session session) {
+        SoftwareMixer liveMixer = audioEngine.getMixer();
+        if (liveMixer == null) {
+            exportError.setValue("Export requires the mixer audio backend");
+            return;
+        }
+        
+        isExporting.setValue(true);
+        exportExecutor.execute(() -> {
+            File dir = new File(getApplication().getExternalFilesDir(null), Constants.EXPORTS_DIR);
+            File file = new File(dir, session.getName().replaceAll("[^A-Za-z0-9_\\-]", "_")
+                + "." + Constants.EXPORT_FORMAT_WAV);
+            
+            SoftwareMixer mixer = OfflineRenderer.copyMixer(liveMixer);
+            // Same effect code as the live mix, on its own state, with room for the tails to ring out
+            long tailFrames = 0;
+            AudioProcessor liveEffects = liveMixer.getMasterProcessor();
+            if (liveEffects instanceof EffectsProcessor) {
+                EffectsProcessor effects = ((EffectsProcessor) liveEffects).copy();
+                mixer.setMasterProcessor(effects);
+                // Send tails ring in parallel with each other, then through the master chain
+                long sendTail = 0;
+                for (int bus = 0; bus < mixer.getAuxBusCount(); bus++) {
+                    mixer.setAuxEffect(bus, effects.getSendEffect(bus));
+                    if (mixer.isAuxBusUsed(bus)) {
+                        sendTail = Math.max(sendTail, effects.getSendTailFrames(bus));
+                    }
+                }
+                tailFrames = sendTail + effects.getTailFrames();
+            }
+            int sampleRate = mixer.getSampleRate();
+            long minFrames = session.getDuration() * sampleRate / 1000L;
+            HitSource hits = padRepository.openHitSource(session, sampleRate);
+            WavWriter writer = new WavWriter(file, sampleRate, Constants.EXPORT_CHUNK_FRAMES);
+            
+            try {
+                long start = System.nanoTime();
+                long frames;
+                if (Runtime.getRuntime().availableProcessors() > 1) {
+                    ParallelOfflineRenderer renderer = new ParallelOfflineRenderer(mixer,
+                        ForkJoinPool.commonPool(), Constants.EXPORT_SLICE_FRAMES);
+                    renderer.setTailFrames(tailFrames);
+                    frames = renderer.render(hits, writer, minFrames);
+                } else {
+                    OfflineRenderer renderer = new OfflineRenderer(mixer, Constants.EXPORT_CHUNK_FRAMES);
+                    renderer.setTailFrames(tailFrames);
+                    frames = renderer.render(hits, writer, minFrames);
+                }
+                long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                Log.d(TAG, "Exported " + frames + " frames in " + elapsedMs + " ms ("
+                    + (frames * 1000L / sampleRate) / elapsedMs + "x real time)");
+                exportedFile.postValue(file);
+            } catch (IOException e) {
+                Log.e(TAG, "Export failed", e);
+                file.delete();
+                exportError.postValue(e.getMessage());
+            } finally {
+                isExporting.postValue(false);
             }
         });
     }
@@ -200,6 +299,18 @@ public class RecordingViewModel extends AndroidViewModel {
         return currentSession;
     }
     
+    public LiveData<Boolean> getIsExporting() {
+        return isExporting;
+    }
+    
+    public LiveData<File> getExportedFile() {
+        return exportedFile;
+    }
+    
+    public LiveData<String> getExportError() {
+        return exportError;
+    }
+    
     public RecordingEngine getRecordingEngine() {
         return recordingEngine;
     }
@@ -208,6 +319,7 @@ public class RecordingViewModel extends AndroidViewModel {
     protected void onCleared() {
         super.onCleared();
         recordingEngine.stopPlayback();
+        exportExecutor.shutdown();
         padRepository.shutdown();
     }
 }
@@ -0,0 +1,89 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Measures the convolution reverb's cost for impulse responses of several
+ * lengths at several processing block sizes.
+ *
+ * The block size is also the head partition length, so it sets the reverb's
+ * latency. A stereo response of decaying noise is prepared once per
+ * combination and then stereo noise is run through it block by block. The
+ * average is what the block size costs on the whole. The 99th percentile
+ * block includes the tail's block boundaries, so it shows how well their work
+ * is spread, without the odd scheduler hiccup that a plain maximum picks up.
+ */
+public class ConvolutionBenchmark {
+    
+    private static final float[] IR_SECONDS = {0.5f, 1.0f, 2.0f, 3.0f};
+    private static final int[] BLOCK_FRAMES = {64, 128, 256, 512};
+    private static final int RENDER_SECONDS = 20;
+    
+    public static void main(String[] args) throws IOException {
+        int sampleRate = Constants.MIXER_SAMPLE_RATE;
+        for (float seconds : IR_SECONDS) {
+            PcmSample ir = room(sampleRate, seconds);
+            for (int blockFrames : BLOCK_FRAMES) {
+                report(sampleRate, seconds, ir, blockFrames);
+            }
+        }
+    }
+    
+    private static void report(int sampleRate, float seconds, PcmSample ir, int blockFrames) throws IOException {
+        long prepareStart = System.nanoTime();
+        ImpulseResponse prepared = ImpulseResponse.prepare("bench:" + seconds, () -> ir, sampleRate, blockFrames);
+        long prepareMs = (System.nanoTime() - prepareStart) / 1_000_000;
+        
+        int blocks = RENDER_SECONDS * sampleRate / blockFrames;
+        float[] left = new float[blockFrames];
+        float[] right = new float[blockFrames];
+        long seed = 11;
+        
+        // First pass warms up the JIT; the second is timed
+        long nanos = 0;
+        long[] times = new long[blocks];
+        for (int pass = 0; pass < 2; pass++) {
+            ConvolutionReverb reverb = new ConvolutionReverb(sampleRate, blockFrames);
+            reverb.setImpulseResponse(prepared);
+            nanos = 0;
+            for (int b = 0; b < blocks; b++) {
+                for (int i = 0; i < blockFrames; i++) {
+                    seed = seed * 6364136223846793005L + 1442695040888963407L;
+                    left[i] = (seed >>> 40) / (float) (1 << 24) - 0.5f;
+                    right[i] = -left[i];
+                }
+                long start = System.nanoTime();
+                reverb.process(left, right, blockFrames);
+                long elapsed = System.nanoTime() - start;
+                nanos += elapsed;
+                times[b] = elapsed;
+            }
+        }
+        Arrays.sort(times);
+        long p99 = times[blocks * 99 / 100];
+        
+        double budgetNs = blockFrames * 1e9 / sampleRate;
+        double average = nanos / (double) blocks;
+        System.out.printf("ir %.1f s block %4d (%4.1f ms latency): %7.0f ns avg = %5.2f%%, p99 %5.1f%%,"
+                + " prepared in %d ms%n", seconds, blockFrames, blockFrames * 1000.0 / sampleRate, average,
+            100 * average / budgetNs, 100 * p99 / budgetNs, prepareMs);
+    }
+    
+    /**
+     * Stereo noise with an exponential decay of 60 dB over the given length
+     */
+    private static PcmSample room(int sampleRate, float seconds) {
+        int frames = (int) (seconds * sampleRate);
+        float[] pcm = new float[frames * 2];
+        double decay = Math.log(1000.0) / frames;
+        long seed = 3;
+        for (int i = 0; i < pcm.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            float noise = (seed >>> 40) / (float) (1 << 24) - 0.5f;
+            pcm[i] = (float) (noise * Math.exp(-decay * (i / 2)));
+        }
+        return PcmSample.fromInterleaved(pcm, pcm.length, 2, sampleRate);
+    }
+}
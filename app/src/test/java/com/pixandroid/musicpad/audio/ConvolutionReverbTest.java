@@ -0,0 +1,139 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * The partitioned convolution, head and tail stages together, must equal a
+ * direct convolution with the normalised response, one block late.
+ */
+public class ConvolutionReverbTest {
+    
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 64;
+    private static final int INPUT_FRAMES = 9000;
+    private static final float TOLERANCE = 1e-5f;
+    
+    @Test
+    public void stereoResponseWithATailMatchesDirectConvolution() throws IOException {
+        PcmSample ir = response(5000, 2, 1);
+        ImpulseResponse prepared = prepare("stereo-tail", ir);
+        assertNotNull(prepared.getTail());
+        assertConvolves(prepared, ir);
+    }
+    
+    @Test
+    public void monoResponseFeedsBothChannels() throws IOException {
+        PcmSample ir = response(3000, 1, 2);
+        ImpulseResponse prepared = prepare("mono-tail", ir);
+        assertNotNull(prepared.getTail());
+        assertConvolves(prepared, ir);
+    }
+    
+    @Test
+    public void responseShorterThanTheHeadNeedsNoTail() throws IOException {
+        PcmSample ir = response(700, 2, 3);
+        ImpulseResponse prepared = prepare("stereo-head", ir);
+        assertNull(prepared.getTail());
+        assertConvolves(prepared, ir);
+    }
+    
+    @Test
+    public void resetStartsOverFromSilence() throws IOException {
+        PcmSample ir = response(5000, 2, 4);
+        ImpulseResponse prepared = prepare("reset", ir);
+        ConvolutionReverb reverb = new ConvolutionReverb(SAMPLE_RATE, BLOCK);
+        reverb.setImpulseResponse(prepared);
+        reverb.setMix(1.0f);
+        float[][] noise = noise(3000, 5);
+        reverb.process(noise[0].clone(), noise[1].clone(), noise[0].length);
+        reverb.reset();
+        assertConvolves(reverb, prepared, ir);
+    }
+    
+    private static void assertConvolves(ImpulseResponse prepared, PcmSample ir) {
+        ConvolutionReverb reverb = new ConvolutionReverb(SAMPLE_RATE, BLOCK);
+        reverb.setImpulseResponse(prepared);
+        reverb.setMix(1.0f);
+        assertConvolves(reverb, prepared, ir);
+    }
+    
+    private static void assertConvolves(ConvolutionReverb reverb, ImpulseResponse prepared, PcmSample ir) {
+        assertEquals(BLOCK, reverb.getLatencyFrames());
+        float[][] dry = noise(INPUT_FRAMES, 6);
+        float[] left = dry[0].clone();
+        float[] right = dry[1].clone();
+        
+        // Uneven calls, some longer than the reverb's block, some cutting partitions in two
+        Random sizes = new Random(7);
+        float[] chunkLeft = new float[4 * BLOCK];
+        float[] chunkRight = new float[4 * BLOCK];
+        for (int start = 0; start < INPUT_FRAMES; ) {
+            int n = Math.min(INPUT_FRAMES - start, 1 + sizes.nextInt(chunkLeft.length));
+            System.arraycopy(left, start, chunkLeft, 0, n);
+            System.arraycopy(right, start, chunkRight, 0, n);
+            reverb.process(chunkLeft, chunkRight, n);
+            System.arraycopy(chunkLeft, 0, left, start, n);
+            System.arraycopy(chunkRight, 0, right, start, n);
+            start += n;
+        }
+        
+        double gain = normalisation(ir);
+        for (int channel = 0; channel < 2; channel++) {
+            float[] in = dry[channel];
+            float[] out = channel == 0 ? left : right;
+            int irChannel = ir.getChannels() == 2 ? channel : 0;
+            for (int n = 0; n < INPUT_FRAMES; n++) {
+                double wet = 0;
+                for (int k = 0; k < prepared.getFrames() && k <= n - BLOCK; k++) {
+                    wet += ir.get(k * ir.getChannels() + irChannel) * gain * in[n - BLOCK - k];
+                }
+                assertEquals("channel " + channel + ", frame " + n, in[n] + wet, out[n], TOLERANCE);
+            }
+        }
+    }
+    
+    /**
+     * Scale that gives the response unit energy per channel, as ImpulseResponse applies it
+     */
+    private static double normalisation(PcmSample ir) {
+        double energy = 0;
+        for (int i = 0; i < ir.getFrames() * ir.getChannels(); i++) {
+            energy += ir.get(i) * ir.get(i);
+        }
+        return 1.0 / Math.sqrt(energy / ir.getChannels());
+    }
+    
+    private static ImpulseResponse prepare(String name, PcmSample ir) throws IOException {
+        return ImpulseResponse.prepare("test:" + name, () -> ir, SAMPLE_RATE, BLOCK);
+    }
+    
+    /**
+     * Exponentially decaying noise, different in each channel
+     */
+    private static PcmSample response(int frames, int channels, long seed) {
+        Random random = new Random(seed);
+        float[] pcm = new float[frames * channels];
+        for (int i = 0; i < pcm.length; i++) {
+            float decay = (float) Math.exp(-4.0 * (i / channels) / frames);
+            pcm[i] = (random.nextFloat() * 2.0f - 1.0f) * decay;
+        }
+        return PcmSample.fromInterleaved(pcm, pcm.length, channels, SAMPLE_RATE);
+    }
+    
+    private static float[][] noise(int frames, long seed) {
+        Random random = new Random(seed);
+        float[][] noise = new float[2][frames];
+        for (int channel = 0; channel < 2; channel++) {
+            for (int i = 0; i < frames; i++) {
+                noise[channel][i] = random.nextFloat() - 0.5f;
+            }
+        }
+        return noise;
+    }
+}
@@ -0,0 +1,41 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DecibelsTest {
+    
+    private static final float TOLERANCE_DB = 0.001f;
+    
+    @Test
+    public void toGainMatchesThePowerFunction() {
+        for (float db = Decibels.MIN_DB + 1.0f; db <= 0.0f; db += 0.0137f) {
+            float gain = Decibels.toGain(db);
+            assertEquals("at " + db + " dB", db, (float) (20.0 * Math.log10(gain)), TOLERANCE_DB);
+        }
+    }
+    
+    @Test
+    public void toGainClampsOutsideTheTable() {
+        assertEquals(1.0f, Decibels.toGain(0.0f), 0.0f);
+        assertEquals(1.0f, Decibels.toGain(6.0f), 0.0f);
+        assertEquals(0.0f, Decibels.toGain(Decibels.MIN_DB - 10.0f), 0.0f);
+    }
+    
+    @Test
+    public void fromGainMatchesTheLogarithm() {
+        for (float db = -180.0f; db <= 24.0f; db += 0.0113f) {
+            float gain = (float) Math.pow(10.0, db / 20.0);
+            assertEquals("at " + db + " dB", 20.0 * Math.log10(gain), Decibels.fromGain(gain), TOLERANCE_DB);
+        }
+        assertEquals(0.0f, Decibels.fromGain(1.0f), 0.0f);
+    }
+    
+    @Test
+    public void fromGainOfSilenceIsFinite() {
+        float floor = Decibels.fromGain(Float.MIN_NORMAL);
+        assertEquals(floor, Decibels.fromGain(0.0f), 0.0f);
+        assertEquals(floor, Decibels.fromGain(Float.MIN_VALUE), 0.0f);
+    }
+}
@@ -0,0 +1,141 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.pixandroid.musicpad.audio.EffectsProcessor.EffectType;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EffectsProcessorTest {
+    
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 128;
+    
+    private EffectsProcessor effects;
+    private final float[] left = new float[BLOCK];
+    private final float[] right = new float[BLOCK];
+    private long frame;
+    
+    @Before
+    public void setUp() {
+        effects = new EffectsProcessor(SAMPLE_RATE);
+        effects.setBpm(120);
+    }
+    
+    @Test
+    public void effectTurnedOffStaysUntilItHasSettled() {
+        effects.setAmount(EffectType.DELAY, 1.0f);
+        renderSilence(SAMPLE_RATE / 10);
+        effects.setAmount(EffectType.DELAY, 0.0f);
+        long settled = frame + settleFrames() + delayTail();
+        
+        assertEquals(Collections.singletonList(EffectType.DELAY), effects.getChain().getActiveTypes());
+        renderSilence(settled - frame - BLOCK);
+        assertEquals(Collections.singletonList(EffectType.DELAY), effects.getChain().getActiveTypes());
+        renderSilence(2 * BLOCK);
+        assertTrue(effects.getChain().getActiveTypes().isEmpty());
+    }
+    
+    @Test
+    public void bypassTakesAnEffectOutAtOnce() {
+        effects.setAmount(EffectType.REVERB, 1.0f);
+        renderSilence(BLOCK);
+        effects.setBypassed(EffectType.REVERB, true);
+        assertTrue(effects.getChain().getActiveTypes().isEmpty());
+    }
+    
+    @Test
+    public void turnedOffEffectFadesInsteadOfCuttingOut() {
+        effects.setAmount(EffectType.DELAY, 1.0f);
+        float[] before = renderSine(2 * SAMPLE_RATE);
+        effects.setAmount(EffectType.DELAY, 0.0f);
+        float[] after = renderSine(settleFrames() + delayTail() + SAMPLE_RATE / 10);
+        assertTrue(effects.getChain().getActiveTypes().isEmpty());
+        
+        // The mix glides to zero, so the output bends no more sharply than the steady delayed sine
+        float steady = largestKink(Arrays.copyOfRange(before, SAMPLE_RATE, before.length));
+        assertTrue("kink " + largestKink(after) + " over " + steady, largestKink(after) <= steady * 2.0f);
+    }
+    
+    @Test
+    public void effectTurnedBackOnWhileFadingKeepsItsRepeats() {
+        effects.setAmount(EffectType.ECHO, 1.0f);
+        Arrays.fill(left, 0.0f);
+        Arrays.fill(right, 0.0f);
+        left[0] = 1.0f;
+        right[0] = 1.0f;
+        effects.process(left, right, BLOCK);
+        frame += BLOCK;
+        effects.setAmount(EffectType.ECHO, 0.0f);
+        renderSilence(BLOCK);
+        effects.setAmount(EffectType.ECHO, 1.0f);
+        
+        // A dotted quarter at 120 BPM; a reset on rejoining would have emptied the lines
+        float loudest = 0.0f;
+        for (int i = 0; i < SAMPLE_RATE / BLOCK; i++) {
+            Arrays.fill(left, 0.0f);
+            Arrays.fill(right, 0.0f);
+            effects.process(left, right, BLOCK);
+            for (int j = 0; j < BLOCK; j++) {
+                loudest = Math.max(loudest, Math.abs(left[j]) + Math.abs(right[j]));
+            }
+        }
+        assertTrue("loudest " + loudest, loudest > 0.05f);
+    }
+    
+    private void renderSilence(long frames) {
+        for (long done = 0; done < frames; done += BLOCK) {
+            Arrays.fill(left, 0.0f);
+            Arrays.fill(right, 0.0f);
+            effects.process(left, right, BLOCK);
+            frame += BLOCK;
+        }
+    }
+    
+    /**
+     * Run a quiet 220 Hz sine through the effects and return the left output
+     */
+    private float[] renderSine(long frames) {
+        float[] out = new float[(int) (frames / BLOCK * BLOCK)];
+        for (int done = 0; done < out.length; done += BLOCK) {
+            for (int i = 0; i < BLOCK; i++) {
+                float s = (float) (0.1 * Math.sin(2.0 * Math.PI * 220.0 * (frame + i) / SAMPLE_RATE));
+                left[i] = s;
+                right[i] = s;
+            }
+            effects.process(left, right, BLOCK);
+            System.arraycopy(left, 0, out, done, BLOCK);
+            frame += BLOCK;
+        }
+        return out;
+    }
+    
+    /**
+     * Largest second difference: small for sines, as large as the jump at a step
+     */
+    private static float largestKink(float[] signal) {
+        float largest = 0.0f;
+        for (int i = 1; i < signal.length - 1; i++) {
+            largest = Math.max(largest, Math.abs(signal[i + 1] - 2.0f * signal[i] + signal[i - 1]));
+        }
+        return largest;
+    }
+    
+    private static long settleFrames() {
+        return (long) Math.ceil(SmoothedValue.SETTLE_MS * SAMPLE_RATE / 1000.0);
+    }
+    
+    /**
+     * Tail of the delay at the HIGH settings it is turned off from
+     */
+    private static long delayTail() {
+        StereoDelay delay = new StereoDelay(SAMPLE_RATE);
+        delay.setBpm(120);
+        delay.setDivision(StereoDelay.Division.DOTTED_EIGHTH);
+        delay.setFeedback(0.5f);
+        return delay.getTailFrames();
+    }
+}
@@ -0,0 +1,97 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures offline export speed as a multiple of real time.
+ *
+ * Renders a dense five-minute session (a 16th-note hit on every step across
+ * all 32 pads at 120 BPM) to a temporary WAV file. Run from the IDE or with
+ * {@code java} against the unit-test classpath; the target is at least 50x
+ * real time on a single core.
+ */
+public class OfflineRenderBenchmark {
+    
+    static final int SESSION_SECONDS = 300;
+    private static final int BPM = 120;
+    private static final int RUNS = 3;
+    
+    public static void main(String[] args) throws IOException {
+        int sampleRate = Constants.MIXER_SAMPLE_RATE;
+        long sessionFrames = (long) SESSION_SECONDS * sampleRate;
+        
+        File file = File.createTempFile("offline-render", ".wav");
+        file.deleteOnExit();
+        
+        for (int run = 1; run <= RUNS; run++) {
+            SoftwareMixer mixer = createMixer(sampleRate);
+            OfflineRenderer renderer = new OfflineRenderer(mixer, Constants.EXPORT_CHUNK_FRAMES);
+            WavWriter writer = new WavWriter(file, sampleRate, renderer.getChunkFrames());
+            
+            long start = System.nanoTime();
+            long frames = renderer.render(new StepHitSource(sampleRate, sessionFrames), writer, sessionFrames);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double audioSeconds = frames / (double) sampleRate;
+            
+            System.out.printf("run %d: %.1f s of audio in %.3f s = %.1fx real time (%d MB written)%n",
+                run, audioSeconds, seconds, audioSeconds / seconds, file.length() >> 20);
+        }
+    }
+    
+    /**
+     * Mixer with a 250 ms decaying tone on every pad, a mix of mono and stereo
+     */
+    static SoftwareMixer createMixer(int sampleRate) {
+        SoftwareMixer mixer = new SoftwareMixer(sampleRate, Constants.MIXER_BLOCK_FRAMES,
+            Constants.MIXER_MAX_VOICES);
+        int frames = sampleRate / 4;
+        for (int pad = 0; pad < Constants.TOTAL_PADS; pad++) {
+            int channels = pad % 2 == 0 ? 1 : 2;
+            float[] pcm = new float[frames * channels];
+            double step = 2 * Math.PI * (110 + pad * 20) / sampleRate;
+            for (int i = 0; i < frames; i++) {
+                float v = (float) (Math.sin(i * step) * Math.exp(-6.0 * i / frames));
+                for (int c = 0; c < channels; c++) {
+                    pcm[i * channels + c] = v;
+                }
+            }
+            mixer.setSample(pad, PcmSample.fromInterleaved(pcm, pcm.length, channels, sampleRate));
+        }
+        mixer.setMasterVolume(0.25f);
+        return mixer;
+    }
+    
+    /**
+     * Every pad on every 16th note, generated on the fly
+     */
+    static final class StepHitSource implements HitSource {
+        
+        private final long stepFrames;
+        private final long endFrame;
+        private long step;
+        private int pad;
+        
+        StepHitSource(int sampleRate, long endFrame) {
+            this.stepFrames = sampleRate * 60L / BPM / 4;
+            this.endFrame = endFrame;
+        }
+        
+        @Override
+        public int read(int[] pads, float[] velocities, long[] frames, int max) {
+            int count = 0;
+            while (count < max && step * stepFrames < endFrame) {
+                pads[count] = pad;
+                velocities[count] = 0.5f + (pad % 4) * 0.125f;
+                frames[count] = step * stepFrames;
+                count++;
+                if (++pad == Constants.TOTAL_PADS) {
+                    pad = 0;
+                    step++;
+                }
+            }
+            return count;
+        }
+    }
+}
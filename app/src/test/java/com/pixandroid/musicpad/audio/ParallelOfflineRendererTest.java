@@ -0,0 +1,213 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+
+/**
+ * A sliced parallel export must be byte-identical to a serial one, whatever
+ * the thread count and slice size, with every voice and mix feature that
+ * carries state across blocks switched on.
+ */
+public class ParallelOfflineRendererTest {
+    
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 128;
+    private static final int HITS = 200;
+    private static final long MIN_FRAMES = 3 * SAMPLE_RATE;
+    private static final long TAIL_FRAMES = SAMPLE_RATE / 2;
+    private static final int MAX_THREADS = 3;
+    private static final int[] SLICE_FRAMES = {BLOCK, 1000, 12000, SAMPLE_RATE * 2};
+    
+    @Test
+    public void parallelRenderMatchesSerialWithAudioKeyedDucking() throws IOException {
+        assertParallelMatchesSerial(Ducker.KeyMode.AUDIO);
+    }
+    
+    @Test
+    public void parallelRenderMatchesSerialWithTriggerKeyedDucking() throws IOException {
+        assertParallelMatchesSerial(Ducker.KeyMode.TRIGGER);
+    }
+    
+    @Test
+    public void sessionExercisesTheDucker() throws IOException {
+        int[] ducked = renderSerial(session(Ducker.KeyMode.TRIGGER));
+        SoftwareMixer plain = session(Ducker.KeyMode.TRIGGER);
+        plain.getDucker().setEnabled(false);
+        assertFalse(Arrays.equals(ducked, renderSerial(plain)));
+    }
+    
+    private static void assertParallelMatchesSerial(Ducker.KeyMode keyMode) throws IOException {
+        int[] serial = renderSerial(session(keyMode));
+        assertTrue(serial.length >= MIN_FRAMES * 2);
+        for (int threads = 1; threads <= MAX_THREADS; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int sliceFrames : SLICE_FRAMES) {
+                    ParallelOfflineRenderer renderer = new ParallelOfflineRenderer(session(keyMode), pool, sliceFrames);
+                    renderer.setTailFrames(TAIL_FRAMES);
+                    CaptureSink sink = new CaptureSink();
+                    long written = renderer.render(hits(), sink, MIN_FRAMES);
+                    String label = keyMode + " key, " + threads + " threads, " + sliceFrames + "-frame slices";
+                    assertEquals(label, serial.length / 2, written);
+                    assertArrayEquals(label, serial, sink.toBits());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    private static int[] renderSerial(SoftwareMixer mixer) throws IOException {
+        OfflineRenderer renderer = new OfflineRenderer(mixer, 4096);
+        renderer.setTailFrames(TAIL_FRAMES);
+        CaptureSink sink = new CaptureSink();
+        renderer.render(hits(), sink, MIN_FRAMES);
+        return sink.toBits();
+    }
+    
+    /**
+     * A mixer with pitched, enveloped, filtered, choked and sent pads, sidechain
+     * ducking and a stateful master chain. Each call builds fresh effect state.
+     */
+    private static SoftwareMixer session(Ducker.KeyMode keyMode) {
+        SoftwareMixer mixer = new SoftwareMixer(SAMPLE_RATE, BLOCK, 12); // few voices, so some are stolen
+        for (int pad = 0; pad < Constants.TOTAL_PADS; pad++) {
+            int channels = pad % 4 == 0 ? 2 : 1;
+            mixer.setSample(pad, tone(pad, channels, SAMPLE_RATE / 4 + pad * 1500));
+            mixer.setPadVolume(pad, 0.3f + pad * 0.02f);
+            mixer.setPadPitch(pad, pad % 5 - 2, pad % 3 * 13.0f);
+            mixer.setPadMode(pad, pad % 2 == 0 ? PadMode.GATE : PadMode.ONE_SHOT);
+            mixer.setPadEnvelope(pad, new Envelope(pad % 3 * 4.0f, pad % 4 * 30.0f, pad % 4 == 0 ? 0.0f : 0.6f, 60.0f));
+            if (pad % 3 != 2) {
+                PadFilter.Type type = PadFilter.Type.values()[pad % 3];
+                mixer.setPadFilter(pad, new PadFilter(type, 300.0f + pad * 250.0f, 0.7f, 2.0f));
+            }
+            if (pad % 3 == 0) {
+                mixer.setPadSend(pad, Constants.AUX_BUS_REVERB, 0.5f);
+            }
+            if (pad % 4 == 1) {
+                mixer.setPadSend(pad, Constants.AUX_BUS_DELAY, 0.4f);
+            }
+        }
+        mixer.setPadMaxVoices(7, 2);
+        mixer.setPadChokeGroup(2, 1);
+        mixer.setPadChokeGroup(3, 1);
+        mixer.setStealPolicy(StealPolicy.QUIETEST);
+        
+        Reverb reverb = new Reverb(SAMPLE_RATE, BLOCK);
+        reverb.setMix(1.0f);
+        StereoDelay delay = new StereoDelay(SAMPLE_RATE);
+        delay.setMix(1.0f);
+        delay.setFeedback(0.5f);
+        mixer.setAuxEffect(Constants.AUX_BUS_REVERB, reverb);
+        mixer.setAuxEffect(Constants.AUX_BUS_DELAY, delay);
+        mixer.getAuxBus(Constants.AUX_BUS_DELAY).setReturnLevel(0.8f);
+        
+        Ducker ducker = mixer.getDucker();
+        ducker.setKeyMode(keyMode);
+        ducker.setKeyPad(0, true);
+        ducker.setKeyPad(8, true);
+        for (int pad = 1; pad < Constants.TOTAL_PADS; pad += 2) {
+            ducker.setTargetPad(pad, true);
+        }
+        ducker.setTargetBus(Constants.AUX_BUS_REVERB, true);
+        ducker.setDepthDb(-18.0f);
+        ducker.setThresholdDb(-30.0f);
+        ducker.setHoldMs(40.0f);
+        ducker.setEnabled(true);
+        
+        Equalizer equalizer = new Equalizer(SAMPLE_RATE, 4);
+        equalizer.setGainDb(0, 6.0f);
+        equalizer.setGainDb(3, -4.0f);
+        MasterDynamics dynamics = new MasterDynamics(SAMPLE_RATE);
+        dynamics.setCompressorEnabled(true);
+        dynamics.setThresholdDb(-18.0f);
+        mixer.setMasterProcessor(new AudioProcessor() {
+            @Override
+            public void process(float[] left, float[] right, int frames) {
+                equalizer.process(left, right, frames);
+                dynamics.process(left, right, frames);
+            }
+            
+            @Override
+            public void reset() {
+                equalizer.reset();
+                dynamics.reset();
+            }
+        });
+        mixer.setMasterVolume(0.8f);
+        return mixer;
+    }
+    
+    private static PcmSample tone(int pad, int channels, int frames) {
+        float[] pcm = new float[frames * channels];
+        double step = 2.0 * Math.PI * (55.0 * (1 + pad % 12)) / SAMPLE_RATE;
+        for (int i = 0; i < frames; i++) {
+            for (int c = 0; c < channels; c++) {
+                pcm[i * channels + c] = (float) (0.8 * Math.sin(i * step * (c + 1)));
+            }
+        }
+        return PcmSample.fromInterleaved(pcm, pcm.length, channels, SAMPLE_RATE);
+    }
+    
+    /**
+     * The same pseudo-random hits on every call, some landing inside a block
+     */
+    private static HitSource hits() {
+        Random random = new Random(42);
+        int[] served = {0};
+        long[] frame = {0};
+        return (pads, velocities, frames, max) -> {
+            int count = 0;
+            while (count < max && served[0] < HITS) {
+                frame[0] += random.nextInt(1500);
+                pads[count] = served[0] % 4 == 0 ? 0 : random.nextInt(Constants.TOTAL_PADS);
+                velocities[count] = 0.2f + 0.8f * random.nextFloat();
+                frames[count] = frame[0];
+                count++;
+                served[0]++;
+            }
+            return count;
+        };
+    }
+    
+    /**
+     * Keeps every sample written, as raw float bits
+     */
+    private static final class CaptureSink implements AudioSink {
+        private int[] bits = new int[1 << 16];
+        private int size;
+        
+        @Override
+        public void start() {
+        }
+        
+        @Override
+        public void write(float[] interleaved, int frames) {
+            int count = frames * 2;
+            if (size + count > bits.length) {
+                bits = Arrays.copyOf(bits, Math.max(bits.length * 2, size + count));
+            }
+            for (int i = 0; i < count; i++) {
+                bits[size++] = Float.floatToRawIntBits(interleaved[i]);
+            }
+        }
+        
+        @Override
+        public void stop() {
+        }
+        
+        int[] toBits() {
+            return Arrays.copyOf(bits, size);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how sliced offline rendering scales from 1 to N threads and checks
+ * that every run is bit-identical to the single-threaded OfflineRenderer.
+ *
+ * Uses the same dense five-minute session as {@link OfflineRenderBenchmark}.
+ * Pass the maximum thread count as the first argument; it defaults to the
+ * number of available processors.
+ */
+public class ParallelRenderBenchmark {
+    
+    private static final int SLICE_FRAMES = Constants.MIXER_SAMPLE_RATE; // one second
+    
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+            : Runtime.getRuntime().availableProcessors();
+        int sampleRate = Constants.MIXER_SAMPLE_RATE;
+        long sessionFrames = (long) OfflineRenderBenchmark.SESSION_SECONDS * sampleRate;
+        
+        HashingSink reference = new HashingSink();
+        long start = System.nanoTime();
+        new OfflineRenderer(OfflineRenderBenchmark.createMixer(sampleRate), Constants.EXPORT_CHUNK_FRAMES)
+            .render(new OfflineRenderBenchmark.StepHitSource(sampleRate, sessionFrames), reference, sessionFrames);
+        report("sequential", reference, sampleRate, System.nanoTime() - start, true);
+        
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                HashingSink sink = new HashingSink();
+                start = System.nanoTime();
+                new ParallelOfflineRenderer(OfflineRenderBenchmark.createMixer(sampleRate), pool, SLICE_FRAMES)
+                    .render(new OfflineRenderBenchmark.StepHitSource(sampleRate, sessionFrames), sink, sessionFrames);
+                report(threads + " thread(s)", sink, sampleRate, System.nanoTime() - start,
+                    sink.frames == reference.frames && sink.hash == reference.hash);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    private static void report(String label, HashingSink sink, int sampleRate, long nanos, boolean identical) {
+        double seconds = nanos / 1e9;
+        double audioSeconds = sink.frames / (double) sampleRate;
+        System.out.printf("%-12s %.3f s = %6.1fx real time, %s%n", label, seconds, audioSeconds / seconds,
+            identical ? "bit-identical" : "MISMATCH");
+    }
+    
+    /**
+     * Discards audio but folds every sample's bit pattern into a running hash
+     */
+    private static final class HashingSink implements AudioSink {
+        
+        long hash = 1125899906842597L;
+        long frames;
+        
+        @Override
+        public void start() {
+        }
+        
+        @Override
+        public void write(float[] interleaved, int frames) {
+            long h = hash;
+            for (int i = 0; i < frames * 2; i++) {
+                h = 31 * h + Float.floatToRawIntBits(interleaved[i]);
+            }
+            hash = h;
+            this.frames += frames;
+        }
+        
+        @Override
+        public void stop() {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class SampleCacheTest {
+    
+    private static final int FRAMES = 1000;
+    private static final long SIZE = sample().getSizeInBytes();
+    
+    @Test
+    public void evictsLeastRecentlyUsedFirst() {
+        SampleCache cache = new SampleCache(3 * SIZE);
+        cache.put("a", sample());
+        cache.put("b", sample());
+        cache.put("c", sample());
+        assertNotNull(cache.get("a")); // b is now the least recently used
+        cache.put("d", sample());
+        
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+        assertEquals(3 * SIZE, cache.getBytesUsed());
+        assertEquals(1, cache.getEvictionCount());
+    }
+    
+    @Test
+    public void pinnedEntriesAreKeptOverBudget() {
+        SampleCache cache = new SampleCache(2 * SIZE);
+        cache.pinOnly(Arrays.asList("a", "b"));
+        cache.put("a", sample());
+        cache.put("b", sample());
+        cache.put("c", sample());
+        assertNull(cache.get("c"));
+        
+        cache.setByteBudget(SIZE);
+        assertEquals(2, cache.getEntryCount());
+        cache.evictUnpinned();
+        assertEquals(2, cache.getEntryCount());
+        
+        cache.pinOnly(Collections.singletonList("b"));
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertEquals(SIZE, cache.getBytesUsed());
+    }
+    
+    @Test
+    public void oversizeEntryIsReturnedButNotKept() {
+        SampleCache cache = new SampleCache(SIZE / 2);
+        PcmSample big = sample();
+        assertSame(big, cache.put("big", big));
+        assertNull(cache.get("big"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getBytesUsed());
+    }
+    
+    @Test
+    public void oversizeEntryIsKeptWhenPinned() {
+        SampleCache cache = new SampleCache(SIZE / 2);
+        cache.pinOnly(Collections.singletonList("big"));
+        cache.put("big", sample());
+        assertNotNull(cache.get("big"));
+        assertTrue(cache.isPinned("big"));
+    }
+    
+    @Test
+    public void firstSampleStoredForAKeyWins() {
+        SampleCache cache = new SampleCache(4 * SIZE);
+        PcmSample first = sample();
+        cache.put("a", first);
+        assertSame(first, cache.put("a", sample()));
+        assertEquals(SIZE, cache.getBytesUsed());
+    }
+    
+    @Test
+    public void getOrLoadDecodesOnlyOnAMiss() throws Exception {
+        SampleCache cache = new SampleCache(4 * SIZE);
+        int[] loads = {0};
+        SampleCache.Loader loader = () -> {
+            loads[0]++;
+            return sample();
+        };
+        PcmSample loaded = cache.getOrLoad("a", loader);
+        assertSame(loaded, cache.getOrLoad("a", loader));
+        assertEquals(1, loads[0]);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+    
+    private static PcmSample sample() {
+        return PcmSample.fromInterleaved(new float[FRAMES], FRAMES, 1, 48000);
+    }
+}
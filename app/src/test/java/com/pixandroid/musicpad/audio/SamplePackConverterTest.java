@@ -0,0 +1,105 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SamplePackConverterTest {
+    
+    private static final long INSTALLED = 1_700_000_000_000L;
+    private static final int SAMPLE_RATE = 48000;
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private File packFile;
+    
+    @Before
+    public void setUp() throws IOException {
+        packFile = folder.newFile("pack." + SamplePackFile.EXTENSION);
+        write(packFile, SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds()));
+    }
+    
+    @Test
+    public void conversionOfTheSameSourceIsCurrent() {
+        assertTrue(SamplePackConverter.isCurrent(packFile,
+                SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds())));
+    }
+    
+    @Test
+    public void appUpdateMakesTheConversionStale() {
+        // Same resource ids, names and pads, but the samples behind them may have changed
+        assertStale(SamplePackConverter.fingerprint(INSTALLED + 1, SAMPLE_RATE, sounds()));
+    }
+    
+    @Test
+    public void otherSampleRateMakesTheConversionStale() {
+        assertStale(SamplePackConverter.fingerprint(INSTALLED, 44100, sounds()));
+    }
+    
+    @Test
+    public void changedSoundsMakeTheConversionStale() {
+        List<SoundPack.SoundInfo> sounds = sounds();
+        sounds.get(1).resourceId++;
+        assertStale(SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds));
+        
+        sounds = sounds();
+        sounds.get(0).padIndex = 5;
+        assertStale(SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds));
+        
+        sounds = sounds();
+        sounds.get(2).maxVelocity = 0.8f;
+        assertStale(SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds));
+        
+        sounds = sounds();
+        sounds.get(0).soundName = "kick_2";
+        assertStale(SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds));
+        
+        sounds = sounds();
+        sounds.remove(2);
+        assertStale(SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds));
+    }
+    
+    @Test
+    public void fileWithoutAFingerprintIsStale() throws IOException {
+        write(packFile, 0);
+        int fingerprint = SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds());
+        assertNotEquals(0, fingerprint);
+        assertFalse(SamplePackConverter.isCurrent(packFile, fingerprint));
+    }
+    
+    @Test
+    public void missingFileIsNotCurrent() {
+        int fingerprint = SamplePackConverter.fingerprint(INSTALLED, SAMPLE_RATE, sounds());
+        assertTrue(packFile.delete());
+        assertFalse(SamplePackConverter.isCurrent(packFile, fingerprint));
+    }
+    
+    private void assertStale(int fingerprint) {
+        assertFalse(SamplePackConverter.isCurrent(packFile, fingerprint));
+    }
+    
+    private static List<SoundPack.SoundInfo> sounds() {
+        SoundPack.SoundInfo kick = new SoundPack.SoundInfo(0, "kick", 0x7f0e0001);
+        SoundPack.SoundInfo snareSoft = new SoundPack.SoundInfo(1, "snare_soft", 0x7f0e0002);
+        snareSoft.maxVelocity = 0.5f;
+        SoundPack.SoundInfo snareHard = new SoundPack.SoundInfo(1, "snare_hard", 0x7f0e0003);
+        return new ArrayList<>(Arrays.asList(kick, snareSoft, snareHard));
+    }
+    
+    private static void write(File path, int source) throws IOException {
+        PcmSample sample = PcmSample.fromInterleaved(new float[100], 100, 1, SAMPLE_RATE);
+        SamplePackFile.write(path, source, new int[] {0, 1, 1}, new PcmSample[] {sample, sample, sample},
+                new float[] {1.0f, 0.5f, 1.0f}, new String[] {"kick", "snare_soft", "snare_hard"});
+    }
+}
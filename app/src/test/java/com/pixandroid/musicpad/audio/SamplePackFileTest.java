@@ -0,0 +1,37 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SamplePackFileTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void sourceFingerprintRoundTrips() throws IOException {
+        File path = folder.newFile("pack." + SamplePackFile.EXTENSION);
+        PcmSample sample = SoftwareMixerTest.constant(0.5f, 1000);
+        SamplePackFile.write(path, 0x5eed1234, new int[] {2}, new PcmSample[] {sample}, new float[] {1.0f},
+                new String[] {"kick"});
+        
+        assertEquals(0x5eed1234, SamplePackFile.readSource(path));
+        try (SamplePackFile pack = SamplePackFile.open(path)) {
+            assertEquals(0x5eed1234, pack.getSource());
+            assertEquals(1, pack.getEntryCount());
+            assertEquals(2, pack.getPadIndex(0));
+            assertEquals("kick", pack.getName(0));
+            assertEquals(1000, pack.getSampleAt(0).getFrames());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void readSourceRejectsOtherFiles() throws IOException {
+        SamplePackFile.readSource(folder.newFile("not-a-pack"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class SampleZonesTest {
+    
+    private static final float STEP = 1.0f / (SampleZones.VELOCITY_STEPS - 1);
+    
+    private final PcmSample soft = sample();
+    private final PcmSample medium = sample();
+    private final PcmSample hard = sample();
+    
+    @Test
+    public void topVelocityOfALayerPlaysThatLayer() {
+        SampleZones zones = SampleZones.of(new PcmSample[] {soft, medium, hard}, new float[] {0.3f, 0.7f, 1.0f});
+        assertEquals(3, zones.getLayerCount());
+        assertSame(soft, zones.select(0.0f, 0));
+        assertSame(soft, zones.select(0.3f, 0));
+        assertSame(medium, zones.select(0.3f + STEP, 0));
+        assertSame(medium, zones.select(0.7f, 0));
+        assertSame(hard, zones.select(0.7f + STEP, 0));
+        assertSame(hard, zones.select(1.0f, 0));
+    }
+    
+    @Test
+    public void velocityRoundingToALayersTopStaysInThatLayer() {
+        // 0.298 rounds up to step 38, whose own velocity 0.2992 is above the layer's top
+        SampleZones zones = SampleZones.of(new PcmSample[] {soft, hard}, new float[] {0.298f, 1.0f});
+        assertSame(soft, zones.select(0.298f, 0));
+        assertSame(soft, zones.select(0.3f, 0)); // same step
+        assertSame(hard, zones.select(0.298f + 1.5f * STEP, 0));
+    }
+    
+    @Test
+    public void velocitiesOutsideTheRangeAreClamped() {
+        SampleZones zones = SampleZones.of(new PcmSample[] {soft, hard}, new float[] {0.5f, 1.0f});
+        assertSame(soft, zones.select(-1.0f, 0));
+        assertSame(hard, zones.select(2.0f, 0));
+    }
+    
+    @Test
+    public void alternatesCycleInTheOrderGiven() {
+        PcmSample first = sample();
+        PcmSample second = sample();
+        PcmSample third = sample();
+        SampleZones zones = SampleZones.of(new PcmSample[] {first, soft, second, third},
+                new float[] {1.0f, 0.4f, 1.0f, 1.0f});
+        assertEquals(2, zones.getLayerCount());
+        PcmSample[] expected = {first, second, third, first, second, third, first};
+        for (int hit = 0; hit < expected.length; hit++) {
+            assertSame("hit " + hit, expected[hit], zones.select(0.9f, hit));
+        }
+        assertSame(soft, zones.select(0.2f, 5)); // a single-sample layer ignores the count
+        assertSame(first, zones.getPrimary());
+    }
+    
+    @Test
+    public void nullSamplesAreSkipped() {
+        SampleZones zones = SampleZones.of(new PcmSample[] {null, soft, null, hard, null},
+                new float[] {0.1f, 0.5f, 0.6f, 1.0f, 1.0f});
+        assertEquals(2, zones.getSampleCount());
+        assertEquals(2, zones.getLayerCount());
+        assertSame(soft, zones.select(0.1f, 0));
+        assertSame(soft, zones.select(0.5f, 0));
+        assertSame(hard, zones.select(0.6f, 0));
+        assertSame(hard, zones.select(1.0f, 1));
+        
+        assertNull(SampleZones.of(new PcmSample[] {null, null}, new float[] {0.5f, 1.0f}));
+    }
+    
+    @Test
+    public void singleSamplePlaysAtEveryVelocity() {
+        SampleZones zones = SampleZones.single(soft);
+        for (float velocity = 0.0f; velocity <= 1.0f; velocity += 0.05f) {
+            assertSame(soft, zones.select(velocity, 3));
+        }
+    }
+    
+    private static PcmSample sample() {
+        return PcmSample.fromInterleaved(new float[100], 100, 1, 48000);
+    }
+}
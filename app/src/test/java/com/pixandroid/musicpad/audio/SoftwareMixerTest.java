@@ -0,0 +1,129 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SoftwareMixerTest {
+    
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 128;
+    private static final float EPSILON = 1e-6f;
+    
+    private SoftwareMixer mixer;
+    private float[] out;
+    
+    @Before
+    public void setUp() {
+        mixer = new SoftwareMixer(SAMPLE_RATE, BLOCK, 8);
+        out = new float[BLOCK * 2];
+    }
+    
+    @Test
+    public void renderIsSilentWithoutTriggers() {
+        mixer.setSample(0, constant(0.5f, 1000));
+        mixer.render(out);
+        assertAll(0.0f, out, 0, BLOCK);
+    }
+    
+    @Test
+    public void triggerPlaysSampleFromTheStartOfTheNextBlock() {
+        mixer.setSample(0, constant(0.5f, 1000));
+        mixer.trigger(0, 1.0f);
+        mixer.render(out);
+        assertAll(0.5f, out, 0, BLOCK);
+        assertEquals(1, mixer.getActiveVoiceCount());
+    }
+    
+    @Test
+    public void padVolumeVelocityAndMasterVolumeScaleTheOutput() {
+        mixer.setSample(0, constant(0.5f, 1000));
+        mixer.setPadVolume(0, 0.5f);
+        mixer.trigger(0, 0.8f);
+        mixer.render(out);
+        assertAll(0.2f, out, 0, BLOCK);
+        
+        mixer.setMasterVolume(0.5f);
+        mixer.render(out);
+        assertAll(0.1f, out, 0, BLOCK);
+    }
+    
+    @Test
+    public void voicesOfDifferentPadsAreSummed() {
+        mixer.setSample(0, constant(0.25f, 1000));
+        mixer.setSample(1, constant(0.125f, 1000));
+        mixer.trigger(0, 1.0f);
+        mixer.trigger(1, 1.0f);
+        mixer.render(out);
+        assertAll(0.375f, out, 0, BLOCK);
+    }
+    
+    @Test
+    public void scheduledTriggerStartsOnItsExactFrame() {
+        mixer.setSample(0, constant(0.5f, 1000));
+        mixer.triggerAt(0, 1.0f, BLOCK + 40);
+        mixer.render(out);
+        assertAll(0.0f, out, 0, BLOCK);
+        mixer.render(out);
+        assertAll(0.0f, out, 0, 40);
+        assertAll(0.5f, out, 40, BLOCK);
+    }
+    
+    @Test
+    public void oneShotEndsWithItsSample() {
+        mixer.setSample(0, constant(0.5f, 100));
+        mixer.trigger(0, 1.0f);
+        mixer.render(out);
+        assertAll(0.5f, out, 0, 100);
+        assertAll(0.0f, out, 100, BLOCK);
+        assertEquals(0, mixer.getActiveVoiceCount());
+    }
+    
+    @Test
+    public void stopPadSilencesItsVoices() {
+        mixer.setSample(0, constant(0.5f, 1000));
+        mixer.trigger(0, 1.0f);
+        mixer.render(out);
+        mixer.stopPad(0);
+        mixer.render(out);
+        assertAll(0.0f, out, 0, BLOCK);
+        assertEquals(0, mixer.getActiveVoiceCount());
+    }
+    
+    @Test
+    public void triggerOfEmptyPadPlaysNothing() {
+        mixer.trigger(3, 1.0f);
+        mixer.render(out);
+        assertAll(0.0f, out, 0, BLOCK);
+        assertEquals(0, mixer.getActiveVoiceCount());
+    }
+    
+    @Test
+    public void auxBusUseFollowsSendsAndIgnoresUnknownBuses() {
+        assertFalse(mixer.isAuxBusUsed(Constants.AUX_BUS_REVERB));
+        mixer.setPadSend(4, Constants.AUX_BUS_REVERB, 0.5f);
+        assertTrue(mixer.isAuxBusUsed(Constants.AUX_BUS_REVERB));
+        assertFalse(mixer.isAuxBusUsed(-1));
+        assertFalse(mixer.isAuxBusUsed(Constants.AUX_BUSES));
+    }
+    
+    static PcmSample constant(float value, int frames) {
+        float[] pcm = new float[frames];
+        Arrays.fill(pcm, value);
+        return PcmSample.fromInterleaved(pcm, frames, 1, SAMPLE_RATE);
+    }
+    
+    /**
+     * Both channels of frames {@code from} to {@code to} of an interleaved block equal {@code expected}
+     */
+    static void assertAll(float expected, float[] interleaved, int from, int to) {
+        for (int i = from * 2; i < to * 2; i++) {
+            assertEquals("sample " + i, expected, interleaved[i], EPSILON);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.pixandroid.musicpad.utils.Constants;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StereoDelayTest {
+    
+    private static final int SAMPLE_RATE = 48000;
+    private static final int BLOCK = 128;
+    
+    private StereoDelay delay;
+    private final float[] left = new float[BLOCK];
+    private final float[] right = new float[BLOCK];
+    
+    @Before
+    public void setUp() {
+        delay = new StereoDelay(SAMPLE_RATE);
+        delay.setMix(1.0f);
+        delay.setFeedback(0.0f);
+        delay.setDivision(StereoDelay.Division.EIGHTH);
+    }
+    
+    @Test
+    public void linesHoldTheLongestDivisionAtTheSlowestTempo() {
+        float longest = StereoDelay.Division.HALF.getBeats() * 60.0f / Constants.MIN_BPM * SAMPLE_RATE;
+        assertTrue(delay.getCapacityFrames() >= longest);
+    }
+    
+    @Test
+    public void repeatArrivesAfterTheDelayTime() {
+        delay.setBpm(120);
+        assertEquals(12000.0f, delay.getTargetFrames(), 0.0f); // an eighth at 120 BPM
+        assertEquals(12000, echoDelay());
+    }
+    
+    @Test
+    public void tempoChangeMovesTheRepeatWithoutReallocating() {
+        int capacity = delay.getCapacityFrames();
+        delay.setBpm(120);
+        assertEquals(12000, echoDelay());
+        
+        delay.setBpm(Constants.MIN_BPM);
+        delay.setDivision(StereoDelay.Division.HALF);
+        assertEquals(capacity, delay.getCapacityFrames());
+        // Let the crossfade finish and overwrite the first impulse, which the longer tap would reach
+        silence(capacity + BLOCK);
+        int expected = Math.round(delay.getTargetFrames());
+        assertEquals(expected, echoDelay());
+        
+        delay.setBpm(Constants.MAX_BPM);
+        assertEquals(capacity, delay.getCapacityFrames());
+        silence(expected + StereoDelay.CROSSFADE_FRAMES + BLOCK);
+        assertEquals(Math.round(delay.getTargetFrames()), echoDelay());
+    }
+    
+    @Test
+    public void resetClearsTheLines() {
+        delay.setBpm(120);
+        left[0] = 1.0f;
+        right[0] = 1.0f;
+        delay.process(left, right, BLOCK);
+        delay.reset();
+        assertEquals(-1, firstWetFrame(20000));
+    }
+    
+    /**
+     * Feed an impulse and return the frame its repeat comes back on
+     */
+    private int echoDelay() {
+        left[0] = 1.0f;
+        right[0] = 1.0f;
+        delay.process(left, right, BLOCK);
+        for (int i = 1; i < BLOCK; i++) {
+            assertEquals(0.0f, left[i], 0.0f);
+        }
+        int frame = firstWetFrame(delay.getCapacityFrames());
+        assertTrue("no repeat", frame >= 0);
+        return frame + BLOCK;
+    }
+    
+    /**
+     * Process silence and return the first frame with output, counted from now, or -1
+     */
+    private int firstWetFrame(int frames) {
+        for (int done = 0; done < frames; done += BLOCK) {
+            Arrays.fill(left, 0.0f);
+            Arrays.fill(right, 0.0f);
+            delay.process(left, right, BLOCK);
+            for (int i = 0; i < BLOCK; i++) {
+                if (Math.abs(left[i]) > 1e-3f) {
+                    return done + i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    private void silence(int frames) {
+        for (int done = 0; done < frames; done += BLOCK) {
+            Arrays.fill(left, 0.0f);
+            Arrays.fill(right, 0.0f);
+            delay.process(left, right, BLOCK);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TriggerQueueTest {
+    
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new TriggerQueue(5).capacity());
+        assertEquals(8, new TriggerQueue(8).capacity());
+        assertEquals(256, new TriggerQueue(200).capacity());
+    }
+    
+    @Test
+    public void drainDeliversEventsInOrderWithAllFields() {
+        TriggerQueue queue = new TriggerQueue(8);
+        queue.offer(TriggerQueue.EVENT_TRIGGER, 3, 0.5f, 700.0f, 1234L);
+        queue.offer(TriggerQueue.EVENT_STOP, -1, 0.0f, 0.0f, TriggerQueue.IMMEDIATE);
+        
+        List<long[]> events = drain(queue);
+        assertEquals(2, events.size());
+        assertEquals(TriggerQueue.EVENT_TRIGGER, events.get(0)[0]);
+        assertEquals(3, events.get(0)[1]);
+        assertEquals(1234L, events.get(0)[2]);
+        assertEquals(TriggerQueue.EVENT_STOP, events.get(1)[0]);
+        assertEquals(-1, events.get(1)[1]);
+        assertEquals(TriggerQueue.IMMEDIATE, events.get(1)[2]);
+        assertEquals(0, queue.size());
+    }
+    
+    @Test
+    public void fullQueueDropsNewEvents() {
+        TriggerQueue queue = new TriggerQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(TriggerQueue.EVENT_TRIGGER, i, 1.0f, 0.0f, i));
+        }
+        assertFalse(queue.offer(TriggerQueue.EVENT_TRIGGER, 99, 1.0f, 0.0f, 99));
+        assertEquals(4, queue.size());
+        
+        List<long[]> events = drain(queue);
+        assertEquals(4, events.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, events.get(i)[1]);
+        }
+        assertTrue(queue.offer(TriggerQueue.EVENT_TRIGGER, 5, 1.0f, 0.0f, 5));
+    }
+    
+    @Test
+    public void eventsSurviveWrappingAroundTheRing() {
+        TriggerQueue queue = new TriggerQueue(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 50; round++) {
+            int count = 1 + round % 4;
+            for (int i = 0; i < count; i++) {
+                assertTrue(queue.offer(TriggerQueue.EVENT_TRIGGER, next % 32, 1.0f, 0.0f, next));
+                next++;
+            }
+            for (long[] event : drain(queue)) {
+                assertEquals(expected, event[2]);
+                assertEquals(expected % 32, event[1]);
+                expected++;
+            }
+        }
+        assertEquals(next, expected);
+    }
+    
+    @Test
+    public void drainOfEmptyQueueReturnsZero() {
+        TriggerQueue queue = new TriggerQueue(4);
+        assertEquals(0, queue.drainTo((type, pad, velocity, pitch, frame) -> {
+            throw new AssertionError("no events expected");
+        }));
+    }
+    
+    /**
+     * Drain into a list of {type, pad, frame}
+     */
+    private static List<long[]> drain(TriggerQueue queue) {
+        List<long[]> events = new ArrayList<>();
+        int count = queue.drainTo((type, pad, velocity, pitch, frame) -> events.add(new long[] {type, pad, frame}));
+        assertEquals(events.size(), count);
+        return events;
+    }
+}
@@ -0,0 +1,154 @@
+package com.pixandroid.musicpad.audio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class VoiceAllocatorTest {
+    
+    private final SampleBank bank = new SampleBank("test");
+    private final PcmSample sample = constant(0.5f, 1000);
+    
+    @Test
+    public void freeSlotsAreUsedBeforeStealing() {
+        VoiceAllocator allocator = new VoiceAllocator(3);
+        start(allocator, 0, 1.0f, 0, StealPolicy.OLDEST);
+        start(allocator, 1, 1.0f, 0, StealPolicy.OLDEST);
+        assertEquals(2, allocator.getActiveCount());
+        assertEquals(0, allocator.getStealCount());
+        assertArrayEquals(new int[] {0, 1}, playingPads(allocator));
+    }
+    
+    @Test
+    public void oldestPolicyStealsTheFirstStartedVoice() {
+        VoiceAllocator allocator = new VoiceAllocator(2);
+        start(allocator, 0, 1.0f, 0, StealPolicy.OLDEST);
+        start(allocator, 1, 1.0f, 0, StealPolicy.OLDEST);
+        start(allocator, 2, 1.0f, 0, StealPolicy.OLDEST);
+        assertArrayEquals(new int[] {1, 2}, playingPads(allocator));
+        assertEquals(1, allocator.getStealCount());
+    }
+    
+    @Test
+    public void quietestPolicyStealsTheLowestGainVoice() {
+        VoiceAllocator allocator = new VoiceAllocator(3);
+        start(allocator, 0, 0.9f, 0, StealPolicy.QUIETEST);
+        start(allocator, 1, 0.1f, 0, StealPolicy.QUIETEST);
+        start(allocator, 2, 0.5f, 0, StealPolicy.QUIETEST);
+        start(allocator, 3, 1.0f, 0, StealPolicy.QUIETEST);
+        assertArrayEquals(new int[] {0, 2, 3}, playingPads(allocator));
+    }
+    
+    @Test
+    public void samePadPolicyStealsTheNewPadsOwnVoice() {
+        VoiceAllocator allocator = new VoiceAllocator(3);
+        start(allocator, 0, 1.0f, 0, StealPolicy.SAME_PAD);
+        start(allocator, 1, 1.0f, 0, StealPolicy.SAME_PAD);
+        start(allocator, 2, 1.0f, 0, StealPolicy.SAME_PAD);
+        start(allocator, 1, 1.0f, 0, StealPolicy.SAME_PAD);
+        assertArrayEquals(new int[] {0, 2, 1}, playingPads(allocator));
+        assertEquals(1, allocator.getPadVoiceCount(1));
+    }
+    
+    @Test
+    public void samePadPolicyFallsBackToOldestForANewPad() {
+        VoiceAllocator allocator = new VoiceAllocator(2);
+        start(allocator, 0, 1.0f, 0, StealPolicy.SAME_PAD);
+        start(allocator, 1, 1.0f, 0, StealPolicy.SAME_PAD);
+        start(allocator, 2, 1.0f, 0, StealPolicy.SAME_PAD);
+        assertArrayEquals(new int[] {1, 2}, playingPads(allocator));
+    }
+    
+    @Test
+    public void padLimitStealsThePadsOldestVoiceEvenWithFreeSlots() {
+        VoiceAllocator allocator = new VoiceAllocator(8);
+        start(allocator, 4, 1.0f, 2, StealPolicy.OLDEST);
+        start(allocator, 5, 1.0f, 2, StealPolicy.OLDEST);
+        start(allocator, 4, 1.0f, 2, StealPolicy.OLDEST);
+        start(allocator, 4, 1.0f, 2, StealPolicy.OLDEST);
+        assertEquals(2, allocator.getPadVoiceCount(4));
+        assertEquals(3, allocator.getActiveCount());
+        assertEquals(1, allocator.getStealCount());
+        assertArrayEquals(new int[] {5, 4, 4}, playingPads(allocator));
+    }
+    
+    @Test
+    public void releasedSlotIsReused() {
+        VoiceAllocator allocator = new VoiceAllocator(2);
+        int slot = start(allocator, 0, 1.0f, 0, StealPolicy.OLDEST);
+        start(allocator, 1, 1.0f, 0, StealPolicy.OLDEST);
+        allocator.stop(slot);
+        assertEquals(slot, start(allocator, 2, 1.0f, 0, StealPolicy.OLDEST));
+        assertEquals(0, allocator.getStealCount());
+        assertArrayEquals(new int[] {1, 2}, playingPads(allocator));
+    }
+    
+    @Test
+    public void rebuildRestoresStartOrder() {
+        VoiceAllocator allocator = new VoiceAllocator(4);
+        start(allocator, 0, 1.0f, 0, StealPolicy.OLDEST);
+        start(allocator, 1, 1.0f, 0, StealPolicy.OLDEST);
+        int slot = start(allocator, 2, 1.0f, 0, StealPolicy.OLDEST);
+        start(allocator, 3, 1.0f, 0, StealPolicy.OLDEST);
+        allocator.stop(slot);
+        start(allocator, 5, 1.0f, 0, StealPolicy.OLDEST); // reuses a middle slot
+        allocator.rebuild();
+        assertArrayEquals(new int[] {0, 1, 3, 5}, playingPads(allocator));
+    }
+    
+    @Test
+    public void chokeGroupStopsTheOtherPadsOfTheGroup() {
+        SoftwareMixer mixer = new SoftwareMixer(48000, 128, 8);
+        for (int pad = 0; pad < 3; pad++) {
+            mixer.setSample(pad, sample);
+        }
+        mixer.setPadChokeGroup(0, 1); // closed and open hi-hat
+        mixer.setPadChokeGroup(1, 1);
+        float[] out = new float[256];
+        
+        mixer.trigger(1, 1.0f);
+        mixer.trigger(2, 1.0f);
+        mixer.render(out);
+        assertEquals(2, mixer.getActiveVoiceCount());
+        
+        mixer.trigger(0, 1.0f);
+        mixer.render(out);
+        assertEquals(2, mixer.getActiveVoiceCount()); // pads 0 and 2
+        assertEquals(1, mixer.getChokeCount());
+        for (int i = 0; i < out.length; i++) {
+            assertEquals("sample " + i, 1.0f, out[i], 1e-6f); // pads 0 and 2 at 0.5 each
+        }
+        
+        mixer.trigger(0, 1.0f); // a pad does not choke itself
+        mixer.render(out);
+        assertEquals(3, mixer.getActiveVoiceCount());
+        assertEquals(1, mixer.getChokeCount());
+    }
+    
+    private int start(VoiceAllocator allocator, int pad, float gain, int padLimit, StealPolicy policy) {
+        int slot = allocator.allocate(pad, padLimit, policy);
+        allocator.getVoices()[slot].start(pad, bank, sample, gain, Voice.UNITY_STEP, 0, allocator.nextSerial());
+        return slot;
+    }
+    
+    private static PcmSample constant(float value, int frames) {
+        float[] pcm = new float[frames];
+        Arrays.fill(pcm, value);
+        return PcmSample.fromInterleaved(pcm, frames, 1, 48000);
+    }
+    
+    /**
+     * Pads of the playing voices in start order
+     */
+    private static int[] playingPads(VoiceAllocator allocator) {
+        int[] pads = new int[allocator.getActiveCount()];
+        int i = 0;
+        for (int slot = allocator.first(); slot >= 0; slot = allocator.next(slot)) {
+            pads[i++] = allocator.getVoices()[slot].padIndex;
+        }
+        assertEquals(pads.length, i);
+        return pads;
+    }
+}
@@ -0,0 +1,81 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+
+/**
+ * Measures how many voices one core can mix in real time at each
+ * interpolation quality, for mono and stereo samples.
+ *
+ * A full pool of long voices is started and rendered block by block, the
+ * same way the render thread does, and the cost per voice is extrapolated to
+ * the number of voices that would use 100% of one core. Unpitched voices
+ * take the direct copy path and are reported as the baseline. The filtered
+ * row runs every pitched voice through a resonant {@link PadFilter} as well.
+ */
+public class VoiceBenchmark {
+    
+    private static final int VOICES = 64;
+    private static final int SAMPLE_SECONDS = 30;
+    private static final int RENDER_SECONDS = 20;
+    private static final float PITCH_CENTS = 700.0f; // a fifth up, reads every frame fractionally
+    private static final PadFilter FILTER = new PadFilter(PadFilter.Type.LOW_PASS, 2000.0f, 0.6f, 2.0f);
+    
+    public static void main(String[] args) {
+        int sampleRate = Constants.MIXER_SAMPLE_RATE;
+        for (int channels = 1; channels <= 2; channels++) {
+            PcmSample sample = noise(sampleRate, channels);
+            report(channels, "unpitched", sample, Interpolation.CUBIC, 0.0f, PadFilter.OFF);
+            for (Interpolation mode : Interpolation.values()) {
+                report(channels, mode.name().toLowerCase(), sample, mode, PITCH_CENTS, PadFilter.OFF);
+            }
+            report(channels, "filtered", sample, Interpolation.CUBIC, PITCH_CENTS, FILTER);
+        }
+    }
+    
+    private static void report(int channels, String label, PcmSample sample, Interpolation mode, float cents,
+            PadFilter filter) {
+        int sampleRate = sample.getSampleRate();
+        int blockFrames = Constants.MIXER_BLOCK_FRAMES;
+        int blocks = RENDER_SECONDS * sampleRate / blockFrames;
+        float[] out = new float[blockFrames * 2];
+        
+        // First pass warms up the JIT; the second is timed
+        long nanos = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            SoftwareMixer mixer = new SoftwareMixer(sampleRate, blockFrames, VOICES);
+            mixer.setInterpolation(mode);
+            for (int pad = 0; pad < Constants.TOTAL_PADS; pad++) {
+                mixer.setSample(pad, sample);
+                mixer.setPadVolume(pad, 1.0f / VOICES);
+                mixer.setPadFilter(pad, filter);
+            }
+            for (int v = 0; v < VOICES; v++) {
+                mixer.trigger(v % Constants.TOTAL_PADS, 1.0f, cents);
+            }
+            long start = System.nanoTime();
+            for (int b = 0; b < blocks; b++) {
+                mixer.render(out);
+            }
+            nanos = System.nanoTime() - start;
+            if (mixer.getActiveVoiceCount() != VOICES) {
+                throw new IllegalStateException("Voices ended early");
+            }
+        }
+        
+        double audioSeconds = blocks * (double) blockFrames / sampleRate;
+        double nsPerVoiceFrame = nanos / (audioSeconds * sampleRate * VOICES);
+        double voicesPerCore = VOICES * audioSeconds / (nanos / 1e9);
+        System.out.printf("%s %-10s %5.2f ns per voice-frame = %5.0f voices per core%n",
+            channels == 2 ? "stereo" : "mono  ", label, nsPerVoiceFrame, voicesPerCore);
+    }
+    
+    private static PcmSample noise(int sampleRate, int channels) {
+        float[] pcm = new float[SAMPLE_SECONDS * sampleRate * channels];
+        long seed = 7;
+        for (int i = 0; i < pcm.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            pcm[i] = (seed >>> 40) / (float) (1 << 24) - 0.5f;
+        }
+        return PcmSample.fromInterleaved(pcm, pcm.length, channels, sampleRate);
+    }
+}
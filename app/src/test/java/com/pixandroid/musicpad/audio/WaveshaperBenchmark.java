@@ -0,0 +1,64 @@
+package com.pixandroid.musicpad.audio;
+
+import com.pixandroid.musicpad.utils.Constants;
+
+/**
+ * Measures what the distortion costs per mixer block for every curve at 1x,
+ * 2x and 4x oversampling, and how much of the block's real-time budget that is.
+ *
+ * A stereo block of noise is shaped repeatedly, the same way the master bus
+ * does it. Curves are table reads, so they should cost the same; the
+ * oversampling filters are what scale.
+ */
+public class WaveshaperBenchmark {
+    
+    private static final int BLOCKS = 200_000;
+    private static final int[] FACTORS = {1, 2, 4};
+    
+    public static void main(String[] args) {
+        int sampleRate = Constants.MIXER_SAMPLE_RATE;
+        int blockFrames = Constants.MIXER_BLOCK_FRAMES;
+        double budgetNs = blockFrames * 1e9 / sampleRate;
+        System.out.printf("block %d frames at %d Hz = %.0f us budget%n", blockFrames, sampleRate, budgetNs / 1000);
+        
+        for (Waveshaper.Curve curve : Waveshaper.Curve.values()) {
+            for (int factor : FACTORS) {
+                double ns = measure(curve, factor, blockFrames);
+                System.out.printf("%-5s %dx %7.0f ns per block = %5.2f%% of budget%n",
+                    curve.name().toLowerCase(), factor, ns, 100 * ns / budgetNs);
+            }
+        }
+    }
+    
+    private static double measure(Waveshaper.Curve curve, int factor, int blockFrames) {
+        float[] noise = new float[blockFrames];
+        long seed = 7;
+        for (int i = 0; i < blockFrames; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            noise[i] = ((seed >>> 40) / (float) (1 << 24) - 0.5f) * 1.6f;
+        }
+        float[] left = new float[blockFrames];
+        float[] right = new float[blockFrames];
+        
+        // First pass warms up the JIT; the second is timed
+        long nanos = 0;
+        float sink = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            Waveshaper shaper = new Waveshaper(Constants.MIXER_SAMPLE_RATE, blockFrames);
+            shaper.setCurve(curve);
+            shaper.setOversampling(factor);
+            long start = System.nanoTime();
+            for (int b = 0; b < BLOCKS; b++) {
+                System.arraycopy(noise, 0, left, 0, blockFrames);
+                System.arraycopy(noise, 0, right, 0, blockFrames);
+                shaper.process(left, right, blockFrames);
+                sink += left[b % blockFrames];
+            }
+            nanos = System.nanoTime() - start;
+        }
+        if (Float.isNaN(sink)) {
+            throw new IllegalStateException("Shaper produced NaN");
+        }
+        return nanos / (double) BLOCKS;
+    }
+}